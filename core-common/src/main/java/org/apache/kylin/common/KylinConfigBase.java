@@ -269,6 +269,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.metadata.sync-retries", "3"));
     }
 
+    /**
+     * How long the changes are collected before announced to the other nodes, the changes to the same entity sent
+     * once.
+     */
+    public long getCacheSyncCoalesceMs() {
+        return Long.parseLong(getOptional("kylin.metadata.sync-coalesce-ms", "200"));
+    }
+
     // for test only
     public void setMetadataUrl(String metadataUrl) {
         setProperty("kylin.metadata.url", metadataUrl);
@@ -288,6 +296,50 @@ abstract public class KylinConfigBase implements Serializable {
         return r;
     }
 
+    /**
+     * The size of the read-through cache of a remote ResourceStore, 0 to disable.
+     */
+    public long getResourceCacheMaxBytes() {
+        return Long.parseLong(getOptional("kylin.metadata.resource-cache.max-mb", "64")) * 1024 * 1024;
+    }
+
+    /**
+     * The folders whose resources never change once written, served from the cache without a timestamp check.
+     * Not the cube statistics, which are written again when their step is retried.
+     */
+    public String[] getResourceCacheImmutableRoots() {
+        return getOptionalStringArray("kylin.metadata.resource-cache.immutable-roots",
+                new String[] { "/dict", "/table_snapshot" });
+    }
+
+    /**
+     * The threads reading the large resources kept in HDFS in parallel, for a batch read of HBaseResourceStore.
+     */
+    public int getResourceStoreBigCellFetchThreads() {
+        return Integer.parseInt(getOptional("kylin.metadata.big-cell-fetch-threads", "8"));
+    }
+
+    /**
+     * The bytes of big cells a batch read of HBaseResourceStore holds in memory, the others are streamed from HDFS.
+     */
+    public long getResourceStoreBigCellFetchMaxBytes() {
+        return Long.parseLong(getOptional("kylin.metadata.big-cell-fetch-max-mb", "64")) * 1024 * 1024;
+    }
+
+    /**
+     * The threads loading the entities of a metadata manager in parallel, 1 to load them one by one.
+     */
+    public int getMetadataLoadThreads() {
+        return Integer.parseInt(getOptional("kylin.metadata.load-threads", "8"));
+    }
+
+    /**
+     * Whether CubeManager reads a cube instance on its first use instead of reading all at startup.
+     */
+    public boolean isLazyCubeLoading() {
+        return Boolean.parseBoolean(getOptional("kylin.metadata.lazy-cube-loading", "false"));
+    }
+
     public String getDataModelImpl() {
         return getOptional("kylin.metadata.data-model-impl", null);
     }
@@ -331,8 +383,47 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.forest-trie-max-mb", "500"));
     }
 
-    public int getCachedDictMaxEntrySize() {
-        return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "3000"));
+    public boolean isUseStreamingForestTrieDictionary() {
+        return Boolean.parseBoolean(getOptional("kylin.dictionary.streaming-forest-trie", "true"));
+    }
+
+    /**
+     * The value bytes of the one trie tree the streaming forest builder holds in heap, kept well below
+     * kylin.dictionary.forest-trie-max-mb since the trie nodes take several times the value bytes.
+     */
+    public int getTrieDictionaryForestStreamingMaxTrieSizeMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.streaming-forest-trie-max-mb", "64"));
+    }
+
+    /**
+     * The total serialized size of the dictionaries cached in heap, 0 for a tenth of the max heap.
+     */
+    public long getCachedDictMaxMB() {
+        return Long.parseLong(getOptional("kylin.dictionary.cache-max-mb", "0"));
+    }
+
+    /**
+     * The largest dictionary cached in heap even if above the cache size, then evicting all the others. 0 for a
+     * quarter of the max heap.
+     */
+    public long getCachedDictMaxEntryMB() {
+        return Long.parseLong(getOptional("kylin.dictionary.cache-max-entry-mb", "0"));
+    }
+
+    /**
+     * The direct memory keeping the dictionaries evicted from heap, reloaded without reading the metadata store.
+     * 0 to disable.
+     */
+    public long getCachedDictOffHeapMaxMB() {
+        return Long.parseLong(getOptional("kylin.dictionary.off-heap-cache-max-mb", "0"));
+    }
+
+    /**
+     * The local directory the dictionaries are copied to and memory-mapped from, instead of being read from
+     * the metadata store into heap. Empty to disable.
+     */
+    public String getDictionaryLocalCacheDir() {
+        return getOptional("kylin.dictionary.local-cache-dir", "");
     }
 
     public boolean isGrowingDictEnabled() {
@@ -351,6 +442,28 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.append-version-ttl", "259200000"));
     }
 
+    /**
+     * The total size of the append dictionary slices cached in heap, shared by all dictionaries, 0 for a tenth
+     * of the max heap.
+     */
+    public long getAppendDictCacheMaxMB() {
+        return Long.parseLong(getOptional("kylin.dictionary.append-cache-max-mb", "0"));
+    }
+
+    /**
+     * Threads loading the slices a lookup batch needs in parallel, 1 to load each slice on first access.
+     */
+    public int getAppendDictPrefetchThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.append-prefetch-threads", "8"));
+    }
+
+    /**
+     * Local directory to keep the append dictionary slice files read from HDFS, empty to always read HDFS.
+     */
+    public String getAppendDictLocalCacheDir() {
+        return getOptional("kylin.dictionary.append-local-cache-dir", "");
+    }
+
     public int getCachedSnapshotMaxEntrySize() {
         return Integer.parseInt(getOptional("kylin.snapshot.max-cache-entry", "500"));
     }
@@ -359,6 +472,13 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.snapshot.max-mb", "300"));
     }
 
+    /**
+     * Local directory to cache snapshots in a memory-mapped columnar format, empty to load snapshots into heap.
+     */
+    public String getSnapshotLocalCacheDir() {
+        return getOptional("kylin.snapshot.local-cache-dir", "");
+    }
+
     // ============================================================================
     // CUBE
     // ============================================================================
@@ -400,6 +520,21 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-concurrent-threads", "1"));
     }
 
+    /**
+     * Store for the intermediate cuboids of in-mem cubing, one of "concurrent", "mapped" or "memdisk".
+     */
+    public String getCubeAlgorithmInMemSpillStore() {
+        return getOptional("kylin.cube.algorithm.inmem-spill-store", "concurrent");
+    }
+
+    /**
+     * Rows encoded together when building base cuboid, dictionary lookups are done in batch per block.
+     * Set to 1 to encode row by row.
+     */
+    public int getCubeEncodeBlockSize() {
+        return Integer.parseInt(getOptional("kylin.cube.encode-block-size", "1024"));
+    }
+
     public boolean isIgnoreCubeSignatureInconsistency() {
         return Boolean.parseBoolean(getOptional("kylin.cube.ignore-signature-inconsistency", "false"));
     }
@@ -593,6 +728,38 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.job.scheduler.poll-interval-second", "30"));
     }
 
+    /**
+     * Schedule a job as soon as it is submitted, resumed or its step is done, polling only as a safety net.
+     */
+    public boolean isSchedulerEventDriven() {
+        return Boolean.parseBoolean(getOptional("kylin.job.scheduler.event-driven", "true"));
+    }
+
+    public int getSchedulerSafetyPollIntervalSecond() {
+        return Integer.parseInt(getOptional("kylin.job.scheduler.safety-poll-interval-second", "300"));
+    }
+
+    /**
+     * With several job servers, place a ready job on the least loaded server instead of the first one to lock it.
+     */
+    public boolean isSchedulerCapacityAware() {
+        return Boolean.parseBoolean(getOptional("kylin.job.scheduler.capacity-aware", "true"));
+    }
+
+    /**
+     * The memory headroom a job server needs to be eligible for a new job.
+     */
+    public long getSchedulerMinFreeMemoryMB() {
+        return Long.parseLong(getOptional("kylin.job.scheduler.min-free-memory-mb", "512"));
+    }
+
+    /**
+     * How long a ready job waits for the chosen server before any server with a free slot may take it.
+     */
+    public int getSchedulerPlacementGraceSecond() {
+        return Integer.parseInt(getOptional("kylin.job.scheduler.placement-grace-second", "60"));
+    }
+
     public Integer getErrorRecordThreshold() {
         return Integer.parseInt(getOptional("kylin.job.error-record-threshold", "0"));
     }
@@ -609,6 +776,14 @@ abstract public class KylinConfigBase implements Serializable {
         return getOptional("kylin.job.tracking-url-pattern", "");
     }
 
+    /**
+     * List and filter jobs on an in-memory summary index kept in sync by cache broadcasts, instead of
+     * deserializing all jobs and outputs of the time window on each request.
+     */
+    public boolean isJobSummaryIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.job.summary-index-enabled", "true"));
+    }
+
     // ============================================================================
     // SOURCE.HIVE
     // ============================================================================
@@ -740,6 +915,36 @@ abstract public class KylinConfigBase implements Serializable {
         return getPropertiesByPrefix("kylin.source.kafka.config-override.");
     }
 
+    /**
+     * Cubes whose streams are consumed continuously on this server and queryable before being built.
+     */
+    public String[] getKafkaRealtimeCubes() {
+        return getOptionalStringArray("kylin.source.kafka.realtime.cubes", new String[0]);
+    }
+
+    /**
+     * Besides the base cuboid, the cuboids to materialize in memory for realtime queries, the mandatory cuboids
+     * of the cube are always included.
+     */
+    public String[] getKafkaRealtimeKeyCuboids() {
+        return getOptionalStringArray("kylin.source.kafka.realtime.key-cuboids", new String[0]);
+    }
+
+    public int getKafkaRealtimeRefreshIntervalSeconds() {
+        return Integer.parseInt(getOptional("kylin.source.kafka.realtime.refresh-interval-seconds", "30"));
+    }
+
+    public int getKafkaRealtimeRefreshMaxRows() {
+        return Integer.parseInt(getOptional("kylin.source.kafka.realtime.refresh-max-rows", "200000"));
+    }
+
+    /**
+     * How often the consumed messages are handed off to a normal build.
+     */
+    public int getKafkaRealtimeHandOffIntervalSeconds() {
+        return Integer.parseInt(getOptional("kylin.source.kafka.realtime.handoff-interval-seconds", "1800"));
+    }
+
     // ============================================================================
     // SOURCE.JDBC
     // ============================================================================
@@ -776,6 +981,32 @@ abstract public class KylinConfigBase implements Serializable {
         return getOptional("kylin.source.jdbc.field-delimiter", "|");
     }
 
+    /**
+     * Extract the flat table with the built-in parallel JDBC reader instead of sqoop.
+     */
+    public boolean isJdbcSourceNativeExtractEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.source.jdbc.native-extract.enabled", "false"));
+    }
+
+    public int getJdbcSourceExtractSplits() {
+        return Integer.parseInt(getOptional("kylin.source.jdbc.native-extract.splits", "8"));
+    }
+
+    public int getJdbcSourceExtractThreads() {
+        return Integer.parseInt(getOptional("kylin.source.jdbc.native-extract.threads", "4"));
+    }
+
+    /**
+     * Number of split column values sampled to compute the split boundaries.
+     */
+    public int getJdbcSourceExtractSampleSize() {
+        return Integer.parseInt(getOptional("kylin.source.jdbc.native-extract.sample-size", "10000"));
+    }
+
+    public int getJdbcSourceFetchSize() {
+        return Integer.parseInt(getOptional("kylin.source.jdbc.fetch-size", "10000"));
+    }
+
     // ============================================================================
     // STORAGE.HBASE
     // ============================================================================
@@ -903,6 +1134,20 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.max-fuzzykey-scan-split", "1"));
     }
 
+    /**
+     * IN lists larger than this are pushed down to storage as a bitmap of dictionary IDs, default same as max fuzzy keys
+     */
+    public int getQueryBitmapInFilterThreshold() {
+        return Integer.parseInt(this.getOptional("kylin.query.bitmap-in-filter-threshold", String.valueOf(getQueryScanFuzzyKeyMax())));
+    }
+
+    /**
+     * Max scan ranges a bitmap IN filter is split into, by the dense runs of IDs
+     */
+    public int getQueryBitmapInScanRangeMax() {
+        return Integer.parseInt(this.getOptional("kylin.query.bitmap-in-max-scan-ranges", "64"));
+    }
+
     public int getQueryStorageVisitScanRangeMax() {
         return Integer.valueOf(this.getOptional("kylin.storage.hbase.max-visit-scanrange", "1000000"));
     }
@@ -1062,6 +1307,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.engine.mr.build-uhc-dict", "true"));
     }
 
+    /**
+     * Reducers building the global dict of a column in parallel, each on a value range of its existing slices.
+     * 1 builds it in a single reducer.
+     */
+    public int getUHCGlobalDictPartitions() {
+        return Integer.parseInt(getOptional("kylin.engine.mr.uhc-global-dict-partitions", "1"));
+    }
+
     public boolean isBuildDictInReducerEnabled() {
         return Boolean.parseBoolean(getOptional("kylin.engine.mr.build-dict-in-reducer", "true"));
     }
@@ -1157,6 +1410,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.derived-filter-translation-threshold", "20"));
     }
 
+    /**
+     * Same as derived-filter-translation-threshold, but for host columns using dictionary, whose large IN is pushed
+     * down to storage as a bitmap of dictionary IDs
+     */
+    public int getDerivedBitmapInThreshold() {
+        return Integer.parseInt(getOptional("kylin.query.derived-filter-bitmap-translation-threshold", "100000"));
+    }
+
     public int getBadQueryStackTraceDepth() {
         return Integer.parseInt(getOptional("kylin.query.badquery-stacktrace-depth", "10"));
     }
@@ -1177,6 +1438,32 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.query.badquery-persistent-enabled", "true"));
     }
 
+    /**
+     * Sample the stacks of running queries, see /kylin/api/diag/{project}/profile
+     */
+    public boolean isQueryProfilerEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.profiler-enabled", "false"));
+    }
+
+    public int getQueryProfilerIntervalMs() {
+        return Integer.parseInt(getOptional("kylin.query.profiler-interval-ms", "50"));
+    }
+
+    /**
+     * Queries are sampled only after running this long, so fast queries cost nothing
+     */
+    public int getQueryProfilerThresholdMs() {
+        return Integer.parseInt(getOptional("kylin.query.profiler-threshold-ms", "1000"));
+    }
+
+    public int getQueryProfilerStackTraceDepth() {
+        return Integer.parseInt(getOptional("kylin.query.profiler-stacktrace-depth", "128"));
+    }
+
+    public int getQueryProfilerHistoryNum() {
+        return Integer.parseInt(getOptional("kylin.query.profiler-history-number", "20"));
+    }
+
     public String[] getQueryTransformers() {
         return getOptionalStringArray("kylin.query.transformers", new String[0]);
     }
@@ -52,6 +52,7 @@ public class QueryContext {
     private String username;
     private AtomicLong scannedRows = new AtomicLong();
     private AtomicLong scannedBytes = new AtomicLong();
+    private QueryTimeline timeline = new QueryTimeline();
 
     private List<RPCStatistics> rpcStatisticsList = Lists.newCopyOnWriteArrayList();
     private Map<Integer, CubeSegmentStatisticsResult> cubeSegmentStatisticsResultMap = Maps.newConcurrentMap();
@@ -128,6 +129,10 @@ public class QueryContext {
         return scannedBytes.addAndGet(deltaBytes);
     }
 
+    public QueryTimeline getTimeline() {
+        return timeline;
+    }
+
     public void addContext(int ctxId, String type, boolean ifCube) {
         Map<String, Map<String, CubeSegmentStatistics>> cubeSegmentStatisticsMap = null;
         if (ifCube) {
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.common;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Where the wall time of a query goes, aggregated per stage.
+ * <p>
+ * A span costs two System.nanoTime() calls and a few uncontended atomic updates, so it is always recorded.
+ * Stages entered once per row sum their spans locally in a {@link SpanBatch} and publish them in batches.
+ * Stages running in parallel, like the RPCs, are recorded by every thread, their total may exceed the wall time.
+ */
+public class QueryTimeline {
+
+    public enum Stage {
+        SQL_PARSE, //
+        SQL_PLAN, // validate, convert and optimize
+        REALIZATION_ROUTING, //
+        SCAN_RANGE_PLANNING, //
+        STORAGE_ENUMERATE, // fetching tuples from storage by the query thread, includes the stages below
+        RPC_QUEUE_WAIT, // from submitting a RPC until it is sent
+        RPC_SERVICE, // from sending a RPC until its response is received
+        RESULT_DECODING, // decompressing the RPC responses
+        TUPLE_CONVERSION, //
+        CALCITE_ENUMERABLE // the rest of the execution by Calcite, includes code generation
+    }
+
+    private static final int STAGE_NUM = Stage.values().length;
+    private static final int SPAN_BATCH_SIZE = 1024;
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray counts = new AtomicLongArray(STAGE_NUM);
+    private final AtomicLongArray totalNanos = new AtomicLongArray(STAGE_NUM);
+    private final AtomicLongArray firstStartNanos = new AtomicLongArray(STAGE_NUM);
+    private final AtomicLongArray openNanos = new AtomicLongArray(STAGE_NUM);
+
+    /**
+     * Opens a span to be closed by {@link #end(Stage)}, for stages starting and ending in different modules.
+     */
+    public void begin(Stage stage) {
+        openNanos.set(stage.ordinal(), System.nanoTime());
+    }
+
+    /**
+     * Closes the span opened by {@link #begin(Stage)}, does nothing if not open.
+     */
+    public void end(Stage stage) {
+        long begin = openNanos.getAndSet(stage.ordinal(), 0);
+        if (begin != 0)
+            record(stage, begin, System.nanoTime());
+    }
+
+    public void record(Stage stage, long beginNanos) {
+        record(stage, beginNanos, System.nanoTime());
+    }
+
+    public void record(Stage stage, long beginNanos, long endNanos) {
+        record(stage, beginNanos, 1, endNanos - beginNanos);
+    }
+
+    /**
+     * Records a number of spans at once, the first of them beginning at the given time.
+     */
+    public void record(Stage stage, long firstBeginNanos, long spanCount, long spanTotalNanos) {
+        int i = stage.ordinal();
+        counts.addAndGet(i, spanCount);
+        totalNanos.addAndGet(i, spanTotalNanos);
+
+        // offset 0 means not started, the first span of a query starts a bit after the timeline anyway
+        long offset = Math.max(firstBeginNanos - startNanos, 1);
+        if (firstStartNanos.get(i) == 0)
+            firstStartNanos.compareAndSet(i, 0, offset);
+    }
+
+    /**
+     * Records the part of a measured time not covered by the given stages as another stage.
+     */
+    public void recordRemainder(Stage stage, long beginNanos, long endNanos, Stage... coveredStages) {
+        long remainder = endNanos - beginNanos;
+        for (Stage covered : coveredStages) {
+            remainder -= totalNanos.get(covered.ordinal());
+        }
+        record(stage, beginNanos, beginNanos + Math.max(remainder, 0));
+    }
+
+    public SpanBatch newSpanBatch(Stage stage) {
+        return new SpanBatch(stage);
+    }
+
+    /**
+     * Sums the spans of a stage in plain fields, publishing them every {@link #SPAN_BATCH_SIZE} spans and on
+     * {@link #flush()}. Not thread-safe, to be used by the one thread entering the stage.
+     */
+    public class SpanBatch {
+        private final Stage stage;
+        private long firstBeginNanos;
+        private long spanCount;
+        private long spanTotalNanos;
+
+        private SpanBatch(Stage stage) {
+            this.stage = stage;
+        }
+
+        public void record(long beginNanos) {
+            record(beginNanos, System.nanoTime());
+        }
+
+        public void record(long beginNanos, long endNanos) {
+            if (spanCount == 0)
+                firstBeginNanos = beginNanos;
+            spanCount++;
+            spanTotalNanos += endNanos - beginNanos;
+            if (spanCount >= SPAN_BATCH_SIZE)
+                flush();
+        }
+
+        public void flush() {
+            if (spanCount == 0)
+                return;
+            QueryTimeline.this.record(stage, firstBeginNanos, spanCount, spanTotalNanos);
+            spanCount = 0;
+            spanTotalNanos = 0;
+        }
+    }
+
+    public long getCount(Stage stage) {
+        return counts.get(stage.ordinal());
+    }
+
+    public long getTotalNanos(Stage stage) {
+        return totalNanos.get(stage.ordinal());
+    }
+
+    /**
+     * The recorded stages in the order they started.
+     */
+    public List<StageSummary> getStageSummaries() {
+        List<StageSummary> result = Lists.newArrayList();
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            if (counts.get(i) > 0) {
+                result.add(new StageSummary(stage.name(), counts.get(i), toMicros(firstStartNanos.get(i)),
+                        toMicros(totalNanos.get(i))));
+            }
+        }
+        Collections.sort(result, new Comparator<StageSummary>() {
+            @Override
+            public int compare(StageSummary o1, StageSummary o2) {
+                return Long.compare(o1.startOffsetMicros, o2.startOffsetMicros);
+            }
+        });
+        return result;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public static class StageSummary implements Serializable {
+        protected static final long serialVersionUID = 1L;
+
+        private String stage;
+        private long count;
+        private long startOffsetMicros;
+        private long durationMicros;
+
+        public StageSummary() {
+        }
+
+        public StageSummary(String stage, long count, long startOffsetMicros, long durationMicros) {
+            this.stage = stage;
+            this.count = count;
+            this.startOffsetMicros = startOffsetMicros;
+            this.durationMicros = durationMicros;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * When the first span of the stage started, relative to the start of the query.
+         */
+        public long getStartOffsetMicros() {
+            return startOffsetMicros;
+        }
+
+        /**
+         * The sum of all spans of the stage.
+         */
+        public long getDurationMicros() {
+            return durationMicros;
+        }
+
+        @Override
+        public String toString() {
+            return stage + "[count=" + count + ", start=" + startOffsetMicros + "us, duration=" + durationMicros
+                    + "us]";
+        }
+    }
+}
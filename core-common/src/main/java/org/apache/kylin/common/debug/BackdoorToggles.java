@@ -130,6 +130,10 @@ public class BackdoorToggles {
     public static boolean getPrepareOnly() {
         return getBoolean(DEBUG_TOGGLE_PREPARE_ONLY);
     }
+
+    public static boolean getQueryTimeline() {
+        return getBoolean(DEBUG_TOGGLE_QUERY_TIMELINE);
+    }
     
     private static String getString(String key) {
         Map<String, String> toggles = _backdoorToggles.get();
@@ -285,4 +289,14 @@ public class BackdoorToggles {
      }
      */
     public final static String DEBUG_TOGGLE_CHECK_ALL_MODELS = "DEBUG_TOGGLE_CHECK_ALL_MODELS";
+
+    /**
+     * set DEBUG_TOGGLE_QUERY_TIMELINE="true" to return the time spent in each stage of the query with the result
+     *
+     example:(put it into request body)
+     "backdoorToggles": {
+     "DEBUG_TOGGLE_QUERY_TIMELINE": "true"
+     }
+     */
+    public final static String DEBUG_TOGGLE_QUERY_TIMELINE = "DEBUG_TOGGLE_QUERY_TIMELINE";
 }
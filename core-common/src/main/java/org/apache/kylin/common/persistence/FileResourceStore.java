@@ -51,6 +51,12 @@ public class FileResourceStore extends ResourceStore {
                     "File not exist by '" + kylinConfig.getMetadataUrl() + "': " + root.getAbsolutePath());
     }
 
+    @Override
+    protected boolean isCacheable() {
+        // local files, and tests edit them behind the store
+        return false;
+    }
+
     @Override
     protected NavigableSet<String> listResourcesImpl(String folderPath) throws IOException {
         synchronized (FileResourceStore.class) {
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.persistence;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Loads the resources of a metadata manager on a shared bounded pool, each thread prefetching its batch of paths.
+ * <p>
+ * The loader must be thread safe and must not wait for the manager being constructed, so the caller touches the
+ * managers it depends on before loading. A load started on a loader thread, e.g. by a manager initialized during
+ * another load, runs on that thread to not starve the pool.
+ */
+public class ParallelResourceLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelResourceLoader.class);
+
+    static final int MIN_BATCH_SIZE = 20;
+    static final int MAX_BATCH_SIZE = 500;
+
+    private static final ThreadLocal<Boolean> onLoaderThread = new ThreadLocal<>();
+    private static ExecutorService pool;
+
+    public interface Loader {
+        /**
+         * Load the resource at the path into the manager. An exception fails the whole load.
+         */
+        void load(String path) throws IOException;
+    }
+
+    public static void load(KylinConfig config, String entity, List<String> paths, final Loader loader)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        final ResourceStore store = ResourceStore.getStore(config);
+        int threads = config.getMetadataLoadThreads();
+        int batchSize = Math.min(MAX_BATCH_SIZE, Math.max(MIN_BATCH_SIZE, (paths.size() + threads - 1) / threads));
+        List<List<String>> batches = Lists.partition(paths, batchSize);
+
+        if (threads <= 1 || batches.size() <= 1 || Boolean.TRUE.equals(onLoaderThread.get())) {
+            for (List<String> batch : batches) {
+                loadBatch(store, batch, loader);
+            }
+        } else {
+            ExecutorService executor = getPool(threads);
+            List<Future<?>> futures = Lists.newArrayListWithCapacity(batches.size());
+            for (final List<String> batch : batches) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        onLoaderThread.set(Boolean.TRUE);
+                        try {
+                            loadBatch(store, batch, loader);
+                            return null;
+                        } finally {
+                            onLoaderThread.remove();
+                        }
+                    }
+                }));
+            }
+            waitFor(futures, entity);
+        }
+
+        long took = System.currentTimeMillis() - start;
+        logger.info("Loaded {} {} resources in {} ms", paths.size(), entity, took);
+        if (config.getQueryMetrics2Enabled()) {
+            Metrics metrics = MetricsFactory.getInstance();
+            if (metrics != null) {
+                metrics.updateTimer("metrics:name=metadata_load,entity=" + entity, took, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void loadBatch(ResourceStore store, List<String> batch, Loader loader) throws IOException {
+        try (ResourceStore.Prefetch prefetch = store.prefetch(batch)) {
+            for (String path : batch) {
+                loader.load(path);
+            }
+        }
+    }
+
+    private static void waitFor(List<Future<?>> futures, String entity) throws IOException {
+        Throwable error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll(futures);
+                throw new IOException("Interrupted loading " + entity, e);
+            } catch (ExecutionException e) {
+                // wait for the others, not to leave the manager half loaded in the background
+                if (error == null)
+                    error = e.getCause();
+            }
+        }
+
+        if (error instanceof IOException)
+            throw (IOException) error;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        if (error instanceof Error)
+            throw (Error) error;
+        if (error != null)
+            throw new IOException("Failed to load " + entity, error);
+    }
+
+    private static void cancelAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static synchronized ExecutorService getPool(int threads) {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+/**
+ * The read-through cache of a ResourceStore, holding the content of resources by path and timestamp, bounded by
+ * bytes.
+ * <p>
+ * A resource under an immutable root is served as cached. Any other resource is validated by reading its timestamp
+ * only, and read again when the timestamp differs. A resource larger than 1/16 of the cache is not cached.
+ */
+class ResourceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceCache.class);
+
+    private static final int LOG_EVERY_N_READS = 100000;
+
+    static class Entry {
+        final byte[] content;
+        final long timestamp;
+
+        Entry(byte[] content, long timestamp) {
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+
+        RawResource toRawResource() {
+            return new RawResource(new ByteArrayInputStream(content), timestamp);
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final String[] immutableRoots;
+    private final long maxEntryBytes;
+
+    private final AtomicLong hits = new AtomicLong(); // served without a timestamp read
+    private final AtomicLong validatedHits = new AtomicLong(); // served after a timestamp read
+    private final AtomicLong misses = new AtomicLong(); // not cached or stale
+    private final AtomicLong evictions = new AtomicLong();
+
+    ResourceCache(long maxBytes, String[] immutableRoots) {
+        this.immutableRoots = normRoots(immutableRoots);
+        this.maxEntryBytes = maxBytes / 16;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String, Entry>() {
+            @Override
+            public int weigh(String path, Entry entry) {
+                return entry.content.length + path.length();
+            }
+        }).removalListener(new RemovalListener<String, Entry>() {
+            @Override
+            public void onRemoval(RemovalNotification<String, Entry> notification) {
+                if (notification.wasEvicted())
+                    evictions.incrementAndGet();
+            }
+        }).build();
+    }
+
+    private static String[] normRoots(String[] roots) {
+        String[] result = new String[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            String root = roots[i].trim();
+            result[i] = root.endsWith("/") ? root : root + "/";
+        }
+        return result;
+    }
+
+    boolean isImmutable(String resPath) {
+        for (String root : immutableRoots) {
+            if (resPath.startsWith(root))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cached entry of an immutable resource, null if not cached.
+     */
+    Entry getImmutable(String resPath) {
+        Entry entry = cache.getIfPresent(resPath);
+        if (entry != null)
+            countRead(hits);
+        return entry;
+    }
+
+    /**
+     * Returns the cached entry if it has the given current timestamp of the resource, or null after dropping the
+     * stale entry. A timestamp of 0 means the resource does not exist.
+     */
+    Entry getValidated(String resPath, long currentTimestamp) {
+        Entry entry = cache.getIfPresent(resPath);
+        if (entry != null && entry.timestamp == currentTimestamp) {
+            countRead(validatedHits);
+            return entry;
+        }
+        if (entry != null)
+            cache.invalidate(resPath);
+        return null;
+    }
+
+    /**
+     * Whether the resource is cached, without touching the statistics.
+     */
+    boolean contains(String resPath) {
+        return cache.asMap().containsKey(resPath);
+    }
+
+    /**
+     * Reads the raw resource into the cache, returns a raw resource over the read content. A resource too large to
+     * cache is read no further than the entry limit, the returned resource streams the rest from the given one.
+     */
+    RawResource load(String resPath, RawResource raw) throws IOException {
+        countRead(misses);
+
+        // available() is a lower bound of the size, enough to pass the large ones through unread
+        if (raw.inputStream.available() > maxEntryBytes) {
+            cache.invalidate(resPath);
+            return raw;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean passThrough = false;
+        try {
+            passThrough = IOUtils.copyLarge(raw.inputStream, out, 0, maxEntryBytes + 1) > maxEntryBytes;
+        } finally {
+            if (!passThrough)
+                IOUtils.closeQuietly(raw.inputStream);
+        }
+
+        if (passThrough) {
+            cache.invalidate(resPath);
+            InputStream head = new ByteArrayInputStream(out.toByteArray());
+            return new RawResource(new SequenceInputStream(head, raw.inputStream), raw.timestamp);
+        }
+
+        byte[] content = out.toByteArray();
+        put(resPath, content, raw.timestamp);
+        return new RawResource(new ByteArrayInputStream(content), raw.timestamp);
+    }
+
+    void put(String resPath, byte[] content, long timestamp) {
+        if (content.length <= maxEntryBytes)
+            cache.put(resPath, new Entry(content, timestamp));
+        else
+            cache.invalidate(resPath);
+    }
+
+    void invalidate(String resPath) {
+        cache.invalidate(resPath);
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private void countRead(AtomicLong counter) {
+        counter.incrementAndGet();
+        if (getReadCount() % LOG_EVERY_N_READS == 0)
+            logger.info(toString());
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getValidatedHitCount() {
+        return validatedHits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    long getReadCount() {
+        return hits.get() + validatedHits.get() + misses.get();
+    }
+
+    /**
+     * The ratio of the reads served from the cache, with or without a timestamp read.
+     */
+    double getHitRate() {
+        long reads = getReadCount();
+        return reads == 0 ? 1.0 : (double) (hits.get() + validatedHits.get()) / reads;
+    }
+
+    void registerMetrics(String storeName) {
+        Metrics metrics = MetricsFactory.getInstance();
+        if (metrics == null)
+            return;
+
+        String prefix = "metrics:name=resource_cache,store=" + storeName + ",stat=";
+        metrics.addGauge(prefix + "hit_rate", new MetricsVariable<Double>() {
+            @Override
+            public Double getValue() {
+                return getHitRate();
+            }
+        });
+        metrics.addGauge(prefix + "hits", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return hits.get();
+            }
+        });
+        metrics.addGauge(prefix + "validated_hits", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return validatedHits.get();
+            }
+        });
+        metrics.addGauge(prefix + "misses", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return misses.get();
+            }
+        });
+        metrics.addGauge(prefix + "evictions", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return evictions.get();
+            }
+        });
+        metrics.addGauge(prefix + "entries", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceCache{entries=" + cache.size() + ", hits=" + hits.get() + ", validatedHits="
+                + validatedHits.get() + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "}";
+    }
+}
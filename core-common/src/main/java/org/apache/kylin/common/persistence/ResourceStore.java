@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -46,6 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 abstract public class ResourceStore {
 
@@ -81,6 +83,9 @@ abstract public class ResourceStore {
         try {
             Class<? extends ResourceStore> cls = ClassUtil.forName(clsName, ResourceStore.class);
             ResourceStore store = cls.getConstructor(KylinConfig.class).newInstance(kylinConfig);
+            if (store.cache != null && kylinConfig.getQueryMetrics2Enabled()) {
+                store.cache.registerMetrics(metadataUrl.getIdentifier());
+            }
             if (!store.exists(METASTORE_UUID_TAG)) {
                 store.putResource(METASTORE_UUID_TAG, new StringEntity(store.createMetaStoreUUID()), 0, StringEntity.serializer);
             }
@@ -107,9 +112,21 @@ abstract public class ResourceStore {
     // ============================================================================
 
     final protected KylinConfig kylinConfig;
+    final ResourceCache cache; // null if not cacheable
 
     protected ResourceStore(KylinConfig kylinConfig) {
         this.kylinConfig = kylinConfig;
+        long cacheBytes = kylinConfig.getResourceCacheMaxBytes();
+        this.cache = cacheBytes > 0 && isCacheable()
+                ? new ResourceCache(cacheBytes, kylinConfig.getResourceCacheImmutableRoots()) : null;
+    }
+
+    /**
+     * Whether reads go through a read-through cache, false for a store whose reads are as cheap as a cache hit.
+     * Note it is called in the constructor, before the subclass is initialized.
+     */
+    protected boolean isCacheable() {
+        return true;
     }
 
     /**
@@ -151,7 +168,7 @@ abstract public class ResourceStore {
      */
     final public <T extends RootPersistentEntity> T getResource(String resPath, Class<T> clz, Serializer<T> serializer) throws IOException {
         resPath = norm(resPath);
-        RawResource res = getResourceImpl(resPath);
+        RawResource res = getResourceCached(resPath);
         if (res == null)
             return null;
 
@@ -167,7 +184,50 @@ abstract public class ResourceStore {
     }
 
     final public RawResource getResource(String resPath) throws IOException {
-        return getResourceImpl(norm(resPath));
+        return getResourceCached(norm(resPath));
+    }
+
+    private RawResource getResourceCached(String resPath) throws IOException {
+        Prefetch prefetch = prefetching.get();
+        if (prefetch != null) {
+            RawResource raw = prefetch.take(resPath);
+            if (raw != null)
+                return raw;
+        }
+
+        if (cache == null)
+            return getResourceImpl(resPath);
+
+        ResourceCache.Entry entry;
+        if (cache.isImmutable(resPath)) {
+            entry = cache.getImmutable(resPath);
+        } else {
+            // a timestamp-only read instead of the content
+            entry = cache.contains(resPath) ? cache.getValidated(resPath, getResourceTimestampImpl(resPath)) : null;
+        }
+        if (entry != null)
+            return entry.toRawResource();
+
+        RawResource raw = getResourceImpl(resPath);
+        if (raw == null)
+            return null;
+        return cache.load(resPath, raw);
+    }
+
+    /**
+     * Read the resources at the given paths in batches, in the same order with null for those not found or folders.
+     * The caller closes the input streams.
+     */
+    final public List<RawResource> getResources(List<String> resPaths) throws IOException {
+        return getResourcesImpl(norm(resPaths));
+    }
+
+    private List<String> norm(List<String> resPaths) {
+        List<String> result = Lists.newArrayListWithCapacity(resPaths.size());
+        for (String resPath : resPaths) {
+            result.add(norm(resPath));
+        }
+        return result;
     }
 
     final public long getResourceTimestamp(String resPath) throws IOException {
@@ -215,6 +275,25 @@ abstract public class ResourceStore {
      */
     abstract protected RawResource getResourceImpl(String resPath) throws IOException;
 
+    /**
+     * returns null for the ones not exist, in the same order; reads one by one unless overridden
+     */
+    protected List<RawResource> getResourcesImpl(List<String> resPaths) throws IOException {
+        List<RawResource> result = Lists.newArrayListWithCapacity(resPaths.size());
+        try {
+            for (String resPath : resPaths) {
+                result.add(getResourceImpl(resPath));
+            }
+        } catch (IOException e) {
+            for (RawResource rawResource : result) {
+                if (rawResource != null)
+                    IOUtils.closeQuietly(rawResource.inputStream);
+            }
+            throw e;
+        }
+        return result;
+    }
+
     /**
      * returns 0 if not exists
      */
@@ -248,7 +327,11 @@ abstract public class ResourceStore {
 
     private void putResourceCheckpoint(String resPath, InputStream content, long ts) throws IOException {
         beforeChange(resPath);
-        putResourceImpl(resPath, content, ts);
+        try {
+            putResourceImpl(resPath, content, ts);
+        } finally {
+            invalidateCache(resPath);
+        }
     }
 
     abstract protected void putResourceImpl(String resPath, InputStream content, long ts) throws IOException;
@@ -291,7 +374,17 @@ abstract public class ResourceStore {
 
     private long checkAndPutResourceCheckpoint(String resPath, byte[] content, long oldTS, long newTS) throws IOException {
         beforeChange(resPath);
-        return checkAndPutResourceImpl(resPath, content, oldTS, newTS);
+        boolean written = false;
+        try {
+            long confirmedTS = checkAndPutResourceImpl(resPath, content, oldTS, newTS);
+            written = true;
+            if (cache != null)
+                cache.put(resPath, content, confirmedTS);
+            return confirmedTS;
+        } finally {
+            if (!written)
+                invalidateCache(resPath);
+        }
     }
 
     /**
@@ -309,7 +402,19 @@ abstract public class ResourceStore {
 
     private void deleteResourceCheckpoint(String resPath) throws IOException {
         beforeChange(resPath);
-        deleteResourceImpl(resPath);
+        try {
+            deleteResourceImpl(resPath);
+        } finally {
+            invalidateCache(resPath);
+        }
+    }
+
+    private void invalidateCache(String resPath) {
+        if (cache != null)
+            cache.invalidate(resPath);
+        Prefetch prefetch = prefetching.get();
+        if (prefetch != null)
+            prefetch.drop(resPath);
     }
 
     abstract protected void deleteResourceImpl(String resPath) throws IOException;
@@ -373,14 +478,6 @@ abstract public class ResourceStore {
             }
         }
 
-        private byte[] readAll(InputStream inputStream) throws IOException {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            IOUtils.copy(inputStream, out);
-            inputStream.close();
-            out.close();
-            return out.toByteArray();
-        }
-
         public void rollback() {
             checkThread();
 
@@ -395,6 +492,8 @@ abstract public class ResourceStore {
                         putResourceImpl(resPath, new ByteArrayInputStream(data), ts);
                 } catch (IOException ex) {
                     logger.error("Failed to rollback " + resPath, ex);
+                } finally {
+                    invalidateCache(resPath);
                 }
             }
         }
@@ -415,6 +514,108 @@ abstract public class ResourceStore {
         }
     }
 
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copy(inputStream, out);
+        inputStream.close();
+        out.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads no more than the given bytes, returns null if the stream has more.
+     */
+    private static byte[] readAtMost(InputStream inputStream, long maxBytes) throws IOException {
+        if (maxBytes == Long.MAX_VALUE)
+            return readAll(inputStream);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (IOUtils.copyLarge(inputStream, out, 0, maxBytes + 1) > maxBytes)
+            return null;
+        return out.toByteArray();
+    }
+
+    // ============================================================================
+
+    ThreadLocal<Prefetch> prefetching = new ThreadLocal<>();
+
+    /**
+     * Read the resources at the given paths in batches, each serving the next read of it on this thread until the
+     * prefetch is closed. For a loop loading resources one by one, e.g. all cubes at startup.
+     */
+    public Prefetch prefetch(List<String> resPaths) throws IOException {
+        return prefetch(resPaths, Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #prefetch(List)}, holding no more than the given bytes. The resources past the limit are closed
+     * unread and left to the reads one by one.
+     */
+    public Prefetch prefetch(List<String> resPaths, long maxBytes) throws IOException {
+        List<String> paths = norm(resPaths);
+        List<RawResource> raws = getResourcesImpl(paths);
+
+        Prefetch prefetch = new Prefetch(prefetching.get());
+        long bytes = 0;
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                RawResource raw = raws.get(i);
+                if (raw == null || bytes >= maxBytes)
+                    continue;
+                byte[] content = readAtMost(raw.inputStream, maxBytes - bytes);
+                if (content == null)
+                    continue;
+                bytes += content.length;
+                prefetch.entries.put(paths.get(i), new ResourceCache.Entry(content, raw.timestamp));
+                if (cache != null)
+                    cache.put(paths.get(i), content, raw.timestamp);
+            }
+        } finally {
+            for (RawResource raw : raws) {
+                if (raw != null)
+                    IOUtils.closeQuietly(raw.inputStream);
+            }
+        }
+        logger.debug("Prefetched {} of {} resources", prefetch.entries.size(), paths.size());
+
+        prefetching.set(prefetch);
+        return prefetch;
+    }
+
+    public class Prefetch implements Closeable {
+
+        private final Prefetch outer; // prefetch may nest, e.g. a manager loading another
+        private final Map<String, ResourceCache.Entry> entries = Maps.newHashMap();
+
+        private Prefetch(Prefetch outer) {
+            this.outer = outer;
+        }
+
+        private RawResource take(String resPath) {
+            ResourceCache.Entry entry = entries.remove(resPath);
+            if (entry != null)
+                return entry.toRawResource();
+            return outer == null ? null : outer.take(resPath);
+        }
+
+        private void drop(String resPath) {
+            entries.remove(resPath);
+            if (outer != null)
+                outer.drop(resPath);
+        }
+
+        @Override
+        public void close() {
+            if (prefetching.get() != this)
+                throw new IllegalStateException("Not the innermost prefetch of this thread");
+
+            entries.clear();
+            if (outer == null)
+                prefetching.remove();
+            else
+                prefetching.set(outer);
+        }
+    }
+
     // ============================================================================
 
     public static interface Visitor {
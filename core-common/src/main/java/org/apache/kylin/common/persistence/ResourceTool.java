@@ -32,6 +32,7 @@ import org.apache.kylin.common.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class ResourceTool {
@@ -42,6 +43,9 @@ public class ResourceTool {
 
     private static final Set<String> IMMUTABLE_PREFIX = Sets.newHashSet("/UUID");
 
+    private static final int COPY_BATCH_SIZE = 50;
+    private static final long COPY_BATCH_MAX_BYTES = 16L * 1024 * 1024; // the larger resources are read one by one
+
     public static void main(String[] args) throws IOException {
         args = StringUtil.filterSystemArgs(args);
 
@@ -222,9 +226,19 @@ public class ResourceTool {
                 }
             }
         } else {
-            // case of folder
-            for (String child : children)
-                copyR(src, dst, child, copyImmutableResource);
+            // case of folder, the resources to copy read in batches
+            List<String> childList = Lists.newArrayList(children);
+            for (List<String> batch : Lists.partition(childList, COPY_BATCH_SIZE)) {
+                List<String> toFetch = Lists.newArrayListWithCapacity(batch.size());
+                for (String child : batch) {
+                    if (matchFilter(child) && (copyImmutableResource || !IMMUTABLE_PREFIX.contains(child)))
+                        toFetch.add(child);
+                }
+                try (ResourceStore.Prefetch prefetch = src.prefetch(toFetch, COPY_BATCH_MAX_BYTES)) {
+                    for (String child : batch)
+                        copyR(src, dst, child, copyImmutableResource);
+                }
+            }
         }
 
     }
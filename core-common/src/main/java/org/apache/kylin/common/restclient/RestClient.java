@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -147,6 +148,29 @@ public class RestClient {
         }
     }
 
+    /**
+     * Wipe the caches of the events in order, each a map of "entity", "event" and "cacheKey".
+     */
+    public void wipeCaches(List<Map<String, String>> events) throws IOException {
+        String url = baseUrl + "/cache/batch";
+        HttpPost request = new HttpPost(url);
+        request.addHeader("Content-Type", "application/json");
+        request.setEntity(new StringEntity(JsonUtil.writeValueAsString(events), "UTF-8"));
+
+        HttpResponse response = null;
+        try {
+            response = client.execute(request);
+
+            if (response.getStatusLine().getStatusCode() != 200) {
+                String msg = EntityUtils.toString(response.getEntity());
+                throw new IOException("Invalid response " + response.getStatusLine().getStatusCode()
+                        + " with cache wipe url " + url + "\n" + msg);
+            }
+        } finally {
+            cleanup(request, response);
+        }
+    }
+
     public String getKylinProperties() throws IOException {
         String url = baseUrl + "/admin/config";
         HttpGet request = new HttpGet(url);
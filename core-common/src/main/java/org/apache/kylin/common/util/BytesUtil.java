@@ -95,6 +95,18 @@ public class BytesUtil {
         return integer;
     }
 
+    /**
+     * Reads at the given offset, not changing the buffer position.
+     */
+    public static int readUnsigned(ByteBuffer buf, int offset, int size) {
+        int integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (int) buf.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
     public static void writeSignedLong(long num, byte[] bytes, int offset, int size) {
         writeLong(num, bytes, offset, size);
     }
@@ -124,6 +136,18 @@ public class BytesUtil {
         return integer;
     }
 
+    /**
+     * Reads at the given offset, not changing the buffer position.
+     */
+    public static long readLong(ByteBuffer buf, int offset, int size) {
+        long integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (long) buf.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
     public static void writeLong(long num, ByteBuffer out) {
         for (int i = 0; i < 8; i++) {
             out.put((byte) num);
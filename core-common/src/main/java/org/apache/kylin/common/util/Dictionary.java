@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.util.BitSet;
 
 import org.apache.kylin.common.KylinConfig;
 
@@ -102,6 +103,28 @@ abstract public class Dictionary<T> implements Serializable {
         return id;
     }
 
+    /**
+     * Returns the IDs of a block of values, in the same order as given. Unlike getIdFromValue(), a value not
+     * found does not throw, instead its position is marked in the returned BitSet and its ID is left undefined,
+     * so one bad value does not fail the whole block.
+     * <p>
+     * The default implementation looks up values one by one. Sub-classes may sort the block and look up
+     * each distinct value once in order, which is much cheaper for big dictionaries.
+     *
+     * @return positions of the values not found in dictionary, empty if all found
+     */
+    public BitSet getIdsFromValues(T[] values, int count, int roundingFlag, int[] ids) {
+        BitSet notFound = new BitSet();
+        for (int i = 0; i < count; i++) {
+            try {
+                ids[i] = getIdFromValue(values[i], roundingFlag);
+            } catch (IllegalArgumentException e) {
+                notFound.set(i);
+            }
+        }
+        return notFound;
+    }
+
     final public boolean containsValue(T value) throws IllegalArgumentException {
         if (isNullObjectForm(value)) {
             return true;
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.kylin.common.QueryTimeline.Stage;
+import org.apache.kylin.common.QueryTimeline.StageSummary;
+import org.junit.Test;
+
+public class QueryTimelineTest {
+
+    @Test
+    public void testRecord() {
+        QueryTimeline timeline = new QueryTimeline();
+        long now = System.nanoTime();
+        timeline.record(Stage.RPC_SERVICE, now, now + 3000);
+        timeline.record(Stage.RPC_SERVICE, now + 1000, now + 6000);
+
+        assertEquals(2, timeline.getCount(Stage.RPC_SERVICE));
+        assertEquals(8000, timeline.getTotalNanos(Stage.RPC_SERVICE));
+        assertEquals(0, timeline.getCount(Stage.SQL_PARSE));
+    }
+
+    @Test
+    public void testSpanBatch() {
+        QueryTimeline timeline = new QueryTimeline();
+        QueryTimeline.SpanBatch batch = timeline.newSpanBatch(Stage.TUPLE_CONVERSION);
+        long now = System.nanoTime();
+        for (int i = 0; i < 1500; i++) {
+            batch.record(now + i * 10, now + i * 10 + 2);
+        }
+        // the first 1024 spans are published
+        assertEquals(1024, timeline.getCount(Stage.TUPLE_CONVERSION));
+        assertEquals(2048, timeline.getTotalNanos(Stage.TUPLE_CONVERSION));
+
+        batch.flush();
+        batch.flush();
+        assertEquals(1500, timeline.getCount(Stage.TUPLE_CONVERSION));
+        assertEquals(3000, timeline.getTotalNanos(Stage.TUPLE_CONVERSION));
+    }
+
+    @Test
+    public void testBeginEnd() {
+        QueryTimeline timeline = new QueryTimeline();
+        // not begun
+        timeline.end(Stage.SQL_PLAN);
+        assertEquals(0, timeline.getCount(Stage.SQL_PLAN));
+
+        timeline.begin(Stage.SQL_PLAN);
+        timeline.end(Stage.SQL_PLAN);
+        timeline.end(Stage.SQL_PLAN);
+        assertEquals(1, timeline.getCount(Stage.SQL_PLAN));
+    }
+
+    @Test
+    public void testRemainder() {
+        QueryTimeline timeline = new QueryTimeline();
+        long now = System.nanoTime();
+        timeline.record(Stage.SQL_PARSE, now, now + 1000);
+        timeline.record(Stage.STORAGE_ENUMERATE, now + 2000, now + 5000);
+        timeline.recordRemainder(Stage.CALCITE_ENUMERABLE, now, now + 10000, Stage.SQL_PARSE,
+                Stage.STORAGE_ENUMERATE);
+        assertEquals(6000, timeline.getTotalNanos(Stage.CALCITE_ENUMERABLE));
+
+        // never negative
+        timeline.recordRemainder(Stage.CALCITE_ENUMERABLE, now, now + 1000, Stage.STORAGE_ENUMERATE);
+        assertEquals(6000, timeline.getTotalNanos(Stage.CALCITE_ENUMERABLE));
+    }
+
+    @Test
+    public void testStageSummaries() {
+        QueryTimeline timeline = new QueryTimeline();
+        long now = System.nanoTime();
+        timeline.record(Stage.TUPLE_CONVERSION, now + 5000000, now + 6000000);
+        timeline.record(Stage.SQL_PARSE, now, now + 2000000);
+
+        List<StageSummary> summaries = timeline.getStageSummaries();
+        assertEquals(2, summaries.size());
+        assertEquals(Stage.SQL_PARSE.name(), summaries.get(0).getStage());
+        assertEquals(2000, summaries.get(0).getDurationMicros());
+        assertEquals(Stage.TUPLE_CONVERSION.name(), summaries.get(1).getStage());
+        assertEquals(1000, summaries.get(1).getDurationMicros());
+        assertTrue(summaries.get(1).getStartOffsetMicros() > summaries.get(0).getStartOffsetMicros());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class ParallelResourceLoaderTest extends LocalFileMetadataTestCase {
+
+    private KylinConfig config;
+    private ResourceStore store;
+    private List<String> paths = Lists.newArrayList();
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.metadata.load-threads", "4");
+        store = ResourceStore.getStore(config);
+        for (int i = 0; i < 200; i++) {
+            String path = "/parallel_load/res" + i;
+            store.putResource(path, new StringEntity("data" + i), 1000, StringEntity.serializer);
+            paths.add(path);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        final Map<String, String> loaded = Maps.newConcurrentMap();
+        final Set<String> threads = Sets.newSetFromMap(Maps.<String, Boolean> newConcurrentMap());
+        ParallelResourceLoader.load(config, "test", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) throws IOException {
+                loaded.put(path, store.getResource(path, StringEntity.class, StringEntity.serializer).toString());
+                threads.add(Thread.currentThread().getName());
+            }
+        });
+
+        assertEquals(paths.size(), loaded.size());
+        assertEquals("data7", loaded.get("/parallel_load/res7"));
+        assertTrue(threads.size() > 1);
+        assertTrue(!threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testNestedLoad() throws Exception {
+        final Set<String> loaded = Sets.newSetFromMap(Maps.<String, Boolean> newConcurrentMap());
+        ParallelResourceLoader.load(config, "outer", paths.subList(0, 100), new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(final String outerPath) throws IOException {
+                // runs on the loader thread, not waiting for the pool
+                final String thread = Thread.currentThread().getName();
+                ParallelResourceLoader.load(config, "inner", paths.subList(100, 200),
+                        new ParallelResourceLoader.Loader() {
+                            @Override
+                            public void load(String path) {
+                                assertEquals(thread, Thread.currentThread().getName());
+                                loaded.add(path);
+                            }
+                        });
+            }
+        });
+        assertEquals(100, loaded.size());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        try {
+            ParallelResourceLoader.load(config, "test", paths, new ParallelResourceLoader.Loader() {
+                @Override
+                public void load(String path) throws IOException {
+                    if (path.equals("/parallel_load/res42"))
+                        throw new IOException("broken " + path);
+                }
+            });
+            fail("the failure of one resource fails the load");
+        } catch (IOException e) {
+            assertEquals("broken /parallel_load/res42", e.getMessage());
+        }
+    }
+}
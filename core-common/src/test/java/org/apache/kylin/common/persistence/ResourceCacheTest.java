@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceCacheTest extends LocalFileMetadataTestCase {
+
+    private CountingStore store;
+    private ResourceStore backdoor; // writes behind the cache, like another node
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.metadata.resource-cache.max-mb", "1");
+        store = new CountingStore(config);
+        backdoor = new FileResourceStore(config);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMutableResource() throws Exception {
+        store.putResource("/cube/res1", new StringEntity("data1"), 1000, StringEntity.serializer);
+
+        // cached by the write, validated by timestamp
+        assertEquals("data1", read("/cube/res1"));
+        assertEquals("data1", read("/cube/res1"));
+        assertEquals(0, store.contentReads);
+        assertEquals(2, store.timestampReads);
+
+        // changed behind the cache
+        StringEntity data2 = new StringEntity("data2");
+        data2.setLastModified(1000);
+        backdoor.putResource("/cube/res1", data2, 2000, StringEntity.serializer);
+        assertEquals("data2", read("/cube/res1"));
+        assertEquals(1, store.contentReads);
+        assertEquals("data2", read("/cube/res1"));
+        assertEquals(1, store.contentReads);
+
+        backdoor.deleteResource("/cube/res1");
+        assertNull(store.getResource("/cube/res1"));
+        assertEquals(2, store.contentReads);
+
+        assertEquals(0, store.cache.getHitCount());
+        assertEquals(3, store.cache.getValidatedHitCount());
+        assertEquals(1, store.cache.getMissCount());
+    }
+
+    @Test
+    public void testImmutableResource() throws Exception {
+        backdoor.putResource("/dict/res1", new StringEntity("data1"), 1000, StringEntity.serializer);
+
+        assertEquals("data1", read("/dict/res1"));
+        assertEquals("data1", read("/dict/res1"));
+        assertEquals(1, store.contentReads);
+        assertEquals(0, store.timestampReads);
+        assertEquals(0.5, store.cache.getHitRate(), 0.001);
+
+        // deleted by this store
+        store.deleteResource("/dict/res1");
+        assertNull(store.getResource("/dict/res1"));
+    }
+
+    @Test
+    public void testLargeResource() throws Exception {
+        // above 1/16 of the cache
+        byte[] content = new byte[100 * 1024];
+        backdoor.putResource("/dict/res1", new ByteArrayInputStream(content), 1000);
+
+        for (int i = 0; i < 2; i++) {
+            RawResource raw = store.getResource("/dict/res1");
+            assertEquals(content.length, IOUtils.toByteArray(raw.inputStream).length);
+            raw.inputStream.close();
+        }
+        assertEquals(2, store.contentReads);
+    }
+
+    @Test
+    public void testLoadLargeStream() throws Exception {
+        ResourceCache cache = new ResourceCache(16 * 1024, new String[] { "/dict" });
+        byte[] content = new byte[10 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        // an unknown size, like a stream from HDFS
+        final int[] consumed = new int[1];
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0)
+                    consumed[0] += n;
+                return n;
+            }
+        };
+
+        RawResource raw = cache.load("/dict/res1", new RawResource(in, 1000));
+        // read no further than the entry limit of 1 KB
+        assertTrue(consumed[0] <= 1024 + 1);
+        assertArrayEquals(content, IOUtils.toByteArray(raw.inputStream));
+        raw.inputStream.close();
+        assertFalse(cache.contains("/dict/res1"));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        store.putResource("/cube/res1", new StringEntity("data1"), 1000, StringEntity.serializer);
+
+        ResourceStore.Checkpoint cp = store.checkpoint();
+        try {
+            store.putResource("/cube/res1", new StringEntity("data2"), 2000, StringEntity.serializer);
+            assertEquals("data2", read("/cube/res1"));
+            cp.rollback();
+        } finally {
+            cp.close();
+        }
+        assertEquals("data1", read("/cube/res1"));
+    }
+
+    private String read(String resPath) throws IOException {
+        return store.getResource(resPath, StringEntity.class, StringEntity.serializer).toString();
+    }
+
+    private static class CountingStore extends FileResourceStore {
+        int contentReads = 0;
+        int timestampReads = 0;
+
+        CountingStore(KylinConfig kylinConfig) {
+            super(kylinConfig);
+        }
+
+        @Override
+        protected boolean isCacheable() {
+            return true;
+        }
+
+        @Override
+        protected RawResource getResourceImpl(String resPath) throws IOException {
+            contentReads++;
+            return super.getResourceImpl(resPath);
+        }
+
+        @Override
+        protected long getResourceTimestampImpl(String resPath) throws IOException {
+            timestampReads++;
+            return super.getResourceTimestampImpl(resPath);
+        }
+    }
+}
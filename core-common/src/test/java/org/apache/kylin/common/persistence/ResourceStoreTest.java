@@ -31,6 +31,8 @@ import org.apache.kylin.common.KylinConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  * Be called by LocalFileResourceStoreTest, ITHBaseResourceStoreTest and ITHDFSResourceStoreTest.
  */
@@ -62,6 +64,7 @@ public class ResourceStoreTest {
     private static void testAStore(ResourceStore store) throws IOException {
         testBasics(store);
         testGetAllResources(store);
+        testGetResources(store);
     }
 
     private static void testPerformance(ResourceStore store) throws IOException {
@@ -98,6 +101,46 @@ public class ResourceStoreTest {
         ResourceTool.resetR(store, folder);
     }
 
+    private static void testGetResources(ResourceStore store) throws IOException {
+        final String folder = "/testFolder";
+
+        // reset any leftover garbage
+        ResourceTool.resetR(store, folder);
+
+        store.putResource(folder + "/res1", new StringEntity("data1"), 1000, StringEntity.serializer);
+        store.putResource(folder + "/res2", new StringEntity("data2"), 2000, StringEntity.serializer);
+        store.putResource(folder + "/sub/res3", new StringEntity("data3"), 3000, StringEntity.serializer);
+
+        List<String> paths = Lists.newArrayList(folder + "/res2", folder + "/none", folder + "/sub", folder + "/res1");
+        List<RawResource> raws = store.getResources(paths);
+        assertEquals(4, raws.size());
+        assertNull(raws.get(1));
+        assertNull(raws.get(2));
+        assertEquals(2000, raws.get(0).timestamp);
+        assertEquals(1000, raws.get(3).timestamp);
+        for (RawResource raw : raws) {
+            if (raw != null)
+                raw.inputStream.close();
+        }
+
+        // the prefetched resources are dropped by the writes through the store
+        try (ResourceStore.Prefetch prefetch = store.prefetch(paths)) {
+            assertEntity(store.getResource(folder + "/res1", StringEntity.class, StringEntity.serializer), "data1", 1000);
+            store.deleteResource(folder + "/res2");
+            assertNull(store.getResource(folder + "/res2"));
+            assertNull(store.getResource(folder + "/none"));
+        }
+
+        // a prefetch beyond its bytes leaves the rest to the reads one by one
+        store.putResource(folder + "/res2", new StringEntity("data2"), 2000, StringEntity.serializer);
+        try (ResourceStore.Prefetch prefetch = store.prefetch(paths, 1)) {
+            assertEntity(store.getResource(folder + "/res2", StringEntity.class, StringEntity.serializer), "data2", 2000);
+            assertEntity(store.getResource(folder + "/res1", StringEntity.class, StringEntity.serializer), "data1", 1000);
+        }
+
+        ResourceTool.resetR(store, folder);
+    }
+
     private static void assertEntity(StringEntity entity, String data, int ts) {
         assertEquals(data, entity.str);
         assertEquals(ts, entity.lastModified);
@@ -28,6 +28,7 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ParallelResourceLoader;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.cube.cuboid.Cuboid;
@@ -43,6 +44,7 @@ import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.cachesync.CaseInsensitiveStringCache;
 import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.DataModelManager;
 import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.ParameterDesc;
 import org.apache.kylin.metadata.project.ProjectInstance;
@@ -310,27 +312,37 @@ public class CubeDescManager {
 
         List<String> paths = store.collectResourceRecursively(ResourceStore.CUBE_DESC_RESOURCE_ROOT,
                 MetadataConstants.FILE_SURFIX);
-        for (String path : paths) {
-            CubeDesc desc = null;
-            try {
-                desc = loadCubeDesc(path, true);
-            } catch (Exception e) {
-                logger.error("Error during load cube desc, skipping " + path, e);
-                continue;
-            }
 
-            if (!path.equals(desc.getResourcePath())) {
-                logger.error(
-                        "Skip suspicious desc at " + path + ", " + desc + " should be at " + desc.getResourcePath());
-                continue;
-            }
-            if (cubeDescMap.containsKey(desc.getName())) {
-                logger.error("Dup CubeDesc name '" + desc.getName() + "' on path " + path);
-                continue;
-            }
+        // touch lower level metadata on this thread, the loader threads must not wait for it
+        DataModelManager.getInstance(config);
+        ProjectManager.getInstance(config);
+
+        ParallelResourceLoader.load(config, "cube_desc", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) {
+                CubeDesc desc = null;
+                try {
+                    desc = loadCubeDesc(path, true);
+                } catch (Exception e) {
+                    logger.error("Error during load cube desc, skipping " + path, e);
+                    return;
+                }
 
-            cubeDescMap.putLocal(desc.getName(), desc);
-        }
+                if (!path.equals(desc.getResourcePath())) {
+                    logger.error("Skip suspicious desc at " + path + ", " + desc + " should be at "
+                            + desc.getResourcePath());
+                    return;
+                }
+                synchronized (cubeDescMap) {
+                    if (cubeDescMap.containsKey(desc.getName())) {
+                        logger.error("Dup CubeDesc name '" + desc.getName() + "' on path " + path);
+                        return;
+                    }
+
+                    cubeDescMap.putLocal(desc.getName(), desc);
+                }
+            }
+        });
 
         logger.info("Loaded " + cubeDescMap.size() + " Cube(s)");
     }
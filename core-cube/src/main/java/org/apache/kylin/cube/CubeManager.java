@@ -34,11 +34,14 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.KylinConfigExt;
 import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ParallelResourceLoader;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.common.util.Dictionary;
@@ -48,6 +51,7 @@ import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.DictionaryDesc;
 import org.apache.kylin.dict.DictionaryInfo;
 import org.apache.kylin.dict.DictionaryManager;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
 import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.dict.lookup.SnapshotManager;
 import org.apache.kylin.dict.lookup.SnapshotTable;
@@ -136,6 +140,9 @@ public class CubeManager implements IRealizationProvider {
 
     // for generation hbase table name of a new segment
     private ConcurrentMap<String, String> usedStorageLocation = new ConcurrentHashMap<>();
+    // cube name ==> resource path, of the cubes not read yet in lazy mode
+    private ConcurrentMap<String, String> unloadedCubePaths = new ConcurrentSkipListMap<>(
+            String.CASE_INSENSITIVE_ORDER);
 
     private CubeManager(KylinConfig config) throws IOException {
         logger.info("Initializing CubeManager with config " + config);
@@ -180,14 +187,17 @@ public class CubeManager implements IRealizationProvider {
     }
 
     public List<CubeInstance> listAllCubes() {
+        loadAllCubesLazily();
         return new ArrayList<CubeInstance>(cubeMap.values());
     }
 
     public CubeInstance getCube(String cubeName) {
-        return cubeMap.get(cubeName);
+        CubeInstance cube = cubeMap.get(cubeName);
+        return cube != null ? cube : loadCubeLazily(cubeName);
     }
 
     public CubeInstance getCubeByUuid(String uuid) {
+        loadAllCubesLazily();
         Collection<CubeInstance> copy = new ArrayList<CubeInstance>(cubeMap.values());
         for (CubeInstance cube : copy) {
             if (uuid.equals(cube.getUuid()))
@@ -438,6 +448,7 @@ public class CubeManager implements IRealizationProvider {
         }
 
         cubeMap.put(cube.getName(), cube);
+        unloadedCubePaths.remove(cube.getName());
 
         //this is a duplicate call to take care of scenarios where REST cache service unavailable
         ProjectManager.getInstance(cube.getConfig()).clearL2Cache();
@@ -658,6 +669,7 @@ public class CubeManager implements IRealizationProvider {
     }
 
     public void removeCubeLocal(String cubeName) {
+        unloadedCubePaths.remove(cubeName);
         CubeInstance cube = cubeMap.get(cubeName);
         if (cube != null) {
             cubeMap.removeLocal(cubeName);
@@ -687,6 +699,28 @@ public class CubeManager implements IRealizationProvider {
         }
     }
 
+    /**
+     * Returns the dictionary encoded lookup table of the segment snapshot, shared and cached along with the snapshot.
+     */
+    public ColumnarLookupTable getColumnarLookupTable(CubeSegment cubeSegment, JoinDesc join) {
+
+        String tableName = join.getPKSide().getTableIdentity();
+        String[] pkCols = join.getPrimaryKey();
+        String snapshotResPath = cubeSegment.getSnapshotResPath(tableName);
+        if (snapshotResPath == null)
+            throw new IllegalStateException("No snapshot for table '" + tableName + "' found on cube segment"
+                    + cubeSegment.getCubeInstance().getName() + "/" + cubeSegment);
+
+        try {
+            SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
+            TableDesc tableDesc = getTableManager().getTableDesc(tableName, cubeSegment.getProject());
+            return snapshot.getLookupTable(tableDesc, pkCols);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e);
+        }
+    }
+
     private CubeSegment newSegment(CubeInstance cube, TSRange tsRange, SegmentRange segRange) {
         CubeSegment segment = new CubeSegment();
         segment.setUuid(UUID.randomUUID().toString());
@@ -711,6 +745,7 @@ public class CubeManager implements IRealizationProvider {
 
     @VisibleForTesting
     /*private*/ String generateStorageLocation() {
+        loadAllCubesLazily(); // to know all the used storage locations
         String namePrefix = config.getHBaseTableNamePrefix();
         String namespace = config.getHBaseStorageNameSpace();
         String tableName = "";
@@ -825,20 +860,78 @@ public class CubeManager implements IRealizationProvider {
 
         logger.info("Loading Cube from folder " + store.getReadableResourcePath(ResourceStore.CUBE_RESOURCE_ROOT));
 
-        int succeed = 0;
-        int fail = 0;
-        for (String path : paths) {
-            CubeInstance cube = reloadCubeLocalAt(path);
-            if (cube == null) {
-                fail++;
-            } else {
-                succeed++;
+        if (config.isLazyCubeLoading()) {
+            for (String path : paths) {
+                unloadedCubePaths.put(cubeNameOf(path), path);
             }
+            logger.info("Found " + paths.size() + " cubes, to be loaded on first use");
+            return;
         }
+        loadCubes(paths);
+    }
+
+    private void loadCubes(List<String> paths) throws IOException {
+        // touch lower level metadata on this thread, the loader threads must not wait for it
+        CubeDescManager.getInstance(config);
+
+        final AtomicInteger succeed = new AtomicInteger();
+        final AtomicInteger fail = new AtomicInteger();
+        ParallelResourceLoader.load(config, "cube", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) {
+                CubeInstance cube = reloadCubeLocalAt(path);
+                if (cube == null) {
+                    fail.incrementAndGet();
+                } else {
+                    succeed.incrementAndGet();
+                }
+            }
+        });
 
         logger.info("Loaded " + succeed + " cubes, fail on " + fail + " cubes");
     }
 
+    private static String cubeNameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1, path.length() - ".json".length());
+    }
+
+    // a path is removed only after its cube is in cubeMap, so a cube is always found in one of them
+    private CubeInstance loadCubeLazily(String cubeName) {
+        if (!unloadedCubePaths.containsKey(cubeName))
+            return cubeMap.get(cubeName); // loaded by another thread after the caller missed it
+
+        synchronized (unloadedCubePaths) {
+            CubeInstance cube = cubeMap.get(cubeName);
+            if (cube != null)
+                return cube;
+
+            String path = unloadedCubePaths.get(cubeName);
+            if (path == null)
+                return null;
+
+            cube = reloadCubeLocalAt(path);
+            unloadedCubePaths.remove(cubeName, path); // not to read a broken one again on each get
+            return cube;
+        }
+    }
+
+    private void loadAllCubesLazily() {
+        if (unloadedCubePaths.isEmpty())
+            return;
+
+        synchronized (unloadedCubePaths) {
+            List<String> paths = Lists.newArrayList(unloadedCubePaths.values());
+            try {
+                loadCubes(paths);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load cubes", e);
+            }
+            for (String path : paths) {
+                unloadedCubePaths.remove(cubeNameOf(path), path);
+            }
+        }
+    }
+
     private CubeInstance reloadCubeLocalAt(String path) {
         ResourceStore store = getStore();
         CubeInstance cube;
@@ -870,10 +963,10 @@ public class CubeManager implements IRealizationProvider {
 
             cube.setConfig((KylinConfigExt) cubeDesc.getConfig());
             cubeMap.putLocal(cubeName, cube);
-
             for (CubeSegment segment : cube.getSegments()) {
                 usedStorageLocation.put(segment.getUuid(), segment.getStorageLocationIdentifier());
             }
+            unloadedCubePaths.remove(cubeName);
 
             logger.info("Reloaded cube {} being {} having {} segments", cubeName, cube, cube.getSegments().size());
             return cube;
@@ -124,6 +124,31 @@ public class CubeSegment implements IBuildable, ISegment, Serializable {
     // lazy init
     transient volatile ISegmentAdvisor advisor = null;
 
+    // dictionaries of a segment that lives in memory only, null for a normal segment
+    private transient Map<TblColRef, Dictionary<String>> inMemoryDictionaries = null;
+
+    /**
+     * Creates a segment that lives in memory only, like the not yet built data of a streaming cube.
+     * The segment is not added to the cube, and its dictionaries are the given ones instead of loading from metadata.
+     */
+    public static CubeSegment newInMemorySegment(CubeInstance cube, String uuid, TSRange tsRange,
+            SegmentRange segRange, Map<TblColRef, Dictionary<String>> dictionaries) {
+        CubeSegment segment = new CubeSegment();
+        segment.setUuid(uuid);
+        segment.setName(makeSegmentName(tsRange, segRange));
+        segment.setCreateTimeUTC(System.currentTimeMillis());
+        segment.setCubeInstance(cube);
+        segment.setTSRange(tsRange);
+        segment.setSegRange(segRange);
+        segment.setStatus(SegmentStatusEnum.NEW);
+        segment.inMemoryDictionaries = dictionaries;
+        return segment;
+    }
+
+    public boolean isInMemory() {
+        return inMemoryDictionaries != null;
+    }
+
     public CubeDesc getCubeDesc() {
         return getCubeInstance().getDescriptor();
     }
@@ -315,6 +340,9 @@ public class CubeSegment implements IBuildable, ISegment, Serializable {
     }
 
     public Dictionary<String> getDictionary(TblColRef col) {
+        if (inMemoryDictionaries != null)
+            return inMemoryDictionaries.get(col);
+
         TblColRef reuseCol = getCubeDesc().getDictionaryReuseColumn(col);
         CubeManager cubeMgr = CubeManager.getInstance(this.getCubeInstance().getConfig());
         return cubeMgr.getDictionary(this, reuseCol);
@@ -32,11 +32,13 @@ import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.metadata.filter.BitmapInTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
 import org.apache.kylin.metadata.filter.LogicalTupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.model.TblColRef;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -106,6 +108,21 @@ public abstract class ScanRangePlannerBase {
     private Collection<ColumnRange> translateToAndDimRanges(List<? extends TupleFilter> andFilters) {
         Map<TblColRef, ColumnRange> rangeMap = new HashMap<TblColRef, ColumnRange>();
         for (TupleFilter filter : andFilters) {
+            if (filter instanceof BitmapInTupleFilter) {
+                BitmapInTupleFilter bitmapIn = (BitmapInTupleFilter) filter;
+                if (bitmapIn.isReverse() || bitmapIn.getColumn() == null) {
+                    continue; // NOT IN, let storage filter it
+                }
+                ColumnRange newRange = new ColumnRange(bitmapIn);
+                ColumnRange existing = rangeMap.get(newRange.column);
+                if (existing == null) {
+                    rangeMap.put(newRange.column, newRange);
+                } else {
+                    existing.andMerge(newRange);
+                }
+                continue;
+            }
+
             if ((filter instanceof CompareTupleFilter) == false) {
                 if (filter instanceof ConstantTupleFilter && !filter.evaluate(null, null)) {
                     return null;
@@ -168,6 +185,18 @@ public abstract class ScanRangePlannerBase {
         public Set<ByteArray> valueSet;
         public boolean isBoundryInclusive;
 
+        // for a BitmapInTupleFilter, the IDs within [begin, end] are the candidate codes
+        public ImmutableRoaringBitmap idSet;
+        public BitmapInTupleFilter idSetFilter;
+
+        public ColumnRange(BitmapInTupleFilter bitmapIn) {
+            this.column = bitmapIn.getColumn();
+            this.isBoundryInclusive = true;
+            this.idSet = bitmapIn.getIds();
+            this.idSetFilter = bitmapIn;
+            refreshBeginEndFromIdSet();
+        }
+
         public ColumnRange(TblColRef column, Set<ByteArray> values, TupleFilter.FilterOperatorEnum op) {
             this.column = column;
 
@@ -206,6 +235,24 @@ public abstract class ScanRangePlannerBase {
             this.begin = beginValue;
             this.end = endValue;
             this.valueSet = equalValues;
+            this.idSet = null;
+            this.idSetFilter = null;
+        }
+
+        void copy(ColumnRange another) {
+            copy(another.column, another.begin, another.end, another.valueSet);
+            this.idSet = another.idSet;
+            this.idSetFilter = another.idSetFilter;
+        }
+
+        private void refreshBeginEndFromIdSet() {
+            if (idSet.isEmpty()) {
+                begin = EMPTY;
+                end = EMPTY;
+            } else {
+                begin = idSetFilter.idToCode(idSet.getIntIterator().next());
+                end = idSetFilter.idToCode(idSet.getReverseIntIterator().next());
+            }
         }
 
         private void refreshBeginEndFromEquals() {
@@ -219,12 +266,14 @@ public abstract class ScanRangePlannerBase {
         }
 
         public boolean satisfyAll() {
-            return begin.array() == null && end.array() == null; // the NEQ case
+            return idSet == null && begin.array() == null && end.array() == null; // the NEQ case
         }
 
         public boolean satisfyNone() {
             if (valueSet != null) {
                 return valueSet.isEmpty();
+            } else if (idSet != null && idSet.isEmpty()) {
+                return true;
             } else if (begin.array() != null && end.array() != null) {
                 return gtInfo.getCodeSystem().getComparator().compare(begin, end) > 0;
             } else {
@@ -240,10 +289,30 @@ public abstract class ScanRangePlannerBase {
             }
 
             if (this.satisfyAll()) {
-                copy(another.column, another.begin, another.end, another.valueSet);
+                copy(another);
+                return;
+            }
+
+            if (this.idSet != null && another.idSet != null) {
+                this.idSet = ImmutableRoaringBitmap.and(this.idSet, another.idSet);
+                refreshBeginEndFromIdSet();
+                return;
+            }
+
+            if (another.idSet != null && this.valueSet == null) {
+                ByteArray thisBegin = this.begin;
+                ByteArray thisEnd = this.end;
+                copy(another);
+                this.begin = rangeStartComparator.comparator.max(this.begin, thisBegin);
+                this.end = rangeEndComparator.comparator.min(this.end, thisEnd);
                 return;
             }
 
+            // an equal value set is always more selective than ID set, the ID set still filters in storage
+            if (this.idSet != null && another.valueSet != null) {
+                copy(another.column, this.begin, this.end, null);
+            }
+
             if (this.valueSet != null && another.valueSet != null) {
                 this.valueSet.retainAll(another.valueSet);
                 refreshBeginEndFromEquals();
@@ -278,7 +347,9 @@ public abstract class ScanRangePlannerBase {
         }
 
         public String toString() {
-            if (valueSet == null) {
+            if (idSet != null) {
+                return column.getName() + " in " + idSet.getCardinality() + " ids between " + begin + " and " + end;
+            } else if (valueSet == null) {
                 return column.getName() + " between " + begin + " and " + end;
             } else {
                 return column.getName() + " in " + valueSet;
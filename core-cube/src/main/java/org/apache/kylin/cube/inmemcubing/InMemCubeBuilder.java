@@ -18,22 +18,29 @@
 
 package org.apache.kylin.cube.inmemcubing;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.common.util.MemoryBudgetController.MemoryWaterLevel;
+import org.apache.kylin.common.util.MemoryBudgetController.NotEnoughBudgetException;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.cuboid.CuboidScheduler;
@@ -47,6 +54,7 @@ import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
 import org.apache.kylin.gridtable.GridTable;
 import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.measure.topn.Counter;
 import org.apache.kylin.measure.topn.TopNCounter;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
@@ -57,6 +65,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 
 /**
  * Build a cube (many cuboids) in memory. Calculating multiple cuboids at the same time as long as memory permits.
@@ -70,6 +79,9 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private static final double DERIVE_AGGR_CACHE_CONSTANT_FACTOR = 0.1;
     private static final double DERIVE_AGGR_CACHE_VARIABLE_FACTOR = 0.9;
 
+    // cuboids are written in partitions of at least this many rows, runs of partitions are the key ranges
+    private static final int MIN_ROWS_PER_PARTITION = 100000;
+
     private final long baseCuboidId;
     private final int totalCuboidCount;
     private final String[] metricsAggrFuncs;
@@ -79,9 +91,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private MemoryBudgetController memBudget;
     private MemoryWaterLevel baseCuboidMemTracker;
 
-    private Thread[] taskThreads;
-    private Throwable[] taskThreadExceptions;
-    private TreeSet<CuboidTask> taskPending;
+    private volatile ForkJoinPool taskPool;
     private AtomicInteger taskCuboidCompleted = new AtomicInteger(0);
 
     private CuboidResult baseResult;
@@ -106,18 +116,23 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         this.metricsAggrFuncs = metricsAggrFuncsList.toArray(new String[metricsAggrFuncsList.size()]);
     }
 
-    private GridTable newGridTableByCuboidID(long cuboidID) throws IOException {
-        GTInfo info = CubeGridTable.newGTInfo(Cuboid.findForMandatory(cubeDesc, cuboidID),
+    private GTInfo newGTInfoByCuboidID(long cuboidID) {
+        return CubeGridTable.newGTInfo(Cuboid.findForMandatory(cubeDesc, cuboidID),
                 new CubeDimEncMap(cubeDesc, dictionaryMap)
         );
+    }
 
-        // Below several store implementation are very similar in performance. The ConcurrentDiskStore is the simplest.
-        // MemDiskStore store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
-        // MemDiskStore store = new MemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
-        ConcurrentDiskStore store = new ConcurrentDiskStore(info);
-
-        GridTable gridTable = new GridTable(info, store);
-        return gridTable;
+    private IGTStore newSpillStore(GTInfo info) throws IOException {
+        // ConcurrentDiskStore and MemDiskStore are very similar in performance, the ConcurrentDiskStore is the simplest.
+        // MappedDiskStore trades some CPU for compression, and re-reads parent cuboids from page cache instead of heap.
+        String storeType = cubeDesc.getConfig().getCubeAlgorithmInMemSpillStore();
+        if ("mapped".equalsIgnoreCase(storeType)) {
+            return new MappedDiskStore(info);
+        } else if ("memdisk".equalsIgnoreCase(storeType)) {
+            return new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
+        } else {
+            return new ConcurrentDiskStore(info);
+        }
     }
 
     @Override
@@ -161,13 +176,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         baseCuboidMemTracker = new MemoryWaterLevel();
         baseCuboidMemTracker.markLow();
 
-        // multiple threads to compute cuboid in parallel
-        taskPending = new TreeSet<CuboidTask>();
-        taskCuboidCompleted.set(0);
-        taskThreads = prepareTaskThreads();
-        taskThreadExceptions = new Throwable[taskThreadCount];
-
         // build base cuboid
+        taskCuboidCompleted.set(0);
         resultCollector = collector;
         totalSumForSanityCheck = null;
         baseResult = createBaseCuboid(input);
@@ -178,137 +188,50 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         baseCuboidMemTracker.markLow();
         makeMemoryBudget();
 
-        // kick off N-D cuboid tasks and output
-        addChildTasks(baseResult);
-        start(taskThreads);
-
-        // wait complete
-        join(taskThreads);
+        // work-stealing threads compute the N-D cuboids along the spanning tree, large parents are split into key ranges
+        taskPool = new ForkJoinPool(taskThreadCount);
+        try {
+            taskPool.invoke(new SpanningTreeTask(baseResult, !input.inputConverterUnit.ifChange()));
+        } catch (CancellationException ex) {
+            throw new IOException("in-mem cube build is aborted", ex);
+        } catch (RuntimeException ex) {
+            throw unwrapTaskException(ex);
+        } finally {
+            taskPool.shutdown();
+        }
 
         long endTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build end, " + cubeDesc.getName() + ", takes " + (endTime - startTime) + " ms");
-
-        throwExceptionIfAny();
     }
 
     public void abort() {
-        interrupt(taskThreads);
+        if (taskPool != null)
+            taskPool.shutdownNow();
     }
 
-    private void start(Thread... threads) {
-        for (Thread t : threads)
-            t.start();
-    }
-
-    private void interrupt(Thread... threads) {
-        for (Thread t : threads)
-            t.interrupt();
-    }
-
-    private void join(Thread... threads) throws IOException {
-        try {
-            for (Thread t : threads)
-                t.join();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("interrupted while waiting task and output complete", e);
-        }
-    }
-
-    private void throwExceptionIfAny() throws IOException {
-        ArrayList<Throwable> errors = new ArrayList<Throwable>();
-        for (int i = 0; i < taskThreadCount; i++) {
-            Throwable t = taskThreadExceptions[i];
-            if (t != null)
-                errors.add(t);
-        }
-        if (errors.isEmpty()) {
-            return;
-        } else if (errors.size() == 1) {
-            Throwable t = errors.get(0);
+    private IOException unwrapTaskException(RuntimeException ex) {
+        // ForkJoinPool may re-create the exception in the joining thread, the original is then in the cause chain
+        for (Throwable t = ex; t != null; t = t.getCause()) {
             if (t instanceof IOException)
-                throw (IOException) t;
-            else
-                throw new IOException(t);
-        } else {
-            for (Throwable t : errors)
-                logger.error("Exception during in-mem cube build", t);
-            throw new IOException(errors.size() + " exceptions during in-mem cube build, cause set to the first, check log for more", errors.get(0));
+                return (IOException) t;
         }
-    }
-
-    private Thread[] prepareTaskThreads() {
-        Thread[] result = new Thread[taskThreadCount];
-        for (int i = 0; i < taskThreadCount; i++) {
-            result[i] = new CuboidTaskThread(i);
-        }
-        return result;
+        logger.error("Exception during in-mem cube build", ex);
+        return new IOException(ex);
     }
 
     public boolean isAllCuboidDone() {
         return taskCuboidCompleted.get() == totalCuboidCount;
     }
 
-    private class CuboidTaskThread extends Thread {
-        private int id;
-
-        CuboidTaskThread(int id) {
-            super("CuboidTask-" + id);
-            this.id = id;
-        }
-
-        @Override
-        public void run() {
-            try {
-                while (!isAllCuboidDone()) {
-                    CuboidTask task = null;
-                    synchronized (taskPending) {
-                        while (task == null && taskHasNoException()) {
-                            task = taskPending.pollFirst();
-                            if (task == null)
-                                taskPending.wait(60000);
-                        }
-                    }
-                    // if task error occurs
-                    if (task == null)
-                        break;
-
-                    CuboidResult newCuboid = buildCuboid(task.parent, task.childCuboidId);
-                    addChildTasks(newCuboid);
-
-                    if (isAllCuboidDone()) {
-                        for (Thread t : taskThreads) {
-                            if (t != Thread.currentThread())
-                                t.interrupt();
-                        }
-                    }
-                }
-            } catch (Throwable ex) {
-                if (!isAllCuboidDone()) {
-                    logger.error("task thread exception", ex);
-                    taskThreadExceptions[id] = ex;
-                }
-            }
-        }
-    }
-
-    private boolean taskHasNoException() {
-        for (int i = 0; i < taskThreadExceptions.length; i++)
-            if (taskThreadExceptions[i] != null)
-                return false;
-        return true;
-    }
+    private List<CuboidTask> newChildTasks(CuboidResult parent) {
+        List<Long> children = Lists.newArrayList(cuboidScheduler.getSpanningCuboid(parent.cuboidId));
+        Collections.sort(children);
 
-    private void addChildTasks(CuboidResult parent) {
-        List<Long> children = cuboidScheduler.getSpanningCuboid(parent.cuboidId);
-        if (!children.isEmpty()) {
-            synchronized (taskPending) {
-                for (Long child : children) {
-                    taskPending.add(new CuboidTask(parent, child));
-                }
-                taskPending.notifyAll();
-            }
+        List<CuboidTask> tasks = Lists.newArrayListWithCapacity(children.size());
+        for (Long child : children) {
+            tasks.add(new CuboidTask(parent, child));
         }
+        return tasks;
     }
 
     private void makeMemoryBudget() {
@@ -334,27 +257,31 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         long startTime = System.currentTimeMillis();
         logger.info("Calculating base cuboid " + baseCuboidId);
 
-        GridTable baseCuboid = newGridTableByCuboidID(baseCuboidId);
-        GTBuilder baseBuilder = baseCuboid.rebuild();
-        IGTScanner baseInput = new InputConverter(baseCuboid.getInfo(), input);
+        GTInfo baseInfo = newGTInfoByCuboidID(baseCuboidId);
+        IGTScanner baseInput = new InputConverter(baseInfo, input, cubeDesc.getConfig().getCubeEncodeBlockSize());
 
         Pair<ImmutableBitSet, ImmutableBitSet> dimensionMetricsBitSet = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(baseCuboidId, measureCount);
-        GTScanRequest req = new GTScanRequestBuilder().setInfo(baseCuboid.getInfo()).setRanges(null).setDimensions(null).setAggrGroupBy(dimensionMetricsBitSet.getFirst()).setAggrMetrics(dimensionMetricsBitSet.getSecond()).setAggrMetricsFuncs(metricsAggrFuncs).setFilterPushDown(null).createGTScanRequest();
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(baseInfo).setRanges(null).setDimensions(null).setAggrGroupBy(dimensionMetricsBitSet.getFirst()).setAggrMetrics(dimensionMetricsBitSet.getSecond()).setAggrMetricsFuncs(metricsAggrFuncs).setFilterPushDown(null).createGTScanRequest();
         GTAggregateScanner aggregationScanner = new GTAggregateScanner(baseInput, req);
         aggregationScanner.trackMemoryLevel(baseCuboidMemTracker);
 
+        PartitionWriter writer = new PartitionWriter(baseInfo);
         int count = 0;
+        boolean succeed = false;
         try {
             for (GTRecord r : aggregationScanner) {
                 if (count == 0) {
                     baseCuboidMemTracker.markHigh();
                 }
-                baseBuilder.write(r);
+                writer.write(r);
                 count++;
             }
+            writer.close();
+            succeed = true;
         } finally {
             aggregationScanner.close();
-            baseBuilder.close();
+            if (!succeed)
+                writer.abort();
         }
 
         long timeSpent = System.currentTimeMillis() - startTime;
@@ -363,6 +290,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         int mbEstimateBaseAggrCache = (int) (aggregationScanner.getEstimateSizeOfAggrCache() / MemoryBudgetController.ONE_MB);
         logger.info("Wild estimate of base aggr cache is " + mbEstimateBaseAggrCache + " MB");
 
+        GridTable baseCuboid = newPartitionedTable(baseInfo, Collections.singletonList(writer));
         return updateCuboidResult(baseCuboidId, baseCuboid, count, timeSpent, 0, input.inputConverterUnit.ifChange());
     }
 
@@ -387,8 +315,90 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         return result;
     }
 
+    private GridTable newPartitionedTable(GTInfo info, List<PartitionWriter> writers) {
+        List<GridTable> partitions = Lists.newArrayList();
+        List<Integer> partitionRows = Lists.newArrayList();
+        for (PartitionWriter writer : writers) {
+            partitions.addAll(writer.partitions);
+            partitionRows.addAll(writer.partitionRows);
+        }
+        return new GridTable(info, new PartitionedCuboidStore(info, partitions, Ints.toArray(partitionRows)));
+    }
+
     private CuboidResult buildCuboid(CuboidResult parent, long cuboidId) throws IOException {
-        final String consumerName = "AggrCache@Cuboid " + cuboidId;
+        long startTime = System.currentTimeMillis();
+        logger.info("Calculating cuboid " + cuboidId);
+
+        GTInfo newInfo = newGTInfoByCuboidID(cuboidId);
+        int[] rangeBounds = planKeyRanges(parent, cuboidId);
+        List<KeyRangeTask> rangeTasks = Lists.newArrayListWithCapacity(rangeBounds.length - 1);
+        for (int i = 0; i + 1 < rangeBounds.length; i++) {
+            rangeTasks.add(new KeyRangeTask(parent, cuboidId, newInfo, rangeBounds[i], rangeBounds[i + 1]));
+        }
+        if (rangeTasks.size() > 1) {
+            logger.info("Split parent cuboid " + parent.cuboidId + " into " + rangeTasks.size() + " key ranges for cuboid " + cuboidId);
+        }
+
+        // ranges are disjoint and in key order, their partitions simply concat into the child
+        int count = 0;
+        List<PartitionWriter> writers = Lists.newArrayListWithCapacity(rangeTasks.size());
+        boolean succeed = false;
+        try {
+            ForkJoinTask.invokeAll(rangeTasks);
+            for (KeyRangeTask rangeTask : rangeTasks) {
+                count += rangeTask.count;
+                writers.add(rangeTask.writer);
+            }
+            succeed = true;
+        } finally {
+            if (!succeed) {
+                for (KeyRangeTask rangeTask : rangeTasks) {
+                    if (rangeTask.isCompletedNormally())
+                        rangeTask.writer.abort();
+                }
+            }
+        }
+
+        long timeSpent = System.currentTimeMillis() - startTime;
+        logger.info("Cuboid " + cuboidId + " has " + count + " rows, build takes " + timeSpent + "ms");
+
+        return updateCuboidResult(cuboidId, newPartitionedTable(newInfo, writers), count, timeSpent, 0);
+    }
+
+    /**
+     * Group consecutive partitions of the parent into key ranges for calculating the child, each range is
+     * aggregated alone into its own partitions of the child. Returns the partition boundaries of the ranges.
+     * Ranges on the leading dimension of parent produce disjoint and ordered child rows only when the
+     * child keeps that leading dimension (the highest bit of the parent cuboid id).
+     */
+    private int[] planKeyRanges(CuboidResult parent, long cuboidId) {
+        PartitionedCuboidStore store = (PartitionedCuboidStore) parent.table.getStore();
+        int nPartitions = store.getPartitionCount();
+        if (taskThreadCount <= 1 || nPartitions <= 1 || (Long.highestOneBit(parent.cuboidId) & cuboidId) == 0)
+            return new int[] { 0, nPartitions };
+
+        // about two ranges per thread leave room for work stealing
+        int rowsPerRange = Math.max(MIN_ROWS_PER_PARTITION, parent.nRows / (taskThreadCount * 2));
+        List<Integer> bounds = Lists.newArrayList(0);
+        int rowsInRange = 0;
+        int rowsLeft = parent.nRows;
+        for (int i = 0; i < nPartitions; i++) {
+            if (rowsInRange >= rowsPerRange && rowsLeft >= rowsPerRange / 2) {
+                bounds.add(i);
+                rowsInRange = 0;
+            }
+            rowsInRange += store.getPartitionRows(i);
+            rowsLeft -= store.getPartitionRows(i);
+        }
+        bounds.add(nPartitions);
+        return Ints.toArray(bounds);
+    }
+
+    private int aggregateKeyRange(CuboidResult parent, long cuboidId, int fromPartition, int toPartition,
+            PartitionWriter writer) throws IOException {
+        PartitionedCuboidStore store = (PartitionedCuboidStore) parent.table.getStore();
+        boolean wholeParent = fromPartition == 0 && toPartition == store.getPartitionCount();
+        final String consumerName = "AggrCache@Cuboid " + cuboidId + (wholeParent ? "" : "[" + fromPartition + "," + toPartition + ")");
         MemoryBudgetController.MemoryConsumer consumer = new MemoryBudgetController.MemoryConsumer() {
             @Override
             public int freeUp(int mb) {
@@ -401,24 +411,66 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             }
         };
 
-        // reserve memory for aggregation cache, can't be larger than the parent
-        memBudget.reserveInsist(consumer, parent.aggrCacheMB);
+        // reserve memory for aggregation cache, can't be larger than the parent, a key range takes its share
+        int reserveMB = parent.aggrCacheMB;
+        if (!wholeParent && parent.nRows > 0) {
+            int rangeRows = 0;
+            for (int i = fromPartition; i < toPartition; i++)
+                rangeRows += store.getPartitionRows(i);
+            reserveMB = Math.max(1, (int) Math.ceil((double) parent.aggrCacheMB * rangeRows / parent.nRows));
+        }
+        reserveMemory(consumer, reserveMB);
         try {
-            return aggregateCuboid(parent, cuboidId);
+            final Pair<ImmutableBitSet, ImmutableBitSet> allNeededColumns = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(parent.cuboidId, cuboidId, measureCount);
+            return scanAndAggregateGridTable(parent, cuboidId, fromPartition, toPartition, allNeededColumns.getFirst(), allNeededColumns.getSecond(), writer);
         } finally {
             memBudget.reserve(consumer, 0);
         }
     }
 
-    private CuboidResult aggregateCuboid(CuboidResult parent, long cuboidId) throws IOException {
-        final Pair<ImmutableBitSet, ImmutableBitSet> allNeededColumns = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(parent.cuboidId, cuboidId, measureCount);
-        return scanAndAggregateGridTable(parent.table, parent.cuboidId, cuboidId, allNeededColumns.getFirst(), allNeededColumns.getSecond());
+    /**
+     * Wait for the memory budget as a managed blocker, so the pool can activate a spare worker meanwhile
+     * instead of having all its workers blocked.
+     */
+    private void reserveMemory(final MemoryBudgetController.MemoryConsumer consumer, final int reserveMB) {
+        ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+            boolean reserved = false;
+
+            @Override
+            public boolean block() {
+                memBudget.reserveInsist(consumer, reserveMB);
+                reserved = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!reserved) {
+                    try {
+                        memBudget.reserve(consumer, reserveMB);
+                        reserved = true;
+                    } catch (NotEnoughBudgetException ex) {
+                        // wait in block()
+                    }
+                }
+                return reserved;
+            }
+        };
+
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotEnoughBudgetException(e);
+        }
     }
 
-    private GTAggregateScanner prepareGTAggregationScanner(GridTable gridTable, long parentId, long cuboidId, ImmutableBitSet aggregationColumns, ImmutableBitSet measureColumns) throws IOException {
-        GTInfo info = gridTable.getInfo();
+    private GTAggregateScanner prepareGTAggregationScanner(CuboidResult parent, long cuboidId, int fromPartition, int toPartition, ImmutableBitSet aggregationColumns, ImmutableBitSet measureColumns) throws IOException {
+        PartitionedCuboidStore store = (PartitionedCuboidStore) parent.table.getStore();
+        long parentId = parent.cuboidId;
+        GTInfo info = parent.table.getInfo();
         GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(aggregationColumns).setAggrMetrics(measureColumns).setAggrMetricsFuncs(metricsAggrFuncs).setFilterPushDown(null).createGTScanRequest();
-        GTAggregateScanner scanner = (GTAggregateScanner) gridTable.scan(req);
+        GTAggregateScanner scanner = (GTAggregateScanner) req.decorateScanner(store.scan(req, fromPartition, toPartition));
 
         // for child cuboid, some measures don't need aggregation.
         if (parentId != cuboidId) {
@@ -436,26 +488,21 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         return scanner;
     }
 
-    private CuboidResult scanAndAggregateGridTable(GridTable gridTable, long parentId, long cuboidId, ImmutableBitSet aggregationColumns, ImmutableBitSet measureColumns) throws IOException {
-        long startTime = System.currentTimeMillis();
-        logger.info("Calculating cuboid " + cuboidId);
-
-        GTAggregateScanner scanner = prepareGTAggregationScanner(gridTable, parentId, cuboidId, aggregationColumns, measureColumns);
-        GridTable newGridTable = newGridTableByCuboidID(cuboidId);
-        GTBuilder builder = newGridTable.rebuild();
+    private int scanAndAggregateGridTable(CuboidResult parent, long cuboidId, int fromPartition, int toPartition, ImmutableBitSet aggregationColumns, ImmutableBitSet measureColumns, PartitionWriter writer) throws IOException {
+        GTAggregateScanner scanner = prepareGTAggregationScanner(parent, cuboidId, fromPartition, toPartition, aggregationColumns, measureColumns);
 
         ImmutableBitSet allNeededColumns = aggregationColumns.or(measureColumns);
 
-        GTRecord newRecord = new GTRecord(newGridTable.getInfo());
+        GTRecord newRecord = new GTRecord(writer.info);
         int count = 0;
         try {
             for (GTRecord record : scanner) {
-                count++;
                 for (int i = 0; i < allNeededColumns.trueBitCount(); i++) {
                     int c = allNeededColumns.trueBitAt(i);
                     newRecord.set(i, record.get(c));
                 }
-                builder.write(newRecord);
+                writer.write(newRecord);
+                count++;
             }
 
             //long t = System.currentTimeMillis();
@@ -463,13 +510,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             //logger.info("sanity check for Cuboid " + cuboidId + " cost " + (System.currentTimeMillis() - t) + "ms");
         } finally {
             scanner.close();
-            builder.close();
         }
-
-        long timeSpent = System.currentTimeMillis() - startTime;
-        logger.info("Cuboid " + cuboidId + " has " + count + " rows, build takes " + timeSpent + "ms");
-
-        return updateCuboidResult(cuboidId, newGridTable, count, timeSpent, 0);
+        return count;
     }
 
     @SuppressWarnings({ "unused", "rawtypes", "unchecked" })
@@ -507,9 +549,46 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
     // ===========================================================================
 
-    private static class CuboidTask implements Comparable<CuboidTask> {
-        final CuboidResult parent;
+    /**
+     * Build the direct children of a cuboid, then go down the subtrees of the children. The cuboid is
+     * released once its direct children are done, and closed too if it is not collected as a result.
+     */
+    private class SpanningTreeTask extends RecursiveAction {
+        CuboidResult parent;
+        final boolean closeParent;
+
+        SpanningTreeTask(CuboidResult parent, boolean closeParent) {
+            this.parent = parent;
+            this.closeParent = closeParent;
+        }
+
+        @Override
+        protected void compute() {
+            List<CuboidTask> childTasks = newChildTasks(parent);
+            invokeAll(childTasks);
+
+            if (closeParent) {
+                try {
+                    parent.table.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close cuboid " + parent.cuboidId, e);
+                }
+            }
+            parent = null;
+
+            List<SpanningTreeTask> subtrees = Lists.newArrayListWithCapacity(childTasks.size());
+            for (CuboidTask childTask : childTasks) {
+                subtrees.add(new SpanningTreeTask(childTask.result, false));
+                childTask.result = null;
+            }
+            invokeAll(subtrees);
+        }
+    }
+
+    private class CuboidTask extends RecursiveAction {
+        CuboidResult parent;
         final long childCuboidId;
+        CuboidResult result;
 
         CuboidTask(CuboidResult parent, long childCuboidId) {
             this.parent = parent;
@@ -517,9 +596,110 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         }
 
         @Override
-        public int compareTo(CuboidTask o) {
-            long comp = this.childCuboidId - o.childCuboidId;
-            return comp < 0 ? -1 : (comp > 0 ? 1 : 0);
+        protected void compute() {
+            try {
+                result = buildCuboid(parent, childCuboidId);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to build cuboid " + childCuboidId, e);
+            }
+            parent = null;
+        }
+    }
+
+    /** Aggregate a run of parent partitions, one key range, into partitions of the child cuboid. */
+    private class KeyRangeTask extends RecursiveAction {
+        final CuboidResult parent;
+        final long cuboidId;
+        final int fromPartition;
+        final int toPartition;
+        final PartitionWriter writer;
+        int count;
+
+        KeyRangeTask(CuboidResult parent, long cuboidId, GTInfo newInfo, int fromPartition, int toPartition) {
+            this.parent = parent;
+            this.cuboidId = cuboidId;
+            this.fromPartition = fromPartition;
+            this.toPartition = toPartition;
+            this.writer = new PartitionWriter(newInfo);
+        }
+
+        @Override
+        protected void compute() {
+            boolean succeed = false;
+            try {
+                count = aggregateKeyRange(parent, cuboidId, fromPartition, toPartition, writer);
+                writer.close();
+                succeed = true;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to build cuboid " + cuboidId + " from partitions [" + fromPartition + "," + toPartition + ")", e);
+            } finally {
+                if (!succeed)
+                    writer.abort();
+            }
+        }
+    }
+
+    /**
+     * Write a cuboid into partitions of its own spill store. After MIN_ROWS_PER_PARTITION rows a new partition
+     * starts where the leading dimension changes, so partitions are valid boundaries of disjoint key ranges.
+     */
+    private class PartitionWriter implements Closeable {
+        final GTInfo info;
+        final List<GridTable> partitions = Lists.newArrayList();
+        final List<Integer> partitionRows = Lists.newArrayList();
+        GTBuilder builder;
+        int rows;
+        ByteArray boundaryValue;
+
+        PartitionWriter(GTInfo info) {
+            this.info = info;
+        }
+
+        void write(GTRecord r) throws IOException {
+            if (builder != null && rows >= MIN_ROWS_PER_PARTITION) {
+                ByteArray leading = r.get(0);
+                if (boundaryValue == null) {
+                    boundaryValue = ByteArray.copyOf(leading.array(), leading.offset(), leading.length());
+                } else if (!boundaryValue.equals(leading)) {
+                    closePartition();
+                }
+            }
+            if (builder == null) {
+                GridTable partition = new GridTable(info, newSpillStore(info));
+                partitions.add(partition);
+                builder = partition.rebuild();
+            }
+            builder.write(r);
+            rows++;
+        }
+
+        private void closePartition() throws IOException {
+            if (builder == null)
+                return;
+
+            GTBuilder toClose = builder;
+            builder = null;
+            partitionRows.add(rows);
+            rows = 0;
+            boundaryValue = null;
+            toClose.close();
+        }
+
+        /** Finish the last partition. */
+        @Override
+        public void close() throws IOException {
+            closePartition();
+        }
+
+        /** Drop the partitions written, on failure. */
+        void abort() {
+            IOUtils.closeQuietly(builder);
+            builder = null;
+            for (GridTable partition : partitions) {
+                IOUtils.closeQuietly(partition);
+            }
+            partitions.clear();
+            partitionRows.clear();
         }
     }
 }
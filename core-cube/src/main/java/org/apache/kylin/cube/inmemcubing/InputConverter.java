@@ -19,7 +19,9 @@
 package org.apache.kylin.cube.inmemcubing;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
@@ -30,14 +32,38 @@ public class InputConverter<T> implements IGTScanner {
     private GTRecord record;
     private RecordConsumeBlockingQueueController<T> inputController;
 
+    // block mode, raw rows are converted a block at a time to batch the dictionary lookups
+    private InputConverterUnitForRawData blockConverter;
+    private List<String[]> rowBlock;
+    private GTRecord[] recordBlock;
+    private int blockPos = 0;
+    private boolean inputStopped = false;
+
     public InputConverter(GTInfo info, RecordConsumeBlockingQueueController<T> inputController) {
+        this(info, inputController, 1);
+    }
+
+    public InputConverter(GTInfo info, RecordConsumeBlockingQueueController<T> inputController, int blockSize) {
         this.info = info;
         this.inputController = inputController;
         this.record = new GTRecord(info);
+
+        if (blockSize > 1 && inputController.inputConverterUnit instanceof InputConverterUnitForRawData) {
+            this.blockConverter = (InputConverterUnitForRawData) inputController.inputConverterUnit;
+            this.rowBlock = new ArrayList<>(blockSize);
+            this.recordBlock = new GTRecord[blockSize];
+            for (int i = 0; i < blockSize; i++) {
+                recordBlock[i] = new GTRecord(info);
+            }
+        }
     }
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (blockConverter != null) {
+            return blockIterator();
+        }
+
         return new Iterator<GTRecord>() {
 
             @Override
@@ -58,6 +84,43 @@ public class InputConverter<T> implements IGTScanner {
         };
     }
 
+    @SuppressWarnings("unchecked")
+    private Iterator<GTRecord> blockIterator() {
+        return new Iterator<GTRecord>() {
+
+            @Override
+            public boolean hasNext() {
+                if (blockPos < rowBlock.size())
+                    return true;
+                // once stopped by end or cut, don't ask the controller again, it could have moved past the cut
+                return !inputStopped && inputController.hasNext();
+            }
+
+            @Override
+            public GTRecord next() {
+                if (blockPos >= rowBlock.size()) {
+                    // read ahead no further than the end or cut of input
+                    rowBlock.clear();
+                    blockPos = 0;
+                    while (rowBlock.size() < recordBlock.length) {
+                        if (!inputController.hasNext()) {
+                            inputStopped = true;
+                            break;
+                        }
+                        rowBlock.add((String[]) inputController.next());
+                    }
+                    blockConverter.convertBlock(rowBlock, recordBlock);
+                }
+                return recordBlock[blockPos++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     @Override
     public void close() throws IOException {
     }
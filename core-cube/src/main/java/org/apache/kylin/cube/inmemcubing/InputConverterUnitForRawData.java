@@ -17,14 +17,21 @@
 */
 package org.apache.kylin.cube.inmemcubing;
 
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
+import org.apache.kylin.dimension.DictionaryDimEnc;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTCodeSystem;
 import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
@@ -74,6 +81,61 @@ public class InputConverterUnitForRawData implements InputConverterUnit<String[]
         record.setValues(recordValues);
     }
 
+    /**
+     * Convert a block of rows at once. Dictionary encoded dimensions are looked up column by column for
+     * the whole block via Dictionary.getIdsFromValues(), the rest is encoded the same as convert().
+     */
+    public void convertBlock(List<String[]> rows, GTRecord[] records) {
+        int count = rows.size();
+        if (count == 0)
+            return;
+
+        GTInfo info = records[0].getInfo();
+        IGTCodeSystem codeSystem = info.getCodeSystem();
+        int keySize = flatDesc.getRowKeyColumnIndexes().length;
+
+        Object[][] keys = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = buildKey(rows.get(i));
+        }
+
+        int[][] dictIds = new int[keySize][];
+        int[] idLengths = new int[keySize];
+        BitSet[] notFound = new BitSet[keySize];
+        String[] colValues = new String[count];
+        for (int c = 0; c < keySize; c++) {
+            DimensionEncoding dimEnc = codeSystem.getDimEnc(c);
+            if (!(dimEnc instanceof DictionaryDimEnc))
+                continue;
+
+            DictionaryDimEnc dictEnc = (DictionaryDimEnc) dimEnc;
+            for (int i = 0; i < count; i++) {
+                colValues[i] = (String) keys[i][c];
+            }
+            dictIds[c] = new int[count];
+            idLengths[c] = dictEnc.getLengthOfEncoding();
+            notFound[c] = dictEnc.getDictionary().getIdsFromValues(colValues, count, dictEnc.getRoundingFlag(), dictIds[c]);
+        }
+
+        // one buffer holds the codes of the whole block, records of a block are consumed before the next block
+        ByteBuffer buf = ByteBuffer.allocate(info.getMaxRecordLength() * count);
+        for (int i = 0; i < count; i++) {
+            Object[] metricsValues = buildValue(rows.get(i));
+            GTRecord record = records[i];
+            for (int c = 0; c < info.getColumnCount(); c++) {
+                int pos = buf.position();
+                if (c < keySize && dictIds[c] != null && !notFound[c].get(i)) {
+                    BytesUtil.writeUnsigned(dictIds[c][i], idLengths[c], buf);
+                } else {
+                    // not found values go the normal way, which reports the dictionary error
+                    Object value = c < keySize ? keys[i][c] : metricsValues[c - keySize];
+                    codeSystem.encodeColumnValue(c, value, buf);
+                }
+                record.get(c).reset(buf.array(), buf.arrayOffset() + pos, buf.position() - pos);
+            }
+        }
+    }
+
     @Override
     public boolean ifEnd(String[] currentObject) {
         return currentObject == END_ROW;
@@ -0,0 +1,491 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk store that writes records in compressed blocks and reads them back through memory-mapped regions.
+ * Like ConcurrentDiskStore, it allows concurrent read and exclusive write.
+ * <p>
+ * Records are packed into blocks of about BLOCK_SIZE bytes, each block is deflated on its own and appended
+ * to the file. A block index (file offset, stored length, raw length) is kept in memory, blocks never straddle
+ * a mapped region. Readers share the mapped regions and hold only one decompressed block each, so re-reading
+ * a spilled parent cuboid is served by the OS page cache rather than by heap buffers.
+ */
+public class MappedDiskStore implements IGTStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedDiskStore.class);
+    private static final boolean debug = false;
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final long MAX_REGION_SIZE = 256L * 1024 * 1024;
+
+    final private GTInfo info;
+    final private Object lock;
+
+    final private File diskFile;
+    final private boolean delOnClose;
+    final private int compressLevel;
+
+    final private BlockIndex index = new BlockIndex();
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    private Writer activeWriter;
+    private HashSet<Reader> activeReaders = new HashSet<Reader>();
+    private FileChannel writeChannel;
+
+    public MappedDiskStore(GTInfo info) throws IOException {
+        this(info, File.createTempFile("MappedDiskStore", ""), true, Deflater.BEST_SPEED);
+    }
+
+    public MappedDiskStore(GTInfo info, File diskFile) throws IOException {
+        this(info, diskFile, false, Deflater.BEST_SPEED);
+    }
+
+    MappedDiskStore(GTInfo info, File diskFile, boolean delOnClose, int compressLevel) throws IOException {
+        this.info = info;
+        this.lock = this;
+        this.diskFile = diskFile;
+        this.delOnClose = delOnClose;
+        this.compressLevel = compressLevel;
+
+        // in case user forget to call close()
+        if (delOnClose)
+            diskFile.deleteOnExit();
+
+        if (debug)
+            logger.debug(this + " disk file " + diskFile.getAbsolutePath());
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        return newWriter(false);
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        return newWriter(true);
+    }
+
+    private IGTWriter newWriter(boolean append) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null || !activeReaders.isEmpty())
+                throw new IllegalStateException();
+
+            // mapped regions are stale once the file changes
+            regions = new MappedByteBuffer[0];
+
+            if (append) {
+                writeChannel = FileChannel.open(diskFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            } else {
+                index.clear();
+                diskFile.delete();
+                writeChannel = FileChannel.open(diskFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+            activeWriter = new Writer(index.endOffset());
+            return activeWriter;
+        }
+    }
+
+    private void closeWriter(Writer w) {
+        synchronized (lock) {
+            if (activeWriter != w)
+                throw new IllegalStateException();
+
+            activeWriter = null;
+            IOUtils.closeQuietly(writeChannel);
+            writeChannel = null;
+        }
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null)
+                throw new IllegalStateException();
+
+            mapRegions();
+            Reader r = new Reader(regions);
+            activeReaders.add(r);
+            return r;
+        }
+    }
+
+    private void closeReader(Reader r) {
+        synchronized (lock) {
+            if (activeReaders.contains(r) == false)
+                throw new IllegalStateException();
+
+            activeReaders.remove(r);
+        }
+    }
+
+    private void mapRegions() throws IOException {
+        if (regions.length == index.regionCount())
+            return;
+
+        MappedByteBuffer[] newRegions = Arrays.copyOf(regions, index.regionCount());
+        FileChannel channel = FileChannel.open(diskFile.toPath(), StandardOpenOption.READ);
+        try {
+            for (int i = regions.length; i < newRegions.length; i++) {
+                long start = index.regionStart(i);
+                newRegions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, index.regionEnd(i) - start);
+            }
+        } finally {
+            // a mapping stays valid after the channel is closed
+            IOUtils.closeQuietly(channel);
+        }
+        regions = newRegions;
+    }
+
+    public long getBlockCount() {
+        return index.size();
+    }
+
+    public long getStoredBytes() {
+        return index.endOffset();
+    }
+
+    public long getRawBytes() {
+        return index.totalRawBytes();
+    }
+
+    private class Reader implements IGTScanner {
+        final MappedByteBuffer[] mapped;
+        final Inflater inflater = new Inflater();
+        final byte[] stored = new byte[BLOCK_SIZE + info.getMaxRecordLength() + 4];
+        final byte[] block = new byte[BLOCK_SIZE + info.getMaxRecordLength() + 4];
+        final int nBlocks;
+        long count;
+
+        Reader(MappedByteBuffer[] mapped) {
+            this.mapped = mapped;
+            this.nBlocks = index.size();
+
+            if (debug)
+                logger.debug(MappedDiskStore.this + " read start, " + nBlocks + " blocks");
+        }
+
+        private int loadBlock(int b) throws IOException {
+            ByteBuffer region = mapped[index.regionOf(b)].duplicate();
+            region.position((int) (index.offset(b) - index.regionStart(index.regionOf(b))));
+
+            int storedLen = index.storedLength(b);
+            int rawLen = index.rawLength(b);
+            if (storedLen == rawLen) {
+                region.get(block, 0, rawLen);
+                return rawLen;
+            }
+
+            region.get(stored, 0, storedLen);
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLen);
+            try {
+                int n = 0;
+                while (n < rawLen && !inflater.finished()) {
+                    n += inflater.inflate(block, n, rawLen - n);
+                }
+                if (n != rawLen)
+                    throw new IOException("Corrupted block " + b + " of " + diskFile + ", expect " + rawLen + " bytes but got " + n);
+                return n;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted block " + b + " of " + diskFile, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            closeReader(this);
+
+            if (debug)
+                logger.debug(MappedDiskStore.this + " read end, " + count + " records");
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            count = 0;
+            return new Iterator<GTRecord>() {
+                GTRecord record = new GTRecord(info);
+                GTRecord next;
+                ByteBuffer buf = ByteBuffer.wrap(block);
+                int curBlock = -1;
+                int blockLen = 0;
+                int pos = 0;
+
+                @Override
+                public boolean hasNext() {
+                    if (next != null)
+                        return true;
+
+                    try {
+                        while (pos >= blockLen && curBlock + 1 < nBlocks) {
+                            curBlock++;
+                            blockLen = loadBlock(curBlock);
+                            pos = 0;
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    if (pos < blockLen) {
+                        buf.clear();
+                        int len = buf.getInt(pos);
+                        buf.position(pos + 4);
+                        buf.limit(pos + 4 + len);
+                        record.loadColumns(info.getAllColumns(), buf);
+                        pos += 4 + len;
+                        next = record;
+                    }
+
+                    return next != null;
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (next == null) {
+                        hasNext();
+                        if (next == null)
+                            throw new NoSuchElementException();
+                    }
+                    GTRecord r = next;
+                    next = null;
+                    count++;
+                    return r;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+    }
+
+    private class Writer implements IGTWriter {
+        final Deflater deflater = new Deflater(compressLevel);
+        final ByteBuffer block;
+        final byte[] compressed;
+        long writeOffset;
+
+        Writer(long startOffset) {
+            this.writeOffset = startOffset;
+            this.block = ByteBuffer.allocate(BLOCK_SIZE + info.getMaxRecordLength() + 4);
+            this.compressed = new byte[block.capacity()];
+
+            if (debug)
+                logger.debug(MappedDiskStore.this + " write start @ " + writeOffset);
+        }
+
+        @Override
+        public void write(GTRecord rec) throws IOException {
+            int lenPos = block.position();
+            block.position(lenPos + 4);
+            rec.exportColumns(info.getAllColumns(), block);
+            block.putInt(lenPos, block.position() - lenPos - 4);
+
+            if (block.position() >= BLOCK_SIZE)
+                flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            int rawLen = block.position();
+            if (rawLen == 0)
+                return;
+
+            deflater.reset();
+            deflater.setInput(block.array(), 0, rawLen);
+            deflater.finish();
+            int storedLen = 0;
+            while (!deflater.finished() && storedLen < rawLen) {
+                storedLen += deflater.deflate(compressed, storedLen, compressed.length - storedLen);
+            }
+
+            ByteBuffer toWrite;
+            if (deflater.finished() && storedLen < rawLen) {
+                toWrite = ByteBuffer.wrap(compressed, 0, storedLen);
+            } else {
+                // incompressible, keep raw bytes and mark by stored length == raw length
+                storedLen = rawLen;
+                toWrite = ByteBuffer.wrap(block.array(), 0, rawLen);
+            }
+
+            long blockOffset = writeOffset;
+            while (toWrite.hasRemaining()) {
+                writeOffset += writeChannel.write(toWrite, writeOffset);
+            }
+            index.add(blockOffset, storedLen, rawLen);
+            block.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+            } finally {
+                deflater.end();
+                closeWriter(this);
+            }
+
+            if (debug)
+                logger.debug(MappedDiskStore.this + " write end @ " + writeOffset);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null || !activeReaders.isEmpty())
+                throw new IllegalStateException();
+
+            // mapped buffers are released by GC, the file can be deleted anyway on unix-like systems
+            regions = new MappedByteBuffer[0];
+            if (delOnClose) {
+                diskFile.delete();
+            }
+
+            if (debug)
+                logger.debug(this + " closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDiskStore@" + (info.getTableName() == null ? this.hashCode() : info.getTableName());
+    }
+
+    /**
+     * Block positions in the disk file, grouped into regions no larger than MAX_REGION_SIZE so each region
+     * can be mapped by a single MappedByteBuffer.
+     */
+    private static class BlockIndex {
+        long[] offsets = new long[64];
+        int[] storedLens = new int[64];
+        int[] rawLens = new int[64];
+        int[] regionOfBlock = new int[64];
+        int size;
+
+        long[] regionStarts = new long[8];
+        int regionCount;
+
+        void clear() {
+            size = 0;
+            regionCount = 0;
+        }
+
+        void add(long offset, int storedLen, int rawLen) {
+            if (size == offsets.length) {
+                int newLen = size * 2;
+                offsets = Arrays.copyOf(offsets, newLen);
+                storedLens = Arrays.copyOf(storedLens, newLen);
+                rawLens = Arrays.copyOf(rawLens, newLen);
+                regionOfBlock = Arrays.copyOf(regionOfBlock, newLen);
+            }
+
+            if (regionCount == 0 || offset + storedLen - regionStarts[regionCount - 1] > MAX_REGION_SIZE) {
+                if (regionCount == regionStarts.length)
+                    regionStarts = Arrays.copyOf(regionStarts, regionCount * 2);
+                regionStarts[regionCount++] = offset;
+            }
+
+            offsets[size] = offset;
+            storedLens[size] = storedLen;
+            rawLens[size] = rawLen;
+            regionOfBlock[size] = regionCount - 1;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long offset(int b) {
+            return offsets[b];
+        }
+
+        int storedLength(int b) {
+            return storedLens[b];
+        }
+
+        int rawLength(int b) {
+            return rawLens[b];
+        }
+
+        int regionOf(int b) {
+            return regionOfBlock[b];
+        }
+
+        int regionCount() {
+            return regionCount;
+        }
+
+        long regionStart(int r) {
+            return regionStarts[r];
+        }
+
+        long regionEnd(int r) {
+            return r + 1 < regionCount ? regionStarts[r + 1] : endOffset();
+        }
+
+        long endOffset() {
+            return size == 0 ? 0 : offsets[size - 1] + storedLens[size - 1];
+        }
+
+        long totalRawBytes() {
+            long sum = 0;
+            for (int i = 0; i < size; i++)
+                sum += rawLens[i];
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A read-only cuboid made of consecutive partitions, split where the leading dimension changes. A run of
+ * partitions is hence a disjoint key range of the cuboid and can be scanned without touching the others.
+ */
+class PartitionedCuboidStore implements IGTStore, Closeable {
+
+    private final GTInfo info;
+    private final List<GridTable> partitions;
+    private final int[] partitionRows;
+
+    PartitionedCuboidStore(GTInfo info, List<GridTable> partitions, int[] partitionRows) {
+        if (partitions.size() != partitionRows.length)
+            throw new IllegalArgumentException(partitions.size() + " partitions but " + partitionRows.length + " row counts");
+        this.info = info;
+        this.partitions = ImmutableList.copyOf(partitions);
+        this.partitionRows = partitionRows;
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public int getPartitionRows(int i) {
+        return partitionRows[i];
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        return scan(scanRequest, 0, partitions.size());
+    }
+
+    /** Scan partitions [from, to) in order, one at a time. */
+    public IGTScanner scan(GTScanRequest scanRequest, int from, int to) throws IOException {
+        return new ConcatScanner(scanRequest, from, to);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (GridTable partition : partitions) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                if (first == null)
+                    first = e;
+            }
+        }
+        if (first != null)
+            throw first;
+    }
+
+    private class ConcatScanner implements IGTScanner {
+        final GTScanRequest req;
+        final int from;
+        final int to;
+        IGTScanner current;
+
+        ConcatScanner(GTScanRequest req, int from, int to) {
+            this.req = req;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new Iterator<GTRecord>() {
+                int next = from;
+                Iterator<GTRecord> it;
+
+                @Override
+                public boolean hasNext() {
+                    try {
+                        while (it == null || !it.hasNext()) {
+                            closeCurrent();
+                            if (next >= to)
+                                return false;
+                            current = partitions.get(next++).getStore().scan(req);
+                            it = current.iterator();
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Failed to scan partition " + (next - 1), e);
+                    }
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return it.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private void closeCurrent() throws IOException {
+            if (current != null) {
+                IGTScanner toClose = current;
+                current = null;
+                toClose.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeCurrent();
+        }
+    }
+}
@@ -85,4 +85,17 @@ public abstract class AbstractRowKeyEncoder implements java.io.Serializable {
     abstract public byte[] encode(Map<TblColRef, String> valueMap);
 
     abstract public byte[] encode(String[] values);
+
+    /**
+     * encode a block of rows, each row holds values in the order of cuboid columns
+     * @param valuesBlock
+     * @param count number of rows in block
+     */
+    public byte[][] encode(String[][] valuesBlock, int count) {
+        byte[][] result = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            result[i] = encode(valuesBlock[i]);
+        }
+        return result;
+    }
 }
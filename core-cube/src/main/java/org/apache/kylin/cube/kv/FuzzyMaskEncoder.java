@@ -84,4 +84,11 @@ public class FuzzyMaskEncoder extends RowKeyEncoder {
             Arrays.fill(outputValue, outputValueOffset, outputValueOffset + columnLen, RowConstants.BYTE_ZERO);
         }
     }
+
+    @Override
+    protected void fillColumnValues(TblColRef column, int columnLen, String[] valueStrs, int count, byte[][] outputValues, int outputValueOffset) {
+        for (int i = 0; i < count; i++) {
+            fillColumnValue(column, columnLen, valueStrs[i], outputValues[i], outputValueOffset);
+        }
+    }
 }
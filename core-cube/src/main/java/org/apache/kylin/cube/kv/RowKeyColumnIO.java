@@ -55,6 +55,22 @@ public class RowKeyColumnIO implements java.io.Serializable {
         dimEnc.encode(value, output, outputOffset);
     }
 
+    /**
+     * Write a block of values of the same column, a dictionary column is looked up in one batch.
+     * Null values of a non-dictionary column are skipped and left to the caller.
+     */
+    public void writeColumns(TblColRef col, String[] values, int count, int roundingFlag, byte defaultValue, byte[][] outputs, int outputOffset) {
+        DimensionEncoding dimEnc = dimEncMap.get(col);
+        if (dimEnc instanceof DictionaryDimEnc) {
+            ((DictionaryDimEnc) dimEnc).copy(roundingFlag, defaultValue).encode(values, count, outputs, outputOffset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (values[i] != null)
+                    dimEnc.encode(values[i], outputs[i], outputOffset);
+            }
+        }
+    }
+
     public String readColumnString(TblColRef col, byte[] bytes, int offset, int length) {
         DimensionEncoding dimEnc = dimEncMap.get(col);
         return dimEnc.decode(bytes, offset, length);
@@ -158,6 +158,36 @@ public class RowKeyEncoder extends AbstractRowKeyEncoder implements java.io.Seri
         return bytes;
     }
 
+    /**
+     * Encode column by column across the block, so a dictionary column is looked up once per block
+     * in sorted order, instead of once per row.
+     */
+    @Override
+    public byte[][] encode(String[][] valuesBlock, int count) {
+        byte[][] result = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            result[i] = new byte[this.getBytesLength()];
+        }
+
+        String[] colValues = new String[count];
+        int offset = getHeaderLength();
+        for (int c = 0; c < cuboid.getColumns().size(); c++) {
+            TblColRef column = cuboid.getColumns().get(c);
+            int colLength = colIO.getColumnLength(column);
+            for (int i = 0; i < count; i++) {
+                colValues[i] = valuesBlock[i][c];
+            }
+            fillColumnValues(column, colLength, colValues, count, result, offset);
+            offset += colLength;
+        }
+
+        //fill shard and cuboid
+        for (int i = 0; i < count; i++) {
+            fillHeader(result[i]);
+        }
+        return result;
+    }
+
     protected void fillHeader(byte[] bytes) {
         int offset = 0;
 
@@ -182,6 +212,17 @@ public class RowKeyEncoder extends AbstractRowKeyEncoder implements java.io.Seri
         colIO.writeColumn(column, valueStr, 0, this.blankByte, outputValue, outputValueOffset);
     }
 
+    protected void fillColumnValues(TblColRef column, int columnLen, String[] valueStrs, int count, byte[][] outputValues, int outputValueOffset) {
+        colIO.writeColumns(column, valueStrs, count, 0, this.blankByte, outputValues, outputValueOffset);
+
+        // special null value case, same as fillColumnValue()
+        for (int i = 0; i < count; i++) {
+            if (valueStrs[i] == null) {
+                Arrays.fill(outputValues[i], outputValueOffset, outputValueOffset + columnLen, defaultValue());
+            }
+        }
+    }
+
     protected byte defaultValue() {
         return this.blankByte;
     }
@@ -27,6 +27,7 @@ import java.util.Set;
 
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.metadata.filter.BitmapInTupleFilter;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
@@ -34,8 +35,10 @@ import org.apache.kylin.metadata.filter.FilterOptimizeTransformer;
 import org.apache.kylin.metadata.filter.IFilterCodeSystem;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilterSerializer;
+import org.apache.kylin.metadata.filter.UDF.MassInTupleFilter;
 import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.metadata.model.TblColRef;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.google.common.collect.Sets;
 
@@ -59,13 +62,22 @@ public class GTUtil {
 
     public static TupleFilter convertFilterUnevaluatable(TupleFilter rootFilter, GTInfo info, //
             Set<TblColRef> unevaluatableColumnCollector) {
-        return convertFilter(rootFilter, info, null, false, unevaluatableColumnCollector);
+        return convertFilter(rootFilter, info, null, false, unevaluatableColumnCollector, Integer.MAX_VALUE);
     }
 
     public static TupleFilter convertFilterColumnsAndConstants(TupleFilter rootFilter, GTInfo info, //
             List<TblColRef> colMapping, Set<TblColRef> unevaluatableColumnCollector) {
+        return convertFilterColumnsAndConstants(rootFilter, info, colMapping, unevaluatableColumnCollector, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param bitmapInThreshold IN / NOT IN / MASSIN having more codes than this become a {@link BitmapInTupleFilter},
+     *                          if the codes are fixed length and no longer than 4 bytes, e.g. dictionary IDs
+     */
+    public static TupleFilter convertFilterColumnsAndConstants(TupleFilter rootFilter, GTInfo info, //
+            List<TblColRef> colMapping, Set<TblColRef> unevaluatableColumnCollector, int bitmapInThreshold) {
         Map<TblColRef, Integer> map = colListToMap(colMapping);
-        TupleFilter filter = convertFilter(rootFilter, info, map, true, unevaluatableColumnCollector);
+        TupleFilter filter = convertFilter(rootFilter, info, map, true, unevaluatableColumnCollector, bitmapInThreshold);
 
         // optimize the filter: after translating with dictionary, some filters become determined
         // e.g.
@@ -87,12 +99,12 @@ public class GTUtil {
     // converts TblColRef to GridTable column, encode constants, drop unEvaluatable parts
     private static TupleFilter convertFilter(TupleFilter rootFilter, final GTInfo info, //
             final Map<TblColRef, Integer> colMapping, final boolean encodeConstants, //
-            final Set<TblColRef> unevaluatableColumnCollector) {
+            final Set<TblColRef> unevaluatableColumnCollector, int bitmapInThreshold) {
 
         IFilterCodeSystem<ByteArray> filterCodeSystem = wrap(info.codeSystem.getComparator());
 
         GTConvertDecorator decorator = new GTConvertDecorator(unevaluatableColumnCollector, colMapping, info,
-                encodeConstants);
+                encodeConstants, bitmapInThreshold);
 
         byte[] bytes = TupleFilterSerializer.serialize(rootFilter, decorator, filterCodeSystem);
         return TupleFilterSerializer.deserialize(bytes, filterCodeSystem);
@@ -131,13 +143,20 @@ public class GTUtil {
         protected final Map<TblColRef, Integer> colMapping;
         protected final GTInfo info;
         protected final boolean encodeConstants;
+        protected final int bitmapInThreshold;
 
         public GTConvertDecorator(Set<TblColRef> unevaluatableColumnCollector, Map<TblColRef, Integer> colMapping,
                 GTInfo info, boolean encodeConstants) {
+            this(unevaluatableColumnCollector, colMapping, info, encodeConstants, Integer.MAX_VALUE);
+        }
+
+        public GTConvertDecorator(Set<TblColRef> unevaluatableColumnCollector, Map<TblColRef, Integer> colMapping,
+                GTInfo info, boolean encodeConstants, int bitmapInThreshold) {
             this.unevaluatableColumnCollector = unevaluatableColumnCollector;
             this.colMapping = colMapping;
             this.info = info;
             this.encodeConstants = encodeConstants;
+            this.bitmapInThreshold = bitmapInThreshold;
             buf = ByteBuffer.allocate(info.getMaxColumnLength());
         }
 
@@ -178,6 +197,10 @@ public class GTUtil {
                 return encodeConstants((CompareTupleFilter) filter);
             }
 
+            if (encodeConstants && filter instanceof MassInTupleFilter && MassInTupleFilter.VALUE_PROVIDER_FACTORY != null) {
+                return encodeMassIn((MassInTupleFilter) filter);
+            }
+
             return filter;
         }
 
@@ -221,8 +244,11 @@ public class GTUtil {
                 if (newValues.isEmpty()) {
                     result = ConstantTupleFilter.FALSE;
                 } else {
-                    newCompareFilter.addChild(new ConstantTupleFilter(newValues));
-                    result = newCompareFilter;
+                    result = newValues.size() > bitmapInThreshold ? toBitmapIn(externalCol, newValues, false) : null;
+                    if (result == null) {
+                        newCompareFilter.addChild(new ConstantTupleFilter(newValues));
+                        result = newCompareFilter;
+                    }
                 }
                 break;
             case NOTIN:
@@ -235,8 +261,11 @@ public class GTUtil {
                 if (notInValues.isEmpty()) {
                     result = ConstantTupleFilter.TRUE;
                 } else {
-                    newCompareFilter.addChild(new ConstantTupleFilter(notInValues));
-                    result = newCompareFilter;
+                    result = notInValues.size() > bitmapInThreshold ? toBitmapIn(externalCol, notInValues, true) : null;
+                    if (result == null) {
+                        newCompareFilter.addChild(new ConstantTupleFilter(notInValues));
+                        result = newCompareFilter;
+                    }
                 }
                 break;
             case NEQ:
@@ -290,6 +319,46 @@ public class GTUtil {
             return result;
         }
 
+        /**
+         * MASSIN is evaluated on the values of the filter table, translate them to codes so that storage
+         * can evaluate it on the encoded row, instead of leaving it to the query engine.
+         */
+        protected TupleFilter encodeMassIn(MassInTupleFilter massIn) {
+            TblColRef externalCol = massIn.getColumn();
+            if (externalCol == null) {
+                return massIn;
+            }
+
+            int col = colMapping == null ? externalCol.getColumnDesc().getZeroBasedIndex() : mapCol(externalCol);
+            Set<ByteArray> codes = Sets.newHashSet();
+            for (Object value : massIn.getValues()) {
+                ByteArray code = translate(col, value, 0);
+                if (code != null)
+                    codes.add(code);
+            }
+
+            if (codes.isEmpty()) {
+                return massIn.isReverse() ? ConstantTupleFilter.TRUE : ConstantTupleFilter.FALSE;
+            }
+
+            TupleFilter result = toBitmapIn(externalCol, codes, massIn.isReverse());
+            if (result == null) {
+                // codes not fit in a bitmap, fall back to a plain IN on codes
+                CompareTupleFilter compareFilter = new CompareTupleFilter(massIn.isReverse() ? TupleFilter.FilterOperatorEnum.NOTIN : TupleFilter.FilterOperatorEnum.IN);
+                compareFilter.addChild(new ColumnTupleFilter(externalCol));
+                compareFilter.addChild(new ConstantTupleFilter(codes));
+                result = compareFilter;
+            }
+            return result;
+        }
+
+        protected TupleFilter toBitmapIn(TblColRef externalCol, Set<ByteArray> codes, boolean reverse) {
+            MutableRoaringBitmap ids = BitmapInTupleFilter.toBitmap(codes);
+            if (ids == null)
+                return null;
+            return new BitmapInTupleFilter(externalCol, codes.iterator().next().length(), ids, reverse);
+        }
+
         transient ByteBuffer buf;
 
         protected ByteArray translate(int col, Object value, int roundingFlag) {
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
@@ -40,6 +41,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -435,6 +437,36 @@ public class CubeManagerTest extends LocalFileMetadataTestCase {
 
     }
 
+    @Test
+    public void testLazyLoadConcurrently() throws Exception {
+        KylinConfig config = getTestConfig();
+        config.setProperty("kylin.metadata.lazy-cube-loading", "true");
+        CubeManager.clearCache();
+        final CubeManager mgr = CubeManager.getInstance(config);
+
+        final List<String> names = Lists.newArrayList();
+        for (String path : getStore().collectResourceRecursively(ResourceStore.CUBE_RESOURCE_ROOT, ".json")) {
+            names.add(path.substring(path.lastIndexOf('/') + 1, path.length() - ".json".length()));
+        }
+
+        // a get during the load of all cubes must still find its cube
+        final List<String> missing = Collections.synchronizedList(Lists.<String> newArrayList());
+        Thread getter = new Thread() {
+            @Override
+            public void run() {
+                for (String name : names) {
+                    if (mgr.getCube(name) == null)
+                        missing.add(name);
+                }
+            }
+        };
+        getter.start();
+        int all = mgr.listAllCubes().size();
+        getter.join();
+
+        assertTrue(missing.toString(), missing.isEmpty());
+        assertEquals(names.size(), all);
+    }
 
     public CubeDescManager getCubeDescManager() {
         return CubeDescManager.getInstance(getTestConfig());
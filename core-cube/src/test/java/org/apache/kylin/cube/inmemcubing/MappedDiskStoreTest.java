@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MappedDiskStoreTest extends LocalFileMetadataTestCase {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedDiskStoreTest.class);
+
+    final GTInfo info = UnitTestSupport.advancedInfo();
+    final List<GTRecord> data = UnitTestSupport.mockupData(info, 100000); // converts to about 3.4 MB data
+    // final List<GTRecord> data = UnitTestSupport.mockupData(info, 1000000); // converts to about 34 MB data
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testSingleThreadRead() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        verifyOneTableWriteAndRead(1);
+        long end = System.currentTimeMillis();
+        logger.info("Cost {} millis", end - start);
+    }
+
+    @Test
+    public void testMultiThreadRead() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        verifyOneTableWriteAndRead(5);
+        long end = System.currentTimeMillis();
+        logger.info("Cost {} millis", end - start);
+    }
+
+    @Test
+    public void testRebuildAndAppend() throws IOException {
+        MappedDiskStore store = new MappedDiskStore(info);
+        GridTable table = new GridTable(info, store);
+
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data.subList(0, 1000)) {
+            builder.write(r);
+        }
+        builder.close();
+
+        builder = table.append();
+        for (GTRecord r : data.subList(1000, data.size())) {
+            builder.write(r);
+        }
+        builder.close();
+
+        assertTrue(store.getBlockCount() > 1);
+        assertTrue(store.getStoredBytes() < store.getRawBytes());
+
+        IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+        int i = 0;
+        for (GTRecord r : scanner) {
+            assertEquals(data.get(i++), r);
+        }
+        scanner.close();
+        assertEquals(data.size(), i);
+
+        // rebuild discards previous content
+        builder = table.rebuild();
+        builder.write(data.get(0));
+        builder.close();
+        assertEquals(1, store.getBlockCount());
+
+        store.close();
+    }
+
+    private void verifyOneTableWriteAndRead(int readThreads) throws IOException, InterruptedException {
+        MappedDiskStore store = new MappedDiskStore(info);
+        GridTable table = new GridTable(info, store);
+        verifyWriteAndRead(table, readThreads);
+    }
+
+    private void verifyWriteAndRead(final GridTable table, int readThreads) throws IOException, InterruptedException {
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+
+        int nThreads = readThreads;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] t = new Thread[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+                        int i = 0;
+                        for (GTRecord r : scanner) {
+                            assertEquals(data.get(i++), r);
+                        }
+                        scanner.close();
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (int i = 0; i < nThreads; i++) {
+            t[i].join();
+        }
+        // an assertion failed in a reader thread never reaches JUnit by itself
+        if (failure.get() != null)
+            throw new AssertionError("Reader thread failed", failure.get());
+
+        ((MappedDiskStore) table.getStore()).close();
+    }
+}
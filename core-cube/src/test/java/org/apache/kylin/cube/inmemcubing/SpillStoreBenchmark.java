@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare the spill stores of in-mem cubing when memory budget is tight. Every store writes a parent cuboid
+ * once and then re-reads it several times with concurrent readers, like the child cuboid calculation does.
+ */
+@Ignore
+public class SpillStoreBenchmark extends LocalFileMetadataTestCase {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillStoreBenchmark.class);
+
+    final GTInfo info = UnitTestSupport.advancedInfo();
+    final List<GTRecord> data = UnitTestSupport.mockupData(info, 1000000); // converts to about 34 MB data
+
+    final int rounds = 5;
+    final int readThreads = 4;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void benchmarkUnderMemoryPressure() throws Exception {
+        // 4 MB budget for a 34 MB cuboid, most of MemDiskStore goes to disk
+        MemoryBudgetController budgetCtrl = new MemoryBudgetController(4);
+
+        runBenchmark("MemDiskStore", new MemDiskStore(info, budgetCtrl));
+        runBenchmark("ConcurrentDiskStore", new ConcurrentDiskStore(info));
+        runBenchmark("MappedDiskStore", new MappedDiskStore(info));
+    }
+
+    private void runBenchmark(final String name, IGTStore store) throws Exception {
+        final GridTable table = new GridTable(info, store);
+
+        long heapBefore = usedHeap();
+        long t = System.currentTimeMillis();
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+        long writeTime = System.currentTimeMillis() - t;
+        long heapAfterWrite = usedHeap() - heapBefore;
+
+        t = System.currentTimeMillis();
+        for (int round = 0; round < rounds; round++) {
+            Thread[] threads = new Thread[readThreads];
+            for (int i = 0; i < readThreads; i++) {
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            scanAll(table);
+                        } catch (IOException ex) {
+                            logger.error("Failed to scan " + name, ex);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        long readTime = System.currentTimeMillis() - t;
+
+        logger.info("{}: write {} ms, {}x{} reads {} ms, retained heap ~{} MB", name, writeTime, rounds, readThreads, readTime, heapAfterWrite / MemoryBudgetController.ONE_MB);
+        if (store instanceof MappedDiskStore) {
+            MappedDiskStore mapped = (MappedDiskStore) store;
+            logger.info("{}: {} blocks, {} raw bytes stored as {} bytes", name, mapped.getBlockCount(), mapped.getRawBytes(), mapped.getStoredBytes());
+        }
+
+        ((Closeable) store).close();
+    }
+
+    private int scanAll(GridTable table) throws IOException {
+        IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+        int count = 0;
+        for (GTRecord r : scanner) {
+            if (r != null)
+                count++;
+        }
+        scanner.close();
+        return count;
+    }
+
+    private long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
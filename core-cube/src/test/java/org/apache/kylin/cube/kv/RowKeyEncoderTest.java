@@ -77,6 +77,26 @@ public class RowKeyEncoderTest extends LocalFileMetadataTestCase {
         assertArrayEquals(new byte[] { 11, 55, -13, 13, 22, 34, 121, 70, 80, 45, 71, 84, 67, 9, 9, 9, 9, 9, 9, 0, 10, 5 }, rest);
     }
 
+    @Test
+    public void testEncodeBlock() throws Exception {
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("TEST_KYLIN_CUBE_WITHOUT_SLR_READY");
+        CubeDesc cubeDesc = cube.getDescriptor();
+        String[] data = new String[] { "2012-12-15", "11848", "Health & Beauty", "Fragrances", "Women", "FP-GTC", "0", "15" };
+        String[] nulls = new String[data.length];
+
+        long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+        Cuboid baseCuboid = Cuboid.findForMandatory(cubeDesc, baseCuboidId);
+        RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(cube.getFirstSegment(), baseCuboid);
+
+        // the block path of the base cuboid mapper must give the same keys as row by row
+        String[][] block = new String[][] { data, nulls, data, nulls, data };
+        byte[][] encodedKeys = rowKeyEncoder.encode(block, block.length);
+        assertEquals(block.length, encodedKeys.length);
+        for (int i = 0; i < block.length; i++) {
+            assertArrayEquals(rowKeyEncoder.encode(block[i]), encodedKeys[i]);
+        }
+    }
+
     @Ignore
     @Test
     public void testEncodeWithSlr() throws Exception {
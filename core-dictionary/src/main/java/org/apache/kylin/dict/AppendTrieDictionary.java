@@ -21,33 +21,28 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.dict.global.AppendDictSlice;
+import org.apache.kylin.dict.global.AppendDictSliceCache;
 import org.apache.kylin.dict.global.AppendDictSliceKey;
 import org.apache.kylin.dict.global.GlobalDictHDFSStore;
 import org.apache.kylin.dict.global.GlobalDictMetadata;
 import org.apache.kylin.dict.global.GlobalDictStore;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 
 /**
  * A dictionary based on Trie data structure that maps enumerations of byte[] to
  * int IDs, used for global dictionary.
  * <p>
- * Trie data is split into sub trees, called {@link AppendDictSlice}.
+ * Trie data is split into sub trees, called {@link AppendDictSlice}. The slices are loaded on demand into
+ * the {@link AppendDictSliceCache} shared by all dictionaries, a lookup batch loading its slices in parallel.
  * <p>
  * With Trie the memory footprint of the mapping is kinda minimized at the cost
  * CPU, if compared to HashMap of ID Arrays. Performance test shows Trie is
@@ -64,15 +59,16 @@ import com.google.common.cache.RemovalNotification;
 public class AppendTrieDictionary<T> extends CacheDictionary<T> {
     public static final byte[] HEAD_MAGIC = new byte[] { 0x41, 0x70, 0x70, 0x65, 0x63, 0x64, 0x54, 0x72, 0x69, 0x65, 0x44, 0x69, 0x63, 0x74 }; // "AppendTrieDict"
     public static final int HEAD_SIZE_I = HEAD_MAGIC.length;
-    private static final Logger logger = LoggerFactory.getLogger(AppendTrieDictionary.class);
 
     transient private String baseDir;
     transient private GlobalDictMetadata metadata;
-    transient private LoadingCache<AppendDictSliceKey, AppendDictSlice> dictCache;
+    transient private GlobalDictStore store;
+    transient private String versionDir;
+    transient private AppendDictSliceCache sliceCache;
 
     public void init(String baseDir) throws IOException {
         this.baseDir = baseDir;
-        final GlobalDictStore globalDictStore = new GlobalDictHDFSStore(baseDir);
+        GlobalDictStore globalDictStore = new GlobalDictHDFSStore(baseDir);
         Long[] versions = globalDictStore.listAllVersions();
 
         if (versions.length == 0) {
@@ -80,39 +76,87 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
             return; // for the removed SegmentAppendTrieDictBuilder
         }
 
-        final long latestVersion = versions[versions.length - 1];
-        final Path latestVersionPath = globalDictStore.getVersionDir(latestVersion);
+        long latestVersion = versions[versions.length - 1];
+        Path latestVersionPath = globalDictStore.getVersionDir(latestVersion);
         this.metadata = globalDictStore.getMetadata(latestVersion);
         this.bytesConvert = metadata.bytesConverter;
-        this.dictCache = CacheBuilder.newBuilder().softValues().removalListener(new RemovalListener<AppendDictSliceKey, AppendDictSlice>() {
-            @Override
-            public void onRemoval(RemovalNotification<AppendDictSliceKey, AppendDictSlice> notification) {
-                logger.info("Evict slice with key {} and value {} caused by {}, size {}/{}", notification.getKey(), notification.getValue(), notification.getCause(), dictCache.size(), metadata.sliceFileMap.size());
-            }
-        }).build(new CacheLoader<AppendDictSliceKey, AppendDictSlice>() {
-            @Override
-            public AppendDictSlice load(AppendDictSliceKey key) throws Exception {
-                AppendDictSlice slice = globalDictStore.readSlice(latestVersionPath.toString(), metadata.sliceFileMap.get(key));
-                logger.trace("Load slice with key {} and value {}", key, slice);
-                return slice;
-            }
-        });
+        this.store = globalDictStore;
+        this.versionDir = latestVersionPath.toString();
+        this.sliceCache = AppendDictSliceCache.getInstance(globalDictStore.getConfig());
     }
 
     @Override
     public int getIdFromValueBytesWithoutCache(byte[] value, int offset, int len, int roundingFlag) {
         byte[] val = Arrays.copyOfRange(value, offset, offset + len);
-        AppendDictSliceKey sliceKey = metadata.sliceFileMap.floorKey(AppendDictSliceKey.wrap(val));
+        AppendDictSliceKey sliceKey = floorSliceKey(AppendDictSliceKey.wrap(val));
+        AppendDictSlice slice = getSlice(sliceKey);
+        return slice.getIdFromValueBytesImpl(value, offset, len, roundingFlag);
+    }
+
+    private AppendDictSliceKey floorSliceKey(AppendDictSliceKey valueKey) {
+        AppendDictSliceKey sliceKey = metadata.sliceFileMap.floorKey(valueKey);
         if (sliceKey == null) {
             sliceKey = metadata.sliceFileMap.firstKey();
         }
-        AppendDictSlice slice;
+        return sliceKey;
+    }
+
+    private AppendDictSlice getSlice(AppendDictSliceKey sliceKey) {
         try {
-            slice = dictCache.get(sliceKey);
-        } catch (ExecutionException e) {
-            throw new RuntimeException("Failed to load slice with key " + sliceKey, e.getCause());
+            return sliceCache.get(store, versionDir, metadata.sliceFileMap.get(sliceKey));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load slice with key " + sliceKey, e);
         }
-        return slice.getIdFromValueBytesImpl(value, offset, len, roundingFlag);
+    }
+
+    /**
+     * Sorted values fall into the slices in order, so a slice is fetched from cache once per run of values
+     * instead of once per value. The slices of the batch are loaded in parallel ahead of the lookups.
+     */
+    @Override
+    protected void getIdsFromSortedValueBytes(byte[][] sortedValues, int count, int roundingFlag, int[] sortedIds) {
+        prefetchSlices(sortedValues, count);
+
+        AppendDictSliceKey sliceKey = null;
+        AppendDictSliceKey nextSliceKey = null;
+        AppendDictSlice slice = null;
+        for (int i = 0; i < count; i++) {
+            byte[] value = sortedValues[i];
+            if (i > 0 && Arrays.equals(value, sortedValues[i - 1])) {
+                sortedIds[i] = sortedIds[i - 1];
+                continue;
+            }
+            AppendDictSliceKey valueKey = AppendDictSliceKey.wrap(value);
+            if (slice == null || (nextSliceKey != null && valueKey.compareTo(nextSliceKey) >= 0)) {
+                sliceKey = floorSliceKey(valueKey);
+                nextSliceKey = metadata.sliceFileMap.higherKey(sliceKey);
+                slice = getSlice(sliceKey);
+            }
+            try {
+                sortedIds[i] = slice.getIdFromValueBytesImpl(value, 0, value.length, roundingFlag);
+            } catch (IllegalArgumentException e) {
+                sortedIds[i] = -1;
+            }
+        }
+    }
+
+    private void prefetchSlices(byte[][] sortedValues, int count) {
+        if (count <= 1 || metadata.sliceFileMap.size() <= 1)
+            return;
+
+        List<String> sliceFiles = new ArrayList<>();
+        AppendDictSliceKey nextSliceKey = null;
+        for (int i = 0; i < count; i++) {
+            AppendDictSliceKey valueKey = AppendDictSliceKey.wrap(sortedValues[i]);
+            if (sliceFiles.isEmpty() || valueKey.compareTo(nextSliceKey) >= 0) {
+                AppendDictSliceKey sliceKey = floorSliceKey(valueKey);
+                sliceFiles.add(metadata.sliceFileMap.get(sliceKey));
+                nextSliceKey = metadata.sliceFileMap.higherKey(sliceKey);
+                if (nextSliceKey == null) // the rest are in the last slice
+                    break;
+            }
+        }
+        sliceCache.prefetch(store, versionDir, sliceFiles);
     }
 
     @Override
@@ -18,9 +18,13 @@
 
 package org.apache.kylin.dict;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
 
 import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -61,6 +65,67 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
         return getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
     }
 
+    //values --> ids, in batch
+    @Override
+    public BitSet getIdsFromValues(T[] values, int count, int roundingFlag, int[] ids) {
+        final byte[][] valueBytes = new byte[count][];
+        Integer[] order = new Integer[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (isNullObjectForm(values[i])) {
+                ids[i] = nullId();
+            } else {
+                valueBytes[i] = bytesConvert.convertToBytes(values[i]);
+                order[n++] = i;
+            }
+        }
+
+        // look up in ascending byte order, the same order as trie and IDs
+        Arrays.sort(order, 0, n, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Bytes.compareTo(valueBytes[a], valueBytes[b]);
+            }
+        });
+        byte[][] sortedValues = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = valueBytes[order[i]];
+        }
+        int[] sortedIds = new int[n];
+        getIdsFromSortedValueBytes(sortedValues, n, roundingFlag, sortedIds);
+
+        BitSet notFound = new BitSet();
+        for (int i = 0; i < n; i++) {
+            if (sortedIds[i] == -1)
+                notFound.set(order[i]);
+            else
+                ids[order[i]] = sortedIds[i];
+        }
+        return notFound;
+    }
+
+    /**
+     * Look up values sorted in ascending order, -1 for a value not found. A run of duplicated values
+     * is looked up once. Sub-classes can override to walk their trees or slices in one pass.
+     */
+    protected void getIdsFromSortedValueBytes(byte[][] sortedValues, int count, int roundingFlag, int[] sortedIds) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && Bytes.equals(sortedValues[i], sortedValues[i - 1])) {
+                sortedIds[i] = sortedIds[i - 1];
+                continue;
+            }
+            sortedIds[i] = lookupIdQuietly(sortedValues[i], roundingFlag);
+        }
+    }
+
+    protected int lookupIdQuietly(byte[] valueBytes, int roundingFlag) {
+        try {
+            return getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
     //id --> value
     @Override
     protected final T getValueFromIdImpl(int id) {
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.dict;
 
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -60,6 +61,38 @@ public class DictionaryGenerator {
         return builder;
     }
 
+    /**
+     * Returns a builder for values coming in ascending order, like reducer input or SortedColumnDFSFile.
+     * With forest trie enabled, string and number values are built in one streaming pass with bounded memory.
+     */
+    public static IDictionaryBuilder newSortedDictionaryBuilder(DataType dataType) {
+        Preconditions.checkNotNull(dataType, "dataType cannot be null");
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        if (dataType.isDateTimeFamily() || !config.isUseForestTrieDictionary() || !config.isUseStreamingForestTrieDictionary())
+            return newDictionaryBuilder(dataType);
+
+        if (dataType.isNumberFamily())
+            return new NumberTrieDictStreamingBuilder();
+        else
+            return new StringTrieDictStreamingBuilder();
+    }
+
+    /**
+     * Build the dictionary of given builder and write it with its class name ahead. A streaming forest is copied
+     * from its spill file without being loaded, other dictionaries are built and serialized.
+     */
+    public static void writeDictionary(IDictionaryBuilder builder, DataOutput out) throws IOException {
+        if (builder instanceof TrieDictStreamingBuilder) {
+            out.writeUTF(TrieDictionaryForest.class.getName());
+            ((TrieDictStreamingBuilder) builder).writeTo(out);
+        } else {
+            Dictionary<String> dict = builder.build();
+            out.writeUTF(dict.getClass().getName());
+            dict.write(out);
+        }
+    }
+
     public static Dictionary<String> buildDictionary(DataType dataType, IDictionaryValueEnumerator valueEnumerator)
             throws IOException {
         return buildDictionary(newDictionaryBuilder(dataType), null, valueEnumerator);
@@ -221,6 +254,44 @@ public class DictionaryGenerator {
         }
     }
 
+    private static abstract class TrieDictStreamingBuilder implements IDictionaryBuilder {
+        StreamingTrieDictionaryForestBuilder builder;
+
+        @Override
+        public Dictionary<String> build() throws IOException {
+            try {
+                return builder.build();
+            } finally {
+                builder.close();
+            }
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            try {
+                builder.writeTo(out);
+            } finally {
+                builder.close();
+            }
+        }
+    }
+
+    private static class StringTrieDictStreamingBuilder extends TrieDictStreamingBuilder {
+
+        @Override
+        public void init(DictionaryInfo info, int baseId, String hdfsDir) throws IOException {
+            builder = new StreamingTrieDictionaryForestBuilder(new StringBytesConverter(), baseId);
+        }
+
+        @Override
+        public boolean addValue(String value) {
+            if (value == null)
+                return false;
+
+            builder.addValue(value);
+            return true;
+        }
+    }
+
     @SuppressWarnings("deprecation")
     private static class NumberTrieDictBuilder implements IDictionaryBuilder {
         int baseId;
@@ -270,4 +341,21 @@ public class DictionaryGenerator {
         }
     }
 
+    private static class NumberTrieDictStreamingBuilder extends TrieDictStreamingBuilder {
+
+        @Override
+        public void init(DictionaryInfo info, int baseId, String hdfsDir) throws IOException {
+            builder = new StreamingTrieDictionaryForestBuilder(new Number2BytesConverter(Number2BytesConverter.MAX_DIGITS_BEFORE_DECIMAL_POINT), baseId);
+        }
+
+        @Override
+        public boolean addValue(String value) {
+            if (StringUtils.isBlank(value)) // empty string is treated as null
+                return false;
+
+            builder.addValue(value);
+            return true;
+        }
+    }
+
 }
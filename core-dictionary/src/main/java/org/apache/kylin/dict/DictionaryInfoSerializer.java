@@ -21,8 +21,10 @@ package org.apache.kylin.dict;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.kylin.common.persistence.Serializer;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.JsonUtil;
@@ -61,20 +63,46 @@ public class DictionaryInfoSerializer implements Serializer<DictionaryInfo> {
         DictionaryInfo obj = JsonUtil.readValue(json, DictionaryInfo.class);
 
         if (infoOnly == false) {
-            Dictionary<String> dict;
-            try {
-                dict = (Dictionary<String>) ClassUtil.forName(obj.getDictionaryClass(), Dictionary.class).newInstance();
-            } catch (InstantiationException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
-            }
+            Dictionary<String> dict = newDictionary(obj);
             dict.readFields(in);
             obj.setDictionaryObject(dict);
         }
         return obj;
     }
 
+    /**
+     * Deserializes at the buffer position. A TrieDictionary or TrieDictionaryForest is read in place and looked
+     * up on the buffer, e.g. a direct buffer or a mapped file, without copying the trie to heap.
+     */
+    public DictionaryInfo deserialize(ByteBuffer in) throws IOException {
+        // DataInputStream reads exactly the bytes of the UTF, leaving the buffer at the dictionary
+        DataInputStream din = new DataInputStream(new ByteBufferBackedInputStream(in));
+        String json = din.readUTF();
+        DictionaryInfo obj = JsonUtil.readValue(json, DictionaryInfo.class);
+
+        if (infoOnly == false) {
+            Dictionary<String> dict = newDictionary(obj);
+            if (dict instanceof TrieDictionary)
+                ((TrieDictionary<String>) dict).readFields(in);
+            else if (dict instanceof TrieDictionaryForest)
+                ((TrieDictionaryForest<String>) dict).readFields(in);
+            else
+                dict.readFields(din);
+            obj.setDictionaryObject(dict);
+        }
+        return obj;
+    }
+
+    private static Dictionary<String> newDictionary(DictionaryInfo info) {
+        try {
+            return (Dictionary<String>) ClassUtil.forName(info.getDictionaryClass(), Dictionary.class).newInstance();
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 }
@@ -20,16 +20,27 @@ package org.apache.kylin.dict;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
+import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.common.util.Dictionary;
@@ -42,11 +53,14 @@ import org.apache.kylin.source.IReadableTable.TableSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
 
 public class DictionaryManager {
@@ -54,6 +68,8 @@ public class DictionaryManager {
     private static final Logger logger = LoggerFactory.getLogger(DictionaryManager.class);
 
     private static final DictionaryInfo NONE_INDICATOR = new DictionaryInfo();
+    private static final CachedDict NONE_CACHED = new CachedDict(NONE_INDICATOR, 1);
+    private static final String METRICS_PREFIX = "metrics:name=dict_cache,stat=";
 
     // static cached instances
     private static final ConcurrentMap<KylinConfig, DictionaryManager> CACHE = new ConcurrentHashMap<KylinConfig, DictionaryManager>();
@@ -82,30 +98,59 @@ public class DictionaryManager {
     // ============================================================================
 
     private KylinConfig config;
-    private LoadingCache<String, DictionaryInfo> dictCache; // resource
+    private LoadingCache<String, CachedDict> dictCache; // resource
+    private DictionaryOffHeapTier offHeapTier; // null if disabled
+    private long maxEntryBytes; // the larger are not cached
+    private final AtomicLong oversizeCount = new AtomicLong();
 
     private DictionaryManager(KylinConfig config) {
         this.config = config;
+
+        long cacheBytes = config.getCachedDictMaxMB() * 1024 * 1024;
+        if (cacheBytes <= 0)
+            cacheBytes = Runtime.getRuntime().maxMemory() / 10;
+        final long maxBytes = cacheBytes;
+        long entryBytes = config.getCachedDictMaxEntryMB() * 1024 * 1024;
+        if (entryBytes <= 0)
+            entryBytes = Runtime.getRuntime().maxMemory() / 4;
+        this.maxEntryBytes = Math.max(maxBytes, entryBytes);
+        long offHeapBytes = config.getCachedDictOffHeapMaxMB() * 1024 * 1024;
+        if (offHeapBytes > 0)
+            this.offHeapTier = new DictionaryOffHeapTier(offHeapBytes);
+        logger.info("Dictionary cache of {} MB in heap, {} MB off heap", maxBytes / 1024 / 1024,
+                offHeapBytes / 1024 / 1024);
+
         this.dictCache = CacheBuilder.newBuilder()//
-                .softValues()//
-                .removalListener(new RemovalListener<String, DictionaryInfo>() {
+                .concurrencyLevel(1)// the weight is bounded per segment, one segment to hold the large dicts
+                .maximumWeight(maxBytes)//
+                .weigher(new Weigher<String, CachedDict>() {
+                    @Override
+                    public int weigh(String key, CachedDict value) {
+                        // an admitted dict above the cache size takes the whole cache, a larger is evicted at once
+                        return value.weight <= maxEntryBytes ? (int) Math.min(value.weight, maxBytes) : value.weight;
+                    }
+                })//
+                .removalListener(new RemovalListener<String, CachedDict>() {
                     @Override
-                    public void onRemoval(RemovalNotification<String, DictionaryInfo> notification) {
+                    public void onRemoval(RemovalNotification<String, CachedDict> notification) {
                         DictionaryManager.logger.info("Dict with resource path " + notification.getKey() + " is removed due to " + notification.getCause());
+                        if (notification.wasEvicted())
+                            keepOffHeap(notification.getKey(), notification.getValue());
+                        else if (offHeapTier != null)
+                            offHeapTier.unpin(notification.getKey());
                     }
                 })//
-                .maximumSize(config.getCachedDictMaxEntrySize())//
-                .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, DictionaryInfo>() {
+                .recordStats()//
+                .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, CachedDict>() {
                     @Override
-                    public DictionaryInfo load(String key) throws Exception {
-                        DictionaryInfo dictInfo = DictionaryManager.this.load(key, true);
-                        if (dictInfo == null) {
-                            return NONE_INDICATOR;
-                        } else {
-                            return dictInfo;
-                        }
+                    public CachedDict load(String key) throws Exception {
+                        return loadCached(key);
                     }
                 });
+
+        if (config.getQueryMetrics2Enabled()) {
+            registerMetrics();
+        }
     }
 
     public Dictionary<String> getDictionary(String resourcePath) throws IOException {
@@ -119,7 +164,7 @@ public class DictionaryManager {
             if (resourcePath == null) {
                 return NONE_INDICATOR;
             }
-            DictionaryInfo result = dictCache.get(resourcePath);
+            DictionaryInfo result = dictCache.get(resourcePath).info;
             if (result == NONE_INDICATOR) {
                 return null;
             } else {
@@ -208,8 +253,8 @@ public class DictionaryManager {
 
     private DictionaryInfo saveNewDict(DictionaryInfo newDictInfo) throws IOException {
 
-        save(newDictInfo);
-        dictCache.put(newDictInfo.getResourcePath(), newDictInfo);
+        int size = save(newDictInfo);
+        dictCache.put(newDictInfo.getResourcePath(), newCachedDict(newDictInfo, size));
 
         return newDictInfo;
     }
@@ -383,6 +428,8 @@ public class DictionaryManager {
         ResourceStore store = DataModelManager.getInstance(config).getStore();
         store.deleteResource(resourcePath);
         dictCache.invalidate(resourcePath);
+        if (offHeapTier != null)
+            offHeapTier.remove(resourcePath);
     }
 
     public void removeDictionaries(String srcTable, String srcCol) throws IOException {
@@ -399,20 +446,242 @@ public class DictionaryManager {
             removeDictionary(existing);
     }
 
-    void save(DictionaryInfo dict) throws IOException {
+    /**
+     * Returns the serialized size.
+     */
+    int save(DictionaryInfo dict) throws IOException {
         ResourceStore store = DataModelManager.getInstance(config).getStore();
         String path = dict.getResourcePath();
         logger.info("Saving dictionary at " + path);
 
+        byte[] bytes = serialize(dict);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+        store.putResource(path, inputStream, System.currentTimeMillis());
+        inputStream.close();
+        return bytes.length;
+    }
+
+    private static byte[] serialize(DictionaryInfo dict) throws IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
         DataOutputStream dout = new DataOutputStream(buf);
         DictionaryInfoSerializer.FULL_SERIALIZER.serialize(dict, dout);
         dout.close();
         buf.close();
+        return buf.toByteArray();
+    }
 
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(buf.toByteArray());
-        store.putResource(path, inputStream, System.currentTimeMillis());
-        inputStream.close();
+    private CachedDict loadCached(String resourcePath) throws IOException {
+        long start = System.currentTimeMillis();
+        DictionaryInfo info = null;
+        int size = 0;
+        String from;
+
+        ByteBuffer kept = offHeapTier == null ? null : offHeapTier.get(resourcePath);
+        if (kept != null) {
+            size = kept.remaining();
+            // looked up on the direct buffer, which stays pinned in the tier, not copied back to heap
+            try {
+                info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(kept);
+            } catch (IOException | RuntimeException e) {
+                offHeapTier.unpin(resourcePath);
+                throw e;
+            }
+            Dictionary<String> dict = info.getDictionaryObject();
+            if (dict instanceof CacheDictionary)
+                ((CacheDictionary<String>) dict).enableCache();
+            from = "off heap";
+        } else {
+            from = "from store";
+            MappedDictionaryFile local = copyToLocalFile(resourcePath);
+            if (local != null) {
+                try {
+                    info = local.open();
+                    size = (int) local.getFile().length();
+                    from = "mapped from " + local.getFile();
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Failed to open " + local + ", reload dictionary from store", e);
+                    local.delete();
+                    info = null;
+                }
+            }
+            if (info == null) {
+                ResourceStore store = DataModelManager.getInstance(config).getStore();
+                logger.info("DictionaryManager(" + System.identityHashCode(this) + ") loading DictionaryInfo at " + resourcePath);
+                RawResource raw = store.getResource(resourcePath);
+                if (raw == null)
+                    return NONE_CACHED;
+
+                CountingInputStream in = new CountingInputStream(raw.inputStream);
+                info = deserialize(in);
+                size = (int) in.getByteCount();
+                info.setLastModified(raw.timestamp);
+            }
+        }
+
+        long took = System.currentTimeMillis() - start;
+        logger.info("Loaded dictionary of {} bytes {} in {} ms", size, from, took);
+        if (config.getQueryMetrics2Enabled()) {
+            Metrics metrics = MetricsFactory.getInstance();
+            if (metrics != null)
+                metrics.updateTimer(METRICS_PREFIX + "load", took, TimeUnit.MILLISECONDS);
+        }
+        return newCachedDict(info, size);
+    }
+
+    /**
+     * Returns the local copy of the dictionary resource if kylin.dictionary.local-cache-dir is set, copying the
+     * resource there the first time. Null if disabled, the resource is gone or the copy failed.
+     */
+    private MappedDictionaryFile copyToLocalFile(String resourcePath) {
+        String cacheDir = config.getDictionaryLocalCacheDir();
+        if (StringUtils.isBlank(cacheDir))
+            return null;
+
+        try {
+            ResourceStore store = DataModelManager.getInstance(config).getStore();
+            long ts = store.getResourceTimestamp(resourcePath);
+            if (ts == 0)
+                return null;
+
+            MappedDictionaryFile local = new MappedDictionaryFile(cacheDir, resourcePath, ts);
+            if (!local.exists()) {
+                RawResource raw = store.getResource(resourcePath);
+                if (raw == null)
+                    return null;
+                local = new MappedDictionaryFile(cacheDir, resourcePath, raw.timestamp);
+                try {
+                    local.write(raw.inputStream);
+                } finally {
+                    IOUtils.closeQuietly(raw.inputStream);
+                }
+                logger.info("Copied dictionary " + resourcePath + " to " + local.getFile());
+            }
+            return local;
+        } catch (IOException e) {
+            logger.warn("Failed to copy dictionary " + resourcePath + " to " + cacheDir, e);
+            return null;
+        }
+    }
+
+    private CachedDict newCachedDict(DictionaryInfo info, int size) {
+        if (size > maxEntryBytes) {
+            oversizeCount.incrementAndGet();
+            logger.warn("Dictionary {} of {} bytes is larger than {} bytes, not cached and read again on every use",
+                    info.getResourcePath(), size, maxEntryBytes);
+        }
+        return new CachedDict(info, size);
+    }
+
+    private static DictionaryInfo deserialize(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        try {
+            return DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(din);
+        } finally {
+            IOUtils.closeQuietly(din);
+        }
+    }
+
+    private void keepOffHeap(String resourcePath, CachedDict evicted) {
+        if (offHeapTier == null || evicted == null || evicted == NONE_CACHED)
+            return;
+        if (StringUtils.isNotBlank(config.getDictionaryLocalCacheDir()))
+            return; // mapped again from the local file
+        if (offHeapTier.contains(resourcePath)) {
+            // restored from the tier, no longer looked up from heap
+            offHeapTier.unpin(resourcePath);
+            return;
+        }
+
+        try {
+            offHeapTier.put(resourcePath, serialize(evicted.info));
+        } catch (Exception e) {
+            logger.warn("Failed to keep dictionary " + resourcePath + " off heap", e);
+        }
+    }
+
+    private void registerMetrics() {
+        Metrics metrics = MetricsFactory.getInstance();
+        if (metrics == null)
+            return;
+
+        metrics.addGauge(METRICS_PREFIX + "hit_rate", new MetricsVariable<Double>() {
+            @Override
+            public Double getValue() {
+                return dictCache.stats().hitRate();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "hits", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return dictCache.stats().hitCount();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "misses", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return dictCache.stats().missCount();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "evictions", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return dictCache.stats().evictionCount();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "avg_load_ms", new MetricsVariable<Double>() {
+            @Override
+            public Double getValue() {
+                return dictCache.stats().averageLoadPenalty() / 1000000;
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "oversize", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return oversizeCount.get();
+            }
+        });
+        if (offHeapTier != null) {
+            metrics.addGauge(METRICS_PREFIX + "off_heap_hits", new MetricsVariable<Long>() {
+                @Override
+                public Long getValue() {
+                    return offHeapTier.getHitCount();
+                }
+            });
+            metrics.addGauge(METRICS_PREFIX + "off_heap_bytes", new MetricsVariable<Long>() {
+                @Override
+                public Long getValue() {
+                    return offHeapTier.getUsedBytes();
+                }
+            });
+        }
+    }
+
+    @VisibleForTesting
+    CacheStats getCacheStats() {
+        return dictCache.stats();
+    }
+
+    @VisibleForTesting
+    long getOversizeCount() {
+        return oversizeCount.get();
+    }
+
+    @VisibleForTesting
+    DictionaryOffHeapTier getOffHeapTier() {
+        return offHeapTier;
+    }
+
+    /**
+     * A cached DictionaryInfo weighted by its serialized size.
+     */
+    private static class CachedDict {
+        private final DictionaryInfo info;
+        private final int weight;
+
+        CachedDict(DictionaryInfo info, int weight) {
+            this.info = info;
+            this.weight = weight;
+        }
     }
 
     DictionaryInfo load(String resourcePath, boolean loadDictObj) throws IOException {
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Sets;
+
+/**
+ * The serialized dictionaries evicted from the heap cache of DictionaryManager, kept in direct buffers in LRU
+ * order up to a total size. The memory of a dropped buffer is released when the buffer is collected.
+ * <p>
+ * A dictionary restored to the heap cache is looked up in place on its buffer, so the buffer is pinned until the
+ * dictionary leaves the heap cache again. A pinned buffer stays counted and is not dropped for space.
+ */
+class DictionaryOffHeapTier {
+
+    private final long maxBytes;
+    // resource path ==> the serialized DictionaryInfo, in access order
+    private final LinkedHashMap<String, ByteBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pinned = Sets.newHashSet();
+    private long usedBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    DictionaryOffHeapTier(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A read only view of the bytes, pinned until {@link #unpin(String)}, or null if not kept.
+     */
+    synchronized ByteBuffer get(String resourcePath) {
+        ByteBuffer buffer = buffers.get(resourcePath);
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        pinned.add(resourcePath);
+        return buffer.asReadOnlyBuffer();
+    }
+
+    synchronized void unpin(String resourcePath) {
+        pinned.remove(resourcePath);
+    }
+
+    synchronized boolean isPinned(String resourcePath) {
+        return pinned.contains(resourcePath);
+    }
+
+    synchronized boolean contains(String resourcePath) {
+        return buffers.containsKey(resourcePath);
+    }
+
+    synchronized void put(String resourcePath, byte[] bytes) {
+        // not to flush the whole tier for one dictionary
+        if (bytes.length > maxBytes / 4)
+            return;
+
+        remove(resourcePath);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        buffers.put(resourcePath, buffer);
+        usedBytes += bytes.length;
+
+        Iterator<Map.Entry<String, ByteBuffer>> iterator = buffers.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, ByteBuffer> entry = iterator.next();
+            if (pinned.contains(entry.getKey()))
+                continue;
+            usedBytes -= entry.getValue().capacity();
+            iterator.remove();
+        }
+    }
+
+    synchronized void remove(String resourcePath) {
+        pinned.remove(resourcePath);
+        ByteBuffer buffer = buffers.remove(resourcePath);
+        if (buffer != null)
+            usedBytes -= buffer.capacity();
+    }
+
+    synchronized void clear() {
+        buffers.clear();
+        pinned.clear();
+        usedBytes = 0;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+}
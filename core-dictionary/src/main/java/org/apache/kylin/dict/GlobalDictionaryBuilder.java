@@ -48,11 +48,7 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         lock.lock(getLockPath(sourceColumn), Long.MAX_VALUE);
 
         int maxEntriesPerSlice = KylinConfig.getInstanceFromEnv().getAppendDictEntrySize();
-        if (hdfsDir == null) {
-            //build in Kylin job server
-            hdfsDir = KylinConfig.getInstanceFromEnv().getHdfsWorkingDirectory();
-        }
-        String baseDir = hdfsDir + "resources/GlobalDict" + dictInfo.getResourceDir() + "/";
+        String baseDir = getBaseDir(dictInfo, hdfsDir);
 
         try {
             this.builder = new AppendTrieDictionaryBuilder(baseDir, maxEntriesPerSlice, true);
@@ -99,7 +95,25 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         return new AppendTrieDictionary<>();
     }
 
-    private String getLockPath(String pathName) {
+    /**
+     * The dir of the global dict of a column, under hdfsDir or the working dir of the job server if null.
+     */
+    public static String getBaseDir(DictionaryInfo dictInfo, String hdfsDir) {
+        if (hdfsDir == null) {
+            //build in Kylin job server
+            hdfsDir = KylinConfig.getInstanceFromEnv().getHdfsWorkingDirectory();
+        }
+        return hdfsDir + "resources/GlobalDict" + dictInfo.getResourceDir() + "/";
+    }
+
+    /**
+     * The lock a build of the global dict of a column holds, e.g. a parallel build from planning till commit.
+     */
+    public static String getLockPath(DictionaryInfo dictInfo) {
+        return getLockPath(dictInfo.getSourceTable() + "_" + dictInfo.getSourceColumn());
+    }
+
+    private static String getLockPath(String pathName) {
         return "/dict/" + pathName + "/lock";
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.Dictionary;
+
+/**
+ * A dictionary resource copied to a local file, memory-mapped for reading.
+ * <p>
+ * The file holds the resource bytes as is, i.e. the DictionaryInfo serialized by
+ * {@link DictionaryInfoSerializer#FULL_SERIALIZER}. Trie dictionaries are looked up in place on the mapping, see
+ * {@link TrieDictionary#readFields(java.nio.ByteBuffer)}, so loading one costs neither heap nor deserialization.
+ * The file name has the timestamp of the resource, so a rebuilt dictionary is copied again.
+ */
+public class MappedDictionaryFile {
+
+    private final File file;
+    private final long timestamp;
+
+    public MappedDictionaryFile(String cacheDir, String resourcePath, long timestamp) {
+        this.file = new File(cacheDir, resourcePath + "." + timestamp);
+        this.timestamp = timestamp;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Maps the file and reads the dictionary on the mapping.
+     */
+    @SuppressWarnings("unchecked")
+    public DictionaryInfo open() throws IOException {
+        if (file.length() > Integer.MAX_VALUE)
+            throw new IOException("Dictionary file larger than 2GB: " + file);
+
+        MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid after the channel is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+
+        DictionaryInfo info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(buffer);
+        info.setLastModified(timestamp);
+        Dictionary<String> dict = info.getDictionaryObject();
+        // looked up on the mapped file, with the value caches as a dictionary on heap
+        if (dict instanceof CacheDictionary)
+            ((CacheDictionary<String>) dict).enableCache();
+        return info;
+    }
+
+    /**
+     * Copies the resource content to the file, via a temp file and rename so a reader never sees a partial file.
+     * The copies of older versions of the resource are deleted.
+     */
+    public void write(InputStream in) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+            throw new IOException("Failed to create directory " + parent);
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        deleteStaleCopies();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            // lost a race with another writer of the same dictionary is fine
+            if (!file.exists())
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+
+    private void deleteStaleCopies() {
+        String name = file.getName();
+        final String prefix = name.substring(0, name.lastIndexOf('.') + 1);
+        File[] stale = file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && !name.endsWith(".tmp");
+            }
+        });
+        if (stale != null) {
+            for (File f : stale) {
+                // mapped buffers of the old file stay valid after delete
+                f.delete();
+            }
+        }
+    }
+
+    public void delete() {
+        file.delete();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDictionaryFile [" + file + "]";
+    }
+}
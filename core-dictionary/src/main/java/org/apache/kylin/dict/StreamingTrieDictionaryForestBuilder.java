@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Build a trie dictionary forest from values in ascending order in one streaming pass, with bounded memory.
+ * <p>
+ * Unlike TrieDictionaryForestBuilder which keeps every finished tree in heap, a finished tree is flattened
+ * and spilled to a local temp file right away, only the tree boundaries are kept. The serialized forest is
+ * then copied from the spill file by {@link #writeTo(DataOutput)}, in the same format as
+ * {@link TrieDictionaryForest#write(DataOutput)}, or looked up in place on the memory mapped spill file by
+ * {@link #build()}. Either way the heap never holds more than one tree under build, which is capped by
+ * kylin.dictionary.streaming-forest-trie-max-mb.
+ * <p>
+ * Like TrieDictionaryForestBuilder, the forest falls back to a single trie if values turn out unordered
+ * before the first tree is spilled.
+ */
+public class StreamingTrieDictionaryForestBuilder<T> implements Closeable {
+
+    public static int DEFAULT_MAX_TRIE_TREE_SIZE_MB = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingTrieDictionaryForestBuilder.class);
+
+    private final BytesConverter<T> bytesConverter;
+    private final int baseId;
+    private int maxTrieTreeSize;
+
+    private TrieDictionaryBuilder<T> trieBuilder;
+    private int curTreeSize = 0;
+    private ByteArray previousValue = null; //value use for remove duplicate
+    private boolean isOrdered = true;
+
+    private final ArrayList<ByteArray> valueDivide = new ArrayList<>();
+    private final ArrayList<Integer> accuOffset = new ArrayList<>();
+    private final ArrayList<Long> treeStarts = new ArrayList<>(); // tree positions in the spill file
+    private final ArrayList<Integer> treeLengths = new ArrayList<>();
+    private int curOffset = 0;
+    private long nValueBytes = 0;
+
+    private File spillFile;
+    private DataOutputStream spillOut;
+    private long spillBytes = 0;
+    private boolean finished = false;
+
+    public StreamingTrieDictionaryForestBuilder(BytesConverter<T> bytesConverter) {
+        this(bytesConverter, 0);
+    }
+
+    public StreamingTrieDictionaryForestBuilder(BytesConverter<T> bytesConverter, int baseId) {
+        this(bytesConverter, baseId, getMaxTrieSizeInMB());
+    }
+
+    public StreamingTrieDictionaryForestBuilder(BytesConverter<T> bytesConverter, int baseId, int maxTrieTreeSizeMB) {
+        this.bytesConverter = bytesConverter;
+        this.baseId = baseId;
+        this.maxTrieTreeSize = maxTrieTreeSizeMB * 1024 * 1024;
+        this.trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
+    }
+
+    public void addValue(T value) {
+        if (value == null)
+            return;
+        addValue(bytesConverter.convertToBytes(value));
+    }
+
+    private void addValue(byte[] valueBytes) {
+        if (finished)
+            throw new IllegalStateException("Builder is already finished");
+
+        ByteArray valueByteArray = new ByteArray(valueBytes);
+        if (previousValue != null && isOrdered) {
+            int comp = previousValue.compareTo(valueByteArray);
+            if (comp == 0) {
+                return; //duplicate value
+            }
+            if (comp > 0) {
+                logger.info("values not in ascending order, previous '{}', current '{}'", previousValue, valueByteArray);
+                isOrdered = false;
+                if (accuOffset.size() > 0) {
+                    throw new IllegalStateException("Invalid input data. Unordered data cannot be split into multi trees");
+                }
+            }
+        }
+        previousValue = valueByteArray;
+        trieBuilder.addValue(valueBytes);
+        curTreeSize += valueBytes.length;
+        nValueBytes += valueBytes.length;
+
+        if (curTreeSize >= maxTrieTreeSize && isOrdered) {
+            spillTree();
+        }
+    }
+
+    private void spillTree() {
+        byte[] trieBytes = trieBuilder.buildTrieBytes(0);
+        trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
+        curTreeSize = 0;
+
+        // a transient view of the flattened tree to get its boundary, same as TrieDictionaryForestBuilder.addTree()
+        TrieDictionary<T> tree = new TrieDictionary<T>(trieBytes);
+        byte[] minValue = tree.getValueBytesFromIdWithoutCache(tree.getMinId());
+        valueDivide.add(new ByteArray(minValue, 0, minValue.length));
+        accuOffset.add(curOffset);
+        curOffset += (tree.getMaxId() + 1);
+
+        try {
+            if (spillOut == null) {
+                spillFile = File.createTempFile("TrieDictionaryForest", ".spill");
+                spillFile.deleteOnExit();
+                spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+            }
+            treeStarts.add(spillBytes);
+            treeLengths.add(trieBytes.length);
+            spillOut.write(trieBytes);
+            spillBytes += trieBytes.length;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spill trie tree to " + spillFile, e);
+        }
+
+        logger.debug("Spilled trie tree " + accuOffset.size() + ", " + trieBytes.length + " bytes, accumulated values " + curOffset);
+    }
+
+    private void finish() throws IOException {
+        if (finished)
+            return;
+
+        if (trieBuilder.isHasValue()) { //last tree
+            spillTree();
+        }
+        trieBuilder = null;
+        if (spillOut != null) {
+            spillOut.close();
+        }
+        finished = true;
+
+        logger.info("Streaming trie forest finished, " + accuOffset.size() + " trees, " + curOffset + " values, " + nValueBytes + " value bytes");
+    }
+
+    /**
+     * Finish the forest and write it to given output, readable by {@link TrieDictionaryForest#readFields}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        finish();
+        TrieDictionaryForest.writeHead(out, baseId, bytesConverter, accuOffset, valueDivide, accuOffset.size());
+
+        if (spillFile == null)
+            return;
+
+        byte[] buf = new byte[64 * 1024];
+        InputStream in = new BufferedInputStream(new FileInputStream(spillFile));
+        try {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Finish the forest and load it as a dictionary. Each tree is mapped from the spill file and looked up
+     * in place, see {@link TrieDictionary#readFields(ByteBuffer)}, the mapping outlives the spill
+     * file deleted by {@link #close()}.
+     */
+    public TrieDictionaryForest<T> build() {
+        try {
+            finish();
+
+            ArrayList<TrieDictionary<T>> trees = new ArrayList<>(treeStarts.size());
+            if (spillFile != null) {
+                RandomAccessFile raf = new RandomAccessFile(spillFile, "r");
+                try {
+                    FileChannel channel = raf.getChannel();
+                    for (int i = 0; i < treeStarts.size(); i++) {
+                        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, treeStarts.get(i), treeLengths.get(i));
+                        TrieDictionary<T> tree = new TrieDictionary<T>();
+                        tree.readFields(buf);
+                        trees.add(tree);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(raf);
+                }
+            }
+            return new TrieDictionaryForest<T>(trees, valueDivide, accuOffset, bytesConverter, baseId);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(spillOut);
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    public int getTreeCount() {
+        return accuOffset.size();
+    }
+
+    public int getMaxTrieTreeSize() {
+        return maxTrieTreeSize;
+    }
+
+    void setMaxTrieTreeSize(int maxTrieTreeSize) {
+        this.maxTrieTreeSize = maxTrieTreeSize;
+        logger.info("maxTrieSize is set to:" + maxTrieTreeSize + "B");
+    }
+
+    public static int getMaxTrieSizeInMB() {
+        KylinConfig config = null;
+        try {
+            config = KylinConfig.getInstanceFromEnv();
+        } catch (RuntimeException e) {
+            logger.info("cannot get KylinConfig from env.Use default setting:" + DEFAULT_MAX_TRIE_TREE_SIZE_MB + "MB");
+        }
+        int maxTrieTreeSizeMB;
+        if (config != null) {
+            maxTrieTreeSizeMB = config.getTrieDictionaryForestStreamingMaxTrieSizeMB();
+        } else {
+            maxTrieTreeSizeMB = DEFAULT_MAX_TRIE_TREE_SIZE_MB;
+        }
+        return maxTrieTreeSizeMB;
+    }
+}
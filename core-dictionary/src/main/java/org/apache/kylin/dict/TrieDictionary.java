@@ -27,8 +27,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ClassUtil;
@@ -47,6 +48,9 @@ import com.google.common.base.Preconditions;
  * roughly 10 times slower, so there's a cache layer overlays on top of Trie and
  * gracefully fall back to Trie using a weak reference.
  * <p>
+ * The trie is kept in a ByteBuffer and looked up in its serialized form. It is on heap when deserialized from a
+ * stream, or read in place from a direct buffer or a mapped file by {@link #readFields(ByteBuffer)}.
+ * <p>
  * The implementation is thread-safe.
  *
  * @author yangli9
@@ -63,7 +67,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(TrieDictionary.class);
 
-    private byte[] trieBytes;
+    // the serialized trie from offset 0, only read by absolute gets so shared by threads safely
+    transient private ByteBuffer trie;
 
     // non-persistent part
     transient private int headSize;
@@ -83,17 +88,17 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     public TrieDictionary(byte[] trieBytes) {
-        init(trieBytes);
+        init(ByteBuffer.wrap(trieBytes), true);
     }
 
-    private void init(byte[] trieBytes) {
-        this.trieBytes = trieBytes;
-        if (BytesUtil.compareBytes(MAGIC, 0, trieBytes, 0, MAGIC.length) != 0)
-            throw new IllegalArgumentException("Wrong file type (magic does not match)");
+    private void init(ByteBuffer trie, boolean cached) {
+        this.trie = trie;
+        checkMagic(trie, 0);
 
         try {
-            DataInputStream headIn = new DataInputStream(//
-                    new ByteArrayInputStream(trieBytes, MAGIC_SIZE_I, trieBytes.length - MAGIC_SIZE_I));
+            ByteBuffer head = trie.duplicate();
+            head.position(MAGIC_SIZE_I);
+            DataInputStream headIn = new DataInputStream(new ByteBufferBackedInputStream(head));
             this.headSize = headIn.readShort();
             this.bodyLen = headIn.readInt();
             this.sizeChildOffset = headIn.read();
@@ -109,11 +114,12 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             if (converterName.isEmpty() == false)
                 setConverterByName(converterName);
 
-            this.nValues = BytesUtil.readUnsigned(trieBytes, headSize + sizeChildOffset, sizeNoValuesBeneath);
+            this.nValues = BytesUtil.readUnsigned(trie, headSize + sizeChildOffset, sizeNoValuesBeneath);
             this.sizeOfId = BytesUtil.sizeForValue(baseId + nValues + 1L); // note baseId could raise 1 byte in ID space, +1 to reserve all 0xFF for NULL case
             this.childOffsetMask = ~((long) (BIT_IS_LAST_CHILD | BIT_IS_END_OF_VALUE) << ((sizeChildOffset - 1) * 8));
             this.firstByteOffset = sizeChildOffset + sizeNoValuesBeneath + 1; // the offset from begin of node to its first value byte
-            enableCache();
+            if (cached)
+                enableCache();
         } catch (Exception e) {
             if (e instanceof RuntimeException)
                 throw (RuntimeException) e;
@@ -122,6 +128,15 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         }
     }
 
+    private static void checkMagic(ByteBuffer buf, int offset) {
+        if (buf.limit() - offset < MAGIC_SIZE_I)
+            throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        for (int i = 0; i < MAGIC_SIZE_I; i++) {
+            if (buf.get(offset + i) != MAGIC[i])
+                throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        }
+    }
+
     protected void setConverterByName(String converterName) throws Exception {
         this.bytesConvert = ClassUtil.forName(converterName, BytesConverter.class).newInstance();
     }
@@ -177,12 +192,13 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             // match the current node, note [0] of node's value has been matched
             // when this node is selected by its parent
             int p = n + firstByteOffset; // start of node's value
-            int end = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1); // end of node's value
+            int end = p + BytesUtil.readUnsigned(trie, p - 1, 1); // end of node's value
             for (p++; p < end && o < inpEnd; p++, o++) { // note matching start from [1]
-                if (trieBytes[p] != inp[o]) {
-                    int comp = BytesUtil.compareByteUnsigned(trieBytes[p], inp[o]);
+                byte b = trie.get(p);
+                if (b != inp[o]) {
+                    int comp = BytesUtil.compareByteUnsigned(b, inp[o]);
                     if (comp < 0) {
-                        seq += BytesUtil.readUnsigned(trieBytes, n + sizeChildOffset, sizeNoValuesBeneath);
+                        seq += BytesUtil.readUnsigned(trie, n + sizeChildOffset, sizeNoValuesBeneath);
                     }
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // mismatch
                 }
@@ -204,16 +220,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             int comp;
             while (true) {
                 p = c + firstByteOffset;
-                comp = BytesUtil.compareByteUnsigned(trieBytes[p], inpByte);
+                comp = BytesUtil.compareByteUnsigned(trie.get(p), inpByte);
                 if (comp == 0) { // continue in the matching child, reset n and loop again
                     n = c;
                     o++;
                     break;
                 } else if (comp < 0) { // try next child
-                    seq += BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                    seq += BytesUtil.readUnsigned(trie, c + sizeChildOffset, sizeNoValuesBeneath);
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + BytesUtil.readUnsigned(trie, p - 1, 1);
                 } else { // children are ordered by their first value byte
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
                 }
@@ -222,8 +238,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private int getChildOffset(int n) {
-        long offset = headSize + (BytesUtil.readLong(trieBytes, n, sizeChildOffset) & childOffsetMask);
-        assert offset < trieBytes.length;
+        long offset = headSize + (BytesUtil.readLong(trie, n, sizeChildOffset) & childOffsetMask);
+        assert offset < trie.limit();
         return (int) offset;
     }
 
@@ -269,9 +285,10 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while (true) {
             // write current node value
             int p = n + firstByteOffset;
-            int len = BytesUtil.readUnsigned(trieBytes, p - 1, 1);
-            System.arraycopy(trieBytes, p, returnValue, o, len);
-            o += len;
+            int len = BytesUtil.readUnsigned(trie, p - 1, 1);
+            for (int end = p + len; p < end; p++, o++) {
+                returnValue[o] = trie.get(p);
+            }
 
             // if the value is ended
             boolean isEndOfValue = checkFlag(n, BIT_IS_END_OF_VALUE);
@@ -287,7 +304,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                 return -1; // no child? corrupted dictionary!
             int nValuesBeneath;
             while (true) {
-                nValuesBeneath = BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                nValuesBeneath = BytesUtil.readUnsigned(trie, c + sizeChildOffset, sizeNoValuesBeneath);
                 if (seq - nValuesBeneath < 0) { // value is under this child, reset n and loop again
                     n = c;
                     break;
@@ -296,14 +313,14 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return -1; // no more child? corrupted dictionary!
                     p = c + firstByteOffset;
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + BytesUtil.readUnsigned(trie, p - 1, 1);
                 }
             }
         }
     }
 
     private boolean checkFlag(int offset, int bit) {
-        return (trieBytes[offset] & bit) > 0;
+        return (trie.get(offset) & bit) > 0;
     }
 
     private int calcIdFromSeqNo(int seq) {
@@ -315,7 +332,19 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.write(trieBytes);
+        out.write(getTrieBytes());
+    }
+
+    /** The backing array if the trie is on heap, otherwise a copy. */
+    private byte[] getTrieBytes() {
+        if (trie.hasArray() && trie.arrayOffset() == 0 && trie.array().length == trie.limit())
+            return trie.array();
+
+        byte[] bytes = new byte[trie.limit()];
+        ByteBuffer dup = trie.duplicate();
+        dup.clear();
+        dup.get(bytes);
+        return bytes;
     }
 
     @Override
@@ -336,12 +365,34 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         System.arraycopy(headPartial, 0, all, 0, headPartial.length);
         in.readFully(all, headPartial.length, all.length - headPartial.length);
 
-        init(all);
+        init(ByteBuffer.wrap(all), true);
+    }
+
+    /**
+     * Reads the trie in place at the buffer position, no copy to heap. With a direct buffer or a file mapped
+     * by FileChannel.map(), the lookups run on the mapped bytes, which then live in the OS page cache and
+     * are shared by the processes mapping the same file. The value caches are not enabled, call
+     * {@link #enableCache()} to have them. The buffer position is moved past the trie.
+     */
+    public void readFields(ByteBuffer in) {
+        int start = in.position();
+        checkMagic(in, start);
+        int headSize = BytesUtil.readUnsigned(in, start + MAGIC_SIZE_I, 2);
+        int bodyLen = BytesUtil.readUnsigned(in, start + MAGIC_SIZE_I + 2, 4);
+        int end = start + headSize + bodyLen;
+        if (bodyLen < 0 || end > in.limit() || end < start)
+            throw new IllegalArgumentException("Truncated trie, expect " + (headSize + bodyLen) + " bytes but " + in.remaining());
+
+        ByteBuffer dup = in.duplicate();
+        dup.limit(end);
+        init(dup.slice(), false);
+        in.position(end);
     }
 
     private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
-        stream.writeInt(trieBytes.length);
-        stream.write(trieBytes);
+        byte[] bytes = getTrieBytes();
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
     }
 
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -352,7 +403,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while ((currentCount = stream.read(trieBytes, idx, length - idx)) > 0) {
             idx += currentCount;
         }
-        init(trieBytes);
+        init(ByteBuffer.wrap(trieBytes), true);
     }
 
     @Override
@@ -367,7 +418,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(trieBytes);
+        return trie.hashCode();
     }
 
     @Override
@@ -377,7 +428,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             return false;
         }
         TrieDictionary that = (TrieDictionary) o;
-        return Arrays.equals(this.trieBytes, that.trieBytes);
+        return this.trie.equals(that.trie);
     }
 
     @Override
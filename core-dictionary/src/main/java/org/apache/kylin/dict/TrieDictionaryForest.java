@@ -19,15 +19,18 @@ package org.apache.kylin.dict;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ClassUtil;
@@ -64,17 +67,17 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
 
     public TrieDictionaryForest(ArrayList<TrieDictionary<T>> trees, ArrayList<ByteArray> valueDivide, //
                                 ArrayList<Integer> accuOffset, BytesConverter<T> bytesConverter, int baseId) {
-        init(trees, valueDivide, accuOffset, bytesConverter, baseId);
+        init(trees, valueDivide, accuOffset, bytesConverter, baseId, true);
     }
 
-    private void init(ArrayList<TrieDictionary<T>> trees, ArrayList<ByteArray> valueDivide, ArrayList<Integer> accuOffset, BytesConverter<T> bytesConverter, int baseId) {
+    private void init(ArrayList<TrieDictionary<T>> trees, ArrayList<ByteArray> valueDivide, ArrayList<Integer> accuOffset, BytesConverter<T> bytesConverter, int baseId, boolean cached) {
         this.trees = trees;
         this.valueDivide = valueDivide;
         this.accuOffset = accuOffset;
         this.bytesConvert = bytesConverter;
         this.baseId = baseId;
         initConstantValue();
-        initForestCache();
+        initForestCache(cached);
     }
 
     @Override
@@ -130,6 +133,36 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
         return id;
     }
 
+    /**
+     * Sorted values fall into the trees in order, so the tree index only moves forward within a block,
+     * no binary search on value divide per value.
+     */
+    @Override
+    protected void getIdsFromSortedValueBytes(byte[][] sortedValues, int count, int roundingFlag, int[] sortedIds) {
+        if (roundingFlag != 0 || trees.size() <= 1) {
+            super.getIdsFromSortedValueBytes(sortedValues, count, roundingFlag, sortedIds);
+            return;
+        }
+
+        int index = -1;
+        for (int i = 0; i < count; i++) {
+            byte[] value = sortedValues[i];
+            if (i > 0 && Bytes.equals(value, sortedValues[i - 1])) {
+                sortedIds[i] = sortedIds[i - 1];
+                continue;
+            }
+            while (index + 1 < trees.size() && Bytes.compareTo(value, 0, value.length, valueDivide.get(index + 1).array(), valueDivide.get(index + 1).offset(), valueDivide.get(index + 1).length()) >= 0) {
+                index++;
+            }
+            if (index < 0) {
+                sortedIds[i] = -1; // smaller than the smallest value in dict
+                continue;
+            }
+            int id = trees.get(index).getIdFromValueBytesWithoutCache(value, 0, value.length, 0);
+            sortedIds[i] = id == -1 ? -1 : id + accuOffset.get(index) + baseId;
+        }
+    }
+
     @Override
     protected byte[] getValueBytesFromIdWithoutCache(int id) throws IllegalArgumentException {
         int index = (trees.size() == 1) ? 0 : findIndexById(id);
@@ -170,6 +203,12 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
     }
 
     private void writeHead(DataOutput out) throws IOException {
+        writeHead(out, baseId, bytesConvert, accuOffset, valueDivide, trees.size());
+    }
+
+    /** Write the forest head, the trees are expected to follow in order. Shared with the streaming builder. */
+    static void writeHead(DataOutput out, int baseId, BytesConverter<?> bytesConvert, List<Integer> accuOffset, //
+            List<ByteArray> valueDivide, int treeCount) throws IOException {
         ByteArrayOutputStream byteBuf = new ByteArrayOutputStream();
         DataOutputStream headOut = new DataOutputStream(byteBuf);
         headOut.writeInt(baseId);
@@ -187,7 +226,7 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
             headOut.write(byteStr);
         }
         //write tree size
-        headOut.writeInt(trees.size());
+        headOut.writeInt(treeCount);
         headOut.close();
         byte[] head = byteBuf.toByteArray();
         //output
@@ -204,6 +243,19 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
 
     @Override
     public void readFields(DataInput in) throws IOException {
+        readFields(in, null);
+    }
+
+    /**
+     * Reads the forest in place at the buffer position, the trees are not copied to heap but looked up on
+     * the buffer, see {@link TrieDictionary#readFields(ByteBuffer)}. The buffer position is moved past the forest.
+     */
+    public void readFields(ByteBuffer in) throws IOException {
+        // DataInputStream reads exactly the bytes of the head, leaving the buffer at the first tree
+        readFields(new DataInputStream(new ByteBufferBackedInputStream(in)), in);
+    }
+
+    private void readFields(DataInput in, ByteBuffer inPlace) throws IOException {
         try {
             @SuppressWarnings("unused")
             int headSize = in.readInt();
@@ -231,10 +283,13 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
             ArrayList<TrieDictionary<T>> trees = new ArrayList<>();
             for (int i = 0; i < treeSize; i++) {
                 TrieDictionary<T> dict = new TrieDictionary<>();
-                dict.readFields(in);
+                if (inPlace == null)
+                    dict.readFields(in);
+                else
+                    dict.readFields(inPlace);
                 trees.add(dict);
             }
-            init(trees, valueDivide, accuOffset, bytesConverter, baseId);
+            init(trees, valueDivide, accuOffset, bytesConverter, baseId, inPlace == null);
         } catch (Exception e) {
             if (e instanceof RuntimeException)
                 throw (RuntimeException) e;
@@ -390,8 +445,9 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
         this.sizeOfValue = maxValue;
     }
 
-    private void initForestCache() {
-        enableCache();
+    private void initForestCache(boolean cached) {
+        if (cached)
+            enableCache();
         for (TrieDictionary<T> tree : trees) { //disable duplicate cache
             tree.disableCache();
         }
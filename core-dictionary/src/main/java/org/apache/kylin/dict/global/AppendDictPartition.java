@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.global;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.kylin.common.util.Bytes;
+
+/**
+ * One partition of a parallel global dictionary build.
+ * <p>
+ * A partition owns the slices in value range [lowerKey, upperKey) and assigns new IDs from its own
+ * ID range [idStart, idStart + idCapacity), so partitions are built independently, e.g. one per reducer,
+ * and then merged into a new version by a metadata commit. All partitions of a build are planned on the
+ * same base version, see {@link GlobalDictHDFSStore#planPartitions}, and get their ID ranges from the exact
+ * count of new values, see {@link GlobalDictHDFSStore#assignPartitionIds}.
+ */
+public class AppendDictPartition {
+
+    int index;
+    long baseVersion; // -1 if the dictionary has no version yet
+    AppendDictSliceKey lowerKey;
+    AppendDictSliceKey upperKey; // null for unbounded
+    int idStart;
+    int idCapacity;
+
+    public AppendDictPartition() {
+    }
+
+    AppendDictPartition(int index, long baseVersion, AppendDictSliceKey lowerKey, AppendDictSliceKey upperKey, int idStart, int idCapacity) {
+        this.index = index;
+        this.baseVersion = baseVersion;
+        this.lowerKey = lowerKey;
+        this.upperKey = upperKey;
+        this.idStart = idStart;
+        this.idCapacity = idCapacity;
+    }
+
+    public boolean contains(byte[] value) {
+        return Bytes.compareTo(value, lowerKey.key) >= 0 && (upperKey == null || Bytes.compareTo(value, upperKey.key) < 0);
+    }
+
+    public boolean contains(AppendDictSliceKey key) {
+        return contains(key.key);
+    }
+
+    /**
+     * The index of the partition containing the value, in all partitions of a build in order.
+     */
+    public static int indexOf(List<AppendDictPartition> partitions, byte[] value, int offset, int length) {
+        // the last partition whose lower key is not above the value, the first lower key is always ""
+        int low = 0;
+        int high = partitions.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            byte[] lowerKey = partitions.get(mid).lowerKey.key;
+            if (Bytes.compareTo(lowerKey, 0, lowerKey.length, value, offset, length) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public AppendDictSliceKey getLowerKey() {
+        return lowerKey;
+    }
+
+    public AppendDictSliceKey getUpperKey() {
+        return upperKey;
+    }
+
+    public int getIdStart() {
+        return idStart;
+    }
+
+    public int getIdCapacity() {
+        return idCapacity;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(index);
+        out.writeLong(baseVersion);
+        lowerKey.write(out);
+        out.writeBoolean(upperKey != null);
+        if (upperKey != null) {
+            upperKey.write(out);
+        }
+        out.writeInt(idStart);
+        out.writeInt(idCapacity);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        index = in.readInt();
+        baseVersion = in.readLong();
+        lowerKey = new AppendDictSliceKey();
+        lowerKey.readFields(in);
+        if (in.readBoolean()) {
+            upperKey = new AppendDictSliceKey();
+            upperKey.readFields(in);
+        } else {
+            upperKey = null;
+        }
+        idStart = in.readInt();
+        idCapacity = in.readInt();
+    }
+
+    @Override
+    public String toString() {
+        return "AppendDictPartition[" + index + ", [" + lowerKey + ", " + (upperKey == null ? "" : upperKey) + "), ids from " + (idStart & 0xFFFFFFFFL) + " x " + idCapacity + ", base version " + baseVersion + "]";
+    }
+}
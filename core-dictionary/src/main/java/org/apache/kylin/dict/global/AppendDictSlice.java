@@ -75,6 +75,14 @@ public class AppendDictSlice {
         }
     }
 
+    byte[] getTrieBytes() {
+        return trieBytes;
+    }
+
+    int getByteSize() {
+        return trieBytes.length;
+    }
+
     public static AppendDictSlice deserializeFrom(DataInput in) throws IOException {
         byte[] headPartial = new byte[HEAD_MAGIC.length + Short.SIZE / Byte.SIZE + Integer.SIZE / Byte.SIZE];
         in.readFully(headPartial);
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict.global;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The slices of all append trie dictionaries cached in heap, bounded by their total size.
+ * <p>
+ * The slices a lookup batch needs are loaded in parallel by {@link #prefetch}. If a local cache directory is
+ * configured, a slice file read from the store is kept there with its CRC32 and read back from local disk next
+ * time, e.g. after an eviction or a restart. The slice files of a committed version never change, so they are
+ * cached by path.
+ */
+public class AppendDictSliceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppendDictSliceCache.class);
+
+    private static final String METRICS_PREFIX = "metrics:name=append_dict_slice,stat=";
+    private static final int CHECKSUM_SIZE = 8;
+
+    // cache settings ==> the cache shared by the dictionaries having them
+    private static final Map<String, AppendDictSliceCache> instances = Maps.newHashMap();
+
+    /**
+     * The cache for the given config, which comes from the store of a dictionary rather than the env, since a Spark
+     * executor may have no env config or a different one per job.
+     */
+    public static synchronized AppendDictSliceCache getInstance(KylinConfig config) {
+        String settings = config.getAppendDictCacheMaxMB() + "," + config.getAppendDictPrefetchThreads() + ","
+                + config.getAppendDictLocalCacheDir();
+        AppendDictSliceCache instance = instances.get(settings);
+        if (instance == null) {
+            instance = new AppendDictSliceCache(config);
+            instances.put(settings, instance);
+        }
+        return instance;
+    }
+
+    private final KylinConfig config;
+    private final Cache<String, AppendDictSlice> slices; // slice file path ==> slice
+    private final int prefetchThreads;
+    private final File localDir; // null if disabled
+    private ExecutorService pool;
+
+    @VisibleForTesting
+    AppendDictSliceCache(KylinConfig config) {
+        this.config = config;
+        this.prefetchThreads = config.getAppendDictPrefetchThreads();
+        String dir = config.getAppendDictLocalCacheDir();
+        this.localDir = StringUtils.isBlank(dir) ? null : new File(dir);
+
+        long maxBytes = config.getAppendDictCacheMaxMB() * 1024 * 1024;
+        if (maxBytes <= 0)
+            maxBytes = Runtime.getRuntime().maxMemory() / 10;
+        logger.info("Append dict slice cache of {} MB in heap, local cache at {}", maxBytes / 1024 / 1024, localDir);
+
+        this.slices = CacheBuilder.newBuilder()//
+                .concurrencyLevel(1)// the weight is bounded per segment, one segment to hold the large slices
+                .maximumWeight(maxBytes)//
+                .weigher(new Weigher<String, AppendDictSlice>() {
+                    @Override
+                    public int weigh(String key, AppendDictSlice value) {
+                        return value.getByteSize();
+                    }
+                })//
+                .removalListener(new RemovalListener<String, AppendDictSlice>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, AppendDictSlice> notification) {
+                        logger.info("Evict slice {} caused by {}", notification.getKey(), notification.getCause());
+                    }
+                })//
+                .recordStats()//
+                .build();
+
+        if (config.getQueryMetrics2Enabled()) {
+            registerMetrics();
+        }
+    }
+
+    /**
+     * Returns the slice of given file in the version directory, loaded if not cached.
+     */
+    public AppendDictSlice get(final GlobalDictStore store, final String versionDir, final String sliceFile) throws IOException {
+        try {
+            return slices.get(slicePath(versionDir, sliceFile), new Callable<AppendDictSlice>() {
+                @Override
+                public AppendDictSlice call() throws Exception {
+                    return load(store, versionDir, sliceFile);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Loads the slices not cached yet in parallel and waits for them. A failed load is only logged, the lookup
+     * needing that slice loads it again and reports the error.
+     */
+    public void prefetch(final GlobalDictStore store, final String versionDir, Collection<String> sliceFiles) {
+        final List<String> missing = Lists.newArrayList();
+        for (String sliceFile : sliceFiles) {
+            if (!slices.asMap().containsKey(slicePath(versionDir, sliceFile)))
+                missing.add(sliceFile);
+        }
+        // a single slice is loaded by the lookup itself
+        if (missing.size() <= 1 || prefetchThreads <= 1)
+            return;
+
+        long start = System.currentTimeMillis();
+        ExecutorService executor = getPool();
+        List<Future<?>> futures = Lists.newArrayListWithCapacity(missing.size());
+        for (final String sliceFile : missing) {
+            futures.add(executor.submit(new Callable<AppendDictSlice>() {
+                @Override
+                public AppendDictSlice call() throws Exception {
+                    return get(store, versionDir, sliceFile);
+                }
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.warn("Failed to prefetch slice " + missing.get(i) + " in " + versionDir, e.getCause());
+            }
+        }
+        logger.debug("Prefetched {} slices in {} ms", missing.size(), System.currentTimeMillis() - start);
+    }
+
+    private AppendDictSlice load(GlobalDictStore store, String versionDir, String sliceFile) throws IOException {
+        long start = System.currentTimeMillis();
+        File local = localFile(versionDir, sliceFile);
+
+        if (local != null && local.exists()) {
+            byte[] bytes = readLocal(local);
+            if (bytes != null) {
+                AppendDictSlice slice = new AppendDictSlice(bytes);
+                recordLoad("load_local", start, slice, local.getPath());
+                return slice;
+            }
+        }
+
+        AppendDictSlice slice = store.readSlice(versionDir, sliceFile);
+        recordLoad("load_remote", start, slice, slicePath(versionDir, sliceFile));
+        if (local != null) {
+            writeLocal(local, slice.getTrieBytes());
+        }
+        return slice;
+    }
+
+    private void recordLoad(String stat, long start, AppendDictSlice slice, String from) {
+        long took = System.currentTimeMillis() - start;
+        logger.debug("Loaded slice of {} bytes from {} in {} ms", slice.getByteSize(), from, took);
+        if (config.getQueryMetrics2Enabled()) {
+            Metrics metrics = MetricsFactory.getInstance();
+            if (metrics != null)
+                metrics.updateTimer(METRICS_PREFIX + stat, took, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static String slicePath(String versionDir, String sliceFile) {
+        return new Path(versionDir, sliceFile).toString();
+    }
+
+    /**
+     * The local copy at the same path under the local directory, separated by file system authority.
+     */
+    @VisibleForTesting
+    File localFile(String versionDir, String sliceFile) {
+        if (localDir == null)
+            return null;
+
+        URI uri = new Path(versionDir, sliceFile).toUri();
+        String authority = uri.getAuthority() == null ? "_" : uri.getAuthority().replace(':', '_');
+        return new File(new File(localDir, authority), uri.getPath());
+    }
+
+    /**
+     * The slice bytes, or null if the checksum does not match.
+     */
+    private static byte[] readLocal(File local) {
+        try {
+            byte[] bytes = FileUtils.readFileToByteArray(local);
+            if (bytes.length > CHECKSUM_SIZE) {
+                int length = bytes.length - CHECKSUM_SIZE;
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, length);
+                if (crc.getValue() == Bytes.toLong(bytes, length)) {
+                    byte[] slice = new byte[length];
+                    System.arraycopy(bytes, 0, slice, 0, length);
+                    return slice;
+                }
+            }
+            logger.warn("Checksum mismatch of local slice file " + local + ", read from store again");
+        } catch (IOException e) {
+            logger.warn("Failed to read local slice file " + local + ", read from store again", e);
+        }
+        local.delete();
+        return null;
+    }
+
+    /**
+     * Writes via a temp file and rename so a reader never sees a partial file. The older versions of the same
+     * dictionary are removed from the local directory when a new version shows up.
+     */
+    private static void writeLocal(File local, byte[] bytes) {
+        File versionDir = local.getParentFile();
+        try {
+            if (!versionDir.exists()) {
+                if (!versionDir.mkdirs() && !versionDir.exists())
+                    throw new IOException("Failed to create directory " + versionDir);
+                deleteOlderVersions(versionDir);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            File tmp = File.createTempFile(local.getName(), ".tmp", versionDir);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+            try {
+                out.write(bytes);
+                out.writeLong(crc.getValue());
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+            if (!tmp.renameTo(local)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to keep slice file at " + local, e);
+        }
+    }
+
+    private static void deleteOlderVersions(File versionDir) {
+        final long version = parseVersion(versionDir.getName());
+        if (version < 0)
+            return;
+
+        File[] older = versionDir.getParentFile().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                long v = parseVersion(file.getName());
+                return file.isDirectory() && v >= 0 && v < version;
+            }
+        });
+        if (older != null) {
+            for (File dir : older) {
+                logger.info("Delete local slice files of old version " + dir);
+                FileUtils.deleteQuietly(dir);
+            }
+        }
+    }
+
+    private static long parseVersion(String dirName) {
+        if (!dirName.startsWith(GlobalDictHDFSStore.VERSION_PREFIX))
+            return -1;
+        try {
+            return Long.parseLong(dirName.substring(GlobalDictHDFSStore.VERSION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(prefetchThreads, new DaemonThreadFactory());
+        }
+        return pool;
+    }
+
+    private void registerMetrics() {
+        Metrics metrics = MetricsFactory.getInstance();
+        if (metrics == null)
+            return;
+
+        metrics.addGauge(METRICS_PREFIX + "hit_rate", new MetricsVariable<Double>() {
+            @Override
+            public Double getValue() {
+                return slices.stats().hitRate();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "evictions", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return slices.stats().evictionCount();
+            }
+        });
+        metrics.addGauge(METRICS_PREFIX + "slices", new MetricsVariable<Long>() {
+            @Override
+            public Long getValue() {
+                return slices.size();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    CacheStats getStats() {
+        return slices.stats();
+    }
+
+    @VisibleForTesting
+    boolean isCached(String versionDir, String sliceFile) {
+        return slices.asMap().containsKey(slicePath(versionDir, sliceFile));
+    }
+}
@@ -24,9 +24,13 @@ import org.apache.kylin.dict.BytesConverter;
 import org.apache.kylin.dict.StringBytesConverter;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeMap;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 public class AppendTrieDictionaryBuilder {
@@ -46,14 +50,79 @@ public class AppendTrieDictionaryBuilder {
     private AppendDictSliceKey curKey;
     private AppendDictNode curNode;
 
+    // for a partition of parallel build only
+    private final AppendDictPartition partition;
+    private String baseVersionDir; // slices not rewritten by this partition are read from base version in place
+    private Set<String> writtenSliceFiles = new HashSet<>();
+
     public AppendTrieDictionaryBuilder(String baseDir, int maxEntriesPerSlice, boolean isAppendDictGlobal) throws IOException {
         this.baseDir = baseDir;
         this.workingDir = baseDir + "working";
         this.maxEntriesPerSlice = maxEntriesPerSlice;
         this.isAppendDictGlobal = isAppendDictGlobal;
+        this.partition = null;
         init();
     }
 
+    /**
+     * Build one partition of a parallel build, values out of the partition range are rejected.
+     * Call {@link #buildPartition()} at the end, then commit all partitions by {@link GlobalDictStore#commitPartitions}.
+     */
+    public AppendTrieDictionaryBuilder(String baseDir, int maxEntriesPerSlice, AppendDictPartition partition) throws IOException {
+        this.baseDir = baseDir;
+        this.maxEntriesPerSlice = maxEntriesPerSlice;
+        this.isAppendDictGlobal = true;
+        this.partition = partition;
+        this.store = new GlobalDictHDFSStore(baseDir);
+        this.workingDir = store.getPartitionWorkingDir(partition.getIndex());
+        initPartition();
+    }
+
+    /**
+     * Count the values not in the latest version of the dict, that is the exact number of new ids a partition
+     * of parallel build takes, see {@link GlobalDictStore#assignPartitionIds}. Give the values of one partition.
+     */
+    public static int countNewValues(String baseDir, Iterable<String> values) throws IOException {
+        NewValueCounter counter = new NewValueCounter(baseDir);
+        for (String value : values) {
+            counter.add(value);
+        }
+        return counter.getCount();
+    }
+
+    /**
+     * Counts the new values given one by one, e.g. by a reducer, see {@link #countNewValues}.
+     */
+    public static class NewValueCounter {
+        private final AppendTrieDictionary<String> base;
+        private int count;
+
+        public NewValueCounter(String baseDir) throws IOException {
+            if (new GlobalDictHDFSStore(baseDir).listAllVersions().length > 0) {
+                base = new AppendTrieDictionary<>();
+                base.init(baseDir);
+            } else {
+                base = null;
+            }
+        }
+
+        public void add(String value) {
+            if (value == null)
+                return;
+            try {
+                if (base != null && base.getIdFromValue(value) >= 0)
+                    return;
+            } catch (IllegalArgumentException e) {
+                // not found
+            }
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
     public synchronized void init() throws IOException {
         this.store = new GlobalDictHDFSStore(baseDir);
         store.prepareForWrite(workingDir, isAppendDictGlobal);
@@ -76,15 +145,42 @@ public class AppendTrieDictionaryBuilder {
         }
     }
 
+    private void initPartition() throws IOException {
+        store.prepareForPartitionWrite(workingDir);
+
+        if (partition.getBaseVersion() < 0) { // build dict for the first time
+            this.maxValueLength = 0;
+            this.bytesConverter = new StringBytesConverter();
+        } else {
+            GlobalDictMetadata metadata = store.getMetadata(partition.getBaseVersion());
+            this.maxValueLength = metadata.maxValueLength;
+            this.bytesConverter = metadata.bytesConverter;
+            this.sliceFileMap = new TreeMap<>(metadata.sliceFileMap);
+            this.baseVersionDir = store.getVersionDir(partition.getBaseVersion()).toString();
+        }
+        // new values take ids of the partition range, nValues counts the new values only
+        this.maxId = partition.getIdStart() - 1;
+        this.nValues = 0;
+
+        // the partition starts with a new empty slice, unless its lower key is an existing slice
+        if (!sliceFileMap.containsKey(partition.getLowerKey())) {
+            sliceFileMap.put(partition.getLowerKey(), null);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void addValue(String value) throws IOException {
         byte[] valueBytes = bytesConverter.convertToBytes(value);
 
-        if (sliceFileMap.isEmpty()) {
-            curNode = new AppendDictNode(new byte[0], false);
-            sliceFileMap.put(AppendDictSliceKey.START_KEY, null);
+        if (partition != null) {
+            checkArgument(partition.contains(valueBytes), "value \"%s\" out of %s", value, partition);
+        } else {
+            if (sliceFileMap.isEmpty()) {
+                curNode = new AppendDictNode(new byte[0], false);
+                sliceFileMap.put(AppendDictSliceKey.START_KEY, null);
+            }
+            checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
         }
-        checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
 
         AppendDictSliceKey nextKey = sliceFileMap.floorKey(AppendDictSliceKey.wrap(valueBytes));
 
@@ -98,8 +194,7 @@ public class AppendTrieDictionaryBuilder {
             curNode = null;
         }
         if (curNode == null) { // read next slice
-            AppendDictSlice slice = store.readSlice(workingDir, sliceFileMap.get(nextKey));
-            curNode = slice.rebuildTrieTree();
+            curNode = readSliceTree(sliceFileMap.get(nextKey));
         }
         curKey = nextKey;
 
@@ -130,10 +225,39 @@ public class AppendTrieDictionaryBuilder {
         return dict;
     }
 
+    /**
+     * Finish a partition of parallel build, its slices and counters are saved in the partition working dir.
+     */
+    public GlobalDictMetadata buildPartition() throws IOException {
+        checkState(partition != null, "not a partition build");
+        if (curNode != null) {
+            flushCurrentNode();
+        }
+
+        TreeMap<AppendDictSliceKey, String> partitionSlices = new TreeMap<>(partition.getUpperKey() == null //
+                ? sliceFileMap.tailMap(partition.getLowerKey(), true) //
+                : sliceFileMap.subMap(partition.getLowerKey(), true, partition.getUpperKey(), false));
+        partitionSlices.values().removeAll(Collections.singleton((String) null)); // the empty lower slice never got a value
+        GlobalDictMetadata metadata = new GlobalDictMetadata(0, this.maxId, this.maxValueLength, this.nValues, this.bytesConverter, partitionSlices);
+        store.writePartition(workingDir, metadata);
+        return metadata;
+    }
+
+    private AppendDictNode readSliceTree(String sliceFile) throws IOException {
+        if (sliceFile == null) { // the empty lower slice of a partition
+            return new AppendDictNode(new byte[0], false);
+        }
+        String dir = (partition == null || writtenSliceFiles.contains(sliceFile)) ? workingDir : baseVersionDir;
+        AppendDictSlice slice = store.readSlice(dir, sliceFile);
+        return slice.rebuildTrieTree();
+    }
+
     private void flushCurrentNode() throws IOException {
         String newSliceFile = store.writeSlice(workingDir, curKey, curNode);
         String oldSliceFile = sliceFileMap.put(curKey, newSliceFile);
-        if (oldSliceFile != null) {
+        writtenSliceFiles.add(newSliceFile);
+        // slices of base version are left untouched in a partition build
+        if (oldSliceFile != null && !oldSliceFile.equals(newSliceFile) && (partition == null || writtenSliceFiles.remove(oldSliceFile))) {
             store.deleteSlice(workingDir, oldSliceFile);
         }
     }
@@ -215,6 +339,9 @@ public class AppendTrieDictionaryBuilder {
     }
 
     private int createNextId() {
+        if (partition != null && nValues >= partition.getIdCapacity()) {
+            throw new IllegalStateException("Id range of " + partition + " is used up");
+        }
         int id = ++maxId;
         checkValidId(id);
         nValues++;
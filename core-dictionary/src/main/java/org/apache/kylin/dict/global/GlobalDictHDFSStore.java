@@ -22,7 +22,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -48,6 +50,7 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
     static final String V1_INDEX_NAME = ".index";
     static final String V2_INDEX_NAME = ".index_v2";
     static final String VERSION_PREFIX = "version_";
+    static final String PARTITION_WORKING_PREFIX = "working_partition_";
     static final int BUFFER_SIZE = 8 * 1024 * 1024;
 
     private final Path basePath;
@@ -232,6 +235,109 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
         cleanUp(isAppendDictGlobal);
     }
 
+    @Override
+    public List<AppendDictPartition> planPartitions(List<byte[]> splitKeys) throws IOException {
+        Long[] versions = listAllVersions();
+        long baseVersion = versions.length == 0 ? -1 : versions[versions.length - 1];
+        GlobalDictMetadata base = baseVersion < 0 ? GlobalDictMetadata.empty() : getMetadata(baseVersion);
+
+        List<AppendDictPartition> partitions = base.planPartitions(baseVersion, splitKeys);
+        logger.info("Plan parallel build of global dict at {} on version {}: {}", basePath, baseVersion, partitions);
+        return partitions;
+    }
+
+    @Override
+    public void assignPartitionIds(List<AppendDictPartition> partitions, List<Integer> newValueCounts) throws IOException {
+        long latestVersion = checkPartitionBase(partitions);
+        GlobalDictMetadata base = latestVersion < 0 ? GlobalDictMetadata.empty() : getMetadata(latestVersion);
+
+        base.assignPartitionIds(partitions, newValueCounts);
+        logger.info("Assign ids to parallel build of global dict at {}: {}", basePath, partitions);
+    }
+
+    // the partitions must be planned on the latest version
+    private long checkPartitionBase(List<AppendDictPartition> partitions) throws IOException {
+        Long[] versions = listAllVersions();
+        long latestVersion = versions.length == 0 ? -1 : versions[versions.length - 1];
+        for (AppendDictPartition partition : partitions) {
+            checkState(partition.getBaseVersion() == latestVersion, "Global dict at %s has changed since the build was planned, %s, latest version %s", basePath, partition, latestVersion);
+        }
+        return latestVersion;
+    }
+
+    @Override
+    public String getPartitionWorkingDir(int partitionIndex) {
+        return new Path(basePath, PARTITION_WORKING_PREFIX + partitionIndex).toString();
+    }
+
+    @Override
+    void prepareForPartitionWrite(String partitionWorkingDir) throws IOException {
+        if (!fileSystem.exists(basePath)) {
+            fileSystem.mkdirs(basePath);
+        }
+        Path working = new Path(partitionWorkingDir);
+        if (fileSystem.exists(working)) {
+            fileSystem.delete(working, true);
+            logger.trace("Working directory {} exits, delete it first", working);
+        }
+        fileSystem.mkdirs(working);
+    }
+
+    @Override
+    public void writePartition(String partitionWorkingDir, GlobalDictMetadata partitionMetadata) throws IOException {
+        new IndexFormatV2(fileSystem, conf).writeIndexFile(new Path(partitionWorkingDir), partitionMetadata);
+    }
+
+    @Override
+    public void commitPartitions(List<AppendDictPartition> partitions, int baseId) throws IOException {
+        long latestVersion = checkPartitionBase(partitions);
+        GlobalDictMetadata base = latestVersion < 0 ? GlobalDictMetadata.empty() : getMetadata(latestVersion);
+        Path baseVersionDir = latestVersion < 0 ? null : getVersionDir(latestVersion);
+
+        IndexFormat index = new IndexFormatV2(fileSystem, conf);
+        List<GlobalDictMetadata> partitionMetas = new ArrayList<>();
+        for (AppendDictPartition partition : partitions) {
+            partitionMetas.add(index.readIndexFile(new Path(getPartitionWorkingDir(partition.getIndex()))));
+        }
+        GlobalDictMetadata merged = base.mergePartitions(baseId, partitions, partitionMetas);
+
+        Path working = new Path(basePath, "working");
+        if (fileSystem.exists(working)) {
+            fileSystem.delete(working, true);
+        }
+        fileSystem.mkdirs(working);
+
+        // slices written by a partition are moved, the untouched ones are copied from base version
+        int moved = 0;
+        Map<String, Path> partitionDirOfFile = new TreeMap<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            for (String sliceFile : partitionMetas.get(i).sliceFileMap.values()) {
+                partitionDirOfFile.put(sliceFile, new Path(getPartitionWorkingDir(partitions.get(i).getIndex())));
+            }
+        }
+        for (Map.Entry<AppendDictSliceKey, String> entry : merged.sliceFileMap.entrySet()) {
+            Path target = new Path(working, entry.getValue());
+            Path partitionDir = partitionDirOfFile.get(entry.getValue());
+            Path source = partitionDir == null ? null : new Path(partitionDir, entry.getValue());
+            if (source != null && fileSystem.exists(source)) {
+                if (!fileSystem.rename(source, target)) {
+                    throw new IOException("Failed to move slice " + source + " to " + target);
+                }
+                moved++;
+            } else {
+                checkState(baseVersionDir != null, "The slice file %s for the key %s must be existed!", entry.getValue(), entry.getKey());
+                FileUtil.copy(fileSystem, new Path(baseVersionDir, entry.getValue()), fileSystem, target, false, conf);
+            }
+        }
+        logger.info("Commit {} partitions of global dict at {}, {} new or changed slices of {}", partitions.size(), basePath, moved, merged.sliceFileMap.size());
+
+        commit(working.toString(), merged, true);
+
+        for (AppendDictPartition partition : partitions) {
+            fileSystem.delete(new Path(getPartitionWorkingDir(partition.getIndex())), true);
+        }
+    }
+
     // Check versions count, delete expired versions
     private void cleanUp(boolean isAppendDictGlobal) throws IOException {
         long timestamp = System.currentTimeMillis();
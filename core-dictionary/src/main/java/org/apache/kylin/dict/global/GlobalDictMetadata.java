@@ -21,6 +21,9 @@ package org.apache.kylin.dict.global;
 import com.google.common.base.Preconditions;
 import org.apache.kylin.dict.BytesConverter;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
@@ -47,4 +50,110 @@ public class GlobalDictMetadata {
         this.bytesConverter = bytesConverter;
         this.sliceFileMap = new TreeMap<>(sliceFileMap);
     }
+
+    // The dict id starts from 1 to 2147483647 and 2147483648 to -2, same as AppendTrieDictionaryBuilder
+    static final long MAX_UNSIGNED_ID = 0xFFFFFFFEL;
+
+    /**
+     * Plan the value ranges of a parallel build on top of this version.
+     * <p>
+     * Split keys are snapped down to the existing slice keys, so every existing slice is owned by exactly one
+     * partition, split keys falling into the same slice make a single partition. The partitions get no IDs yet,
+     * count the new values of each by {@link AppendTrieDictionaryBuilder#countNewValues}, then
+     * {@link #assignPartitionIds}.
+     *
+     * @param baseVersion version of this metadata, -1 if the dictionary is new
+     * @param splitKeys value bytes in ascending order
+     */
+    public List<AppendDictPartition> planPartitions(long baseVersion, List<byte[]> splitKeys) {
+        List<AppendDictSliceKey> lowerKeys = new ArrayList<>();
+        lowerKeys.add(AppendDictSliceKey.START_KEY);
+        for (byte[] splitKey : splitKeys) {
+            AppendDictSliceKey key = AppendDictSliceKey.wrap(splitKey);
+            if (!sliceFileMap.isEmpty()) {
+                key = sliceFileMap.floorKey(key);
+            }
+            AppendDictSliceKey last = lowerKeys.get(lowerKeys.size() - 1);
+            Preconditions.checkArgument(key.compareTo(last) >= 0, "split keys should be in ascending order");
+            if (!key.equals(last)) {
+                lowerKeys.add(key);
+            }
+        }
+
+        List<AppendDictPartition> partitions = new ArrayList<>();
+        for (int i = 0; i < lowerKeys.size(); i++) {
+            AppendDictSliceKey upperKey = i + 1 < lowerKeys.size() ? lowerKeys.get(i + 1) : null;
+            partitions.add(new AppendDictPartition(i, baseVersion, lowerKeys.get(i), upperKey, 0, 0));
+        }
+        return partitions;
+    }
+
+    /**
+     * Give each partition a disjoint range of new IDs after maxId, sized by the number of new values it adds.
+     * IDs left unused in a range are skipped forever, so the counts should be exact.
+     *
+     * @param newValueCounts values not in this version, in the same order as partitions
+     */
+    public void assignPartitionIds(List<AppendDictPartition> partitions, List<Integer> newValueCounts) {
+        Preconditions.checkArgument(partitions.size() == newValueCounts.size(), "%s partitions but %s counts", partitions.size(), newValueCounts.size());
+
+        long nextId = (maxId & 0xFFFFFFFFL) + 1;
+        for (int i = 0; i < partitions.size(); i++) {
+            int capacity = newValueCounts.get(i);
+            Preconditions.checkArgument(capacity >= 0, "negative count %s", capacity);
+            Preconditions.checkState(nextId + capacity - 1 <= MAX_UNSIGNED_ID, "AppendTrieDictionary Id Overflow Unsigned Integer Size 4294967294");
+            AppendDictPartition partition = partitions.get(i);
+            partition.idStart = (int) nextId;
+            partition.idCapacity = capacity;
+            nextId += capacity;
+        }
+    }
+
+    /**
+     * Merge the results of a parallel build into the metadata of a new version. The slices of each partition
+     * replace the slices of this version in its range, nothing but the slice map and counters are touched.
+     *
+     * @param partitionMetas result of each partition, in the same order as partitions
+     */
+    public GlobalDictMetadata mergePartitions(int newBaseId, List<AppendDictPartition> partitions, List<GlobalDictMetadata> partitionMetas) {
+        Preconditions.checkArgument(partitions.size() == partitionMetas.size(), "%s partitions but %s results", partitions.size(), partitionMetas.size());
+
+        TreeMap<AppendDictSliceKey, String> mergedMap = new TreeMap<>(sliceFileMap);
+        long mergedMaxId = maxId & 0xFFFFFFFFL;
+        int mergedMaxValueLength = maxValueLength;
+        long mergedValues = nValues;
+        BytesConverter converter = bytesConverter;
+
+        for (int i = 0; i < partitions.size(); i++) {
+            AppendDictPartition partition = partitions.get(i);
+            GlobalDictMetadata result = partitionMetas.get(i);
+
+            if (partition.upperKey == null)
+                mergedMap.tailMap(partition.lowerKey, true).clear();
+            else
+                mergedMap.subMap(partition.lowerKey, true, partition.upperKey, false).clear();
+            for (Map.Entry<AppendDictSliceKey, String> entry : result.sliceFileMap.entrySet()) {
+                Preconditions.checkState(partition.contains(entry.getKey()), "slice %s out of %s", entry.getKey(), partition);
+                mergedMap.put(entry.getKey(), entry.getValue());
+            }
+
+            Preconditions.checkState(result.nValues <= partition.idCapacity, "%s values exceed %s", result.nValues, partition);
+            mergedMaxId = Math.max(mergedMaxId, result.maxId & 0xFFFFFFFFL);
+            mergedMaxValueLength = Math.max(mergedMaxValueLength, result.maxValueLength);
+            mergedValues += result.nValues;
+            if (converter == null)
+                converter = result.bytesConverter;
+        }
+        // make sure first key is always "", the first partitions may be empty
+        if (!mergedMap.isEmpty() && !mergedMap.firstKey().equals(AppendDictSliceKey.START_KEY)) {
+            String firstFile = mergedMap.remove(mergedMap.firstKey());
+            mergedMap.put(AppendDictSliceKey.START_KEY, firstFile);
+        }
+
+        return new GlobalDictMetadata(newBaseId, (int) mergedMaxId, mergedMaxValueLength, (int) mergedValues, converter, mergedMap);
+    }
+
+    static GlobalDictMetadata empty() {
+        return new GlobalDictMetadata(0, 0, 0, 0, null, new TreeMap<AppendDictSliceKey, String>());
+    }
 }
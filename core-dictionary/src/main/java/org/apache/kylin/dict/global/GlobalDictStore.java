@@ -21,19 +21,46 @@ package org.apache.kylin.dict.global;
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.KylinConfigCannotInitException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 public abstract class GlobalDictStore {
 
+    private static KylinConfig defaultConfig;
+
     protected final String baseDir; // base directory containing all versions of this global dict
+    protected final KylinConfig config;
     protected final int maxVersions;
     protected final int versionTTL;
 
     protected GlobalDictStore(String baseDir) {
         this.baseDir = Preconditions.checkNotNull(baseDir, "baseDir");
-        this.maxVersions = KylinConfig.getInstanceFromEnv().getAppendDictMaxVersions();
-        this.versionTTL = KylinConfig.getInstanceFromEnv().getAppendDictVersionTTL();
+        this.config = getEnvConfigOrDefault();
+        this.maxVersions = config.getAppendDictMaxVersions();
+        this.versionTTL = config.getAppendDictVersionTTL();
+    }
+
+    /**
+     * The config of the env, or the defaults in a process without one, e.g. a Spark executor reading a dictionary.
+     */
+    private static KylinConfig getEnvConfigOrDefault() {
+        try {
+            return KylinConfig.getInstanceFromEnv();
+        } catch (IllegalStateException | KylinConfigCannotInitException e) {
+            synchronized (GlobalDictStore.class) {
+                if (defaultConfig == null)
+                    defaultConfig = KylinConfig.createKylinConfig(new Properties());
+                return defaultConfig;
+            }
+        }
+    }
+
+    public KylinConfig getConfig() {
+        return config;
     }
 
     // workingDir should be an absolute path, will create if not exists
@@ -92,6 +119,59 @@ public abstract class GlobalDictStore {
      */
     public abstract void commit(String workingDir, GlobalDictMetadata globalDictMetadata, boolean isAppendDictGlobal) throws IOException;
 
+    /**
+     * Plan the value ranges of a parallel build on the latest version, see {@link GlobalDictMetadata#planPartitions}.
+     * The caller should hold the dict lock from planning till {@link #commitPartitions}.
+     */
+    public abstract List<AppendDictPartition> planPartitions(List<byte[]> splitKeys) throws IOException;
+
+    /**
+     * Plan a parallel build of at most nPartitions partitions, split by the slices of the latest version so each
+     * partition owns about the same number of them. A new dict has no slices yet and gets a single partition.
+     */
+    public List<AppendDictPartition> planPartitions(int nPartitions) throws IOException {
+        List<byte[]> splitKeys = new ArrayList<>();
+        Long[] versions = listAllVersions();
+        if (versions.length > 0) {
+            List<AppendDictSliceKey> sliceKeys = new ArrayList<>(getMetadata(versions[versions.length - 1]).sliceFileMap.keySet());
+            for (int i = 1; i < nPartitions; i++) {
+                splitKeys.add(sliceKeys.get((int) ((long) i * sliceKeys.size() / nPartitions)).key);
+            }
+        }
+        return planPartitions(splitKeys);
+    }
+
+    /**
+     * Give the planned partitions their ranges of new ids, see {@link GlobalDictMetadata#assignPartitionIds}.
+     * @param partitions all partitions of the build
+     * @param newValueCounts exact number of new values per partition
+     * @throws IOException on I/O error
+     */
+    public abstract void assignPartitionIds(List<AppendDictPartition> partitions, List<Integer> newValueCounts) throws IOException;
+
+    // return the working dir of a partition in a parallel build
+    public abstract String getPartitionWorkingDir(int partitionIndex);
+
+    // partitionWorkingDir will be created empty, the slices of base version are read in place
+    abstract void prepareForPartitionWrite(String partitionWorkingDir) throws IOException;
+
+    /**
+     * Save the result of a partition in its working dir, to be merged by {@link #commitPartitions}.
+     * @param partitionWorkingDir working dir of the partition, should exist
+     * @param partitionMetadata slices in the partition range, and counters of new values
+     * @throws IOException on I/O error
+     */
+    public abstract void writePartition(String partitionWorkingDir, GlobalDictMetadata partitionMetadata) throws IOException;
+
+    /**
+     * Merge all partitions of a parallel build into a new version, fail if another version was committed
+     * since the partitions were planned.
+     * @param partitions all partitions of the build
+     * @param baseId base id of the new version
+     * @throws IOException on I/O error
+     */
+    public abstract void commitPartitions(List<AppendDictPartition> partitions, int baseId) throws IOException;
+
     /**
      * Copy the latest version of this dict to another meta. The source is unchanged.
      * @param srcConfig config of source meta
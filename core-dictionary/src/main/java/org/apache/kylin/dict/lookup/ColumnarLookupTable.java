@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.DateFormat;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.metadata.model.ColumnDesc;
+import org.apache.kylin.metadata.model.TableDesc;
+
+/**
+ * A lookup table that works directly on the dictionary encoded columns of a {@link SnapshotTable}.
+ * <p>
+ * Unlike {@link LookupStringTable}, no row is copied. The PK is indexed by an open addressing hash table of
+ * row numbers, hashed and compared on dictionary IDs, so a lookup costs one dictionary lookup per key column
+ * and the table costs one int per slot on top of the snapshot. Cells are decoded only when read.
+ * <p>
+ * Same as LookupStringTable, cells of date/time columns are in millis, both for the key and for the values.
+ */
+public class ColumnarLookupTable {
+
+    private final TableDesc tableDesc;
+    private final String[] keyColumns;
+    private final SnapshotTable snapshot;
+    private final Dictionary<String> dict;
+
+    private final int[] keyIndex;
+    private final int[][] keyIds; // IDs of the key columns, by row
+    private final int[] slots; // row + 1, 0 for empty
+    private final int mask;
+
+    // date/time cells, the millis string by dictionary ID and the other way around for key columns
+    private final boolean[] colIsDateTime;
+    private final Map<Integer, Map<Integer, String>> millisById = new HashMap<Integer, Map<Integer, String>>();
+    private final Map<Integer, Map<String, Integer>> idByMillis = new HashMap<Integer, Map<String, Integer>>();
+
+    public ColumnarLookupTable(TableDesc tableDesc, String[] keyColumns, SnapshotTable snapshot) {
+        this.tableDesc = tableDesc;
+        this.keyColumns = keyColumns;
+        this.snapshot = snapshot;
+        this.dict = snapshot.getDictionary();
+
+        ColumnDesc[] cols = tableDesc.getColumns();
+        colIsDateTime = new boolean[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            colIsDateTime[i] = cols[i].getType().isDateTimeFamily();
+        }
+
+        keyIndex = new int[keyColumns.length];
+        keyIds = new int[keyColumns.length][];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyIndex[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
+            keyIds[i] = snapshot.getColumnIds(keyIndex[i]);
+        }
+
+        for (int c = 0; c < cols.length; c++) {
+            if (colIsDateTime[c] && c < snapshot.getColumnCount()) {
+                initDateTimeColumn(c);
+            }
+        }
+
+        int rowCount = snapshot.getRowCount();
+        int capacity = Integer.highestOneBit(Math.max(rowCount, 1) * 2 - 1) << 1; // load factor <= 0.5
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int r = 0; r < rowCount; r++) {
+            int s = hashOfRow(r) & mask;
+            while (slots[s] != 0) {
+                if (sameKey(slots[s] - 1, r)) {
+                    throw new IllegalStateException("The table: " + tableDesc.getName() + " Dup key found, key=" + toString(keyOfRow(r)) + ", value1=" + toString(getRow(slots[s] - 1)) + ", value2=" + toString(getRow(r)));
+                }
+                s = (s + 1) & mask;
+            }
+            slots[s] = r + 1;
+        }
+    }
+
+    private void initDateTimeColumn(int c) {
+        Map<Integer, String> byId = new HashMap<Integer, String>();
+        int[] ids = snapshot.getColumnIds(c);
+        for (int r = 0; r < ids.length; r++) {
+            if (!byId.containsKey(ids[r])) {
+                String cell = dict.getValueFromId(ids[r]);
+                byId.put(ids[r], cell == null ? null : String.valueOf(DateFormat.stringToMillis(cell)));
+            }
+        }
+        millisById.put(c, byId);
+
+        for (int k : keyIndex) {
+            if (k == c) {
+                Map<String, Integer> byMillis = new HashMap<String, Integer>();
+                for (Map.Entry<Integer, String> e : byId.entrySet()) {
+                    byMillis.put(e.getValue(), e.getKey());
+                }
+                idByMillis.put(c, byMillis);
+            }
+        }
+    }
+
+    private int hashOfRow(int row) {
+        int h = 1;
+        for (int i = 0; i < keyIds.length; i++) {
+            h = 31 * h + keyIds[i][row];
+        }
+        return mix(h);
+    }
+
+    private static int hashOfIds(int[] ids) {
+        int h = 1;
+        for (int i = 0; i < ids.length; i++) {
+            h = 31 * h + ids[i];
+        }
+        return mix(h);
+    }
+
+    // dictionary IDs are dense, spread them over the slots
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean sameKey(int row1, int row2) {
+        for (int i = 0; i < keyIds.length; i++) {
+            if (keyIds[i][row1] != keyIds[i][row2])
+                return false;
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int row, int[] ids) {
+        for (int i = 0; i < keyIds.length; i++) {
+            if (keyIds[i][row] != ids[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the row of given key IDs, or -1 if not found.
+     */
+    public int findRowByIds(int[] ids) {
+        int s = hashOfIds(ids) & mask;
+        while (slots[s] != 0) {
+            int row = slots[s] - 1;
+            if (keyEquals(row, ids))
+                return row;
+            s = (s + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the row of given key, or -1 if not found. The key values are in the order of key columns.
+     */
+    public int findRow(String[] key) {
+        if (snapshot.getRowCount() == 0)
+            return -1;
+
+        int[] ids = new int[key.length];
+        for (int i = 0; i < key.length; i++) {
+            ids[i] = toId(keyIndex[i], key[i]);
+            if (ids[i] < 0)
+                return -1;
+        }
+        return findRowByIds(ids);
+    }
+
+    private int toId(int col, String value) {
+        if (colIsDateTime[col]) {
+            Integer id = idByMillis.get(col).get(value);
+            return id == null ? -1 : id;
+        }
+        try {
+            return dict.getIdFromValue(value);
+        } catch (IllegalArgumentException e) {
+            return -1; // not in the dictionary
+        }
+    }
+
+    /**
+     * The dictionary ID of a cell, the same ID means the same value across all columns.
+     */
+    public int getValueId(int row, int col) {
+        return snapshot.getColumnIds(col)[row];
+    }
+
+    public String getValue(int row, int col) {
+        return decode(col, getValueId(row, col));
+    }
+
+    /**
+     * Decodes a dictionary ID of given column, in the same form as {@link #getValue(int, int)}.
+     */
+    public String decode(int col, int id) {
+        if (colIsDateTime[col])
+            return millisById.get(col).get(id);
+        return dict.getValueFromId(id);
+    }
+
+    /**
+     * Converts a cell of the snapshot to the form of this lookup table, i.e. date/time to millis.
+     */
+    public String convertCell(int col, String cell) {
+        if (colIsDateTime[col] && cell != null)
+            return String.valueOf(DateFormat.stringToMillis(cell));
+        return cell;
+    }
+
+    public String[] getRow(int row) {
+        String[] result = new String[snapshot.getColumnCount()];
+        for (int c = 0; c < result.length; c++) {
+            result[c] = getValue(row, c);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link LookupTable#getRow(Array)}, returns a copy of the row or null if key not found.
+     */
+    public String[] getRow(Array<String> key) {
+        int row = findRow(key.data);
+        return row < 0 ? null : getRow(row);
+    }
+
+    private String[] keyOfRow(int row) {
+        String[] key = new String[keyIndex.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = getValue(row, keyIndex[i]);
+        }
+        return key;
+    }
+
+    public SnapshotColumnIndex getColumnIndex(int col) {
+        return snapshot.getColumnIndex(col);
+    }
+
+    public int getRowCount() {
+        return snapshot.getRowCount();
+    }
+
+    public int getColumnCount() {
+        return snapshot.getColumnCount();
+    }
+
+    public TableDesc getTableDesc() {
+        return tableDesc;
+    }
+
+    public String[] getKeyColumns() {
+        return keyColumns;
+    }
+
+    public SnapshotTable getSnapshot() {
+        return snapshot;
+    }
+
+    private String toString(String[] cols) {
+        StringBuilder b = new StringBuilder();
+        b.append("[");
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0)
+                b.append(",");
+            b.append(cols[i]);
+        }
+        b.append("]");
+        return b.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarLookupTable [path=" + snapshot + "]";
+    }
+}
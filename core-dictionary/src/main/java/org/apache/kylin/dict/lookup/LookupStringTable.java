@@ -82,14 +82,20 @@ public class LookupStringTable extends LookupTable<String> {
     @Override
     protected String[] convertRow(String[] cols) {
         for (int i = 0; i < cols.length; i++) {
-            if (colIsDateTime[i]) {
-                if (cols[i] != null)
-                    cols[i] = String.valueOf(DateFormat.stringToMillis(cols[i]));
-            }
+            cols[i] = convertCell(i, cols[i]);
         }
         return cols;
     }
 
+    /**
+     * Converts a cell read from the underlying table to the form kept in this lookup table.
+     */
+    public String convertCell(int col, String cell) {
+        if (colIsDateTime[col] && cell != null)
+            return String.valueOf(DateFormat.stringToMillis(cell));
+        return cell;
+    }
+
     @Override
     protected Comparator<String> getComparator(int idx) {
         if (colIsDateTime[idx])
@@ -90,6 +90,10 @@ abstract public class LookupTable<T> {
 
     abstract protected T[] convertRow(String[] cols);
 
+    public IReadableTable getTable() {
+        return table;
+    }
+
     public T[] getRow(Array<T> key) {
         return data.get(key);
     }
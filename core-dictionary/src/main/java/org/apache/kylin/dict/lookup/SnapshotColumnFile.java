@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.JsonUtil;
+import org.apache.kylin.dict.TrieDictionary;
+
+/**
+ * A snapshot in a local file laid out by column, memory-mapped for reading.
+ * <p>
+ * Opening the file only parses the header, the dictionary and each column are read from the mapped file
+ * the first time they are accessed, so a query needing one derived column doesn't pay for the whole
+ * snapshot, and reopening after a cache eviction or a restart costs no deserialization at all.
+ * <p>
+ * Layout: magic, version, snapshot info as JSON, row count, column count, dictionary length, dictionary,
+ * then the dictionary IDs of each column in turn, 4 bytes each.
+ */
+public class SnapshotColumnFile {
+
+    private static final int MAGIC = 0x4B534E50; // "KSNP"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final String infoJson;
+    private final int rowCount;
+    private final int columnCount;
+    private final int dictOffset;
+    private final int dictLength;
+    private final int columnsOffset;
+
+    private SnapshotColumnFile(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        ByteBuffer header = buffer.duplicate();
+        try {
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a snapshot column file: " + file);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot column file version " + version + ": " + file);
+
+            // DataInputStream reads exactly the bytes of the UTF, leaving the header at the row count
+            this.infoJson = new DataInputStream(new ByteBufferBackedInputStream(header)).readUTF();
+            this.rowCount = header.getInt();
+            this.columnCount = header.getInt();
+            this.dictLength = header.getInt();
+            this.dictOffset = header.position();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot column file: " + file, e);
+        }
+        this.columnsOffset = dictOffset + dictLength;
+
+        long expected = (long) columnsOffset + 4L * rowCount * columnCount;
+        if (buffer.limit() != expected)
+            throw new IOException("Truncated snapshot column file, expect " + expected + " bytes but " + buffer.limit() + ": " + file);
+    }
+
+    /**
+     * Maps the given file, only the header is read.
+     */
+    public static SnapshotColumnFile open(File file) throws IOException {
+        if (file.length() > Integer.MAX_VALUE)
+            throw new IOException("Snapshot column file larger than 2GB: " + file);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new SnapshotColumnFile(file, buffer);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Writes the snapshot to given file, via a temp file and rename so a reader never sees a partial file.
+     */
+    public static void write(SnapshotTable snapshot, File file) throws IOException {
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+        DataOutputStream dictOut = new DataOutputStream(dictBytes);
+        snapshot.getDictionary().write(dictOut);
+        dictOut.close();
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+            throw new IOException("Failed to create directory " + parent);
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(JsonUtil.writeValueAsString(snapshot));
+            out.writeInt(snapshot.getRowCount());
+            out.writeInt(snapshot.getColumnCount());
+            out.writeInt(dictBytes.size());
+            dictBytes.writeTo(out);
+            for (int c = 0; c < snapshot.getColumnCount(); c++) {
+                for (int id : snapshot.getColumnIds(c)) {
+                    out.writeInt(id);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            // lost a race with another writer of the same snapshot is fine
+            if (!file.exists())
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Returns the snapshot backed by this file, its dictionary and columns are loaded on demand.
+     */
+    public SnapshotTable toSnapshotTable() throws IOException {
+        SnapshotTable snapshot = JsonUtil.readValue(infoJson, SnapshotTable.class);
+        snapshot.setColumnFile(this);
+        return snapshot;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    Dictionary<String> readDictionary() throws IOException {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(dictOffset);
+        dup.limit(dictOffset + dictLength);
+        TrieDictionary<String> dict = new TrieDictionary<String>();
+        // looked up on the mapped file, with the value caches as a dictionary on heap
+        dict.readFields(dup);
+        dict.enableCache();
+        return dict;
+    }
+
+    int[] readColumn(int col) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(columnsOffset + 4 * rowCount * col);
+        IntBuffer ints = dup.slice().asIntBuffer();
+        int[] ids = new int[rowCount];
+        ints.get(ids);
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotColumnFile [" + file + "]";
+    }
+}
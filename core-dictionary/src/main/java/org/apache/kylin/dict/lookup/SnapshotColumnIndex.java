@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+/**
+ * Inverted index of one snapshot column, from each distinct value to the bitmap of row numbers having it.
+ * <p>
+ * Values are kept as IDs of the snapshot dictionary in ascending order, so a lookup by value is a dictionary
+ * lookup plus a binary search, and a predicate is evaluated once per distinct value instead of once per row.
+ */
+public class SnapshotColumnIndex {
+
+    private static final ImmutableRoaringBitmap EMPTY = new MutableRoaringBitmap();
+
+    private final Dictionary<String> dict;
+    private final int[] valueIds;
+    private final ImmutableRoaringBitmap[] rows;
+    private final int rowCount;
+
+    SnapshotColumnIndex(Dictionary<String> dict, int[] columnIds) {
+        this.dict = dict;
+        this.rowCount = columnIds.length;
+
+        Map<Integer, MutableRoaringBitmap> map = new HashMap<Integer, MutableRoaringBitmap>();
+        for (int r = 0; r < columnIds.length; r++) {
+            int id = columnIds[r];
+            MutableRoaringBitmap bitmap = map.get(id);
+            if (bitmap == null) {
+                bitmap = new MutableRoaringBitmap();
+                map.put(id, bitmap);
+            }
+            bitmap.add(r);
+        }
+
+        this.valueIds = new int[map.size()];
+        int i = 0;
+        for (Integer id : map.keySet()) {
+            valueIds[i++] = id;
+        }
+        Arrays.sort(valueIds);
+
+        this.rows = new ImmutableRoaringBitmap[valueIds.length];
+        for (i = 0; i < valueIds.length; i++) {
+            MutableRoaringBitmap bitmap = map.get(valueIds[i]);
+            bitmap.runOptimize();
+            rows[i] = bitmap;
+        }
+    }
+
+    public int getValueCount() {
+        return valueIds.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /** the i-th distinct value, null for NULL cells */
+    public String getValue(int i) {
+        return dict.getValueFromId(valueIds[i]);
+    }
+
+    /** rows of the i-th distinct value */
+    public ImmutableRoaringBitmap getRows(int i) {
+        return rows[i];
+    }
+
+    /** rows having exactly the given value, empty if none */
+    public ImmutableRoaringBitmap getRows(String value) {
+        int id;
+        try {
+            id = dict.getIdFromValue(value);
+        } catch (IllegalArgumentException e) {
+            return EMPTY;
+        }
+        int i = Arrays.binarySearch(valueIds, id);
+        return i < 0 ? EMPTY : rows[i];
+    }
+}
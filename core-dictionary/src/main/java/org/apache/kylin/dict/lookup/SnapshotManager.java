@@ -18,6 +18,8 @@
 
 package org.apache.kylin.dict.lookup;
 
+import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,6 +27,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.metadata.model.DataModelManager;
@@ -92,7 +95,7 @@ public class SnapshotManager {
                 .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, SnapshotTable>() {
                     @Override
                     public SnapshotTable load(String key) throws Exception {
-                        SnapshotTable snapshotTable = SnapshotManager.this.load(key, true);
+                        SnapshotTable snapshotTable = SnapshotManager.this.loadViaLocalCache(key);
                         return snapshotTable;
                     }
                 });
@@ -106,7 +109,7 @@ public class SnapshotManager {
         try {
             SnapshotTable r = snapshotCache.get(resourcePath);
             if (r == null) {
-                r = load(resourcePath, true);
+                r = loadViaLocalCache(resourcePath);
                 snapshotCache.put(resourcePath, r);
             }
             return r;
@@ -210,6 +213,61 @@ public class SnapshotManager {
         store.putResource(path, snapshot, SnapshotTableSerializer.FULL_SERIALIZER);
     }
 
+    /**
+     * Loads the snapshot from the local columnar file if configured, downloading it from the store the first time.
+     * The file name has the timestamp of the resource, so a rebuilt snapshot is downloaded again.
+     */
+    private SnapshotTable loadViaLocalCache(String resourcePath) throws IOException {
+        String cacheDir = config.getSnapshotLocalCacheDir();
+        if (StringUtils.isBlank(cacheDir))
+            return load(resourcePath, true);
+
+        ResourceStore store = DataModelManager.getInstance(this.config).getStore();
+        long ts = store.getResourceTimestamp(resourcePath);
+        if (ts == 0)
+            return load(resourcePath, true);
+
+        File file = new File(cacheDir, resourcePath + "." + ts);
+        if (file.exists()) {
+            try {
+                SnapshotTable table = SnapshotColumnFile.open(file).toSnapshotTable();
+                logger.debug("Mapped snapshot at " + resourcePath + " from " + file);
+                return table;
+            } catch (IOException e) {
+                logger.warn("Failed to open " + file + ", reload snapshot from store", e);
+                file.delete();
+            }
+        }
+
+        SnapshotTable table = load(resourcePath, true);
+        if (table != null && table.getRowCount() > 0) {
+            try {
+                deleteStaleLocalCopies(file, resourcePath);
+                SnapshotColumnFile.write(table, file);
+                logger.info("Cached snapshot " + resourcePath + " at " + file);
+            } catch (IOException e) {
+                logger.warn("Failed to cache snapshot " + resourcePath + " at " + file, e);
+            }
+        }
+        return table;
+    }
+
+    private void deleteStaleLocalCopies(File file, String resourcePath) {
+        final String prefix = new File(resourcePath).getName() + ".";
+        File[] stale = file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && !name.endsWith(".tmp");
+            }
+        });
+        if (stale != null) {
+            for (File f : stale) {
+                // mapped buffers of the old file stay valid after delete
+                f.delete();
+            }
+        }
+    }
+
     private SnapshotTable load(String resourcePath, boolean loadData) throws IOException {
         logger.info("Loading snapshotTable from " + resourcePath + ", with loadData: " + loadData);
         ResourceStore store = DataModelManager.getInstance(this.config).getStore();
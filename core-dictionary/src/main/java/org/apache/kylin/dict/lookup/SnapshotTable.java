@@ -26,10 +26,11 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Strings;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.Dictionary;
@@ -58,8 +59,18 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     @JsonProperty("useDictionary")
     private boolean useDictionary;
 
-    private ArrayList<int[]> rowIndices;
-    private Dictionary<String> dict;
+    // dictionary IDs in column major, columnIds[col][row], to save the object overhead of a row
+    private int rowCount;
+    private volatile int[][] columnIds;
+    private volatile Dictionary<String> dict;
+
+    // if not null, the dictionary and columns not loaded yet (null) are read from this local file on demand
+    private transient SnapshotColumnFile columnFile;
+
+    // inverted indexes built on demand, cached along with the snapshot
+    private transient ConcurrentMap<Integer, SnapshotColumnIndex> columnIndexes = new ConcurrentHashMap<Integer, SnapshotColumnIndex>();
+    // lookup tables by PK, built on demand, cached along with the snapshot
+    private transient ConcurrentMap<String, ColumnarLookupTable> lookupTables = new ConcurrentHashMap<String, ColumnarLookupTable>();
 
     // default constructor for JSON serialization
     public SnapshotTable() {
@@ -112,7 +123,27 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             IOUtils.closeQuietly(reader);
         }
 
-        this.rowIndices = allRowIndices;
+        setRows(allRowIndices, tableDesc.getColumnCount());
+    }
+
+    private void setRows(List<int[]> rows, int n) {
+        int[][] cols = new int[n][rows.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            int[] row = rows.get(r);
+            for (int c = 0; c < n; c++) {
+                cols[c][r] = row[c];
+            }
+        }
+        this.columnIds = cols;
+        this.rowCount = rows.size();
+    }
+
+    private int[] getRowIds(int row) {
+        int[] ids = new int[getColumnCount()];
+        for (int c = 0; c < ids.length; c++) {
+            ids[c] = getColumnIds(c)[row];
+        }
+        return ids;
     }
 
     public String getResourcePath() {
@@ -140,15 +171,14 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             @Override
             public boolean next() throws IOException {
                 i++;
-                return i < rowIndices.size();
+                return i < rowCount;
             }
 
             @Override
             public String[] getRow() {
-                int[] rowIndex = rowIndices.get(i);
-                String[] row = new String[rowIndex.length];
+                String[] row = new String[getColumnCount()];
                 for (int x = 0; x < row.length; x++) {
-                    row[x] = dict.getValueFromId(rowIndex[x]);
+                    row[x] = getDictionary().getValueFromId(getColumnIds(x)[i]);
                 }
                 return row;
             }
@@ -159,6 +189,99 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         };
     }
 
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnIds.length;
+    }
+
+    public String getCell(int row, int col) {
+        return getDictionary().getValueFromId(getColumnIds(col)[row]);
+    }
+
+    /**
+     * The dictionary IDs of a column, indexed by row. Shared, don't modify.
+     */
+    public int[] getColumnIds(int col) {
+        int[][] cols = columnIds;
+        if (col >= cols.length)
+            return new int[0]; // an empty snapshot read back has no column
+        int[] ids = cols[col];
+        return ids != null ? ids : loadColumn(col);
+    }
+
+    private synchronized int[] loadColumn(int col) {
+        int[] ids = columnIds[col];
+        if (ids == null) {
+            ids = columnFile.readColumn(col);
+            // copy on write, readers see either null or the complete column
+            int[][] cols = columnIds.clone();
+            cols[col] = ids;
+            columnIds = cols;
+        }
+        return ids;
+    }
+
+    /**
+     * The dictionary of all cell values, of all columns.
+     */
+    public Dictionary<String> getDictionary() {
+        Dictionary<String> d = dict;
+        return d != null ? d : loadDictionary();
+    }
+
+    private synchronized Dictionary<String> loadDictionary() {
+        if (dict == null) {
+            try {
+                dict = columnFile.readDictionary();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read dictionary of snapshot " + getResourcePath() + " from " + columnFile, e);
+            }
+        }
+        return dict;
+    }
+
+    /**
+     * Lets the dictionary and columns be read on demand from a local columnar file, see {@link SnapshotColumnFile}.
+     */
+    void setColumnFile(SnapshotColumnFile columnFile) {
+        this.columnFile = columnFile;
+        this.rowCount = columnFile.getRowCount();
+        this.columnIds = new int[columnFile.getColumnCount()][];
+        this.dict = null;
+    }
+
+    /**
+     * Returns the inverted index of given column, built at first call and then cached with this snapshot.
+     */
+    public SnapshotColumnIndex getColumnIndex(int col) {
+        SnapshotColumnIndex index = columnIndexes.get(col);
+        if (index == null) {
+            index = new SnapshotColumnIndex(getDictionary(), getColumnIds(col));
+            SnapshotColumnIndex existing = columnIndexes.putIfAbsent(col, index);
+            if (existing != null)
+                index = existing;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the lookup table of this snapshot indexed by given PK, shared by all callers.
+     */
+    public ColumnarLookupTable getLookupTable(TableDesc tableDesc, String[] keyColumns) {
+        String key = Arrays.toString(keyColumns);
+        ColumnarLookupTable lookup = lookupTables.get(key);
+        if (lookup == null) {
+            lookup = new ColumnarLookupTable(tableDesc, keyColumns, this);
+            ColumnarLookupTable existing = lookupTables.putIfAbsent(key, lookup);
+            if (existing != null)
+                lookup = existing;
+        }
+        return lookup;
+    }
+
     @Override
     public TableSignature getSignature() throws IOException {
         return signature;
@@ -176,9 +299,9 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
      */
     @Override
     public int hashCode() {
-        int[] parts = new int[this.rowIndices.size()];
+        int[] parts = new int[rowCount];
         for (int i = 0; i < parts.length; ++i)
-            parts[i] = Arrays.hashCode(this.rowIndices.get(i));
+            parts[i] = Arrays.hashCode(getRowIds(i));
         return Arrays.hashCode(parts);
     }
 
@@ -188,17 +311,18 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             return false;
         SnapshotTable that = (SnapshotTable) o;
 
-        if (this.dict.equals(that.dict) == false)
+        if (this.getDictionary().equals(that.getDictionary()) == false)
             return false;
 
-        //compare row by row
-        if (this.rowIndices.size() != that.rowIndices.size())
+        //compare column by column, same as row by row
+        if (this.rowCount != that.rowCount)
+            return false;
+        if (this.getColumnCount() != that.getColumnCount())
             return false;
-        for (int i = 0; i < this.rowIndices.size(); ++i) {
-            if (!ArrayUtils.isEquals(this.rowIndices.get(i), that.rowIndices.get(i)))
+        for (int c = 0; c < getColumnCount(); c++) {
+            if (!Arrays.equals(this.getColumnIds(c), that.getColumnIds(c)))
                 return false;
         }
-
         return true;
     }
 
@@ -213,26 +337,29 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     }
 
     void writeData(DataOutput out) throws IOException {
-        out.writeInt(rowIndices.size());
-        if (rowIndices.size() > 0) {
-            int n = rowIndices.get(0).length;
+        out.writeInt(rowCount);
+        if (rowCount > 0) {
+            int n = getColumnCount();
+            int[][] cols = new int[n][];
+            for (int j = 0; j < n; j++) {
+                cols[j] = getColumnIds(j);
+            }
             out.writeInt(n);
 
             if (this.useDictionary == true) {
-                dict.write(out);
-                for (int i = 0; i < rowIndices.size(); i++) {
-                    int[] row = rowIndices.get(i);
+                getDictionary().write(out);
+                for (int i = 0; i < rowCount; i++) {
                     for (int j = 0; j < n; j++) {
-                        out.writeInt(row[j]);
+                        out.writeInt(cols[j][i]);
                     }
                 }
 
             } else {
-                for (int i = 0; i < rowIndices.size(); i++) {
-                    int[] row = rowIndices.get(i);
+                for (int i = 0; i < rowCount; i++) {
                     for (int j = 0; j < n; j++) {
                         // NULL_STR is tricky, but we don't want to break the current snapshots
-                        out.writeUTF(dict.getValueFromId(row[j]) == null ? NULL_STR : dict.getValueFromId(row[j]));
+                        String cell = getDictionary().getValueFromId(cols[j][i]);
+                        out.writeUTF(cell == null ? NULL_STR : cell);
                     }
                 }
             }
@@ -243,19 +370,19 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         int rowNum = in.readInt();
         if (rowNum > 0) {
             int n = in.readInt();
-            rowIndices = new ArrayList<int[]>(rowNum);
+            int[][] cols = new int[n][rowNum];
 
             if (this.useDictionary == true) {
                 this.dict = new TrieDictionary<String>();
                 dict.readFields(in);
 
                 for (int i = 0; i < rowNum; i++) {
-                    int[] row = new int[n];
-                    this.rowIndices.add(row);
                     for (int j = 0; j < n; j++) {
-                        row[j] = in.readInt();
+                        cols[j][i] = in.readInt();
                     }
                 }
+                this.columnIds = cols;
+                this.rowCount = rowNum;
             } else {
                 List<String[]> rows = new ArrayList<String[]>(rowNum);
                 TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<String>(new StringBytesConverter());
@@ -273,16 +400,18 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
                     }
                 }
                 this.dict = b.build(0);
-                for (String[] row : rows) {
-                    int[] rowIndex = new int[n];
+                for (int r = 0; r < rowNum; r++) {
+                    String[] row = rows.get(r);
                     for (int i = 0; i < n; i++) {
-                        rowIndex[i] = dict.getIdFromValue(row[i]);
+                        cols[i][r] = dict.getIdFromValue(row[i]);
                     }
-                    this.rowIndices.add(rowIndex);
                 }
+                this.columnIds = cols;
+                this.rowCount = rowNum;
             }
         } else {
-            rowIndices = new ArrayList<int[]>();
+            rowCount = 0;
+            columnIds = new int[0][];
             dict = new TrieDictionary<String>();
         }
     }
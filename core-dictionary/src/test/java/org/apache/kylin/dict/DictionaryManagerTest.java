@@ -21,8 +21,12 @@ package org.apache.kylin.dict;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
@@ -33,6 +37,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class DictionaryManagerTest extends LocalFileMetadataTestCase {
 
     @Before
@@ -78,4 +84,100 @@ public class DictionaryManagerTest extends LocalFileMetadataTestCase {
         DictionaryInfo info5 = dictMgr.saveDictionary(col, MockupReadableTable.newNonExistTable("/a/path"), dict2);
         assertTrue(info1 != info5);
     }
+
+    @Test
+    public void testCacheEvictOffHeap() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.cache-max-mb", "1");
+        config.setProperty("kylin.dictionary.off-heap-cache-max-mb", "64");
+        DictionaryManager.clearCache();
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        DataModelDesc model = DataModelManager.getInstance(config).getDataModelDesc("test_kylin_inner_join_model_desc");
+        TblColRef col = model.findColumn("lstg_format_name");
+
+        DictionaryInfo info1 = dictMgr.saveDictionary(col, MockupReadableTable.newNonExistTable("/a/path"),
+                buildLargeDict(col, "a"));
+        DictionaryInfo info2 = dictMgr.saveDictionary(col, MockupReadableTable.newNonExistTable("/a/path"),
+                buildLargeDict(col, "b"));
+        assertTrue(info1 != info2);
+
+        // weighted by size, the first evicted to off heap and read back from there
+        assertTrue(dictMgr.getCacheStats().evictionCount() > 0);
+        assertTrue(dictMgr.getOffHeapTier().contains(info1.getResourcePath()));
+        DictionaryInfo reloaded = dictMgr.getDictionaryInfo(info1.getResourcePath());
+        assertTrue(reloaded != info1);
+        assertEquals(1, dictMgr.getOffHeapTier().getHitCount());
+        // looked up on the kept buffer, which stays counted
+        assertTrue(dictMgr.getOffHeapTier().isPinned(info1.getResourcePath()));
+        assertEquals(info1.getLastModified(), reloaded.getLastModified());
+        assertEquals(info1.getDictionaryObject(), reloaded.getDictionaryObject());
+    }
+
+    @Test
+    public void testCacheOversizeDict() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.cache-max-mb", "1");
+        config.setProperty("kylin.dictionary.cache-max-entry-mb", "64");
+        config.setProperty("kylin.dictionary.off-heap-cache-max-mb", "0");
+        DictionaryManager.clearCache();
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        DataModelDesc model = DataModelManager.getInstance(config).getDataModelDesc("test_kylin_inner_join_model_desc");
+        TblColRef col = model.findColumn("lstg_format_name");
+
+        // above the cache size, admitted below the entry ceiling
+        DictionaryInfo info = dictMgr.saveDictionary(col, MockupReadableTable.newNonExistTable("/a/path"),
+                buildLargeDict(col, "a"));
+        assertTrue(info == dictMgr.getDictionaryInfo(info.getResourcePath()));
+        assertEquals(0, dictMgr.getOversizeCount());
+
+        // above the entry ceiling, read again every time
+        config.setProperty("kylin.dictionary.cache-max-entry-mb", "1");
+        DictionaryManager.clearCache();
+        dictMgr = DictionaryManager.getInstance(config);
+        DictionaryInfo reloaded = dictMgr.getDictionaryInfo(info.getResourcePath());
+        assertEquals(info.getDictionaryObject(), reloaded.getDictionaryObject());
+        assertTrue(reloaded != dictMgr.getDictionaryInfo(info.getResourcePath()));
+        assertEquals(2, dictMgr.getOversizeCount());
+    }
+
+    @Test
+    public void testLoadViaLocalFile() throws IOException {
+        File cacheDir = new File(System.getProperty("java.io.tmpdir"), "kylin-dict-" + UUID.randomUUID());
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.local-cache-dir", cacheDir.getAbsolutePath());
+        try {
+            DictionaryManager.clearCache();
+            DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+            DataModelDesc model = DataModelManager.getInstance(config).getDataModelDesc("test_kylin_inner_join_model_desc");
+            TblColRef col = model.findColumn("lstg_format_name");
+            DictionaryInfo info = dictMgr.saveDictionary(col, MockupReadableTable.newNonExistTable("/a/path"),
+                    buildLargeDict(col, "a"));
+
+            // copied to the local file named by the resource timestamp, then looked up on the mapping
+            DictionaryManager.clearCache();
+            DictionaryInfo mapped = DictionaryManager.getInstance(config).getDictionaryInfo(info.getResourcePath());
+            long ts = DataModelManager.getInstance(config).getStore().getResourceTimestamp(info.getResourcePath());
+            File local = new File(cacheDir, info.getResourcePath() + "." + ts);
+            assertTrue(local.exists());
+            assertEquals(ts, mapped.getLastModified());
+            assertEquals(info.getDictionaryObject(), mapped.getDictionaryObject());
+
+            // mapped again from the same file
+            DictionaryManager.clearCache();
+            DictionaryInfo remapped = DictionaryManager.getInstance(config).getDictionaryInfo(info.getResourcePath());
+            assertEquals(info.getDictionaryObject(), remapped.getDictionaryObject());
+            assertEquals(1, local.getParentFile().list().length);
+        } finally {
+            FileUtils.deleteQuietly(cacheDir);
+        }
+    }
+
+    private Dictionary<String> buildLargeDict(TblColRef col, String prefix) throws IOException {
+        List<String> values = Lists.newArrayList();
+        for (int i = 0; i < 50000; i++) {
+            values.add(prefix + UUID.randomUUID().toString());
+        }
+        return DictionaryGenerator.buildDictionary(col.getType(),
+                new IterableDictionaryValueEnumerator(values));
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DictionaryOffHeapTierTest {
+
+    @Test
+    public void testEvictLru() {
+        DictionaryOffHeapTier tier = new DictionaryOffHeapTier(400);
+        tier.put("/a", new byte[100]);
+        tier.put("/b", new byte[100]);
+        tier.put("/c", new byte[100]);
+        assertNotNull(tier.get("/a"));
+        tier.unpin("/a");
+
+        tier.put("/d", new byte[100]);
+        tier.put("/e", new byte[100]);
+        assertFalse(tier.contains("/b"));
+        assertTrue(tier.contains("/a"));
+        assertEquals(400, tier.getUsedBytes());
+    }
+
+    @Test
+    public void testPinned() {
+        DictionaryOffHeapTier tier = new DictionaryOffHeapTier(400);
+        tier.put("/a", new byte[100]);
+        tier.put("/b", new byte[100]);
+        tier.put("/c", new byte[100]);
+        tier.put("/d", new byte[100]);
+        tier.get("/a");
+        tier.get("/b");
+        tier.get("/c");
+        tier.get("/d");
+        assertTrue(tier.isPinned("/a"));
+
+        // all in use, the new one is not kept
+        tier.put("/e", new byte[100]);
+        assertFalse(tier.contains("/e"));
+        assertNull(tier.get("/e"));
+        assertEquals(400, tier.getUsedBytes());
+
+        tier.unpin("/b");
+        tier.put("/e", new byte[100]);
+        assertFalse(tier.contains("/b"));
+        assertTrue(tier.contains("/e"));
+        assertEquals(400, tier.getUsedBytes());
+
+        tier.remove("/a");
+        assertFalse(tier.isPinned("/a"));
+        assertEquals(300, tier.getUsedBytes());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class StreamingTrieDictionaryForestBuilderTest {
+
+    @Test
+    public void testSameAsForestBuilder() throws IOException {
+        ArrayList<String> values = sortedValues(10000);
+
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        streaming.setMaxTrieTreeSize(10 * 1024);
+        TrieDictionaryForestBuilder<String> inHeap = new TrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        inHeap.setMaxTrieTreeSize(10 * 1024);
+        for (String v : values) {
+            streaming.addValue(v);
+            streaming.addValue(v); // duplicates are skipped
+            inHeap.addValue(v);
+        }
+
+        TrieDictionaryForest<String> expected = inHeap.build();
+        TrieDictionaryForest<String> dict = streaming.build();
+        assertTrue(streaming.getTreeCount() > 1);
+        assertEquals(expected.getTrees().size(), dict.getTrees().size());
+        assertEquals(values.size(), dict.getSize());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, dict.getIdFromValue(values.get(i)));
+            assertEquals(expected.getIdFromValue(values.get(i)), dict.getIdFromValue(values.get(i)));
+            assertEquals(values.get(i), dict.getValueFromId(i));
+        }
+        streaming.close();
+    }
+
+    @Test
+    public void testSerializeRoundTrip() throws IOException {
+        ArrayList<String> values = sortedValues(5000);
+
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        streaming.setMaxTrieTreeSize(8 * 1024);
+        TrieDictionaryForestBuilder<String> inHeap = new TrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        inHeap.setMaxTrieTreeSize(8 * 1024);
+        for (String v : values) {
+            streaming.addValue(v);
+            inHeap.addValue(v);
+        }
+        TrieDictionaryForest<String> built = streaming.build();
+        streaming.close(); // the mapped trees stay readable after the spill file is gone
+        assertTrue(built.getTrees().size() > 1);
+
+        byte[] bytes = serialize(built);
+        assertArrayEquals(serialize(inHeap.build()), bytes);
+
+        TrieDictionaryForest<String> dict = new TrieDictionaryForest<String>();
+        dict.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+        assertEquals(values.size(), dict.getSize());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, dict.getIdFromValue(values.get(i)));
+            assertEquals(values.get(i), dict.getValueFromId(i));
+            assertEquals(values.get(i), built.getValueFromId(i));
+        }
+
+        // ids keep the value order, also across tree boundaries
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(dict.getValueFromId(i - 1).compareTo(dict.getValueFromId(i)) < 0);
+        }
+        assertFalse(dict.containsValue("not-a-value"));
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        ArrayList<String> values = sortedValues(5000);
+
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        streaming.setMaxTrieTreeSize(8 * 1024);
+        TrieDictionaryForestBuilder<String> inHeap = new TrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        inHeap.setMaxTrieTreeSize(8 * 1024);
+        for (String v : values) {
+            streaming.addValue(v);
+            inHeap.addValue(v);
+        }
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        streaming.writeTo(out);
+        out.close();
+        assertTrue(streaming.getTreeCount() > 1);
+        streaming.close();
+
+        // same bytes as serializing the in-heap forest
+        assertArrayEquals(serialize(inHeap.build()), bout.toByteArray());
+
+        TrieDictionaryForest<String> dict = new TrieDictionaryForest<String>();
+        dict.readFields(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+        assertEquals(values.size(), dict.getSize());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, dict.getIdFromValue(values.get(i)));
+        }
+    }
+
+    @Test
+    public void testEmptyDict() {
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 1);
+        TrieDictionaryForest<String> dict = streaming.build();
+        assertEquals(0, dict.getTrees().size());
+        streaming.close();
+    }
+
+    @Test
+    public void testUnorderedFallbackToSingleTree() {
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 1);
+        streaming.addValue("b");
+        streaming.addValue("a");
+        streaming.addValue("c");
+        TrieDictionaryForest<String> dict = streaming.build();
+        assertEquals(1, dict.getTrees().size());
+        assertEquals(0, dict.getIdFromValue("a"));
+        assertEquals(2, dict.getIdFromValue("c"));
+        streaming.close();
+    }
+
+    @Test
+    public void testUnorderedAfterSpill() {
+        StreamingTrieDictionaryForestBuilder<String> streaming = new StreamingTrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0, 0);
+        streaming.setMaxTrieTreeSize(1);
+        streaming.addValue("b");
+        streaming.addValue("c");
+        try {
+            streaming.addValue("a");
+            fail("Unordered data cannot be split into multi trees");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            streaming.close();
+        }
+    }
+
+    private byte[] serialize(TrieDictionaryForest<String> dict) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        dict.write(out);
+        out.close();
+        return bout.toByteArray();
+    }
+
+    private ArrayList<String> sortedValues(int n) {
+        TreeSet<String> set = new TreeSet<String>();
+        while (set.size() < n) {
+            set.add(UUID.randomUUID().toString().substring(0, 12));
+        }
+        ArrayList<String> values = new ArrayList<String>(set);
+        Collections.sort(values);
+        return values;
+    }
+}
@@ -32,7 +32,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -218,6 +220,38 @@ public class TrieDictionaryForestTest {
         }
     }
 
+    @Test
+    public void testGetIdsFromValues() {
+        ArrayList<String> strs = new ArrayList<String>();
+        strs.add("part");
+        strs.add("par");
+        strs.add("partition");
+        strs.add("party");
+        strs.add("parties");
+        strs.add("paint");
+        Collections.sort(strs, new ByteComparator<String>(new StringBytesConverter()));
+        int baseId = 5;
+        for (int maxTreeSize : new int[] { 0, 10 * 1024 * 1024 }) { // one value per tree, or a single tree
+            TrieDictionaryForest<String> dict = newDictBuilder(strs, baseId, maxTreeSize).build();
+
+            // unordered, with duplicates, nulls and values not found
+            String[] values = new String[] { "party", null, "par", "pb", "party", "", "paint", "partition", "a", "part", "parties", "zz" };
+            int[] ids = new int[values.length + 1];
+            BitSet notFound = dict.getIdsFromValues(values, values.length, 0, ids);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    assertEquals(dict.nullId(), ids[i]);
+                } else if (strs.contains(values[i])) {
+                    assertTrue(!notFound.get(i));
+                    assertEquals(dict.getIdFromValue(values[i]), ids[i]);
+                } else {
+                    assertTrue(notFound.get(i));
+                }
+            }
+            assertEquals(4, notFound.cardinality());
+        }
+    }
+
     @Test
     public void notFoundTest() {
         ArrayList<String> str = new ArrayList<String>();
@@ -293,6 +327,34 @@ public class TrieDictionaryForestTest {
         }
     }
 
+    @Test
+    public void testReadInPlace() throws Exception {
+        ArrayList<String> testData = getTestData(1000);
+        TrieDictionaryForest<String> dict = newDictBuilder(testData, 10, 1024).build();
+        assertTrue(dict.getTrees().size() > 1);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream dataout = new DataOutputStream(bout);
+        dict.write(dataout);
+        dataout.close();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bout.size() + 4);
+        direct.put(bout.toByteArray());
+        direct.putInt(12345);
+        direct.flip();
+
+        TrieDictionaryForest<String> inPlace = new TrieDictionaryForest<>();
+        inPlace.readFields(direct.asReadOnlyBuffer());
+        assertEquals(dict, inPlace);
+        assertEquals(dict.getMinId(), inPlace.getMinId());
+        assertEquals(dict.getMaxId(), inPlace.getMaxId());
+        for (String str : testData) {
+            int id = dict.getIdFromValue(str);
+            assertEquals(id, inPlace.getIdFromValue(str));
+            assertEquals(str, inPlace.getValueFromId(id));
+        }
+        assertEquals(dict, testSerialize(inPlace));
+    }
+
     @Test
     public void emptyDictTest() throws Exception {
         TrieDictionaryForestBuilder<String> b = new TrieDictionaryForestBuilder<String>(new StringBytesConverter());
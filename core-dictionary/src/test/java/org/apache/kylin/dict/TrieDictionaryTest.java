@@ -28,10 +28,15 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -439,6 +444,49 @@ public class TrieDictionaryTest {
         Assert.assertNotNull(ex);
     }
 
+    @Test
+    public void testReadInPlace() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/dict/english-words.80 (scowl-2015.05.18).txt");
+        ArrayList<String> str = loadStrings(is);
+        TrieDictionary<String> dict = newDictBuilder(str).build(0);
+
+        // a trie in the middle of a file, mapped
+        File file = File.createTempFile("TrieDictionaryTest", ".dict");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            out.writeInt(12345);
+            dict.write(out);
+            out.writeInt(67890);
+            out.close();
+
+            ByteBuffer mapped;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            mapped.position(4);
+            TrieDictionary<String> inPlace = new TrieDictionary<String>();
+            inPlace.readFields(mapped);
+            assertEquals(67890, mapped.getInt());
+
+            assertEquals(dict, inPlace);
+            assertEquals(dict.hashCode(), inPlace.hashCode());
+            assertEquals(dict.getSize(), inPlace.getSize());
+            assertEquals(dict.getSizeOfValue(), inPlace.getSizeOfValue());
+            for (String s : str) {
+                int id = dict.getIdFromValue(s);
+                assertEquals(id, inPlace.getIdFromValue(s));
+                assertEquals(s, inPlace.getValueFromId(id));
+                assertEquals(dict.getIdFromValue(s + "~", 1), inPlace.getIdFromValue(s + "~", 1));
+                assertEquals(dict.getIdFromValue(s + "~", -1), inPlace.getIdFromValue(s + "~", -1));
+            }
+
+            // serialized the same as on heap
+            assertEquals(dict, testSerialize(inPlace));
+        } finally {
+            file.delete();
+        }
+    }
+
     @Test
     public void testRounding() {
         // see NumberDictionaryTest.testRounding();
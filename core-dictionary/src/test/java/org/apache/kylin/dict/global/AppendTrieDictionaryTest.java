@@ -22,6 +22,7 @@ import static org.apache.kylin.dict.global.GlobalDictHDFSStore.V2_INDEX_NAME;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
@@ -37,16 +38,22 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.dict.AppendTrieDictionary;
@@ -57,6 +64,8 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.google.common.io.Files;
+
 public class AppendTrieDictionaryTest extends LocalFileMetadataTestCase {
     private static final String RESOURCE_DIR = "/dict/append_dict_test/" + UUID.randomUUID();
     private static String BASE_DIR;
@@ -407,6 +416,166 @@ public class AppendTrieDictionaryTest extends LocalFileMetadataTestCase {
         assertEquals(2, dir.listFiles(new VersionFilter()).length);
     }
 
+    @Test
+    public void testParallelBuild() throws IOException, InterruptedException {
+        int maxEntriesPerSlice = 100;
+        TreeSet<String> values = new TreeSet<>();
+        Random rnd = new Random(0);
+        while (values.size() < 5000) {
+            values.add(Long.toHexString(rnd.nextLong()));
+        }
+        ArrayList<String> all = new ArrayList<>(values);
+
+        // first version by parallel build on a new dict
+        List<String> firstHalf = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += 2) {
+            firstHalf.add(all.get(i));
+        }
+        parallelBuild(firstHalf, 4, maxEntriesPerSlice);
+        AppendTrieDictionary<String> dict = new AppendTrieDictionary<>();
+        dict.init(BASE_DIR);
+        Map<String, Integer> firstIds = new TreeMap<>();
+        for (String v : firstHalf) {
+            firstIds.put(v, dict.getIdFromValue(v));
+        }
+        assertEquals(firstHalf.size(), new HashSet<>(firstIds.values()).size());
+        assertEquals(firstHalf.size(), dict.getMaxId()); // exact id ranges leave no gaps
+
+        // planned by the slices of the latest version, as the UHC dictionary job does
+        List<AppendDictPartition> planned = new GlobalDictHDFSStore(BASE_DIR).planPartitions(3);
+        assertEquals(3, planned.size());
+        for (String v : all) {
+            byte[] bytes = Bytes.toBytes(v);
+            assertTrue(planned.get(AppendDictPartition.indexOf(planned, bytes, 0, bytes.length)).contains(bytes));
+        }
+
+        // append all values by parallel build, existing ids are kept
+        Thread.sleep(10);
+        parallelBuild(all, 3, maxEntriesPerSlice);
+        dict = new AppendTrieDictionary<>();
+        dict.init(BASE_DIR);
+        Set<Integer> ids = new HashSet<>();
+        for (String v : all) {
+            int id = dict.getIdFromValue(v);
+            if (firstIds.containsKey(v)) {
+                assertEquals(firstIds.get(v).intValue(), id);
+            }
+            ids.add(id);
+        }
+        assertEquals(all.size(), ids.size());
+        assertEquals(all.size(), dict.getMaxId());
+
+        // a normal append after parallel builds
+        Thread.sleep(10);
+        AppendTrieDictionaryBuilder builder = new AppendTrieDictionaryBuilder(BASE_DIR, maxEntriesPerSlice, true);
+        builder.addValue("zzz");
+        dict = builder.build(0);
+        assertEquals(dict.getMaxId(), dict.getIdFromValue("zzz"));
+        assertEquals(firstIds.get(firstHalf.get(0)).intValue(), dict.getIdFromValue(firstHalf.get(0)));
+    }
+
+    @Test
+    public void testSliceCache() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.append-entry-size", "100");
+        TreeSet<String> values = new TreeSet<>();
+        Random rnd = new Random(0);
+        while (values.size() < 1000) {
+            values.add(Long.toHexString(rnd.nextLong()));
+        }
+        AppendTrieDictionaryBuilder builder = createBuilder(RESOURCE_DIR);
+        for (String v : values) {
+            builder.addValue(v);
+        }
+        AppendTrieDictionary<String> dict = builder.build(0);
+
+        GlobalDictHDFSStore store = new GlobalDictHDFSStore(BASE_DIR);
+        Long[] versions = store.listAllVersions();
+        String versionDir = store.getVersionDir(versions[versions.length - 1]).toString();
+        List<String> sliceFiles = new ArrayList<>(store.getMetadata(versions[versions.length - 1]).sliceFileMap.values());
+        assertTrue(sliceFiles.size() > 1);
+
+        File localDir = Files.createTempDir();
+        try {
+            config.setProperty("kylin.dictionary.append-local-cache-dir", localDir.getAbsolutePath());
+
+            // prefetched in parallel, kept in local dir
+            AppendDictSliceCache cache = new AppendDictSliceCache(config);
+            cache.prefetch(store, versionDir, sliceFiles);
+            for (String sliceFile : sliceFiles) {
+                assertTrue(cache.isCached(versionDir, sliceFile));
+                assertTrue(cache.localFile(versionDir, sliceFile).exists());
+            }
+            assertEquals(sliceFiles.size(), cache.getStats().missCount());
+
+            // a new cache reads the local files, a corrupted one is read from store and written again
+            File corrupted = cache.localFile(versionDir, sliceFiles.get(0));
+            byte[] bytes = FileUtils.readFileToByteArray(corrupted);
+            bytes[bytes.length / 2] = (byte) ~bytes[bytes.length / 2];
+            FileUtils.writeByteArrayToFile(corrupted, bytes);
+            cache = new AppendDictSliceCache(config);
+            for (String sliceFile : sliceFiles) {
+                assertEquals(store.readSlice(versionDir, sliceFile), cache.get(store, versionDir, sliceFile));
+            }
+            assertFalse(Arrays.equals(bytes, FileUtils.readFileToByteArray(corrupted)));
+        } finally {
+            config.setProperty("kylin.dictionary.append-local-cache-dir", "");
+            FileUtils.deleteQuietly(localDir);
+        }
+
+        // a batch of lookups through the shared cache
+        String[] batch = values.toArray(new String[values.size()]);
+        int[] ids = new int[batch.length];
+        BitSet notFound = dict.getIdsFromValues(batch, batch.length, 0, ids);
+        assertTrue(notFound.isEmpty());
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(dict.getIdFromValue(batch[i]), ids[i]);
+        }
+
+        // the cache comes from the config of the store, shared by the stores having the same settings
+        assertEquals(config, store.getConfig());
+        AppendDictSliceCache shared = AppendDictSliceCache.getInstance(store.getConfig());
+        assertTrue(shared == AppendDictSliceCache.getInstance(new GlobalDictHDFSStore(BASE_DIR).getConfig()));
+        KylinConfig other = KylinConfig.createKylinConfig(config);
+        other.setProperty("kylin.dictionary.append-cache-max-mb", String.valueOf(config.getAppendDictCacheMaxMB() + 1));
+        assertFalse(shared == AppendDictSliceCache.getInstance(other));
+    }
+
+    private void parallelBuild(List<String> sortedValues, int nPartitions, int maxEntriesPerSlice) throws IOException {
+        List<byte[]> splitKeys = new ArrayList<>();
+        int step = sortedValues.size() / nPartitions;
+        for (int i = 1; i < nPartitions; i++) {
+            splitKeys.add(Bytes.toBytes(sortedValues.get(i * step)));
+        }
+
+        GlobalDictHDFSStore store = new GlobalDictHDFSStore(BASE_DIR);
+        List<AppendDictPartition> partitions = store.planPartitions(splitKeys);
+
+        // each partition counts and then builds on its own, like in different reducers
+        List<List<String>> partitionValues = new ArrayList<>();
+        List<Integer> newValueCounts = new ArrayList<>();
+        for (AppendDictPartition partition : partitions) {
+            List<String> inPartition = new ArrayList<>();
+            for (String v : sortedValues) {
+                if (partition.contains(Bytes.toBytes(v))) {
+                    inPartition.add(v);
+                }
+            }
+            partitionValues.add(inPartition);
+            newValueCounts.add(AppendTrieDictionaryBuilder.countNewValues(BASE_DIR, inPartition));
+        }
+        store.assignPartitionIds(partitions, newValueCounts);
+
+        for (int i = 0; i < partitions.size(); i++) {
+            AppendTrieDictionaryBuilder builder = new AppendTrieDictionaryBuilder(BASE_DIR, maxEntriesPerSlice, partitions.get(i));
+            for (String v : partitionValues.get(i)) {
+                builder.addValue(v);
+            }
+            builder.buildPartition();
+        }
+        store.commitPartitions(partitions, 0);
+    }
+
     @Test
     public void testVersionRetention() throws IOException, InterruptedException {
         KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-entry-size", "4");
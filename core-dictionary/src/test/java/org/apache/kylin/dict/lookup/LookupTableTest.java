@@ -19,11 +19,14 @@
 package org.apache.kylin.dict.lookup;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
 import org.apache.kylin.common.util.DateFormat;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.common.util.Pair;
@@ -108,6 +111,55 @@ public class LookupTableTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testSnapshotColumnIndex() throws Exception {
+        SnapshotTable snapshot = (SnapshotTable) ((LookupStringTable) lookupTable).getTable();
+        int col = lookupTable.tableDesc.findColumnByName("YEAR_BEG_DT").getZeroBasedIndex();
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int r = 0; r < snapshot.getRowCount(); r++) {
+            String v = snapshot.getCell(r, col);
+            expected.put(v, expected.containsKey(v) ? expected.get(v) + 1 : 1);
+        }
+
+        SnapshotColumnIndex index = snapshot.getColumnIndex(col);
+        Assert.assertSame(index, snapshot.getColumnIndex(col));
+        Assert.assertEquals(snapshot.getRowCount(), index.getRowCount());
+        Assert.assertEquals(expected.size(), index.getValueCount());
+        for (int i = 0; i < index.getValueCount(); i++) {
+            String v = index.getValue(i);
+            Assert.assertEquals((int) expected.get(v), index.getRows(i).getCardinality());
+            Assert.assertEquals(index.getRows(i), index.getRows(v));
+            for (int r : index.getRows(i).toArray()) {
+                Assert.assertEquals(v, snapshot.getCell(r, col));
+            }
+        }
+        Assert.assertTrue(index.getRows("not a value").isEmpty());
+    }
+
+    @Test
+    public void testColumnarLookupTable() throws Exception {
+        SnapshotTable snapshot = (SnapshotTable) ((LookupStringTable) lookupTable).getTable();
+        String[] pkCols = new String[] { "CAL_DT" };
+        ColumnarLookupTable columnar = snapshot.getLookupTable(lookupTable.tableDesc, pkCols);
+        Assert.assertSame(columnar, snapshot.getLookupTable(lookupTable.tableDesc, pkCols));
+        Assert.assertEquals(lookupTable.getAllRows().size(), columnar.getRowCount());
+
+        int pk = lookupTable.tableDesc.findColumnByName("CAL_DT").getZeroBasedIndex();
+        for (String[] row : lookupTable.getAllRows()) {
+            Array<String> key = new Array<String>(new String[] { row[pk] });
+            Assert.assertArrayEquals(row, columnar.getRow(key));
+
+            int r = columnar.findRow(key.data);
+            for (int c = 0; c < row.length; c++) {
+                Assert.assertEquals(row[c], columnar.getValue(r, c));
+            }
+        }
+        Assert.assertEquals(-1, columnar.findRow(new String[] { millis("1900-01-01") }));
+        Assert.assertEquals(-1, columnar.findRow(new String[] { "not a date" }));
+        Assert.assertNull(columnar.getRow(new Array<String>(new String[] { millis("1900-01-01") })));
+    }
+
     @Test
     public void testGetClassName(){
         String name = TrieDictionaryForest.class.getName();
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotColumnFileTest extends LocalFileMetadataTestCase {
+
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+
+    private File tempDir;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        tempDir = File.createTempFile("snapshot_cache", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tempDir);
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testWriteAndMap() throws Exception {
+        SnapshotTable snapshot = SnapshotManager.getInstance(KylinConfig.getInstanceFromEnv()).getSnapshotTable(SNAPSHOT_PATH);
+
+        File file = new File(tempDir, "test.snapshot");
+        SnapshotColumnFile.write(snapshot, file);
+
+        SnapshotColumnFile columnFile = SnapshotColumnFile.open(file);
+        Assert.assertEquals(snapshot.getRowCount(), columnFile.getRowCount());
+        Assert.assertEquals(snapshot.getColumnCount(), columnFile.getColumnCount());
+
+        SnapshotTable mapped = columnFile.toSnapshotTable();
+        Assert.assertEquals(snapshot.getResourcePath(), mapped.getResourcePath());
+        Assert.assertEquals(snapshot.getRowCount(), mapped.getRowCount());
+
+        // a single column first, then everything
+        Assert.assertArrayEquals(snapshot.getColumnIds(3), mapped.getColumnIds(3));
+        Assert.assertEquals(snapshot.getCell(7, 3), mapped.getCell(7, 3));
+        Assert.assertEquals(snapshot, mapped);
+        Assert.assertEquals(snapshot.hashCode(), mapped.hashCode());
+    }
+
+    @Test
+    public void testLoadViaLocalCache() throws Exception {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.snapshot.local-cache-dir", tempDir.getAbsolutePath());
+        SnapshotManager mgr = SnapshotManager.getInstance(config);
+
+        // first load downloads from the store and writes the local file
+        SnapshotTable snapshot = mgr.getSnapshotTable(SNAPSHOT_PATH);
+        File[] cached = new File(tempDir, SNAPSHOT_PATH).getParentFile().listFiles();
+        Assert.assertEquals(1, cached.length);
+
+        // after eviction, the snapshot is mapped from the local file
+        mgr.wipeoutCache();
+        SnapshotTable mapped = mgr.getSnapshotTable(SNAPSHOT_PATH);
+        Assert.assertNotSame(snapshot, mapped);
+        Assert.assertEquals(snapshot, mapped);
+
+        // a corrupted local file is dropped and downloaded again
+        FileUtils.writeStringToFile(cached[0], "corrupted");
+        mgr.wipeoutCache();
+        Assert.assertEquals(snapshot, mgr.getSnapshotTable(SNAPSHOT_PATH));
+        Assert.assertEquals(snapshot, SnapshotColumnFile.open(cached[0]).toSnapshotTable());
+    }
+}
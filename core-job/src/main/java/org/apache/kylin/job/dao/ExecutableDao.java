@@ -31,6 +31,8 @@ import org.apache.kylin.common.persistence.JsonSerializer;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.job.exception.PersistentException;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.model.DataModelManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,9 +46,15 @@ public class ExecutableDao {
     private static final Serializer<ExecutablePO> JOB_SERIALIZER = new JsonSerializer<ExecutablePO>(ExecutablePO.class);
     private static final Serializer<ExecutableOutputPO> JOB_OUTPUT_SERIALIZER = new JsonSerializer<ExecutableOutputPO>(ExecutableOutputPO.class);
     private static final Logger logger = LoggerFactory.getLogger(ExecutableDao.class);
+    // the cache sync entities of the changes of jobs and outputs, keyed by uuid
+    public static final String ENTITY_JOB = "execute";
+    public static final String ENTITY_JOB_OUTPUT = "execute_output";
+
     private static final ConcurrentMap<KylinConfig, ExecutableDao> CACHE = new ConcurrentHashMap<KylinConfig, ExecutableDao>();
 
+    private final KylinConfig config;
     private ResourceStore store;
+    private final JobSummaryIndex summaryIndex;
 
     public static ExecutableDao getInstance(KylinConfig config) {
         ExecutableDao r = CACHE.get(config);
@@ -73,7 +81,16 @@ public class ExecutableDao {
 
     private ExecutableDao(KylinConfig config) {
         logger.info("Using metadata url: " + config);
+        this.config = config;
         this.store = DataModelManager.getInstance(config).getStore();
+        this.summaryIndex = new JobSummaryIndex(config, this);
+    }
+
+    private void announce(String entity, Event event, String uuid) {
+        // listened by the summary index and the event driven scheduler of the other nodes
+        if (config.isJobSummaryIndexEnabled() || config.isSchedulerEventDriven()) {
+            Broadcaster.getInstance(config).queue(entity, event.getType(), uuid);
+        }
     }
 
     private String pathOfJob(ExecutablePO job) {
@@ -157,6 +174,14 @@ public class ExecutableDao {
         }
     }
 
+    /**
+     * The summaries of the jobs with both job and output modified in the time window, loaded from the store
+     * on first call only.
+     */
+    public List<JobSummary> getJobSummaries(long timeStart, long timeEndExclusive) throws PersistentException {
+        return summaryIndex.list(timeStart, timeEndExclusive);
+    }
+
     public ExecutablePO getJob(String uuid) throws PersistentException {
         try {
             return readJobResource(pathOfJob(uuid));
@@ -172,6 +197,8 @@ public class ExecutableDao {
                 throw new IllegalArgumentException("job id:" + job.getUuid() + " already exists");
             }
             writeJobResource(pathOfJob(job), job);
+            summaryIndex.updateJob(job);
+            announce(ENTITY_JOB, Event.CREATE, job.getUuid());
             return job;
         } catch (IOException e) {
             logger.error("error save job:" + job.getUuid(), e);
@@ -186,6 +213,8 @@ public class ExecutableDao {
             }
             final long ts = writeJobResource(pathOfJob(job), job);
             job.setLastModified(ts);
+            summaryIndex.updateJob(job);
+            announce(ENTITY_JOB, Event.UPDATE, job.getUuid());
             return job;
         } catch (IOException e) {
             logger.error("error update job:" + job.getUuid(), e);
@@ -196,6 +225,8 @@ public class ExecutableDao {
     public void deleteJob(String uuid) throws PersistentException {
         try {
             store.deleteResource(pathOfJob(uuid));
+            summaryIndex.removeJob(uuid);
+            announce(ENTITY_JOB, Event.DROP, uuid);
         } catch (IOException e) {
             logger.error("error delete job:" + uuid, e);
             throw new PersistentException(e);
@@ -221,6 +252,8 @@ public class ExecutableDao {
         try {
             output.setLastModified(0);
             writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+            summaryIndex.updateOutput(output);
+            announce(ENTITY_JOB_OUTPUT, Event.CREATE, output.getUuid());
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -231,6 +264,8 @@ public class ExecutableDao {
         try {
             final long ts = writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
             output.setLastModified(ts);
+            summaryIndex.updateOutput(output);
+            announce(ENTITY_JOB_OUTPUT, Event.UPDATE, output.getUuid());
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -240,6 +275,8 @@ public class ExecutableDao {
     public void deleteJobOutput(String uuid) throws PersistentException {
         try {
             store.deleteResource(pathOfJobOutput(uuid));
+            summaryIndex.removeOutput(uuid);
+            announce(ENTITY_JOB_OUTPUT, Event.DROP, uuid);
         } catch (IOException e) {
             logger.error("error delete job:" + uuid, e);
             throw new PersistentException(e);
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.job.dao;
+
+import java.util.Map;
+
+/**
+ * The few fields of a job and its output needed to list and filter jobs, immutable.
+ */
+public class JobSummary {
+
+    // the params of CubingJob and CheckpointExecutable
+    private static final String PARAM_PROJECT_NAME = "projectName";
+    private static final String PARAM_CUBE_NAME = "cubeName";
+    private static final String PARAM_SUBMITTER = "submitter";
+
+    private final String id;
+    private final String name;
+    private final String type;
+    private final String projectName;
+    private final String cubeName;
+    private final String submitter;
+    private final long lastModified;
+
+    // of the output, null and 0 if there is no output
+    private final String status;
+    private final long outputLastModified;
+
+    private JobSummary(String id, String name, String type, String projectName, String cubeName, String submitter,
+            long lastModified, String status, long outputLastModified) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.projectName = projectName;
+        this.cubeName = cubeName;
+        this.submitter = submitter;
+        this.lastModified = lastModified;
+        this.status = status;
+        this.outputLastModified = outputLastModified;
+    }
+
+    static JobSummary of(ExecutablePO job, String status, long outputLastModified) {
+        Map<String, String> params = job.getParams();
+        return new JobSummary(job.getUuid(), job.getName(), job.getType(),
+                params == null ? null : params.get(PARAM_PROJECT_NAME),
+                params == null ? null : params.get(PARAM_CUBE_NAME),
+                params == null ? null : params.get(PARAM_SUBMITTER), job.getLastModified(), status,
+                outputLastModified);
+    }
+
+    JobSummary withOutput(String status, long outputLastModified) {
+        return new JobSummary(id, name, type, projectName, cubeName, submitter, lastModified, status,
+                outputLastModified);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The class name of the job.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getCubeName() {
+        return cubeName;
+    }
+
+    public String getSubmitter() {
+        return submitter;
+    }
+
+    /**
+     * The timestamp of the job resource.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * The timestamp of the job output resource, as the last modified time of a JobInstance.
+     */
+    public long getOutputLastModified() {
+        return outputLastModified;
+    }
+
+    public boolean hasOutput() {
+        return outputLastModified > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "JobSummary{id=" + id + ", name=" + name + ", status=" + status + ", outputLastModified="
+                + outputLastModified + "}";
+    }
+}
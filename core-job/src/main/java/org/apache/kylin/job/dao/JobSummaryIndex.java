@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.job.dao;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.job.exception.PersistentException;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The summaries of all jobs in memory.
+ * <p>
+ * It is loaded from the store on first use, then kept up to date by the local writes and the cache broadcasts of
+ * the other nodes, each reloading one job or output only. The newer timestamp wins when the two race.
+ */
+class JobSummaryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobSummaryIndex.class);
+
+    private static final String ENTITY_JOB = ExecutableDao.ENTITY_JOB;
+    private static final String ENTITY_JOB_OUTPUT = ExecutableDao.ENTITY_JOB_OUTPUT;
+
+    private final KylinConfig config;
+    private final ExecutableDao dao;
+    private final ConcurrentMap<String, JobSummary> summaries = Maps.newConcurrentMap();
+    private final Broadcaster.Listener syncListener = new JobSyncListener();
+    private final Object loadLock = new Object();
+    private volatile boolean active = false; // changes are applied once the loading starts
+    private volatile boolean loaded = false;
+
+    JobSummaryIndex(KylinConfig config, ExecutableDao dao) {
+        this.config = config;
+        this.dao = dao;
+    }
+
+    /**
+     * The jobs with both job and output timestamps in the time window, as ExecutableDao.getJobs(timeStart,
+     * timeEndExclusive) joined with ExecutableDao.getJobOutputs(timeStart, timeEndExclusive).
+     */
+    List<JobSummary> list(long timeStart, long timeEndExclusive) throws PersistentException {
+        ensureLoaded();
+
+        List<JobSummary> result = Lists.newArrayList();
+        for (JobSummary summary : summaries.values()) {
+            if (summary.hasOutput() && inRange(summary.getLastModified(), timeStart, timeEndExclusive)
+                    && inRange(summary.getOutputLastModified(), timeStart, timeEndExclusive)) {
+                result.add(summary);
+            }
+        }
+        return result;
+    }
+
+    private static boolean inRange(long ts, long timeStart, long timeEndExclusive) {
+        return timeStart <= ts && ts < timeEndExclusive;
+    }
+
+    private void ensureLoaded() throws PersistentException {
+        if (loaded)
+            return;
+
+        synchronized (loadLock) {
+            if (loaded)
+                return;
+
+            // listen before reading, not to miss the changes made during the loading
+            active = true;
+            Broadcaster.getInstance(config).registerListener(syncListener, ENTITY_JOB, ENTITY_JOB_OUTPUT);
+
+            long start = System.currentTimeMillis();
+            Map<String, ExecutableOutputPO> outputs = Maps.newHashMap();
+            for (ExecutableOutputPO output : dao.getJobOutputs()) {
+                outputs.put(output.getUuid(), output);
+            }
+            List<ExecutablePO> jobs = dao.getJobs();
+            for (ExecutablePO job : jobs) {
+                ExecutableOutputPO output = outputs.get(job.getUuid());
+                if (output == null)
+                    putJob(job, null, 0);
+                else
+                    putJob(job, output.getStatus(), output.getLastModified());
+            }
+            loaded = true;
+            logger.info("Loaded summaries of {} jobs from {} outputs, took {} ms", jobs.size(), outputs.size(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    void updateJob(ExecutablePO job) throws PersistentException {
+        if (!active)
+            return;
+
+        JobSummary existing = summaries.get(job.getUuid());
+        if (existing != null) {
+            putJob(job, existing.getStatus(), existing.getOutputLastModified());
+        } else {
+            // the output is written before the job
+            ExecutableOutputPO output = dao.getJobOutput(job.getUuid());
+            putJob(job, output.getStatus(), output.getLastModified());
+        }
+    }
+
+    void updateOutput(ExecutableOutputPO output) {
+        // the outputs of the steps are not indexed
+        if (!active || !summaries.containsKey(output.getUuid()))
+            return;
+
+        synchronized (this) {
+            JobSummary existing = summaries.get(output.getUuid());
+            if (existing != null && existing.getOutputLastModified() <= output.getLastModified()) {
+                summaries.put(output.getUuid(), existing.withOutput(output.getStatus(), output.getLastModified()));
+            }
+        }
+    }
+
+    synchronized void removeJob(String uuid) {
+        summaries.remove(uuid);
+    }
+
+    synchronized void removeOutput(String uuid) {
+        JobSummary existing = summaries.get(uuid);
+        if (existing != null) {
+            summaries.put(uuid, existing.withOutput(null, 0));
+        }
+    }
+
+    private synchronized void putJob(ExecutablePO job, String status, long outputLastModified) {
+        JobSummary existing = summaries.get(job.getUuid());
+        if (existing == null) {
+            summaries.put(job.getUuid(), JobSummary.of(job, status, outputLastModified));
+            return;
+        }
+
+        JobSummary summary = existing;
+        if (existing.getLastModified() <= job.getLastModified()) {
+            summary = JobSummary.of(job, existing.getStatus(), existing.getOutputLastModified());
+        }
+        if (summary.getOutputLastModified() < outputLastModified) {
+            summary = summary.withOutput(status, outputLastModified);
+        }
+        summaries.put(job.getUuid(), summary);
+    }
+
+    synchronized void clear() {
+        active = false;
+        loaded = false;
+        summaries.clear();
+    }
+
+    int size() {
+        return summaries.size();
+    }
+
+    private class JobSyncListener extends Broadcaster.Listener {
+        @Override
+        public void onClearAll(Broadcaster broadcaster) throws IOException {
+            // registered again on the new broadcaster when reloaded
+            clear();
+        }
+
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey)
+                throws IOException {
+            if (!active)
+                return;
+
+            try {
+                if (ENTITY_JOB.equals(entity)) {
+                    ExecutablePO job = event == Event.DROP ? null : dao.getJob(cacheKey);
+                    if (job == null)
+                        removeJob(cacheKey);
+                    else
+                        updateJob(job);
+                } else if (ENTITY_JOB_OUTPUT.equals(entity) && summaries.containsKey(cacheKey)) {
+                    if (event == Event.DROP)
+                        removeOutput(cacheKey);
+                    else
+                        updateOutput(dao.getJobOutput(cacheKey));
+                }
+            } catch (PersistentException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -155,6 +155,26 @@ public class JobEngineConfig {
         return config.getSchedulerPollIntervalSecond();
     }
 
+    public boolean isEventDrivenScheduling() {
+        return config.isSchedulerEventDriven();
+    }
+
+    public int getSafetyPollIntervalSecond() {
+        return config.getSchedulerSafetyPollIntervalSecond();
+    }
+
+    public boolean isCapacityAwareScheduling() {
+        return config.isSchedulerCapacityAware();
+    }
+
+    public long getMinFreeMemoryMB() {
+        return config.getSchedulerMinFreeMemoryMB();
+    }
+
+    public int getPlacementGraceSecond() {
+        return config.getSchedulerPlacementGraceSecond();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -33,6 +33,8 @@ public class DefaultChainedExecutable extends AbstractExecutable implements Chai
 
     public static final Integer DEFAULT_PRIORITY = 10;
 
+    private static final int JOB_ID_LENGTH = 36; // a random UUID, see AbstractExecutable
+
     private final List<AbstractExecutable> subTasks = Lists.newArrayList();
 
     public DefaultChainedExecutable() {
@@ -159,6 +161,15 @@ public class DefaultChainedExecutable extends AbstractExecutable implements Chai
         return null;
     }
 
+    /**
+     * The id of the job a step belongs to, by the step ids given in {@link #addTask}. A job id is returned as it is.
+     */
+    public static String getJobId(String id) {
+        if (id.length() > JOB_ID_LENGTH && id.charAt(JOB_ID_LENGTH) == '-')
+            return id.substring(0, JOB_ID_LENGTH);
+        return id;
+    }
+
     @Override
     public void addTask(AbstractExecutable executable) {
         executable.setId(getId() + "-" + String.format("%02d", subTasks.size()));
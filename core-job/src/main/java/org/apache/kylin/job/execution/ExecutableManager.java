@@ -23,12 +23,15 @@ import static org.apache.kylin.job.constant.ExecutableConstants.YARN_APP_ID;
 import static org.apache.kylin.job.constant.ExecutableConstants.YARN_APP_URL;
 
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IllegalFormatException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
@@ -37,6 +40,7 @@ import org.apache.kylin.job.constant.ExecutableConstants;
 import org.apache.kylin.job.dao.ExecutableDao;
 import org.apache.kylin.job.dao.ExecutableOutputPO;
 import org.apache.kylin.job.dao.ExecutablePO;
+import org.apache.kylin.job.dao.JobSummary;
 import org.apache.kylin.job.exception.IllegalStateTranferException;
 import org.apache.kylin.job.exception.PersistentException;
 import org.slf4j.Logger;
@@ -55,6 +59,16 @@ public class ExecutableManager {
 
     private final KylinConfig config;
     private final ExecutableDao executableDao;
+    private final ConcurrentMap<String, Class<?>> jobClasses = Maps.newConcurrentMap();
+    private final Set<String> missingJobClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<ReadyJobListener> readyJobListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Notified in the writing thread when a job or a step of this node turns READY, by submission or resume.
+     */
+    public interface ReadyJobListener {
+        void onJobReady(String id);
+    }
 
     private ExecutableManager(KylinConfig config) {
         logger.info("Using metadata url: " + config);
@@ -83,6 +97,24 @@ public class ExecutableManager {
         CACHE.clear();
     }
 
+    public void addReadyJobListener(ReadyJobListener listener) {
+        readyJobListeners.add(listener);
+    }
+
+    public void removeReadyJobListener(ReadyJobListener listener) {
+        readyJobListeners.remove(listener);
+    }
+
+    private void notifyJobReady(String id) {
+        for (ReadyJobListener listener : readyJobListeners) {
+            try {
+                listener.onJobReady(id);
+            } catch (Exception e) {
+                logger.warn("error notify ready job:" + id, e);
+            }
+        }
+    }
+
     private static ExecutablePO parse(AbstractExecutable executable) {
         ExecutablePO result = new ExecutablePO();
         result.setName(executable.getName());
@@ -114,6 +146,7 @@ public class ExecutableManager {
             }
             addJobOutput(executable);
             executableDao.addJob(parse(executable));
+            notifyJobReady(executable.getId());
         } catch (PersistentException e) {
             logger.error("fail to submit job:" + executable.getId(), e);
             throw new RuntimeException(e);
@@ -280,6 +313,61 @@ public class ExecutableManager {
         }
     }
 
+    /**
+     * The summaries of the jobs of the expected class in the time window, without deserializing any job. As
+     * getAllAbstractExecutables(), a job of a missing class is taken as the expected class.
+     */
+    public List<JobSummary> getJobSummaries(long timeStartInMillis, long timeEndInMillis,
+            Class<? extends AbstractExecutable> expectedClass) {
+        try {
+            List<JobSummary> ret = Lists.newArrayList();
+            for (JobSummary summary : executableDao.getJobSummaries(timeStartInMillis, timeEndInMillis)) {
+                Class<?> clazz = getJobClass(summary.getType());
+                if (clazz == null || expectedClass.isAssignableFrom(clazz)) {
+                    ret.add(summary);
+                }
+            }
+            return ret;
+        } catch (PersistentException e) {
+            logger.error("error get job summaries", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Class<?> getJobClass(String type) {
+        if (type == null || missingJobClasses.contains(type))
+            return null;
+
+        Class<?> clazz = jobClasses.get(type);
+        if (clazz == null) {
+            try {
+                clazz = ClassUtil.forName(type, AbstractExecutable.class);
+                jobClasses.put(type, clazz);
+            } catch (ClassNotFoundException e) {
+                missingJobClasses.add(type);
+            }
+        }
+        return clazz;
+    }
+
+    /**
+     * The outputs of a job and all its steps, read one by one.
+     */
+    public Map<String, Output> getOutputsOf(AbstractExecutable executable) {
+        Map<String, Output> result = Maps.newHashMap();
+        collectOutputs(executable, result);
+        return result;
+    }
+
+    private void collectOutputs(AbstractExecutable executable, Map<String, Output> result) {
+        result.put(executable.getId(), getOutput(executable.getId()));
+        if (executable instanceof ChainedExecutable) {
+            for (AbstractExecutable task : ((ChainedExecutable) executable).getTasks()) {
+                collectOutputs(task, result);
+            }
+        }
+    }
+
     public AbstractExecutable getAbstractExecutable(String uuid, Class<? extends AbstractExecutable> expectedClass) {
         try {
             return parseToAbstract(executableDao.getJob(uuid), expectedClass);
@@ -454,6 +542,9 @@ public class ExecutableManager {
             }
             executableDao.updateJobOutput(jobOutput);
             logger.info("job id:" + jobId + " from " + oldStatus + " to " + newStatus);
+            if (newStatus == ExecutableState.READY && oldStatus != newStatus) {
+                notifyJobReady(jobId);
+            }
         } catch (PersistentException e) {
             logger.error("error change job:" + jobId + " to " + newStatus);
             throw new RuntimeException(e);
@@ -18,11 +18,17 @@
 
 package org.apache.kylin.job.impl.threadpool;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -34,15 +40,19 @@ import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.common.util.SetThreadName;
 import org.apache.kylin.job.Scheduler;
+import org.apache.kylin.job.dao.ExecutableDao;
 import org.apache.kylin.job.engine.JobEngineConfig;
 import org.apache.kylin.job.exception.ExecuteException;
 import org.apache.kylin.job.exception.SchedulerException;
 import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.DefaultChainedExecutable;
 import org.apache.kylin.job.execution.Executable;
 import org.apache.kylin.job.execution.ExecutableManager;
 import org.apache.kylin.job.execution.ExecutableState;
 import org.apache.kylin.job.execution.Output;
 import org.apache.kylin.job.lock.JobLock;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +74,20 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
     private volatile boolean hasStarted = false;
     private JobEngineConfig jobEngineConfig;
 
+    // event driven scheduling, the ids of the jobs which may be ready
+    private final BlockingQueue<String> wakeUpQueue = new LinkedBlockingQueue<>();
+    private final Set<String> queuedIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> deferredIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean eventDriven = false;
+    private Thread wakeUpThread;
+    private JobSyncListener jobSyncListener;
+    private final ExecutableManager.ReadyJobListener readyJobListener = new ExecutableManager.ReadyJobListener() {
+        @Override
+        public void onJobReady(String id) {
+            wakeUp(id);
+        }
+    };
+
     private static DefaultScheduler INSTANCE = null;
 
     public DefaultScheduler() {
@@ -213,18 +237,7 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
                         continue;
                     }
                     nReady++;
-                    String jobDesc = null;
-                    try {
-                        jobDesc = executable.toString();
-                        logger.info(jobDesc + " prepare to schedule");
-                        context.addRunningJob(executable);
-                        jobPool.execute(new JobRunner(executable));
-                        logger.info(jobDesc + " scheduled");
-                    } catch (Exception ex) {
-                        if (executable != null)
-                            context.removeRunningJob(executable);
-                        logger.warn(jobDesc + " fail to schedule", ex);
-                    }
+                    schedule(executable);
                 }
                 logger.info("Job Fetcher: " + nRunning + " should running, " + runningJobs.size() + " actual running, "
                         + nStopped + " stopped, " + nReady + " ready, " + nSUCCEED + " already succeed, " + nError
@@ -233,6 +246,99 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
                 logger.warn("Job Fetcher caught a exception " + e);
             }
         }
+
+        /**
+         * Checks only the given job, for event driven scheduling.
+         */
+        synchronized void fetch(String id) {
+            Map<String, Executable> runningJobs = context.getRunningJobs();
+            if (runningJobs.containsKey(id)) {
+                return;
+            }
+            if (runningJobs.size() >= jobEngineConfig.getMaxConcurrentJobLimit()) {
+                // woken up again when a running job finishes
+                deferredIds.add(id);
+                if (context.getRunningJobs().size() < jobEngineConfig.getMaxConcurrentJobLimit()) {
+                    // finished meanwhile
+                    wakeUpDeferred();
+                }
+                return;
+            }
+            // null for a deleted job
+            final AbstractExecutable executable = executableManager.getJob(id);
+            if (executable != null && executable.isReady()) {
+                schedule(executable);
+            }
+        }
+
+        private void schedule(AbstractExecutable executable) {
+            String jobDesc = null;
+            try {
+                jobDesc = executable.toString();
+                logger.info(jobDesc + " prepare to schedule");
+                context.addRunningJob(executable);
+                jobPool.execute(new JobRunner(executable));
+                logger.info(jobDesc + " scheduled");
+            } catch (Exception ex) {
+                context.removeRunningJob(executable);
+                logger.warn(jobDesc + " fail to schedule", ex);
+            }
+        }
+    }
+
+    private class WakeUpRunner implements Runnable {
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                String id;
+                try {
+                    id = wakeUpQueue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queuedIds.remove(id);
+
+                try {
+                    if (fetcher instanceof FetcherRunner) {
+                        ((FetcherRunner) fetcher).fetch(id);
+                    } else {
+                        // the priorities are compared on the full list, coalesce the wake-ups into one fetch
+                        wakeUpQueue.clear();
+                        queuedIds.clear();
+                        fetcher.run();
+                    }
+                } catch (Exception e) {
+                    logger.warn("Job Fetcher caught a exception on waking up job " + id, e);
+                }
+            }
+        }
+    }
+
+    private class JobSyncListener extends Broadcaster.Listener {
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey)
+                throws IOException {
+            // the jobs submitted or resumed on the other nodes
+            if (event != Event.DROP) {
+                wakeUp(cacheKey);
+            }
+        }
+    }
+
+    private void wakeUp(String id) {
+        // the steps are scheduled by their job
+        id = DefaultChainedExecutable.getJobId(id);
+        if (eventDriven && queuedIds.add(id)) {
+            wakeUpQueue.offer(id);
+        }
+    }
+
+    private void wakeUpDeferred() {
+        for (String id : deferredIds) {
+            deferredIds.remove(id);
+            wakeUp(id);
+        }
     }
 
     private class JobRunner implements Runnable {
@@ -248,14 +354,19 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
             try (SetThreadName ignored = new SetThreadName("Scheduler %s Job %s",
                     System.identityHashCode(DefaultScheduler.this), executable.getId())) {
                 executable.execute(context);
-                // trigger the next step asap
-                fetcherPool.schedule(fetcher, 0, TimeUnit.SECONDS);
+                if (!eventDriven) {
+                    // trigger the next step asap
+                    fetcherPool.schedule(fetcher, 0, TimeUnit.SECONDS);
+                }
             } catch (ExecuteException e) {
                 logger.error("ExecuteException job:" + executable.getId(), e);
             } catch (Exception e) {
                 logger.error("unknown error execute job:" + executable.getId(), e);
             } finally {
                 context.removeRunningJob(executable);
+                // the next step once no longer running, then the jobs waiting for the slot
+                wakeUp(executable.getId());
+                wakeUpDeferred();
             }
         }
     }
@@ -328,9 +439,22 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
         executableManager.resumeAllRunningJobs();
 
         int pollSecond = jobEngineConfig.getPollIntervalSecond();
-        logger.info("Fetching jobs every {} seconds", pollSecond);
+        int initialDelaySecond = pollSecond / 10;
         fetcher = jobEngineConfig.getJobPriorityConsidered() ? new FetcherRunnerWithPriority() : new FetcherRunner();
-        fetcherPool.scheduleAtFixedRate(fetcher, pollSecond / 10, pollSecond, TimeUnit.SECONDS);
+        if (jobEngineConfig.isEventDrivenScheduling()) {
+            eventDriven = true;
+            executableManager.addReadyJobListener(readyJobListener);
+            jobSyncListener = new JobSyncListener();
+            Broadcaster.getInstance(jobEngineConfig.getConfig()).registerStaticListener(jobSyncListener,
+                    ExecutableDao.ENTITY_JOB, ExecutableDao.ENTITY_JOB_OUTPUT);
+            wakeUpThread = new Thread(new WakeUpRunner(), "DefaultScheduler-WakeUp");
+            wakeUpThread.setDaemon(true);
+            wakeUpThread.start();
+            // polling is the safety net only, for the changes not announced
+            pollSecond = Math.max(pollSecond, jobEngineConfig.getSafetyPollIntervalSecond());
+        }
+        logger.info("Fetching jobs every {} seconds", pollSecond);
+        fetcherPool.scheduleAtFixedRate(fetcher, initialDelaySecond, pollSecond, TimeUnit.SECONDS);
         hasStarted = true;
     }
 
@@ -338,6 +462,12 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
     public void shutdown() throws SchedulerException {
         logger.info("Shutting down DefaultScheduler ....");
         jobLock.unlockJobEngine();
+        if (eventDriven) {
+            eventDriven = false;
+            executableManager.removeReadyJobListener(readyJobListener);
+            Broadcaster.getInstance(jobEngineConfig.getConfig()).unregisterStaticListener(jobSyncListener);
+            wakeUpThread.interrupt();
+        }
         try {
             fetcherPool.shutdown();
             fetcherPool.awaitTermination(1, TimeUnit.MINUTES);
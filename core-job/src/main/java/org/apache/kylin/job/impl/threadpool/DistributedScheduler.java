@@ -48,11 +48,13 @@ import org.apache.kylin.job.execution.Executable;
 import org.apache.kylin.job.execution.ExecutableManager;
 import org.apache.kylin.job.execution.ExecutableState;
 import org.apache.kylin.job.execution.Output;
+import org.apache.kylin.job.lock.JobCapacityRegistry;
 import org.apache.kylin.job.lock.JobLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * schedule the cubing jobs when several job server running with the same metadata.
@@ -61,6 +63,9 @@ import com.google.common.collect.Maps;
  *  1. kylin.job.scheduler.default=2
  *  2. kylin.job.lock=org.apache.kylin.storage.hbase.util.ZookeeperJobLock
  *  3. add all the job servers and query servers to the kylin.server.cluster-servers
+ *
+ * when the lock is also a JobCapacityRegistry, each server publishes its free job slots and memory headroom, and a
+ * ready job is only tried by the least loaded eligible server, or by any server once the placement grace is over.
  */
 public class DistributedScheduler implements Scheduler<AbstractExecutable>, ConnectionStateListener {
     private ExecutableManager executableManager;
@@ -80,6 +85,8 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
     private volatile boolean hasStarted = false;
     private JobEngineConfig jobEngineConfig;
     private String serverName;
+    private JobCapacityRegistry capacityRegistry; // null if not capacity aware
+    private final Map<String, Long> readySince = Maps.newHashMap(); // accessed by the fetcher only
 
     private final static String SEGMENT_ID = "segmentId";
     public static final String ZOOKEEPER_LOCK_PATH = "/job_engine/lock"; // note ZookeeperDistributedLock will ensure zk path prefix: /${kylin.env.zookeeper-base-path}/metadata
@@ -116,7 +123,9 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
                     return;
                 }
 
-                int nRunning = 0, nOtherRunning = 0, nReady = 0, nOthers = 0;
+                Map<String, JobNodeCapacity> nodes = publishAndLoadCapacities();
+                Set<String> readyIds = Sets.newHashSet();
+                int nRunning = 0, nOtherRunning = 0, nReady = 0, nOthers = 0, nPlacedElsewhere = 0;
                 for (final String id : executableManager.getAllJobIds()) {
                     if (runningJobs.containsKey(id)) {
                         nRunning++;
@@ -135,19 +144,101 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
                     }
 
                     nReady++;
+                    readyIds.add(id);
                     final AbstractExecutable executable = executableManager.getJob(id);
+                    if (!isPlacedHere(executable, nodes)) {
+                        nPlacedElsewhere++;
+                        continue;
+                    }
+
                     try {
                         jobPool.execute(new JobRunner(executable));
                     } catch (Exception ex) {
                         logger.warn(executable.toString() + " fail to schedule in server: " + serverName, ex);
                     }
                 }
+                readySince.keySet().retainAll(readyIds);
                 logger.info("Job Fetcher: " + nRunning + " should running, " + runningJobs.size() + " actual running, "
-                        + nOtherRunning + " running in other server, " + nReady + " ready, " + nOthers + " others");
+                        + nOtherRunning + " running in other server, " + nReady + " ready, " + nPlacedElsewhere
+                        + " placed in other server, " + nOthers + " others");
             } catch (Exception e) {
                 logger.warn("Job Fetcher caught a exception " + e);
             }
         }
+
+        /**
+         * Whether this server should try the ready job, i.e. it is the least loaded eligible server, or the job has
+         * waited for the chosen server longer than the placement grace. The chosen server is charged one more job
+         * in the given capacities, so that every server places the jobs of this round alike.
+         */
+        private boolean isPlacedHere(AbstractExecutable executable, Map<String, JobNodeCapacity> nodes) {
+            if (capacityRegistry == null)
+                return true;
+
+            // a job resumed between steps stays with the server holding its segment lock
+            String segmentId = executable.getParam(SEGMENT_ID);
+            if (segmentId != null) {
+                String lockOwner = jobLock.peekLock(getLockPath(segmentId));
+                if (lockOwner != null)
+                    return serverName.equals(lockOwner);
+            }
+
+            String jobId = executable.getId();
+            long now = System.currentTimeMillis();
+            Long since = readySince.get(jobId);
+            if (since == null) {
+                since = now;
+                readySince.put(jobId, since);
+            }
+            if (now - since >= jobEngineConfig.getPlacementGraceSecond() * 1000L)
+                return true;
+
+            JobNodeCapacity best = JobNodeCapacity.selectLeastLoaded(nodes.values(),
+                    jobEngineConfig.getMinFreeMemoryMB());
+            if (best == null)
+                return false;
+
+            nodes.put(best.getServerName(), best.withOneMoreJob());
+            return serverName.equals(best.getServerName());
+        }
+    }
+
+    private JobNodeCapacity currentCapacity(int running) {
+        return JobNodeCapacity.ofCurrentProcess(serverName, jobEngineConfig.getMaxConcurrentJobLimit(), running);
+    }
+
+    private void publishCapacity() {
+        if (capacityRegistry == null)
+            return;
+        try {
+            capacityRegistry.publishCapacity(currentCapacity(context.getRunningJobs().size()).encode());
+        } catch (Exception e) {
+            logger.warn("Failed to publish the capacity of server: " + serverName, e);
+        }
+    }
+
+    /**
+     * Publishes the capacity of this server and returns those of all servers, this one as of now.
+     */
+    private Map<String, JobNodeCapacity> publishAndLoadCapacities() {
+        Map<String, JobNodeCapacity> result = Maps.newHashMap();
+        if (capacityRegistry == null)
+            return result;
+
+        publishCapacity();
+        result.put(serverName, currentCapacity(context.getRunningJobs().size()));
+        try {
+            for (Map.Entry<String, String> entry : capacityRegistry.getCapacities().entrySet()) {
+                JobNodeCapacity capacity = JobNodeCapacity.decode(entry.getKey(), entry.getValue());
+                if (capacity != null && !serverName.equals(entry.getKey())) {
+                    result.put(entry.getKey(), capacity);
+                }
+            }
+        } catch (Exception e) {
+            // seeing no other server, every ready job falls back to the lock race
+            logger.warn("Failed to load the capacities of the job servers", e);
+        }
+        return result;
     }
 
     private class JobRunner implements Runnable {
@@ -168,6 +259,7 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
 
                     context.addRunningJob(executable);
                     segmentWithLocks.add(segmentId);
+                    publishCapacity();
                     executable.execute(context);
                 }
             } catch (ExecuteException e) {
@@ -176,6 +268,7 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
                 logger.error("unknown error execute job:" + executable.getId() + " in server: " + serverName, e);
             } finally {
                 context.removeRunningJob(executable);
+                publishCapacity();
                 releaseJobLock(executable);
                 // trigger the next step asap
                 fetcherPool.schedule(fetcher, 0, TimeUnit.SECONDS);
@@ -284,6 +377,13 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
                 new SynchronousQueue<Runnable>());
         context = new DefaultContext(Maps.<String, Executable> newConcurrentMap(), jobEngineConfig.getConfig());
 
+        if (jobEngineConfig.isCapacityAwareScheduling() && jobLock instanceof JobCapacityRegistry) {
+            capacityRegistry = (JobCapacityRegistry) jobLock;
+            publishCapacity();
+            logger.info("Placing jobs on the least loaded server, min free memory {} MB, placement grace {} seconds",
+                    jobEngineConfig.getMinFreeMemoryMB(), jobEngineConfig.getPlacementGraceSecond());
+        }
+
         int pollSecond = jobEngineConfig.getPollIntervalSecond();
         logger.info("Fetching jobs every {} seconds", pollSecond);
         fetcher = new FetcherRunner();
@@ -339,6 +439,14 @@ public class DistributedScheduler implements Scheduler<AbstractExecutable>, Conn
         releaseAllLocks();
         logger.info("The all locks has released");
 
+        if (capacityRegistry != null) {
+            try {
+                capacityRegistry.withdrawCapacity();
+            } catch (Exception e) {
+                logger.warn("Failed to withdraw the capacity of server: " + serverName, e);
+            }
+        }
+
         fetcherPool.shutdown();
         logger.info("The fetcherPool has down");
 
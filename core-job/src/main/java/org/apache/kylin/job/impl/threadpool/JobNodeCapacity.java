@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.job.impl.threadpool;
+
+import java.util.Collection;
+
+/**
+ * The capacity of a job server to run more jobs, as published to the JobCapacityRegistry, immutable.
+ * <p>
+ * Encoded as "maxSlots,runningJobs,freeMemoryMB".
+ */
+public class JobNodeCapacity {
+
+    private static final long MB = 1024L * 1024L;
+
+    private final String serverName;
+    private final int maxSlots;
+    private final int runningJobs;
+    private final long freeMemoryMB;
+
+    public JobNodeCapacity(String serverName, int maxSlots, int runningJobs, long freeMemoryMB) {
+        this.serverName = serverName;
+        this.maxSlots = maxSlots;
+        this.runningJobs = runningJobs;
+        this.freeMemoryMB = freeMemoryMB;
+    }
+
+    /**
+     * The capacity of this JVM, whose memory headroom is what the heap can still grow to hold.
+     */
+    public static JobNodeCapacity ofCurrentProcess(String serverName, int maxSlots, int runningJobs) {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return new JobNodeCapacity(serverName, maxSlots, runningJobs, (runtime.maxMemory() - used) / MB);
+    }
+
+    /**
+     * Returns null if the string is not a valid capacity, e.g. published by a newer version.
+     */
+    public static JobNodeCapacity decode(String serverName, String encoded) {
+        if (encoded == null)
+            return null;
+
+        String[] parts = encoded.split(",");
+        if (parts.length < 3)
+            return null;
+        try {
+            return new JobNodeCapacity(serverName, Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()), Long.parseLong(parts[2].trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public JobNodeCapacity withOneMoreJob() {
+        return new JobNodeCapacity(serverName, maxSlots, runningJobs + 1, freeMemoryMB);
+    }
+
+    public String encode() {
+        return maxSlots + "," + runningJobs + "," + freeMemoryMB;
+    }
+
+    /**
+     * The node with a free slot and enough memory headroom that runs the least jobs relative to its slots, the one
+     * with more free memory then the smaller name on a tie. Null if no node is eligible.
+     */
+    public static JobNodeCapacity selectLeastLoaded(Collection<JobNodeCapacity> nodes, long minFreeMemoryMB) {
+        JobNodeCapacity best = null;
+        for (JobNodeCapacity node : nodes) {
+            if (node.isEligible(minFreeMemoryMB) && (best == null || node.compareLoad(best) < 0)) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    public boolean isEligible(long minFreeMemoryMB) {
+        return getFreeSlots() > 0 && freeMemoryMB >= minFreeMemoryMB;
+    }
+
+    private int compareLoad(JobNodeCapacity other) {
+        int c = Double.compare(getLoad(), other.getLoad());
+        if (c != 0)
+            return c;
+        c = Long.compare(other.freeMemoryMB, freeMemoryMB);
+        if (c != 0)
+            return c;
+        return serverName.compareTo(other.serverName);
+    }
+
+    /**
+     * The ratio of the running jobs to the slots, 1 or above when full.
+     */
+    public double getLoad() {
+        return maxSlots <= 0 ? 1.0 : (double) runningJobs / maxSlots;
+    }
+
+    public int getFreeSlots() {
+        return Math.max(0, maxSlots - runningJobs);
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public int getMaxSlots() {
+        return maxSlots;
+    }
+
+    public int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public long getFreeMemoryMB() {
+        return freeMemoryMB;
+    }
+
+    @Override
+    public String toString() {
+        return "JobNodeCapacity{serverName=" + serverName + ", maxSlots=" + maxSlots + ", runningJobs=" + runningJobs
+                + ", freeMemoryMB=" + freeMemoryMB + "}";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.job.lock;
+
+import java.util.Map;
+
+/**
+ * Among a Kylin cluster with several job servers, each server publishes its capacity to run jobs here, so that a
+ * ready job can be placed on the least loaded server. A server's capacity disappears with the server.
+ */
+public interface JobCapacityRegistry {
+
+    /**
+     * Publishes (or replaces) the capacity of the client owning this registry.
+     */
+    void publishCapacity(String capacity);
+
+    /**
+     * Removes the capacity of the client owning this registry, e.g. at shutdown.
+     */
+    void withdrawCapacity();
+
+    /**
+     * The published capacities of all live clients, by client name.
+     */
+    Map<String, String> getCapacities();
+}
@@ -26,6 +26,7 @@ import java.util.List;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.job.dao.JobSummary;
 import org.apache.kylin.job.exception.IllegalStateTranferException;
 import org.apache.kylin.job.execution.AbstractExecutable;
 import org.apache.kylin.job.execution.ChainedExecutable;
@@ -89,6 +90,53 @@ public class ExecutableManagerTest extends LocalFileMetadataTestCase {
         assertEquals(DefaultChainedExecutable.class, anotherJob.getClass());
         assertEquals(2, ((DefaultChainedExecutable) anotherJob).getTasks().size());
         assertJobEqual(job, anotherJob);
+
+        assertEquals(job.getId(), DefaultChainedExecutable.getJobId(job.getId()));
+        for (AbstractExecutable task : job.getTasks()) {
+            assertEquals(job.getId(), DefaultChainedExecutable.getJobId(task.getId()));
+        }
+    }
+
+    @Test
+    public void testJobSummaries() throws Exception {
+        SucceedTestExecutable job = new SucceedTestExecutable();
+        job.setParam("projectName", "default");
+        service.addJob(job);
+        DefaultChainedExecutable chainedJob = new DefaultChainedExecutable();
+        chainedJob.addTask(new SucceedTestExecutable());
+
+        // loaded from the store
+        List<JobSummary> summaries = service.getJobSummaries(0, Long.MAX_VALUE, AbstractExecutable.class);
+        assertEquals(1, summaries.size());
+        assertEquals(job.getId(), summaries.get(0).getId());
+        assertEquals("default", summaries.get(0).getProjectName());
+        assertEquals(ExecutableState.READY.toString(), summaries.get(0).getStatus());
+
+        // then kept up to date, the steps not included
+        service.addJob(chainedJob);
+        service.updateJobOutput(job.getId(), ExecutableState.RUNNING, null, null);
+        service.updateJobOutput(chainedJob.getTasks().get(0).getId(), ExecutableState.RUNNING, null, null);
+        summaries = service.getJobSummaries(0, Long.MAX_VALUE, AbstractExecutable.class);
+        assertEquals(2, summaries.size());
+        for (JobSummary summary : summaries) {
+            if (summary.getId().equals(job.getId())) {
+                assertEquals(ExecutableState.RUNNING.toString(), summary.getStatus());
+                assertEquals(service.getOutput(job.getId()).getLastModified(), summary.getOutputLastModified());
+            } else {
+                assertEquals(chainedJob.getId(), summary.getId());
+                assertEquals(ExecutableState.READY.toString(), summary.getStatus());
+            }
+        }
+
+        // by class and time window
+        summaries = service.getJobSummaries(0, Long.MAX_VALUE, DefaultChainedExecutable.class);
+        assertEquals(1, summaries.size());
+        assertEquals(chainedJob.getId(), summaries.get(0).getId());
+        assertEquals(0, service.getJobSummaries(System.currentTimeMillis() + 1000, Long.MAX_VALUE,
+                AbstractExecutable.class).size());
+
+        service.deleteJob(chainedJob.getId());
+        assertEquals(1, service.getJobSummaries(0, Long.MAX_VALUE, AbstractExecutable.class).size());
     }
 
     @Test
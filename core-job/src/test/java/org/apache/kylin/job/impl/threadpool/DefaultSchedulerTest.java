@@ -73,6 +73,25 @@ public class DefaultSchedulerTest extends BaseSchedulerTest {
         Assert.assertEquals(ExecutableState.SUCCEED, jobService.getOutput(task2.getId()).getState());
     }
 
+    @Test
+    public void testEventDriven() throws Exception {
+        logger.info("testEventDriven");
+        // the safety net polls every 300 seconds, the steps are scheduled on wake-ups only
+        DefaultChainedExecutable job = new DefaultChainedExecutable();
+        for (int i = 0; i < 3; i++) {
+            job.addTask(new SucceedTestExecutable());
+        }
+        long start = System.currentTimeMillis();
+        jobService.addJob(job);
+        while (jobService.getOutput(job.getId()).getState() != ExecutableState.SUCCEED
+                && System.currentTimeMillis() - start < 30000) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(ExecutableState.SUCCEED, jobService.getOutput(job.getId()).getState());
+        // 1 second per step
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
     @Test
     public void testSucceedAndFailed() throws Exception {
         logger.info("testSucceedAndFailed");
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.job.impl.threadpool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class JobNodeCapacityTest {
+
+    @Test
+    public void testEncodeDecode() {
+        JobNodeCapacity capacity = new JobNodeCapacity("node1", 10, 3, 2048);
+        JobNodeCapacity decoded = JobNodeCapacity.decode("node1", capacity.encode());
+        assertEquals("node1", decoded.getServerName());
+        assertEquals(10, decoded.getMaxSlots());
+        assertEquals(3, decoded.getRunningJobs());
+        assertEquals(2048, decoded.getFreeMemoryMB());
+        assertEquals(7, decoded.getFreeSlots());
+
+        assertNull(JobNodeCapacity.decode("node1", null));
+        assertNull(JobNodeCapacity.decode("node1", "10,3"));
+        assertNull(JobNodeCapacity.decode("node1", "10,x,2048"));
+    }
+
+    @Test
+    public void testEligible() {
+        assertTrue(new JobNodeCapacity("node1", 10, 9, 1024).isEligible(512));
+        assertFalse(new JobNodeCapacity("node1", 10, 10, 1024).isEligible(512));
+        assertFalse(new JobNodeCapacity("node1", 10, 0, 256).isEligible(512));
+        assertFalse(new JobNodeCapacity("node1", 0, 0, 1024).isEligible(512));
+    }
+
+    @Test
+    public void testSelectLeastLoaded() {
+        List<JobNodeCapacity> nodes = Lists.newArrayList(new JobNodeCapacity("node1", 10, 5, 4096),
+                new JobNodeCapacity("node2", 4, 1, 1024), new JobNodeCapacity("node3", 10, 0, 256));
+
+        // node3 is idle but short of memory
+        assertEquals("node2", JobNodeCapacity.selectLeastLoaded(nodes, 512).getServerName());
+        assertEquals("node3", JobNodeCapacity.selectLeastLoaded(nodes, 128).getServerName());
+        assertNull(JobNodeCapacity.selectLeastLoaded(nodes, 8192));
+
+        // more free memory then the name on a tie
+        nodes = Lists.newArrayList(new JobNodeCapacity("node2", 10, 2, 1024), new JobNodeCapacity("node1", 10, 2,
+                1024), new JobNodeCapacity("node3", 5, 1, 2048));
+        assertEquals("node3", JobNodeCapacity.selectLeastLoaded(nodes, 512).getServerName());
+        nodes.remove(2);
+        assertEquals("node1", JobNodeCapacity.selectLeastLoaded(nodes, 512).getServerName());
+    }
+
+    @Test
+    public void testSpreadJobs() {
+        List<JobNodeCapacity> nodes = Lists.newArrayList(new JobNodeCapacity("node1", 2, 0, 1024),
+                new JobNodeCapacity("node2", 2, 1, 1024));
+
+        // placing one job after another, as the scheduler charges the chosen node
+        List<String> placed = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            JobNodeCapacity best = JobNodeCapacity.selectLeastLoaded(nodes, 512);
+            if (best == null)
+                break;
+            placed.add(best.getServerName());
+            nodes.set(nodes.indexOf(best), best.withOneMoreJob());
+        }
+        assertEquals(Lists.newArrayList("node1", "node1", "node2"), placed);
+    }
+}
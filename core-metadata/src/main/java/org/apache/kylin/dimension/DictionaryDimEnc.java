@@ -23,6 +23,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Dictionary;
@@ -104,6 +105,25 @@ public class DictionaryDimEnc extends DimensionEncoding implements Serializable
         }
     }
 
+    /**
+     * Encode a block of values with one batch dictionary lookup, see {@link Dictionary#getIdsFromValues}.
+     * The code of values[i] goes to outputs[i] at outputOffset.
+     */
+    public void encode(String[] values, int count, byte[][] outputs, int outputOffset) {
+        int[] ids = new int[count];
+        BitSet notFound = dict.getIdsFromValues(values, count, roundingFlag, ids);
+        for (int i = 0; i < count; i++) {
+            if (notFound.get(i)) {
+                for (int j = outputOffset; j < outputOffset + fixedLen; j++) {
+                    outputs[i][j] = defaultByte;
+                }
+                logger.error("Can't translate value " + values[i] + " to dictionary ID, roundingFlag " + roundingFlag + ". Using default value " + String.format("\\x%02X", defaultByte));
+            } else {
+                BytesUtil.writeUnsigned(ids[i], outputs[i], outputOffset, fixedLen);
+            }
+        }
+    }
+
     @Override
     public String decode(byte[] bytes, int offset, int len) {
         int id = BytesUtil.readUnsigned(bytes, offset, len);
@@ -33,6 +33,7 @@ import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ParallelResourceLoader;
 import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
@@ -364,9 +365,12 @@ public class TableMetadataManager {
 
         List<String> paths = store.collectResourceRecursively(ResourceStore.TABLE_EXD_RESOURCE_ROOT,
                 MetadataConstants.FILE_SURFIX);
-        for (String path : paths) {
-            reloadTableExtAt(path);
-        }
+        ParallelResourceLoader.load(config, "table_ext", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) throws IOException {
+                reloadTableExtAt(path);
+            }
+        });
 
         logger.debug("Loaded " + srcTableExtMap.size() + " SourceTable EXD(s)");
     }
@@ -436,9 +440,12 @@ public class TableMetadataManager {
 
         List<String> paths = store.collectResourceRecursively(ResourceStore.EXTERNAL_FILTER_RESOURCE_ROOT,
                 MetadataConstants.FILE_SURFIX);
-        for (String path : paths) {
-            reloadExternalFilterAt(path);
-        }
+        ParallelResourceLoader.load(config, "external_filter", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) throws IOException {
+                reloadExternalFilterAt(path);
+            }
+        });
 
         logger.debug("Loaded " + extFilterMap.size() + " ExternalFilter(s)");
     }
@@ -452,9 +459,12 @@ public class TableMetadataManager {
 
         List<String> paths = store.collectResourceRecursively(ResourceStore.TABLE_RESOURCE_ROOT,
                 MetadataConstants.FILE_SURFIX);
-        for (String path : paths) {
-            reloadSourceTableAt(path);
-        }
+        ParallelResourceLoader.load(config, "table", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) throws IOException {
+                reloadSourceTableAt(path);
+            }
+        });
 
         logger.debug("Loaded " + srcTableMap.size() + " SourceTable(s)");
     }
@@ -21,8 +21,11 @@ package org.apache.kylin.metadata.cachesync;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -36,8 +39,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
 import org.apache.kylin.common.restclient.RestClient;
 import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.metadata.project.ProjectManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Broadcast metadata changes across all Kylin servers.
@@ -106,14 +114,25 @@ public class Broadcaster {
 
     static final Map<String, List<Listener>> staticListenerMap = Maps.newConcurrentMap();
 
+    private static final int MAX_SYNC_THREADS = 10;
+    private static final int MAX_BATCH_EVENTS = 1000;
+    private static final long RETRY_INTERVAL_MS = 1000;
+
+    // the project events raised while notifying a batch, deduplicated and notified after the batch
+    private static final ThreadLocal<Set<BroadcastEvent>> deferredProjectEvents = new ThreadLocal<>();
+
     private KylinConfig config;
+    private final int retryLimitTimes;
+    private final long coalesceMs;
     private BlockingDeque<BroadcastEvent> broadcastEvents = new LinkedBlockingDeque<>();
+    private final Map<String, NodeSync> nodeSyncs = Maps.newConcurrentMap();
     private Map<String, List<Listener>> listenerMap = Maps.newConcurrentMap();
     private AtomicLong counter = new AtomicLong();
 
     private Broadcaster(final KylinConfig config) {
         this.config = config;
-        final int retryLimitTimes = config.getCacheSyncRetrys();
+        this.retryLimitTimes = config.getCacheSyncRetrys();
+        this.coalesceMs = config.getCacheSyncCoalesceMs();
 
         final String[] nodes = config.getRestServers();
         if (nodes == null || nodes.length < 1) {
@@ -124,50 +143,13 @@ public class Broadcaster {
         Executors.newSingleThreadExecutor(new DaemonThreadFactory()).execute(new Runnable() {
             @Override
             public void run() {
-                final Map<String, RestClient> restClientMap = Maps.newHashMap();
-                final ExecutorService wipingCachePool = new ThreadPoolExecutor(1, 10, 60L, TimeUnit.SECONDS,
-                        new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+                final ThreadPoolExecutor wipingCachePool = new ThreadPoolExecutor(MAX_SYNC_THREADS, MAX_SYNC_THREADS,
+                        60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+                wipingCachePool.allowCoreThreadTimeOut(true);
 
                 while (true) {
                     try {
-                        final BroadcastEvent broadcastEvent = broadcastEvents.takeFirst();
-                        broadcastEvent.setRetryTime(broadcastEvent.getRetryTime() + 1);
-                        if (broadcastEvent.getRetryTime() > retryLimitTimes) {
-                            logger.info("broadcastEvent retry up to limit times, broadcastEvent:{}", broadcastEvent);
-                            continue;
-                        }
-
-                        String[] restServers = config.getRestServers();
-                        logger.debug("Servers in the cluster: " + Arrays.toString(restServers));
-                        for (final String node : restServers) {
-                            if (restClientMap.containsKey(node) == false) {
-                                restClientMap.put(node, new RestClient(node));
-                            }
-                        }
-
-                        logger.debug("Announcing new broadcast event: " + broadcastEvent);
-                        for (final String node : restServers) {
-                            wipingCachePool.execute(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        restClientMap.get(node).wipeCache(broadcastEvent.getEntity(),
-                                                broadcastEvent.getEvent(), broadcastEvent.getCacheKey());
-                                    } catch (IOException e) {
-                                        logger.warn("Thread failed during wipe cache at {}, error msg: {}",
-                                                broadcastEvent, e);
-                                        // when sync failed, put back to queue
-                                        try {
-                                            broadcastEvents.putLast(broadcastEvent);
-                                        } catch (InterruptedException ex) {
-                                            logger.warn(
-                                                    "error reentry failed broadcastEvent to queue, broacastEvent:{}, error: {} ",
-                                                    broadcastEvent, ex);
-                                        }
-                                    }
-                                }
-                            });
-                        }
+                        dispatch(wipingCachePool);
                     } catch (Exception e) {
                         logger.error("error running wiping", e);
                     }
@@ -176,11 +158,205 @@ public class Broadcaster {
         });
     }
 
+    /**
+     * Hand the queued events to the nodes, each node receiving its pending events in one batch after the previous
+     * batch is done. The events to the same entity and cache key coming together are sent once, as the latest one.
+     */
+    private void dispatch(ExecutorService wipingCachePool) throws InterruptedException {
+        List<BroadcastEvent> events = Lists.newArrayList();
+        // wakes up without events too, to retry the failed nodes
+        BroadcastEvent first = broadcastEvents.pollFirst(RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            // wait a moment for the changes made together, e.g. the segments of a cube build
+            if (coalesceMs > 0)
+                Thread.sleep(coalesceMs);
+            events.add(first);
+            broadcastEvents.drainTo(events);
+            logger.debug("Announcing {} new broadcast events", events.size());
+        }
+
+        String[] restServers = config.getRestServers();
+        for (String node : restServers) {
+            NodeSync nodeSync = nodeSyncs.get(node);
+            if (nodeSync == null) {
+                nodeSync = new NodeSync(node, wipingCachePool);
+                nodeSyncs.put(node, nodeSync);
+            }
+            nodeSync.add(events);
+            nodeSync.flush();
+        }
+    }
+
+    /**
+     * The milliseconds since the oldest event not yet delivered to each node, 0 if the node is up to date.
+     */
+    public Map<String, Long> getNodeLags() {
+        Map<String, Long> lags = Maps.newTreeMap();
+        for (NodeSync nodeSync : nodeSyncs.values()) {
+            lags.put(nodeSync.node, nodeSync.getLag());
+        }
+        return lags;
+    }
+
+    private class NodeSync {
+        private final String node;
+        private final RestClient restClient;
+        private final ExecutorService wipingCachePool;
+        // (entity, cacheKey) ==> the latest event, in the order of the latest changes
+        private final LinkedHashMap<Pair<String, String>, PendingEvent> pending = Maps.newLinkedHashMap();
+        private List<PendingEvent> inFlight = null;
+        private long nextAttemptTime = 0;
+
+        NodeSync(String node, ExecutorService wipingCachePool) {
+            this.node = node;
+            this.restClient = new RestClient(node);
+            this.wipingCachePool = wipingCachePool;
+            if (config.getQueryMetrics2Enabled()) {
+                registerMetrics();
+            }
+        }
+
+        synchronized void add(List<BroadcastEvent> events) {
+            for (BroadcastEvent event : events) {
+                // a clear all makes the changes before it no matter
+                if (SYNC_ALL.equals(event.getEntity()))
+                    pending.clear();
+
+                Pair<String, String> key = Pair.newPair(event.getEntity(), event.getCacheKey());
+                PendingEvent previous = pending.remove(key);
+                long since = previous == null ? event.getCreateTime() : previous.since;
+                pending.put(key, new PendingEvent(event, since, 0));
+            }
+        }
+
+        synchronized void flush() {
+            if (inFlight != null || pending.isEmpty() || System.currentTimeMillis() < nextAttemptTime)
+                return;
+
+            final List<PendingEvent> batch = Lists.newArrayList();
+            Iterator<PendingEvent> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH_EVENTS) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            inFlight = batch;
+
+            wipingCachePool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(batch);
+                }
+            });
+        }
+
+        private void deliver(List<PendingEvent> batch) {
+            try {
+                if (batch.size() == 1) {
+                    BroadcastEvent event = batch.get(0).event;
+                    restClient.wipeCache(event.getEntity(), event.getEvent(), event.getCacheKey());
+                } else {
+                    List<Map<String, String>> payload = Lists.newArrayListWithCapacity(batch.size());
+                    for (PendingEvent pendingEvent : batch) {
+                        payload.add(pendingEvent.event.toPayload());
+                    }
+                    restClient.wipeCaches(payload);
+                }
+                synchronized (this) {
+                    inFlight = null;
+                    nextAttemptTime = 0;
+                }
+                // the events came in meanwhile
+                flush();
+            } catch (Exception e) {
+                logger.warn("Thread failed during wipe cache at {}, {} events, error msg: {}", node, batch.size(),
+                        e);
+                retryLater(batch);
+            }
+        }
+
+        private synchronized void retryLater(List<PendingEvent> batch) {
+            // when sync failed, put back before the newer events
+            LinkedHashMap<Pair<String, String>, PendingEvent> retries = Maps.newLinkedHashMap();
+            for (PendingEvent pendingEvent : batch) {
+                BroadcastEvent event = pendingEvent.event;
+                Pair<String, String> key = Pair.newPair(event.getEntity(), event.getCacheKey());
+                if (pendingEvent.failures + 1 >= retryLimitTimes) {
+                    logger.info("broadcastEvent retry up to limit times, node:{}, broadcastEvent:{}", node, event);
+                } else if (!pending.containsKey(key)) {
+                    retries.put(key, new PendingEvent(event, pendingEvent.since, pendingEvent.failures + 1));
+                }
+            }
+            retries.putAll(pending);
+            pending.clear();
+            pending.putAll(retries);
+
+            inFlight = null;
+            nextAttemptTime = System.currentTimeMillis() + RETRY_INTERVAL_MS;
+        }
+
+        synchronized long getLag() {
+            long oldest = Long.MAX_VALUE;
+            for (PendingEvent pendingEvent : pending.values()) {
+                oldest = Math.min(oldest, pendingEvent.since);
+            }
+            if (inFlight != null) {
+                for (PendingEvent pendingEvent : inFlight) {
+                    oldest = Math.min(oldest, pendingEvent.since);
+                }
+            }
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        }
+
+        synchronized int getPendingCount() {
+            return pending.size() + (inFlight == null ? 0 : inFlight.size());
+        }
+
+        private void registerMetrics() {
+            Metrics metrics = MetricsFactory.getInstance();
+            if (metrics == null)
+                return;
+
+            String prefix = "metrics:name=cache_sync,node=" + node.replace(':', '_') + ",stat=";
+            metrics.addGauge(prefix + "lag_ms", new MetricsVariable<Long>() {
+                @Override
+                public Long getValue() {
+                    return getLag();
+                }
+            });
+            metrics.addGauge(prefix + "pending", new MetricsVariable<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return getPendingCount();
+                }
+            });
+        }
+    }
+
+    private static class PendingEvent {
+        private final BroadcastEvent event;
+        private final long since; // the create time of the oldest event coalesced into it
+        private final int failures;
+
+        PendingEvent(BroadcastEvent event, long since, int failures) {
+            this.event = event;
+            this.since = since;
+            this.failures = failures;
+        }
+    }
+
     // static listener survives cache wipe and goes after normal listeners
     public void registerStaticListener(Listener listener, String... entities) {
         doRegisterListener(staticListenerMap, listener, entities);
     }
 
+    public void unregisterStaticListener(Listener listener) {
+        synchronized (staticListenerMap) {
+            for (List<Listener> list : staticListenerMap.values()) {
+                list.remove(listener);
+            }
+        }
+    }
+
     public void registerListener(Listener listener, String... entities) {
         doRegisterListener(listenerMap, listener, entities);
     }
@@ -233,6 +409,29 @@ public class Broadcaster {
         notifyListener(entity, event, cacheKey, true);
     }
 
+    /**
+     * Notify a batch of events received from another node in order. The project events raised by them are notified
+     * once per project at the end of the batch.
+     */
+    public void notifyListeners(List<BroadcastEvent> events) throws IOException {
+        Set<BroadcastEvent> deferred = Sets.newLinkedHashSet();
+        deferredProjectEvents.set(deferred);
+        try {
+            for (BroadcastEvent event : events) {
+                // a clear all replaces the broadcaster
+                getInstance(config).notifyListener(event.getEntity(), Event.getEvent(event.getEvent()),
+                        event.getCacheKey());
+            }
+        } finally {
+            deferredProjectEvents.remove();
+        }
+
+        for (BroadcastEvent event : deferred) {
+            getInstance(config).notifyListener(event.getEntity(), Event.getEvent(event.getEvent()),
+                    event.getCacheKey());
+        }
+    }
+
     public void notifyNonStaticListener(String entity, Event event, String cacheKey) throws IOException {
         notifyListener(entity, event, cacheKey, false);
     }
@@ -253,6 +452,13 @@ public class Broadcaster {
         if (list.isEmpty())
             return;
 
+        Set<BroadcastEvent> deferred = deferredProjectEvents.get();
+        if (deferred != null && (SYNC_PRJ_SCHEMA.equals(entity) || SYNC_PRJ_DATA.equals(entity)
+                || SYNC_PRJ_ACL.equals(entity))) {
+            deferred.add(new BroadcastEvent(entity, event.getType(), cacheKey));
+            return;
+        }
+
         logger.debug("Broadcasting" + event + ", " + entity + ", " + cacheKey);
 
         switch (entity) {
@@ -357,12 +563,26 @@ public class Broadcaster {
         private String entity;
         private String event;
         private String cacheKey;
+        private long createTime;
 
         public BroadcastEvent(String entity, String event, String cacheKey) {
             super();
             this.entity = entity;
             this.event = event;
             this.cacheKey = cacheKey;
+            this.createTime = System.currentTimeMillis();
+        }
+
+        public static BroadcastEvent fromPayload(Map<String, String> payload) {
+            return new BroadcastEvent(payload.get("entity"), payload.get("event"), payload.get("cacheKey"));
+        }
+
+        public Map<String, String> toPayload() {
+            Map<String, String> payload = Maps.newHashMap();
+            payload.put("entity", entity);
+            payload.put("event", event);
+            payload.put("cacheKey", cacheKey);
+            return payload;
         }
 
         public int getRetryTime() {
@@ -385,6 +605,10 @@ public class Broadcaster {
             return cacheKey;
         }
 
+        public long getCreateTime() {
+            return createTime;
+        }
+
         @Override
         public int hashCode() {
             final int prime = 31;
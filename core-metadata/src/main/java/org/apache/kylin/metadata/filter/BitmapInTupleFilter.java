@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.metadata.filter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ByteBufferOutputStream;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+/**
+ * IN (or NOT IN) on a column of fixed length codes, e.g. dictionary IDs, with the codes kept as a roaring bitmap.
+ * <p>
+ * A large IN list translated to codes is much smaller as a bitmap than as a set of byte arrays, both in the
+ * serialized GTScanRequest and in the storage side memory. Evaluation reads the code of the tuple as an unsigned
+ * int and probes the bitmap, no hashing and no decoding. Only codes of at most 4 bytes can be held.
+ */
+public class BitmapInTupleFilter extends TupleFilter {
+
+    private TblColRef column;
+    private int codeLength;
+    private ImmutableRoaringBitmap ids;
+    private boolean reverse; // NOT IN
+
+    public BitmapInTupleFilter() {
+        super(new ArrayList<TupleFilter>(1), FilterOperatorEnum.BITMAP_IN);
+    }
+
+    public BitmapInTupleFilter(TblColRef column, int codeLength, ImmutableRoaringBitmap ids, boolean reverse) {
+        this();
+        if (codeLength <= 0 || codeLength > 4)
+            throw new IllegalArgumentException("Code length should be 1 to 4 bytes, but is " + codeLength);
+
+        addChild(new ColumnTupleFilter(column));
+        this.codeLength = codeLength;
+        this.ids = ids;
+        this.reverse = reverse;
+    }
+
+    /**
+     * Returns the bitmap of given codes, or null if any code is longer than 4 bytes or codes differ in length.
+     */
+    public static MutableRoaringBitmap toBitmap(Collection<ByteArray> codes) {
+        MutableRoaringBitmap result = new MutableRoaringBitmap();
+        int len = -1;
+        for (ByteArray code : codes) {
+            if (code == null || code.array() == null)
+                return null;
+            if (len < 0)
+                len = code.length();
+            if (code.length() != len || len <= 0 || len > 4)
+                return null;
+            result.add(BytesUtil.readUnsigned(code.array(), code.offset(), len));
+        }
+        result.runOptimize();
+        return result;
+    }
+
+    @Override
+    public void addChild(TupleFilter child) {
+        if (child instanceof ColumnTupleFilter) {
+            super.addChild(child);
+            this.column = ((ColumnTupleFilter) child).getColumn();
+        } else {
+            throw new IllegalStateException("BitmapInTupleFilter only has one ColumnTupleFilter child, but got " + child);
+        }
+    }
+
+    public TblColRef getColumn() {
+        return column;
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    public ImmutableRoaringBitmap getIds() {
+        return ids;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    public ByteArray idToCode(int id) {
+        ByteArray code = ByteArray.allocate(codeLength);
+        BytesUtil.writeUnsigned(id, code.array(), 0, codeLength);
+        return code;
+    }
+
+    @Override
+    public TupleFilter copy() {
+        return new BitmapInTupleFilter(column, codeLength, ids, reverse);
+    }
+
+    @Override
+    public TupleFilter reverse() {
+        return new BitmapInTupleFilter(column, codeLength, ids, !reverse);
+    }
+
+    @Override
+    public boolean isEvaluable() {
+        return column != null && ids != null;
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public boolean evaluate(IEvaluatableTuple tuple, IFilterCodeSystem cs) {
+        Object tupleValue = null;
+        for (TupleFilter filter : this.children) {
+            filter.evaluate(tuple, cs);
+            tupleValue = filter.getValues().iterator().next();
+        }
+
+        // same as CompareTupleFilter, null is neither IN nor NOT IN
+        if (cs.isNull(tupleValue))
+            return false;
+
+        ByteArray code = (ByteArray) tupleValue;
+        if (code.length() != codeLength)
+            return reverse;
+
+        boolean ret = ids.contains(BytesUtil.readUnsigned(code.array(), code.offset(), codeLength));
+        return reverse ? !ret : ret;
+    }
+
+    /**
+     * The codes as ByteArray, created on iteration.
+     */
+    @Override
+    public Collection<?> getValues() {
+        return new AbstractCollection<ByteArray>() {
+            @Override
+            public Iterator<ByteArray> iterator() {
+                final IntIterator it = ids.getIntIterator();
+                return new Iterator<ByteArray>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public ByteArray next() {
+                        return idToCode(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.getCardinality();
+            }
+        };
+    }
+
+    @Override
+    public void serialize(IFilterCodeSystem<?> cs, ByteBuffer buffer) {
+        BytesUtil.writeVInt(codeLength, buffer);
+        BytesUtil.writeVInt(reverse ? 1 : 0, buffer);
+
+        if (buffer.remaining() < ids.serializedSizeInBytes()) {
+            throw new BufferOverflowException();
+        }
+        try (DataOutputStream dos = new DataOutputStream(new ByteBufferOutputStream(buffer))) {
+            ids.serialize(dos);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void deserialize(IFilterCodeSystem<?> cs, ByteBuffer buffer) {
+        codeLength = BytesUtil.readVInt(buffer);
+        reverse = BytesUtil.readVInt(buffer) == 1;
+
+        // only look at the metadata of the bitmap to know its size, then map a copy of the content
+        int size = new ImmutableRoaringBitmap(buffer).serializedSizeInBytes();
+        byte[] dst = new byte[size];
+        buffer.get(dst);
+        ids = new ImmutableRoaringBitmap(ByteBuffer.wrap(dst));
+    }
+
+    @Override
+    public String toString() {
+        return column + (reverse ? " NOT IN " : " IN ") + "bitmap[" + (ids == null ? 0 : ids.getCardinality()) + " ids]";
+    }
+}
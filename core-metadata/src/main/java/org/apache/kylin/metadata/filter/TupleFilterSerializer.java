@@ -203,6 +203,9 @@ public class TupleFilterSerializer {
         case MASSIN:
             filter = new MassInTupleFilter();
             break;
+        case BITMAP_IN:
+            filter = new BitmapInTupleFilter();
+            break;
         default: {
             if (extendedTupleFilters.containsKey(op)) {
                 try {
@@ -30,6 +30,7 @@ import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ParallelResourceLoader;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.common.util.ClassUtil;
@@ -227,16 +228,22 @@ public class DataModelManager {
 
         List<String> paths = store.collectResourceRecursively(ResourceStore.DATA_MODEL_DESC_RESOURCE_ROOT,
                 MetadataConstants.FILE_SURFIX);
-        for (String path : paths) {
 
-            try {
-                logger.info("Reloading data model at " + path);
-                reloadDataModelDescAt(path);
-            } catch (IllegalStateException e) {
-                logger.error("Error to load DataModel at " + path, e);
-                continue;
+        // touch lower level metadata on this thread, the loader threads must not wait for it
+        ProjectManager.getInstance(config);
+        getDataModelSerializer();
+
+        ParallelResourceLoader.load(config, "data_model", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) {
+                try {
+                    logger.info("Reloading data model at " + path);
+                    reloadDataModelDescAt(path);
+                } catch (IllegalStateException e) {
+                    logger.error("Error to load DataModel at " + path, e);
+                }
             }
-        }
+        });
 
         logger.debug("Loaded " + dataModelDescMap.size() + " DataModel(s)");
     }
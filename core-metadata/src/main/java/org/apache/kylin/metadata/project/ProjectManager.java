@@ -32,6 +32,7 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ParallelResourceLoader;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.metadata.TableMetadataManager;
@@ -138,9 +139,12 @@ public class ProjectManager {
         logger.debug(
                 "Loading Project from folder " + store.getReadableResourcePath(ResourceStore.PROJECT_RESOURCE_ROOT));
 
-        for (String path : paths) {
-            reloadProjectLocalAt(path);
-        }
+        ParallelResourceLoader.load(config, "project", paths, new ParallelResourceLoader.Loader() {
+            @Override
+            public void load(String path) throws IOException {
+                reloadProjectLocalAt(path);
+            }
+        });
         logger.debug("Loaded " + projectMap.size() + " Project(s)");
     }
 
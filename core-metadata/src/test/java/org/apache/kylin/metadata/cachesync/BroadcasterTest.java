@@ -19,9 +19,11 @@
 package org.apache.kylin.metadata.cachesync;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.cachesync.Broadcaster.BroadcastEvent;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Listener;
 import org.junit.After;
@@ -29,6 +31,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class BroadcasterTest extends LocalFileMetadataTestCase {
 
     @Before
@@ -67,6 +71,24 @@ public class BroadcasterTest extends LocalFileMetadataTestCase {
         Broadcaster.staticListenerMap.clear();
     }
 
+    @Test
+    public void testUnregisterStatic() throws IOException {
+        Broadcaster broadcaster = Broadcaster.getInstance(getTestConfig());
+        Listener listener = new Listener() {
+            @Override
+            public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey)
+                    throws IOException {
+                throw new IllegalStateException("Should not notify unregistered listener.");
+            }
+        };
+        broadcaster.registerStaticListener(listener, "test");
+        broadcaster.unregisterStaticListener(listener);
+
+        broadcaster.notifyListener("test", Event.UPDATE, "");
+
+        Broadcaster.staticListenerMap.clear();
+    }
+
     @Test
     public void testNotifyNonStatic() throws IOException {
         Broadcaster broadcaster = Broadcaster.getInstance(getTestConfig());
@@ -92,4 +114,30 @@ public class BroadcasterTest extends LocalFileMetadataTestCase {
 
         Broadcaster.staticListenerMap.clear();
     }
+
+    @Test
+    public void testNotifyBatch() throws IOException {
+        Broadcaster broadcaster = Broadcaster.getInstance(getTestConfig());
+        final List<String> notified = Lists.newArrayList();
+
+        broadcaster.registerListener(new Listener() {
+            @Override
+            public void onProjectDataChange(Broadcaster broadcaster, String project) throws IOException {
+                notified.add("project " + project);
+            }
+
+            @Override
+            public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey)
+                    throws IOException {
+                notified.add(cacheKey);
+                broadcaster.notifyProjectDataUpdate("p1");
+            }
+        }, "test");
+
+        broadcaster.notifyListeners(Lists.newArrayList(new BroadcastEvent("test", "update", "a"),
+                new BroadcastEvent("test", "update", "b"), new BroadcastEvent("test", "drop", "c")));
+
+        // the project is notified once, after the entities
+        Assert.assertEquals(Lists.newArrayList("a", "b", "c", "project p1"), notified);
+    }
 }
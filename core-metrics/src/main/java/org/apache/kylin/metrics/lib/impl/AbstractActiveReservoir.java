@@ -22,16 +22,21 @@ import java.util.List;
 
 import org.apache.kylin.metrics.lib.ActiveReservoir;
 import org.apache.kylin.metrics.lib.ActiveReservoirListener;
+import org.apache.kylin.metrics.lib.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 
 public abstract class AbstractActiveReservoir implements ActiveReservoir {
 
+    private static final Logger logger = LoggerFactory.getLogger(AbstractActiveReservoir.class);
+
     protected List<ActiveReservoirListener> listeners = Lists.newArrayList();
 
     protected ActiveReservoirListener listenerHA = new StubReservoirReporter().listener;
 
-    protected boolean isReady = false;
+    protected volatile boolean isReady = false;
 
     public void addListener(ActiveReservoirListener listener) {
         listeners.add(listener);
@@ -53,6 +58,27 @@ public abstract class AbstractActiveReservoir implements ActiveReservoir {
         this.listenerHA = listener;
     }
 
+    /**
+     * Notifies all listeners, and the HA listener if any of them fails.
+     */
+    protected void notifyListenersOfUpdatedRecords(List<Record> records) {
+        boolean ifSucceed = true;
+        for (ActiveReservoirListener listener : listeners) {
+            if (!listener.onRecordUpdate(records)) {
+                ifSucceed = false;
+                logger.warn("It fails to notify listener " + listener.toString() + " of updated records "
+                        + records.toString());
+            }
+        }
+        if (!ifSucceed) {
+            logger.info("The HA listener " + listenerHA.toString() + " for updated records " + records.toString()
+                    + " will be started");
+            if (!listenerHA.onRecordUpdate(records)) {
+                logger.error("The HA listener also fails!!!");
+            }
+        }
+    }
+
     public void start() {
         isReady = true;
     }
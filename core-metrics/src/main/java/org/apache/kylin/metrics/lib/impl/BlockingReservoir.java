@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import org.apache.kylin.metrics.lib.ActiveReservoirListener;
 import org.apache.kylin.metrics.lib.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,31 +87,7 @@ public class BlockingReservoir extends AbstractActiveReservoir {
             recordsQueue.drainTo(records, MAX_REPORT_SIZE);
         }
 
-        boolean ifSucceed = true;
-        for (ActiveReservoirListener listener : listeners) {
-            if (!notifyListenerOfUpdatedRecord(listener, records)) {
-                ifSucceed = false;
-                logger.warn("It fails to notify listener " + listener.toString() + " of updated records "
-                        + records.toString());
-            }
-        }
-        if (!ifSucceed) {
-            notifyListenerHAOfUpdatedRecord(records);
-        }
-    }
-
-    private boolean notifyListenerOfUpdatedRecord(ActiveReservoirListener listener, List<Record> records) {
-        return listener.onRecordUpdate(records);
-    }
-
-    private boolean notifyListenerHAOfUpdatedRecord(List<Record> records) {
-        logger.info("The HA listener " + listenerHA.toString() + " for updated records " + records.toString()
-                + " will be started");
-        if (!notifyListenerOfUpdatedRecord(listenerHA, records)) {
-            logger.error("The HA listener also fails!!!");
-            return false;
-        }
-        return true;
+        notifyListenersOfUpdatedRecords(records);
     }
 
     public void start() {
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.metrics.lib.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.kylin.metrics.lib.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A bounded reservoir for the query path, which never blocks nor allocates on update.
+ * <p>
+ * The records are kept in a preallocated ring buffer. Any thread claims a slot by one CAS on the tail, and the
+ * only reporter thread drains the published slots in batches. When the buffer is full, new records are dropped
+ * and counted instead of slowing down the queries.
+ */
+public class RingBufferReservoir extends AbstractActiveReservoir {
+
+    private static final Logger logger = LoggerFactory.getLogger(RingBufferReservoir.class);
+
+    private final AtomicReferenceArray<Record> buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // written by the reporter thread only
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private long reportedCount;
+    private long loggedDroppedCount;
+
+    private final int maxReportSize;
+    private final long reportIntervalNanos;
+    private final Thread scheduledReporter;
+
+    public RingBufferReservoir() {
+        this(1 << 16, 1000, 60);
+    }
+
+    /**
+     * @param capacity rounded up to a power of 2
+     * @param maxReportSize the max number of records passed to the listeners at once
+     * @param reportIntervalSeconds how often the reporter thread drains the buffer
+     */
+    public RingBufferReservoir(int capacity, int maxReportSize, int reportIntervalSeconds) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "Invalid capacity " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxReportSize = maxReportSize;
+        this.reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+        this.listeners = Lists.newArrayList();
+
+        scheduledReporter = new ThreadFactoryBuilder().setNameFormat("metrics-ring-buffer-reservoir-scheduler-%d")
+                .setDaemon(true).build().newThread(new ReporterRunnable());
+    }
+
+    public void update(Record record) {
+        if (!isReady) {
+            return;
+        }
+
+        long t;
+        do {
+            t = tail.get();
+            if (t - head.get() > mask) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+
+        // the slot is claimed, the reporter waits until it is published
+        buffer.lazySet((int) (t & mask), record);
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return buffer.length();
+    }
+
+    /**
+     * The number of records dropped since the buffer was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * The number of records passed to the listeners, read by the reporter thread only.
+     */
+    long getReportedCount() {
+        return reportedCount;
+    }
+
+    /**
+     * Moves the published records in order into the given list, until a slot claimed but not yet published.
+     */
+    int drainTo(List<Record> records, int maxSize) {
+        long h = head.get();
+        int n = 0;
+        while (n < maxSize) {
+            int index = (int) (h & mask);
+            Record record = buffer.get(index);
+            if (record == null)
+                break;
+
+            buffer.lazySet(index, null);
+            records.add(record);
+            h++;
+            n++;
+        }
+        head.lazySet(h);
+        return n;
+    }
+
+    void report() {
+        List<Record> records = Lists.newArrayListWithExpectedSize(Math.min(maxReportSize, buffer.length()));
+        while (drainTo(records, maxReportSize) > 0) {
+            notifyListenersOfUpdatedRecords(records);
+            reportedCount += records.size();
+            // a new list each time, the listeners may keep it
+            records = Lists.newArrayListWithExpectedSize(Math.min(maxReportSize, buffer.length()));
+        }
+
+        long dropped = droppedCount.get();
+        if (dropped > loggedDroppedCount) {
+            logger.warn("{} metrics records dropped since the reservoir of capacity {} was full, {} in total",
+                    dropped - loggedDroppedCount, buffer.length(), dropped);
+            loggedDroppedCount = dropped;
+        }
+    }
+
+    public void start() {
+        super.start();
+        scheduledReporter.start();
+    }
+
+    public void stop() {
+        super.stop();
+        LockSupport.unpark(scheduledReporter);
+        try {
+            scheduledReporter.join();
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted during join");
+            throw new RuntimeException(e);
+        }
+    }
+
+    class ReporterRunnable implements Runnable {
+
+        public void run() {
+            while (isReady) {
+                LockSupport.parkNanos(this, reportIntervalNanos);
+                try {
+                    report();
+                } catch (Exception e) {
+                    logger.error("Failed to report metrics records", e);
+                }
+            }
+            report();
+            logger.info("Reporter finishes reporting metrics, {} records reported and {} dropped", reportedCount,
+                    droppedCount.get());
+        }
+    }
+}
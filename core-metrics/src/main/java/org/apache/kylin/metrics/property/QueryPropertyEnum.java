@@ -24,7 +24,18 @@ public enum QueryPropertyEnum {
     ID_CODE("QUERY_HASH_CODE"), TYPE("QUERY_TYPE"), USER("KUSER"), PROJECT("PROJECT"), REALIZATION(
             "REALIZATION"), REALIZATION_TYPE("REALIZATION_TYPE"), EXCEPTION("EXCEPTION"), //
     TIME_COST("QUERY_TIME_COST"), CALCITE_RETURN_COUNT("CALCITE_COUNT_RETURN"), STORAGE_RETURN_COUNT(
-            "STORAGE_COUNT_RETURN"), AGGR_FILTER_COUNT("CALCITE_COUNT_AGGREGATE_FILTER");
+            "STORAGE_COUNT_RETURN"), AGGR_FILTER_COUNT("CALCITE_COUNT_AGGREGATE_FILTER"), //
+    // milliseconds spent in each stage of the query timeline
+    TIME_COST_SQL_PARSE("QUERY_TIME_COST_SQL_PARSE"),
+    TIME_COST_SQL_PLAN("QUERY_TIME_COST_SQL_PLAN"),
+    TIME_COST_REALIZATION_ROUTING("QUERY_TIME_COST_REALIZATION_ROUTING"),
+    TIME_COST_SCAN_RANGE_PLANNING("QUERY_TIME_COST_SCAN_RANGE_PLANNING"),
+    TIME_COST_STORAGE_ENUMERATE("QUERY_TIME_COST_STORAGE_ENUMERATE"),
+    TIME_COST_RPC_QUEUE_WAIT("QUERY_TIME_COST_RPC_QUEUE_WAIT"),
+    TIME_COST_RPC_SERVICE("QUERY_TIME_COST_RPC_SERVICE"),
+    TIME_COST_RESULT_DECODING("QUERY_TIME_COST_RESULT_DECODING"),
+    TIME_COST_TUPLE_CONVERSION("QUERY_TIME_COST_TUPLE_CONVERSION"),
+    TIME_COST_CALCITE_ENUMERABLE("QUERY_TIME_COST_CALCITE_ENUMERABLE");
 
     private final String propertyName;
 
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.metrics.lib.impl;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.kylin.metrics.lib.Record;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare the cost of recording the metrics of a query, i.e. one query, one cube and two RPC records, on
+ * BlockingReservoir and RingBufferReservoir by concurrent query threads. The reservoirs are not drained
+ * during the run, the ring buffer is large enough to drop nothing.
+ */
+@Ignore
+public class ReservoirBenchmark {
+
+    private static final int RECORDS_PER_QUERY = 4;
+
+    final int warmupRounds = 2;
+    final int rounds = 3;
+    final int queriesPerRound = 200000;
+
+    @Test
+    public void benchmark() throws Exception {
+        for (int threads : new int[] { 1, 4, 16 }) {
+            run("BlockingReservoir", threads, false);
+            run("RingBufferReservoir", threads, true);
+        }
+    }
+
+    private void run(String name, int threads, boolean ringBuffer) throws Exception {
+        long dropped = 0;
+        for (int i = 0; i < warmupRounds; i++) {
+            updateAll(newReservoir(ringBuffer), threads);
+        }
+
+        long total = 0;
+        for (int i = 0; i < rounds; i++) {
+            AbstractActiveReservoir reservoir = newReservoir(ringBuffer);
+            total += updateAll(reservoir, threads);
+            if (ringBuffer)
+                dropped += ((RingBufferReservoir) reservoir).getDroppedCount();
+        }
+        // the wall time of a query thread per query
+        long queriesPerThread = queriesPerRound / threads;
+        System.out.println(String.format("%s, %2d threads: %.1f ns per query, %d dropped", name, threads,
+                (double) total / rounds / queriesPerThread, dropped));
+    }
+
+    private AbstractActiveReservoir newReservoir(boolean ringBuffer) {
+        if (ringBuffer)
+            return new RingBufferReservoir(queriesPerRound * RECORDS_PER_QUERY, 1000, 60);
+        else
+            return new BlockingReservoir();
+    }
+
+    private long updateAll(final AbstractActiveReservoir reservoir, int threads) throws Exception {
+        final Record[] records = new Record[RECORDS_PER_QUERY];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new RecordEvent("METRICS_QUERY", "localhost", 0);
+        }
+        // ready without the reporter thread
+        reservoir.isReady = true;
+
+        final int queriesPerThread = queriesPerRound / threads;
+        final CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < queriesPerThread; i++) {
+                        for (Record record : records) {
+                            reservoir.update(record);
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        reservoir.isReady = false;
+        return elapsed;
+    }
+}
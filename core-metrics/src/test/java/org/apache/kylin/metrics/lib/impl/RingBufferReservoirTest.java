@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.metrics.lib.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.kylin.metrics.lib.ActiveReservoirListener;
+import org.apache.kylin.metrics.lib.Record;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RingBufferReservoirTest {
+
+    @Test
+    public void testCapacity() {
+        assertEquals(8, new RingBufferReservoir(5, 10, 1).getCapacity());
+        assertEquals(8, new RingBufferReservoir(8, 10, 1).getCapacity());
+    }
+
+    @Test
+    public void testDropOnOverflow() {
+        RingBufferReservoir reservoir = new RingBufferReservoir(4, 10, 1);
+        // not started
+        reservoir.update(newRecord(0));
+        assertEquals(0, reservoir.size());
+
+        reservoir.isReady = true;
+        for (int i = 0; i < 6; i++) {
+            reservoir.update(newRecord(i));
+        }
+        assertEquals(4, reservoir.size());
+        assertEquals(2, reservoir.getDroppedCount());
+
+        List<Record> records = Lists.newArrayList();
+        assertEquals(3, reservoir.drainTo(records, 3));
+        assertEquals(1, reservoir.size());
+
+        // room again after drained
+        reservoir.update(newRecord(6));
+        assertEquals(2, reservoir.drainTo(records, 10));
+        assertEquals(2, reservoir.getDroppedCount());
+        assertEquals(5, records.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, records.get(i).getValueRaw().get("SEQ"));
+        }
+        assertEquals(6, records.get(4).getValueRaw().get("SEQ"));
+    }
+
+    @Test
+    public void testReportInBatches() {
+        RingBufferReservoir reservoir = new RingBufferReservoir(16, 3, 1);
+        CollectingListener listener = new CollectingListener();
+        reservoir.addListener(listener);
+        reservoir.isReady = true;
+        for (int i = 0; i < 7; i++) {
+            reservoir.update(newRecord(i));
+        }
+
+        reservoir.report();
+        assertEquals(3, listener.batches.size());
+        assertEquals(1, listener.batches.get(2).size());
+        assertEquals(7, reservoir.getReportedCount());
+        assertEquals(0, reservoir.size());
+    }
+
+    @Test
+    public void testConcurrentUpdate() throws Exception {
+        final RingBufferReservoir reservoir = new RingBufferReservoir(1 << 10, 100, 1);
+        reservoir.isReady = true;
+        final int threadNum = 4;
+        final int recordNum = 10000;
+        final CountDownLatch done = new CountDownLatch(threadNum);
+        for (int t = 0; t < threadNum; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < recordNum; i++) {
+                        reservoir.update(newRecord(i));
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long drained = 0;
+        List<Record> records = Lists.newArrayList();
+        while (done.getCount() > 0 || reservoir.size() > 0) {
+            records.clear();
+            drained += reservoir.drainTo(records, 100);
+        }
+        done.await();
+        assertTrue(drained > 0);
+        assertEquals(threadNum * recordNum, drained + reservoir.getDroppedCount());
+    }
+
+    private static Record newRecord(int seq) {
+        RecordEvent record = new RecordEvent("TEST", "localhost", 0);
+        record.put("SEQ", seq);
+        return record;
+    }
+
+    private static class CollectingListener implements ActiveReservoirListener {
+        final List<List<Record>> batches = Lists.newArrayList();
+
+        @Override
+        public boolean onRecordUpdate(List<Record> records) {
+            batches.add(records);
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -29,6 +29,8 @@ import java.util.Set;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.common.FuzzyValueCombination;
@@ -51,6 +53,8 @@ import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.storage.StorageContext;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +69,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
     protected int maxScanRanges;
     protected int maxFuzzyKeysPerSplit;
     protected int maxFuzzyKeys;
+    protected int maxBitmapInScanRanges;
 
     //non-GT
     protected CubeSegment cubeSegment;
@@ -80,6 +85,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         this.maxScanRanges = cubeSegment.getConfig().getQueryStorageVisitScanRangeMax();
         this.maxFuzzyKeysPerSplit = cubeSegment.getConfig().getQueryScanFuzzyKeyMax();
         this.maxFuzzyKeys = maxFuzzyKeysPerSplit * cubeSegment.getConfig().getQueryScanFuzzyKeySplitMax();
+        this.maxBitmapInScanRanges = cubeSegment.getConfig().getQueryBitmapInScanRangeMax();
 
         this.cubeSegment = cubeSegment;
         this.cubeDesc = cubeSegment.getCubeDesc();
@@ -101,7 +107,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
         //replace the constant values in filter to dictionary codes
         Set<TblColRef> groupByPushDown = Sets.newHashSet(groupByDims);
-        this.gtFilter = GTUtil.convertFilterColumnsAndConstants(filter, gtInfo, mapping.getCuboidDimensionsInGTOrder(), groupByPushDown);
+        this.gtFilter = GTUtil.convertFilterColumnsAndConstants(filter, gtInfo, mapping.getCuboidDimensionsInGTOrder(), groupByPushDown, cubeSegment.getConfig().getQueryBitmapInFilterThreshold());
         this.havingFilter = havingFilter;
 
         this.gtDimensions = mapping.makeGridTableColumns(dimensions);
@@ -128,6 +134,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         this.maxScanRanges = KylinConfig.getInstanceFromEnv().getQueryStorageVisitScanRangeMax();
         this.maxFuzzyKeysPerSplit = KylinConfig.getInstanceFromEnv().getQueryScanFuzzyKeyMax();
         this.maxFuzzyKeys = maxFuzzyKeysPerSplit * KylinConfig.getInstanceFromEnv().getQueryScanFuzzyKeySplitMax();
+        this.maxBitmapInScanRanges = KylinConfig.getInstanceFromEnv().getQueryBitmapInScanRangeMax();
 
         this.gtInfo = info;
 
@@ -171,7 +178,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         for (Collection<ColumnRange> andDimRanges : orAndDimRanges) {
             GTScanRange scanRange = newScanRange(andDimRanges);
             if (scanRange != null)
-                scanRanges.add(scanRange);
+                scanRanges.addAll(splitByIdRuns(scanRange, andDimRanges));
         }
 
         List<GTScanRange> mergedRanges = mergeOverlapRanges(scanRanges);
@@ -231,6 +238,125 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         return new GTScanRange(pkStart, pkEnd, fuzzyKeys);
     }
 
+    /**
+     * A large IN pushed down as ID bitmap cannot use fuzzy keys, instead of one wide range from the min ID to
+     * the max ID, split the range into the dense runs of IDs. Only applies when the column leads the row key,
+     * or all row key columns before it are fixed to one value.
+     */
+    protected List<GTScanRange> splitByIdRuns(GTScanRange scanRange, Collection<ColumnRange> andDimRanges) {
+        ColumnRange idRange = findLeadingIdSetRange(andDimRanges);
+        if (idRange == null || maxBitmapInScanRanges <= 1)
+            return Collections.singletonList(scanRange);
+
+        int codeLength = idRange.idSetFilter.getCodeLength();
+        long lower = idRange.begin.array() == null ? 0 : toUnsignedId(idRange.begin, codeLength);
+        long upper = idRange.end.array() == null ? 0xFFFFFFFFL : toUnsignedId(idRange.end, codeLength);
+        if (lower < 0 || upper < 0)
+            return Collections.singletonList(scanRange);
+
+        List<long[]> runs = mergeRuns(denseRuns(idRange.idSet, lower, upper), maxBitmapInScanRanges);
+        if (runs.size() <= 1)
+            return Collections.singletonList(scanRange);
+
+        int col = idRange.column.getColumnDesc().getZeroBasedIndex();
+        List<GTScanRange> result = Lists.newArrayListWithCapacity(runs.size());
+        for (long[] run : runs) {
+            GTRecord pkStart = new GTRecord(gtInfo);
+            pkStart.shallowCopyFrom(scanRange.pkStart);
+            pkStart.set(col, idRange.idSetFilter.idToCode((int) run[0]));
+            GTRecord pkEnd = new GTRecord(gtInfo);
+            pkEnd.shallowCopyFrom(scanRange.pkEnd);
+            pkEnd.set(col, idRange.idSetFilter.idToCode((int) run[1]));
+            result.add(new GTScanRange(pkStart, pkEnd, scanRange.fuzzyKeys));
+        }
+        logger.debug("Split scan range on {} into {} dense runs of ids", idRange.column, result.size());
+        return result;
+    }
+
+    private ColumnRange findLeadingIdSetRange(Collection<ColumnRange> andDimRanges) {
+        Map<Integer, ColumnRange> rangeByCol = Maps.newHashMap();
+        for (ColumnRange range : andDimRanges) {
+            rangeByCol.put(range.column.getColumnDesc().getZeroBasedIndex(), range);
+        }
+
+        ImmutableBitSet primaryKey = gtInfo.getPrimaryKey();
+        IGTComparator comp = gtInfo.getCodeSystem().getComparator();
+        for (int i = 0; i < primaryKey.trueBitCount(); i++) {
+            ColumnRange range = rangeByCol.get(primaryKey.trueBitAt(i));
+            if (range == null)
+                return null;
+            if (range.idSet != null)
+                return range;
+            if (range.begin.array() == null || range.end.array() == null || comp.compare(range.begin, range.end) != 0)
+                return null;
+        }
+        return null;
+    }
+
+    private long toUnsignedId(ByteArray code, int codeLength) {
+        if (code.length() != codeLength)
+            return -1;
+        return BytesUtil.readUnsigned(code.array(), code.offset(), codeLength) & 0xFFFFFFFFL;
+    }
+
+    private List<long[]> denseRuns(ImmutableRoaringBitmap ids, long lower, long upper) {
+        List<long[]> runs = Lists.newArrayList();
+        long[] run = null;
+        IntIterator it = ids.getIntIterator();
+        while (it.hasNext()) {
+            long id = it.next() & 0xFFFFFFFFL;
+            if (id < lower)
+                continue;
+            if (id > upper)
+                break;
+            if (run != null && run[1] + 1 == id) {
+                run[1] = id;
+            } else {
+                run = new long[] { id, id };
+                runs.add(run);
+            }
+        }
+        return runs;
+    }
+
+    // keep the largest (maxRuns - 1) gaps between runs, merge the runs across other gaps
+    private List<long[]> mergeRuns(final List<long[]> runs, int maxRuns) {
+        if (runs.size() <= maxRuns)
+            return runs;
+
+        List<Integer> gaps = Lists.newArrayListWithCapacity(runs.size() - 1);
+        for (int i = 0; i < runs.size() - 1; i++) {
+            gaps.add(i);
+        }
+        Collections.sort(gaps, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long gapA = runs.get(a + 1)[0] - runs.get(a)[1];
+                long gapB = runs.get(b + 1)[0] - runs.get(b)[1];
+                return gapA == gapB ? 0 : (gapA > gapB ? -1 : 1);
+            }
+        });
+        boolean[] splitAfter = new boolean[runs.size()];
+        for (int i = 0; i < maxRuns - 1; i++) {
+            splitAfter[gaps.get(i)] = true;
+        }
+
+        List<long[]> result = Lists.newArrayListWithCapacity(maxRuns);
+        long[] merged = null;
+        for (int i = 0; i < runs.size(); i++) {
+            if (merged == null) {
+                merged = new long[] { runs.get(i)[0], runs.get(i)[1] };
+            } else {
+                merged[1] = runs.get(i)[1];
+            }
+            if (splitAfter[i] || i == runs.size() - 1) {
+                result.add(merged);
+                merged = null;
+            }
+        }
+        return result;
+    }
+
     private List<GTRecord> buildFuzzyKeys(Map<Integer, Set<ByteArray>> fuzzyValueSet) {
         ArrayList<GTRecord> result = Lists.newArrayList();
 
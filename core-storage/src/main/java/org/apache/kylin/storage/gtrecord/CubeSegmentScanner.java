@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.dict.BuiltInFunctionTransformer;
@@ -68,6 +70,7 @@ public class CubeSegmentScanner implements IGTScanner {
         ITupleFilterTransformer translator = new BuiltInFunctionTransformer(cubeSeg.getDimensionEncodingMap());
         filter = translator.transform(filter);
 
+        long planStart = System.nanoTime();
         CubeScanRangePlanner scanRangePlanner;
         try {
             scanRangePlanner = new CubeScanRangePlanner(cubeSeg, cuboid, filter, dimensions, groups, metrics, havingFilter, context);
@@ -78,8 +81,9 @@ public class CubeSegmentScanner implements IGTScanner {
         }
         
         scanRequest = scanRangePlanner.planScanRequest();
+        QueryContext.current().getTimeline().record(QueryTimeline.Stage.SCAN_RANGE_PLANNING, planStart);
         
-        String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
+        String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage(cubeSeg);
         scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage, context);
     }
     
@@ -19,7 +19,6 @@
 package org.apache.kylin.storage.gtrecord;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,7 +29,7 @@ import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
-import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
 import org.apache.kylin.dict.lookup.SnapshotManager;
 import org.apache.kylin.dict.lookup.SnapshotTable;
 import org.apache.kylin.measure.MeasureType;
@@ -42,7 +41,6 @@ import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.Tuple;
 import org.apache.kylin.metadata.tuple.TupleInfo;
-import org.apache.kylin.source.IReadableTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -204,9 +202,9 @@ public class CubeTupleConverter implements ITupleConverter {
         switch (deriveInfo.type) {
         case LOOKUP:
             return new IDerivedColumnFiller() {
-                LookupStringTable lookupTable = getLookupTable(cubeSeg, deriveInfo.join);
+                ColumnarLookupTable lookupTable = getLookupTable(cubeSeg, deriveInfo.join);
                 int[] derivedColIdx = initDerivedColIdx();
-                Array<String> lookupKey = new Array<String>(new String[hostTmpIdx.length]);
+                String[] lookupKey = new String[hostTmpIdx.length];
 
                 private int[] initDerivedColIdx() {
                     int[] idx = new int[deriveInfo.columns.length];
@@ -219,15 +217,16 @@ public class CubeTupleConverter implements ITupleConverter {
                 @Override
                 public void fillDerivedColumns(Object[] gtValues, Tuple tuple) {
                     for (int i = 0; i < hostTmpIdx.length; i++) {
-                        lookupKey.data[i] = CubeTupleConverter.toString(gtValues[hostTmpIdx[i]]);
+                        lookupKey[i] = CubeTupleConverter.toString(gtValues[hostTmpIdx[i]]);
                     }
 
-                    String[] lookupRow = lookupTable.getRow(lookupKey);
+                    // decode only the derived cells needed
+                    int lookupRow = lookupTable.findRow(lookupKey);
 
-                    if (lookupRow != null) {
+                    if (lookupRow >= 0) {
                         for (int i = 0; i < derivedTupleIdx.length; i++) {
                             if (derivedTupleIdx[i] >= 0) {
-                                String value = lookupRow[derivedColIdx[i]];
+                                String value = lookupTable.getValue(lookupRow, derivedColIdx[i]);
                                 tuple.setDimensionValue(derivedTupleIdx[i], value);
                             }
                         }
@@ -263,7 +262,7 @@ public class CubeTupleConverter implements ITupleConverter {
         return -1;
     }
 
-    public LookupStringTable getLookupTable(CubeSegment cubeSegment, JoinDesc join) {
+    public ColumnarLookupTable getLookupTable(CubeSegment cubeSegment, JoinDesc join) {
         long ts = System.currentTimeMillis();
 
         TableMetadataManager metaMgr = TableMetadataManager.getInstance(cubeSeg.getCubeInstance().getConfig());
@@ -278,27 +277,14 @@ public class CubeTupleConverter implements ITupleConverter {
         try {
             SnapshotTable snapshot = snapshotMgr.getSnapshotTable(snapshotResPath);
             TableDesc tableDesc = metaMgr.getTableDesc(tableName, cubeSegment.getProject());
-            EnhancedStringLookupTable enhancedStringLookupTable = new EnhancedStringLookupTable(tableDesc, pkCols, snapshot);
+            ColumnarLookupTable lookupTable = snapshot.getLookupTable(tableDesc, pkCols);
             logger.info("Time to get lookup up table for {} is {} ", join.getPKSide().getTableName(), (System.currentTimeMillis() - ts));
-            return enhancedStringLookupTable;
+            return lookupTable;
         } catch (IOException e) {
             throw new IllegalStateException("Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e);
         }
     }
 
-    private static class EnhancedStringLookupTable extends LookupStringTable {
-
-        public EnhancedStringLookupTable(TableDesc tableDesc, String[] keyColumns, IReadableTable table) throws IOException {
-            super(tableDesc, keyColumns, table);
-        }
-
-        @Override
-        protected void init() throws IOException {
-            this.data = new HashMap<>();
-            super.init();
-        }
-    }
-
     private static String toString(Object o) {
         return o == null ? null : o.toString();
     }
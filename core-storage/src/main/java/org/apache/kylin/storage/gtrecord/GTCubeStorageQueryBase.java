@@ -36,7 +36,7 @@ import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.cube.model.RowKeyColDesc;
-import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
 import org.apache.kylin.gridtable.StorageLimitLevel;
 import org.apache.kylin.measure.MeasureType;
 import org.apache.kylin.measure.bitmap.BitmapMeasureType;
@@ -57,6 +57,8 @@ import org.apache.kylin.metadata.tuple.ITupleIterator;
 import org.apache.kylin.metadata.tuple.TupleInfo;
 import org.apache.kylin.storage.IStorageQuery;
 import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.realtime.RealtimeGTStorage;
+import org.apache.kylin.storage.realtime.RealtimeSegmentRegistry;
 import org.apache.kylin.storage.translate.DerivedFilterTranslator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,6 +98,15 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
                 scanners.add(scanner);
         }
 
+        // the streamed data not built yet
+        for (CubeSegment cubeSeg : RealtimeSegmentRegistry.getInstance().getQueryableSegments(cubeInstance)) {
+            CubeSegmentScanner scanner = new CubeSegmentScanner(cubeSeg, request.getCuboid(), request.getDimensions(),
+                    request.getGroups(), request.getMetrics(), request.getFilter(), request.getHavingFilter(),
+                    request.getContext());
+            if (!scanner.isSegmentSkipped())
+                scanners.add(scanner);
+        }
+
         if (scanners.isEmpty())
             return ITupleIterator.EMPTY_TUPLE_ITERATOR;
 
@@ -179,6 +190,10 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
 
     protected abstract String getGTStorage();
 
+    protected String getGTStorage(CubeSegment segment) {
+        return segment.isInMemory() ? RealtimeGTStorage.class.getName() : getGTStorage();
+    }
+
     protected Cuboid findCuboid(CubeInstance cubeInstance, Set<TblColRef> dimensionsD, Set<FunctionDesc> metrics) {
         return Cuboid.identifyCuboid(cubeInstance, dimensionsD, metrics);
     }
@@ -357,8 +372,8 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
             return compf;
 
         DeriveInfo hostInfo = cubeDesc.getHostInfo(derived);
-        LookupStringTable lookup = getLookupStringTableForDerived(derived, hostInfo);
-        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf);
+        ColumnarLookupTable lookup = getLookupTableForDerived(derived, hostInfo);
+        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, compf, getDerivedInThreshold(hostInfo));
         TupleFilter translatedFilter = translated.getFirst();
         boolean loosened = translated.getSecond();
         if (loosened) {
@@ -367,11 +382,19 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         return translatedFilter;
     }
 
-    @SuppressWarnings("unchecked")
-    protected LookupStringTable getLookupStringTableForDerived(TblColRef derived, DeriveInfo hostInfo) {
+    private int getDerivedInThreshold(DeriveInfo hostInfo) {
+        int threshold = cubeInstance.getConfig().getDerivedInThreshold();
+        // a large IN on a dictionary encoded host column is pushed down to storage as ID bitmap, no need to loosen
+        if (hostInfo.columns.length == 1 && cubeDesc.getRowkey().isUseDictionary(hostInfo.columns[0])) {
+            threshold = Math.max(threshold, cubeInstance.getConfig().getDerivedBitmapInThreshold());
+        }
+        return threshold;
+    }
+
+    protected ColumnarLookupTable getLookupTableForDerived(TblColRef derived, DeriveInfo hostInfo) {
         CubeManager cubeMgr = CubeManager.getInstance(this.cubeInstance.getConfig());
         CubeSegment seg = cubeInstance.getLatestReadySegment();
-        return cubeMgr.getLookupTable(seg, hostInfo.join);
+        return cubeMgr.getColumnarLookupTable(seg, hostInfo.join);
     }
 
     private void collectColumnsRecursively(TupleFilter filter, Set<TblColRef> collector) {
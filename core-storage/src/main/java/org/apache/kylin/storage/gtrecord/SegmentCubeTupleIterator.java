@@ -25,6 +25,8 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.google.common.collect.UnmodifiableIterator;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
 import org.apache.kylin.gridtable.GTInfo;
@@ -54,6 +56,7 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
     protected final TupleInfo tupleInfo;
     protected final Tuple tuple;
     protected final StorageContext context;
+    protected final QueryTimeline.SpanBatch conversionSpans;
 
     protected Iterator<Object[]> gtValues;
     protected ITupleConverter cubeTupleConverter;
@@ -72,6 +75,7 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
         this.tupleInfo = returnTupleInfo;
         this.tuple = new Tuple(returnTupleInfo);
         this.context = context;
+        this.conversionSpans = QueryContext.current().getTimeline().newSpanBatch(QueryTimeline.Stage.TUPLE_CONVERSION);
 
         CuboidToGridTableMapping mapping = cuboid.getCuboidToGridTableMapping();
         int[] gtDimsIdx = mapping.getDimIndexes(selectedDimensions);
@@ -147,12 +151,15 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
 
         // now we have a GTRecord
         if (!gtValues.hasNext()) {
+            conversionSpans.flush();
             return false;
         }
         Object[] gtValues = this.gtValues.next();
 
         // translate into tuple
+        long convertStart = System.nanoTime();
         advMeasureFillers = cubeTupleConverter.translateResult(gtValues, tuple);
+        conversionSpans.record(convertStart);
 
         // the simple case
         if (advMeasureFillers == null) {
@@ -196,6 +203,7 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
 
     @Override
     public void close() {
+        conversionSpans.flush();
         close(scanner);
     }
 
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.realtime;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
+import org.apache.kylin.cube.model.MeasureDesc;
+import org.apache.kylin.gridtable.EmptyGTScanner;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStorage;
+import org.apache.kylin.metadata.model.ISegment;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans a realtime segment, created by ScannerWorker like the other IGTStorage.
+ * <p>
+ * A query on a materialized cuboid scans its grid table directly. Otherwise the smallest materialized cuboid
+ * containing the queried one is scanned, its rows are projected to the queried cuboid and then always
+ * aggregated, as the query expects rows already aggregated to its cuboid.
+ */
+public class RealtimeGTStorage implements IGTStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeGTStorage.class);
+
+    private final ISegment segment;
+    private final Cuboid cuboid;
+    private final GTInfo info;
+
+    public RealtimeGTStorage(ISegment segment, Cuboid cuboid, GTInfo info, StorageContext context) {
+        this.segment = segment;
+        this.cuboid = cuboid;
+        this.info = info;
+    }
+
+    @Override
+    public IGTScanner getGTScanner(GTScanRequest scanRequest) throws IOException {
+        RealtimeSegment realtimeSeg = RealtimeSegmentRegistry.getInstance().getSegment(segment.getUuid());
+        if (realtimeSeg == null) {
+            // handed off and dropped after the query listed it
+            logger.info("Realtime segment {} is gone, skip it", segment);
+            return new EmptyGTScanner();
+        }
+
+        long sourceId = realtimeSeg.findSourceCuboid(cuboid.getId());
+        if (sourceId < 0)
+            throw new IllegalStateException("No cuboid of " + realtimeSeg + " can answer cuboid " + cuboid.getId());
+
+        GridTable table = realtimeSeg.getCuboidTable(sourceId);
+        if (sourceId == cuboid.getId())
+            return table.scan(scanRequest);
+
+        logger.info("Realtime segment {} answers cuboid {} from cuboid {}", segment, cuboid.getId(), sourceId);
+        Cuboid source = Cuboid.findForMandatory(cuboid.getCubeDesc(), sourceId);
+        IGTScanner projected = new ProjectScanner(table.getStore().scan(scanRequest), info,
+                projectMapping(source.getCuboidToGridTableMapping(), cuboid.getCuboidToGridTableMapping()));
+
+        IGTScanner result = scanRequest.decorateScanner(projected);
+        if (!scanRequest.isDoingStorageAggregation() && scanRequest.hasAggregation()) {
+            result = new GTAggregateScanner(result, scanRequest);
+        }
+        return result;
+    }
+
+    // target column index ==> source column index
+    private int[] projectMapping(CuboidToGridTableMapping source, CuboidToGridTableMapping target) {
+        int[] mapping = new int[target.getColumnCount()];
+        List<TblColRef> dims = target.getCuboidDimensionsInGTOrder();
+        for (int i = 0; i < dims.size(); i++) {
+            mapping[target.getIndexOf(dims.get(i))] = source.getIndexOf(dims.get(i));
+        }
+        for (MeasureDesc measure : cuboid.getCubeDesc().getMeasures()) {
+            mapping[target.getIndexOf(measure.getFunction())] = source.getIndexOf(measure.getFunction());
+        }
+        return mapping;
+    }
+
+    private static class ProjectScanner implements IGTScanner {
+        private final IGTScanner input;
+        private final GTInfo info;
+        private final int[] mapping;
+
+        ProjectScanner(IGTScanner input, GTInfo info, int[] mapping) {
+            this.input = input;
+            this.info = info;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            final Iterator<GTRecord> it = input.iterator();
+            final GTRecord record = new GTRecord(info);
+            return new Iterator<GTRecord>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public GTRecord next() {
+                    GTRecord sourceRecord = it.next();
+                    for (int i = 0; i < mapping.length; i++) {
+                        record.set(i, sourceRecord.get(mapping[i]));
+                    }
+                    return record;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
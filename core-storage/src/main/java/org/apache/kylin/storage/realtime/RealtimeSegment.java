@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.realtime;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.model.Segments;
+
+/**
+ * The cubed data of a range of streaming messages that is not built into a normal segment yet.
+ * <p>
+ * It is immutable once created: the base cuboid and a few key cuboids, each in an in-memory grid table,
+ * plus an in-memory CubeSegment carrying the range and the dictionaries to plan and decode queries with.
+ */
+public class RealtimeSegment {
+
+    private final CubeSegment segment;
+    private final Map<Long, GridTable> cuboidTables;
+    private final long inputRecords;
+    private final String descSignature; // of the cube desc the data was cubed with
+
+    public RealtimeSegment(CubeSegment segment, Map<Long, GridTable> cuboidTables, long inputRecords,
+            String descSignature) {
+        if (!segment.isInMemory())
+            throw new IllegalArgumentException("Not an in-memory segment: " + segment);
+
+        this.segment = segment;
+        this.cuboidTables = cuboidTables;
+        this.inputRecords = inputRecords;
+        this.descSignature = descSignature;
+    }
+
+    public CubeSegment getSegment() {
+        return segment;
+    }
+
+    public String getCubeName() {
+        return segment.getCubeInstance().getName();
+    }
+
+    public Set<Long> getCuboidIds() {
+        return cuboidTables.keySet();
+    }
+
+    public GridTable getCuboidTable(long cuboidId) {
+        return cuboidTables.get(cuboidId);
+    }
+
+    public String getDescSignature() {
+        return descSignature;
+    }
+
+    public long getInputRecords() {
+        return inputRecords;
+    }
+
+    public int getRowCount(long cuboidId) {
+        GridTable table = cuboidTables.get(cuboidId);
+        return table == null ? 0 : ((GTSimpleMemStore) table.getStore()).getRowList().size();
+    }
+
+    /**
+     * Returns the given cuboid if it is materialized, otherwise the smallest materialized cuboid it can be
+     * aggregated from, -1 if there is none.
+     */
+    public long findSourceCuboid(long cuboidId) {
+        if (cuboidTables.containsKey(cuboidId))
+            return cuboidId;
+
+        long best = -1;
+        int bestRows = Integer.MAX_VALUE;
+        for (Long id : cuboidTables.keySet()) {
+            if ((id & cuboidId) != cuboidId)
+                continue;
+            int rows = getRowCount(id);
+            if (rows < bestRows) {
+                best = id;
+                bestRows = rows;
+            }
+        }
+        return best;
+    }
+
+    public long getMemoryUsage() {
+        long sum = 0;
+        for (GridTable table : cuboidTables.values()) {
+            sum += ((GTSimpleMemStore) table.getStore()).memoryUsage();
+        }
+        return sum;
+    }
+
+    /**
+     * Whether the data is in a built segment already, i.e. a ready segment covers the offsets of this one.
+     */
+    public boolean isCoveredBy(Segments<CubeSegment> readySegments) {
+        for (CubeSegment ready : readySegments) {
+            if (ready.isOffsetCube() && ready.getSegRange().contains(segment.getSegRange()))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RealtimeSegment [" + getCubeName() + "/" + segment.getName() + ", cuboids=" + cuboidTables.keySet() + "]";
+    }
+}
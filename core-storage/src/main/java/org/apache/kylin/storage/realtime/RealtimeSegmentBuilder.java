@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.realtime;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.kylin.common.util.DateFormat;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.cuboid.TreeCuboidScheduler;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.cube.inmemcubing.InMemCubeBuilder;
+import org.apache.kylin.cube.inmemcubing.InputConverterUnitForRawData;
+import org.apache.kylin.cube.kv.CubeDimEncMap;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.dict.DictionaryGenerator;
+import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
+import org.apache.kylin.metadata.model.PartitionDesc;
+import org.apache.kylin.metadata.model.SegmentRange;
+import org.apache.kylin.metadata.model.SegmentRange.TSRange;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Cubes a batch of flat table rows into a realtime segment.
+ * <p>
+ * The rows are encoded with dictionaries built from the batch itself, and InMemCubeBuilder computes the base
+ * cuboid and the key cuboids only, see {@link #getRealtimeCuboids(CubeInstance)}.
+ */
+public class RealtimeSegmentBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeSegmentBuilder.class);
+
+    private final CubeInstance cube;
+    private final CubeDesc cubeDesc;
+    private final IJoinedFlatTableDesc flatDesc;
+    private final CuboidScheduler cuboidScheduler;
+
+    public RealtimeSegmentBuilder(CubeInstance cube) {
+        this.cube = cube;
+        this.cubeDesc = cube.getDescriptor();
+        this.flatDesc = new CubeJoinedFlatTableDesc(cubeDesc);
+        this.cuboidScheduler = new TreeCuboidScheduler(cubeDesc, Lists.newArrayList(getRealtimeCuboids(cube)),
+                Cuboid.cuboidSelectComparator);
+    }
+
+    /**
+     * The base cuboid, the mandatory cuboids and the configured key cuboids that are valid in the cube.
+     */
+    public static Set<Long> getRealtimeCuboids(CubeInstance cube) {
+        CubeDesc cubeDesc = cube.getDescriptor();
+        long baseCuboid = Cuboid.getBaseCuboidId(cubeDesc);
+
+        Set<Long> candidates = Sets.newLinkedHashSet(cubeDesc.getMandatoryCuboids());
+        for (String id : cube.getConfig().getKafkaRealtimeKeyCuboids()) {
+            candidates.add(Long.parseLong(id.trim()));
+        }
+
+        Set<Long> result = Sets.newTreeSet();
+        result.add(baseCuboid);
+        for (Long id : candidates) {
+            if ((id & baseCuboid) == id && cube.getCuboidScheduler().isValid(id)) {
+                result.add(id);
+            } else {
+                logger.warn("Cuboid {} is not valid in cube {}, not materialized for realtime query", id, cube.getName());
+            }
+        }
+        return result;
+    }
+
+    public IJoinedFlatTableDesc getFlatDesc() {
+        return flatDesc;
+    }
+
+    public Set<Long> getCuboidIds() {
+        return cuboidScheduler.getAllCuboidIds();
+    }
+
+    /**
+     * Builds the rows, in the column order of the flat table, which are the messages in given range of offsets.
+     */
+    public RealtimeSegment build(List<String[]> rows, SegmentRange segRange, Map<Integer, Long> offsetStart,
+            Map<Integer, Long> offsetEnd) throws IOException {
+        if (rows.isEmpty())
+            throw new IllegalArgumentException("No rows to build");
+
+        long startTime = System.currentTimeMillis();
+        Map<TblColRef, Dictionary<String>> dictionaryMap = buildDictionaries(rows);
+
+        CubeSegment segment = CubeSegment.newInMemorySegment(cube, UUID.randomUUID().toString(), getTSRange(rows),
+                segRange, dictionaryMap);
+        segment.setSourcePartitionOffsetStart(Maps.newHashMap(offsetStart));
+        segment.setSourcePartitionOffsetEnd(Maps.newHashMap(offsetEnd));
+        segment.setInputRecords(rows.size());
+
+        BlockingQueue<String[]> queue = new LinkedBlockingQueue<String[]>(rows);
+        queue.add(InputConverterUnitForRawData.END_ROW);
+
+        MemCuboidWriter writer = new MemCuboidWriter(dictionaryMap);
+        InMemCubeBuilder builder = new InMemCubeBuilder(cuboidScheduler, flatDesc, dictionaryMap);
+        builder.build(queue, new InputConverterUnitForRawData(cubeDesc, flatDesc, dictionaryMap), writer);
+
+        RealtimeSegment result = new RealtimeSegment(segment, writer.tables, rows.size(), cubeDesc.getSignature());
+        logger.info("Built {} from {} rows, {} bytes, takes {} ms", result, rows.size(), result.getMemoryUsage(),
+                System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    private Map<TblColRef, Dictionary<String>> buildDictionaries(List<String[]> rows) throws IOException {
+        // the columns reusing a dictionary share it, so the dictionary takes the values of all of them
+        Map<TblColRef, Set<String>> values = Maps.newHashMap();
+        for (TblColRef col : cubeDesc.getAllColumnsHaveDictionary()) {
+            TblColRef dictCol = cubeDesc.getDictionaryReuseColumn(col);
+            Set<String> set = values.get(dictCol);
+            if (set == null) {
+                set = Sets.newHashSet();
+                values.put(dictCol, set);
+            }
+            int index = flatDesc.getColumnIndex(col);
+            for (String[] row : rows) {
+                if (row[index] != null)
+                    set.add(row[index]);
+            }
+        }
+
+        Map<TblColRef, Dictionary<String>> dicts = Maps.newHashMap();
+        for (Map.Entry<TblColRef, Set<String>> entry : values.entrySet()) {
+            TblColRef col = entry.getKey();
+            dicts.put(col, DictionaryGenerator.buildDictionary(col.getType(),
+                    new IterableDictionaryValueEnumerator(entry.getValue())));
+        }
+
+        Map<TblColRef, Dictionary<String>> result = Maps.newHashMap();
+        for (TblColRef col : cubeDesc.getAllColumnsHaveDictionary()) {
+            result.put(col, dicts.get(cubeDesc.getDictionaryReuseColumn(col)));
+        }
+        return result;
+    }
+
+    // the range of partition column values, for the query to prune the segment like a built one
+    private TSRange getTSRange(List<String[]> rows) {
+        PartitionDesc partDesc = cubeDesc.getModel().getPartitionDesc();
+        if (!partDesc.isPartitioned())
+            return null;
+
+        int index = flatDesc.getColumnIndex(partDesc.getPartitionDateColumnRef());
+        if (index < 0)
+            return null;
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (String[] row : rows) {
+            if (StringUtils.isEmpty(row[index]))
+                continue;
+            long t = DateFormat.stringToMillis(row[index]);
+            min = Math.min(min, t);
+            max = Math.max(max, t);
+        }
+        return min > max ? null : new TSRange(min, max + 1);
+    }
+
+    private class MemCuboidWriter implements ICuboidWriter {
+        final Map<Long, GridTable> tables = Maps.newHashMap();
+        final Map<Long, GTBuilder> builders = Maps.newHashMap();
+        final CubeDimEncMap dimEncMap;
+
+        MemCuboidWriter(Map<TblColRef, Dictionary<String>> dictionaryMap) {
+            this.dimEncMap = new CubeDimEncMap(cubeDesc, dictionaryMap);
+        }
+
+        @Override
+        public void write(long cuboidId, GTRecord record) throws IOException {
+            GTBuilder builder = builders.get(cuboidId);
+            if (builder == null) {
+                GTInfo info = CubeGridTable.newGTInfo(Cuboid.findForMandatory(cubeDesc, cuboidId), dimEncMap);
+                GridTable table = new GridTable(info, new GTSimpleMemStore(info));
+                builder = table.rebuild();
+                tables.put(cuboidId, table);
+                builders.put(cuboidId, builder);
+            }
+            builder.write(record);
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (GTBuilder builder : builders.values()) {
+                builder.close();
+            }
+            builders.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.realtime;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.metadata.model.Segments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The realtime segments living in this JVM, registered by streaming receivers and unioned into cube queries.
+ */
+public class RealtimeSegmentRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeSegmentRegistry.class);
+
+    private static final RealtimeSegmentRegistry INSTANCE = new RealtimeSegmentRegistry();
+
+    public static RealtimeSegmentRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // cube name ==> segments, in the order of registration
+    private final ConcurrentMap<String, List<RealtimeSegment>> segmentsByCube = Maps.newConcurrentMap();
+    // segment uuid ==> segment
+    private final ConcurrentMap<String, RealtimeSegment> segmentsById = Maps.newConcurrentMap();
+
+    private RealtimeSegmentRegistry() {
+    }
+
+    public void register(RealtimeSegment segment) {
+        List<RealtimeSegment> list = segmentsByCube.get(segment.getCubeName());
+        if (list == null) {
+            segmentsByCube.putIfAbsent(segment.getCubeName(), new CopyOnWriteArrayList<RealtimeSegment>());
+            list = segmentsByCube.get(segment.getCubeName());
+        }
+        segmentsById.put(segment.getSegment().getUuid(), segment);
+        list.add(segment);
+        logger.debug("Registered {}", segment);
+    }
+
+    public void unregister(RealtimeSegment segment) {
+        List<RealtimeSegment> list = segmentsByCube.get(segment.getCubeName());
+        if (list != null)
+            list.remove(segment);
+        segmentsById.remove(segment.getSegment().getUuid());
+        logger.debug("Unregistered {}", segment);
+    }
+
+    public List<RealtimeSegment> getSegments(String cubeName) {
+        List<RealtimeSegment> list = segmentsByCube.get(cubeName);
+        return list == null ? Collections.<RealtimeSegment> emptyList() : list;
+    }
+
+    public RealtimeSegment getSegment(String uuid) {
+        return segmentsById.get(uuid);
+    }
+
+    /**
+     * Returns the realtime segments to query together with the ready segments of given cube, i.e. those not
+     * built yet and still of the current cube schema.
+     */
+    public List<CubeSegment> getQueryableSegments(CubeInstance cube) {
+        List<RealtimeSegment> list = getSegments(cube.getName());
+        if (list.isEmpty())
+            return Collections.emptyList();
+
+        Segments<CubeSegment> readySegs = cube.getSegments(SegmentStatusEnum.READY);
+        String signature = cube.getDescriptor().getSignature();
+        List<CubeSegment> result = Lists.newArrayListWithCapacity(list.size());
+        for (RealtimeSegment seg : list) {
+            if (!Objects.equal(signature, seg.getDescSignature())) {
+                logger.info("Skip {} because the cube schema changed", seg);
+                continue;
+            }
+            if (seg.isCoveredBy(readySegs))
+                continue;
+            result.add(seg.getSegment());
+        }
+        return result;
+    }
+}
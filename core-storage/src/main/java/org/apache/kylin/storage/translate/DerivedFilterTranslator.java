@@ -27,16 +27,20 @@ import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.kv.RowKeyColumnOrder;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.cube.model.CubeDesc.DeriveType;
-import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
+import org.apache.kylin.dict.lookup.SnapshotColumnIndex;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
 import org.apache.kylin.metadata.filter.FilterCodeSystemFactory;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
 import org.apache.kylin.metadata.filter.LogicalTupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,7 +54,14 @@ public class DerivedFilterTranslator {
 
     private static final Logger logger = LoggerFactory.getLogger(DerivedFilterTranslator.class);
 
-    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, CompareTupleFilter compf) {
+    public static Pair<TupleFilter, Boolean> translate(ColumnarLookupTable lookup, DeriveInfo hostInfo, CompareTupleFilter compf) {
+        return translate(lookup, hostInfo, compf, KylinConfig.getInstanceFromEnv().getDerivedInThreshold());
+    }
+
+    /**
+     * @param inThreshold max number of host records to translate into IN, beyond that the filter is loosened to a range
+     */
+    public static Pair<TupleFilter, Boolean> translate(ColumnarLookupTable lookup, DeriveInfo hostInfo, CompareTupleFilter compf, int inThreshold) {
 
         TblColRef derivedCol = compf.getColumn();
         TblColRef[] hostCols = hostInfo.columns;
@@ -74,20 +85,13 @@ public class DerivedFilterTranslator {
             pi[i] = pkCols[i].getColumnDesc().getZeroBasedIndex();
         }
 
-        Set<Array<String>> satisfyingHostRecords = Sets.newHashSet();
-        SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
-        for (String[] row : lookup.getAllRows()) {
-            tuple.value = row[di];
-            if (compf.evaluate(tuple, FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType()))) {
-                collect(row, pi, satisfyingHostRecords);
-            }
-        }
+        Set<Array<String>> satisfyingHostRecords = collectByIndex(lookup, derivedCol, compf, di, pi);
 
         TupleFilter translated;
         boolean loosened;
-        if (satisfyingHostRecords.size() > KylinConfig.getInstanceFromEnv().getDerivedInThreshold()) {
+        if (satisfyingHostRecords.size() > inThreshold) {
             logger.info("Deciding to loosen filter on derived filter as host candidates number {} exceeds threshold {}", //
-                    satisfyingHostRecords.size(), KylinConfig.getInstanceFromEnv().getDerivedInThreshold()
+                    satisfyingHostRecords.size(), inThreshold
             );
             translated = buildRangeFilter(hostCols, satisfyingHostRecords);
             loosened = true;
@@ -99,13 +103,53 @@ public class DerivedFilterTranslator {
         return new Pair<TupleFilter, Boolean>(translated, loosened);
     }
 
-    private static void collect(String[] row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
-        // TODO when go beyond IN_THRESHOLD, only keep min/max is enough
-        String[] rec = new String[pi.length];
-        for (int i = 0; i < pi.length; i++) {
-            rec[i] = row[pi[i]];
+    /**
+     * Find the satisfying rows by the inverted index of the snapshot column. EQ / IN on a string column looks up
+     * the rows of each value directly, other filters are evaluated once per distinct value instead of per row.
+     */
+    private static Set<Array<String>> collectByIndex(ColumnarLookupTable lookup, TblColRef derivedCol, CompareTupleFilter compf, int di, int[] pi) {
+        SnapshotColumnIndex index = lookup.getColumnIndex(di);
+        MutableRoaringBitmap rows = new MutableRoaringBitmap();
+
+        if (isExactMatch(derivedCol, compf)) {
+            for (Object value : compf.getValues()) {
+                rows.or(index.getRows((String) value));
+            }
+        } else {
+            IFilterCodeSystem<?> cs = FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType());
+            SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
+            for (int i = 0; i < index.getValueCount(); i++) {
+                tuple.value = lookup.convertCell(di, index.getValue(i));
+                if (compf.evaluate(tuple, cs)) {
+                    rows.or(index.getRows(i));
+                }
+            }
+        }
+
+        Set<Array<String>> satisfyingHostRecords = Sets.newHashSetWithExpectedSize(rows.getCardinality());
+        IntIterator it = rows.getIntIterator();
+        while (it.hasNext()) {
+            int row = it.next();
+            String[] rec = new String[pi.length];
+            for (int i = 0; i < pi.length; i++) {
+                rec[i] = lookup.getValue(row, pi[i]);
+            }
+            satisfyingHostRecords.add(new Array<String>(rec));
+        }
+        return satisfyingHostRecords;
+    }
+
+    // string values equal only if identical, so the rows can be looked up by value
+    private static boolean isExactMatch(TblColRef derivedCol, CompareTupleFilter compf) {
+        if (compf.getOperator() != FilterOperatorEnum.EQ && compf.getOperator() != FilterOperatorEnum.IN)
+            return false;
+        if (!derivedCol.getType().isStringFamily())
+            return false;
+        for (Object value : compf.getValues()) {
+            if (!(value instanceof String))
+                return false;
         }
-        satisfyingHostRecords.add(new Array<String>(rec));
+        return true;
     }
 
     private static TupleFilter buildInFilter(TblColRef[] hostCols, Set<Array<String>> satisfyingHostRecords) {
@@ -52,6 +52,7 @@ import org.apache.kylin.gridtable.GridTable;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
 import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.BitmapInTupleFilter;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
@@ -500,6 +501,92 @@ public class DictGridTableTest extends LocalFileMetadataTestCase {
                 newFilter.toString());
     }
 
+    @Test
+    public void verifyConvertBitmapIn() {
+        GTInfo info = table.getInfo();
+
+        TableDesc extTable = TableDesc.mockup("ext");
+        TblColRef extColA = TblColRef.mockup(extTable, 1, "A", "timestamp");
+        TblColRef extColB = TblColRef.mockup(extTable, 2, "B", "integer");
+
+        CompareTupleFilter fComp1 = compare(extColA, FilterOperatorEnum.GT, "2015-01-14");
+        CompareTupleFilter fComp2 = compare(extColB, FilterOperatorEnum.IN, "9", "10", "20", "40", "50", "100");
+        LogicalTupleFilter filter = and(fComp1, fComp2);
+
+        List<TblColRef> colMapping = Lists.newArrayList();
+        colMapping.add(extColA);
+        colMapping.add(extColB);
+
+        // within threshold, stay as IN
+        TupleFilter newFilter = GTUtil.convertFilterColumnsAndConstants(filter, info, colMapping, null, 5);
+        assertEquals(FilterOperatorEnum.IN, newFilter.getChildren().get(1).getOperator());
+
+        // "9" is not in dictionary, the other 5 IDs go to the bitmap
+        newFilter = GTUtil.convertFilterColumnsAndConstants(filter, info, colMapping, null, 4);
+        assertEquals(
+                "AND [UNKNOWN_MODEL:NULL.GT_MOCKUP_TABLE.0 GT [\\x00\\x00\\x01J\\xE5\\xBD\\x5C\\x00], UNKNOWN_MODEL:NULL.GT_MOCKUP_TABLE.1 IN bitmap[5 ids]]",
+                newFilter.toString());
+        BitmapInTupleFilter bitmapIn = (BitmapInTupleFilter) newFilter.getChildren().get(1);
+        assertEquals(1, bitmapIn.getCodeLength());
+        assertEquals(5, bitmapIn.getValues().size());
+        assertEquals(true, bitmapIn.getValues().contains(enc(info, 1, "100")));
+
+        // NOT IN is reversed bitmap
+        CompareTupleFilter fComp3 = compare(extColB, FilterOperatorEnum.NOTIN, "10", "20", "40", "50", "100");
+        newFilter = GTUtil.convertFilterColumnsAndConstants(fComp3, info, colMapping, null, 4);
+        assertEquals("UNKNOWN_MODEL:NULL.GT_MOCKUP_TABLE.1 NOT IN bitmap[5 ids]", newFilter.toString());
+    }
+
+    @Test
+    public void verifyScanWithBitmapInFilter() throws IOException {
+        GTInfo info = table.getInfo();
+
+        LogicalTupleFilter filter = and(bitmapIn(info.colRef(1), enc(info, 1, "10"), enc(info, 1, "20")));
+
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null)
+                .setFilterPushDown(filter).createGTScanRequest();
+
+        doScanAndVerify(table, useDeserializedGTScanRequest(req), "[1421280000000, 20, Dong, 10, 10.5]",
+                "[1421280000000, 20, Jason, 10, 10.5]", "[1421366400000, 20, Mahone, 10, 10.5]",
+                "[1421366400000, 20, Qianhao, 10, 10.5]", "[1421452800000, 10, Kejia, 10, 10.5]");
+
+        // NOT IN
+        filter = not(bitmapIn(info.colRef(1), enc(info, 1, "10"), enc(info, 1, "20")));
+        req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(filter)
+                .createGTScanRequest();
+
+        doScanAndVerify(table, useDeserializedGTScanRequest(req), "[1421193600000, 30, Yang, 10, 10.5]",
+                "[1421193600000, 30, Luke, 10, 10.5]", "[1421280000000, 30, Xu, 10, 10.5]",
+                "[1421366400000, 30, George, 10, 10.5]", "[1421366400000, 30, Shaofeng, 10, 10.5]");
+    }
+
+    @Test
+    public void verifyScanRangePlannerWithBitmapIn() {
+        // IDs 0, 1, 3, 4, 9 make 3 dense runs
+        TupleFilter ids = bitmapIn(info.colRef(1), enc(info, 1, "10"), enc(info, 1, "20"), enc(info, 1, "40"),
+                enc(info, 1, "50"), enc(info, 1, "100"));
+
+        LogicalTupleFilter filter = and(timeComp4, ids);
+        CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, filter);
+        List<GTScanRange> r = planner.planScanRanges();
+        assertEquals(3, r.size());
+        assertEquals("[1421280000000, 10]-[1421280000000, 20]", r.get(0).toString());
+        assertEquals("[1421280000000, 40]-[1421280000000, 50]", r.get(1).toString());
+        assertEquals("[1421280000000, 100]-[1421280000000, 100]", r.get(2).toString());
+
+        // runs across the smaller gap are merged
+        planner.maxBitmapInScanRanges = 2;
+        r = planner.planScanRanges();
+        assertEquals("[[1421280000000, 10]-[1421280000000, 50], [1421280000000, 100]-[1421280000000, 100]]",
+                r.toString());
+
+        // not leading the row key, one range from min to max
+        filter = and(timeComp1, ids);
+        planner = new CubeScanRangePlanner(info, null, null, filter);
+        r = planner.planScanRanges();
+        assertEquals("[[1421193600000, 10]-[null, 100]]", r.toString());
+    }
+
     private void doScanAndVerify(GridTable table, GTScanRequest req, String... verifyRows) throws IOException {
         System.out.println(req);
         IGTScanner scanner = table.scan(req);
@@ -534,6 +621,10 @@ public class DictGridTableTest extends LocalFileMetadataTestCase {
         return result;
     }
 
+    public static BitmapInTupleFilter bitmapIn(TblColRef col, ByteArray... codes) {
+        return new BitmapInTupleFilter(col, codes[0].length(), BitmapInTupleFilter.toBitmap(Arrays.asList(codes)), false);
+    }
+
     public static LogicalTupleFilter and(TupleFilter... children) {
         return logic(FilterOperatorEnum.AND, children);
     }
@@ -118,6 +118,24 @@ public class BaseCuboidBuilder implements java.io.Serializable {
         return rowKeyEncoder.encode(colValues);
     }
 
+    /**
+     * Build row keys of a block of rows, dictionary columns are encoded in one batch lookup per block.
+     */
+    public byte[][] buildKeys(List<String[]> flatRows) {
+        int[] rowKeyColumnIndexes = intermediateTableDesc.getRowKeyColumnIndexes();
+        List<TblColRef> columns = baseCuboid.getColumns();
+        String[][] colValuesBlock = new String[flatRows.size()][];
+        for (int r = 0; r < colValuesBlock.length; r++) {
+            String[] flatRow = flatRows.get(r);
+            String[] colValues = new String[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                colValues[i] = getCell(rowKeyColumnIndexes[i], flatRow);
+            }
+            colValuesBlock[r] = colValues;
+        }
+        return rowKeyEncoder.encode(colValuesBlock, colValuesBlock.length);
+    }
+
     public ByteBuffer buildValue(String[] flatRow) {
         return measureCodec.encode(buildValueObjects(flatRow));
     }
@@ -69,6 +69,8 @@ public interface BatchConstants {
     String CFG_MR_SPARK_JOB = "mr.spark.job";
     String CFG_SPARK_META_URL = "spark.meta.url";
     String CFG_GLOBAL_DICT_BASE_DIR = "global.dict.base.dir";
+    String CFG_GLOBAL_DICT_PARTITIONS = "global.dict.partitions";
+    String CFG_GLOBAL_DICT_COUNT_ONLY = "global.dict.count.only";
 
     String CFG_HLL_SHARD_BASE = "mapreduce.partition.hll.shard.base";
 
@@ -36,7 +36,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  */
@@ -56,6 +58,8 @@ abstract public class BaseCuboidMapperBase<KEYIN, VALUEIN> extends KylinMapper<K
     protected Text outputValue = new Text();
 
     private BaseCuboidBuilder baseCuboidBuilder;
+    private int encodeBlockSize;
+    private List<String[]> rowBlock = new ArrayList<>();
 
     @Override
     protected void doSetup(Context context) throws IOException {
@@ -68,12 +72,65 @@ abstract public class BaseCuboidMapperBase<KEYIN, VALUEIN> extends KylinMapper<K
         cubeSegment = cube.getSegmentById(segmentID);
         CubeJoinedFlatTableEnrich intermediateTableDesc = new CubeJoinedFlatTableEnrich(EngineFactory.getJoinedFlatTableDesc(cubeSegment), cubeDesc);
         baseCuboidBuilder = new BaseCuboidBuilder(kylinConfig, cubeDesc, cubeSegment, intermediateTableDesc);
+        encodeBlockSize = cubeSegment.getConfig().getCubeEncodeBlockSize();
+    }
+
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        flushBlock(context);
+    }
 
+    /**
+     * Buffer the row and output when a block is full, row keys of a block are encoded in one batch
+     * of dictionary lookups. Bad records are handled like outputKV() row by row.
+     */
+    protected void outputKVInBlock(String[] flatRow, Context context) throws IOException, InterruptedException {
+        if (encodeBlockSize <= 1) {
+            try {
+                outputKV(flatRow, context);
+            } catch (Exception ex) {
+                handleErrorRecord(flatRow, ex);
+            }
+            return;
+        }
+
+        rowBlock.add(flatRow);
+        if (rowBlock.size() >= encodeBlockSize) {
+            flushBlock(context);
+        }
     }
 
+    protected void flushBlock(Context context) throws IOException, InterruptedException {
+        if (rowBlock.isEmpty())
+            return;
+
+        byte[][] rowKeys = null;
+        try {
+            rowKeys = baseCuboidBuilder.buildKeys(rowBlock);
+        } catch (Exception ex) {
+            // fall back to row by row, so the bad records can be told apart
+            logger.warn("Failed to encode a block of " + rowBlock.size() + " rows, encode row by row instead", ex);
+        }
+
+        for (int i = 0; i < rowBlock.size(); i++) {
+            String[] flatRow = rowBlock.get(i);
+            try {
+                if (rowKeys == null)
+                    outputKV(flatRow, context);
+                else
+                    outputKV(flatRow, rowKeys[i], context);
+            } catch (Exception ex) {
+                handleErrorRecord(flatRow, ex);
+            }
+        }
+        rowBlock.clear();
+    }
 
     protected void outputKV(String[] flatRow, Context context) throws IOException, InterruptedException {
-        byte[] rowKey = baseCuboidBuilder.buildKey(flatRow);
+        outputKV(flatRow, baseCuboidBuilder.buildKey(flatRow), context);
+    }
+
+    private void outputKV(String[] flatRow, byte[] rowKey, Context context) throws IOException, InterruptedException {
         outputKey.set(rowKey, 0, rowKey.length);
 
         ByteBuffer valueBuf = baseCuboidBuilder.buildValue(flatRow);
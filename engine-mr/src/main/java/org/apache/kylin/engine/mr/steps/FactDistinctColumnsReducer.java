@@ -36,7 +36,6 @@ import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.DateFormat;
-import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.model.CubeDesc;
@@ -155,7 +154,7 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
                     buildDictInReducer = false; //for UHC columns, this feature should be disabled
             }
             if (buildDictInReducer) {
-                builder = DictionaryGenerator.newDictionaryBuilder(col.getType());
+                builder = DictionaryGenerator.newSortedDictionaryBuilder(col.getType());
                 builder.init(null, 0, null);
             }
             logger.info("Reducer " + taskId + " handling column " + col + ", buildDictInReducer=" + buildDictInReducer);
@@ -245,8 +244,7 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
         } else {
             // normal col
             if (buildDictInReducer) {
-                Dictionary<String> dict = builder.build();
-                outputDict(col, dict);
+                outputDict(col, builder);
             }
         }
 
@@ -264,13 +262,12 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
         }
     }
 
-    private void outputDict(TblColRef col, Dictionary<String> dict) throws IOException, InterruptedException {
+    private void outputDict(TblColRef col, IDictionaryBuilder builder) throws IOException, InterruptedException {
         // output written to baseDir/colName/colName.rldict-r-00000 (etc)
         String dictFileName = col.getIdentity() + "/" + col.getName() + DICT_FILE_POSTFIX;
 
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream outputStream = new DataOutputStream(baos);) {
-            outputStream.writeUTF(dict.getClass().getName());
-            dict.write(outputStream);
+            DictionaryGenerator.writeDictionary(builder, outputStream);
 
             mos.write(BatchConstants.CFG_OUTPUT_DICT, NullWritable.get(), new BytesWritable(baos.toByteArray()), dictFileName);
         }
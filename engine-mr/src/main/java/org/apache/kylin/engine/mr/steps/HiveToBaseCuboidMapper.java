@@ -41,12 +41,7 @@ public class HiveToBaseCuboidMapper<KEYIN> extends BaseCuboidMapperBase<KEYIN, O
     public void doMap(KEYIN key, Object value, Context context) throws IOException, InterruptedException {
         Collection<String[]> rowCollection = flatTableInputFormat.parseMapperInput(value);
         for (String[] row: rowCollection) {
-            try {
-                outputKV(row, context);
-
-            } catch (Exception ex) {
-                handleErrorRecord(row, ex);
-            }
+            outputKVInBlock(row, context);
         }
     }
 
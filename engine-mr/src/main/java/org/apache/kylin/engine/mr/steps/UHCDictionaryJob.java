@@ -18,10 +18,20 @@
 
 package org.apache.kylin.engine.mr.steps;
 
+import static org.apache.kylin.engine.mr.steps.FactDistinctColumnsReducer.DICT_FILE_POSTFIX;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.commons.cli.Options;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
@@ -31,19 +41,33 @@ import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.lock.DistributedLock;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.dict.AppendTrieDictionary;
+import org.apache.kylin.dict.DictionaryInfo;
+import org.apache.kylin.dict.GlobalDictionaryBuilder;
+import org.apache.kylin.dict.global.AppendDictPartition;
+import org.apache.kylin.dict.global.GlobalDictHDFSStore;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.util.List;
-import java.util.Map;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 
+/**
+ * Builds the dictionaries of the UHC columns, one reducer per column.
+ * <p>
+ * With "kylin.engine.mr.uhc-global-dict-partitions" above 1, the global dict of a column is built by that many
+ * reducers, each on a value range of the existing slices. A first pass counts the new values of each range, for
+ * its range of ids, then the ranges are built in parallel and committed as a new version by this job, which holds
+ * the dict lock from planning till commit. Both passes run synchronously then.
+ */
 public class UHCDictionaryJob extends AbstractHadoopJob {
     protected static final Logger logger = LoggerFactory.getLogger(UHCDictionaryJob.class);
 
@@ -52,6 +76,8 @@ public class UHCDictionaryJob extends AbstractHadoopJob {
     @Override
     public int run(String[] args) throws Exception {
         Options options = new Options();
+        DistributedLock lock = null;
+        List<String> lockPaths = Lists.newArrayList();
 
         try {
             options.addOption(OPTION_JOB_NAME);
@@ -61,27 +87,27 @@ public class UHCDictionaryJob extends AbstractHadoopJob {
             options.addOption(OPTION_INPUT_PATH);
             parseOptions(options, args);
 
-            job = Job.getInstance(getConf(), getOptionValue(OPTION_JOB_NAME));
+            String jobName = getOptionValue(OPTION_JOB_NAME);
             String job_id = getOptionValue(OPTION_CUBING_JOB_ID);
             String cubeName = getOptionValue(OPTION_CUBE_NAME);
             Path output = new Path(getOptionValue(OPTION_OUTPUT_PATH));
             Path input = new Path(getOptionValue(OPTION_INPUT_PATH));
 
-            //add metadata to distributed cache
-            CubeManager cubeMgr = CubeManager.getInstance(KylinConfig.getInstanceFromEnv());
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            CubeManager cubeMgr = CubeManager.getInstance(config);
             CubeInstance cube = cubeMgr.getCube(cubeName);
-            attachCubeMetadata(cube, job.getConfiguration());
-
             List<TblColRef> uhcColumns = cubeMgr.getAllUHCColumns(cube.getDescriptor());
-            int reducerCount = uhcColumns.size();
 
             //Note! handle uhc columns is null.
             boolean hasUHCValue = false;
+            List<Path> inputs = Lists.newArrayList(); // null for a column without values
             for (TblColRef tblColRef : uhcColumns) {
                 Path path = new Path(input.toString() + "/" + tblColRef.getIdentity());
                 if (HadoopUtil.getFileSystem(path).exists(path)) {
-                    FileInputFormat.addInputPath(job, path);
+                    inputs.add(path);
                     hasUHCValue = true;
+                } else {
+                    inputs.add(null);
                 }
             }
 
@@ -90,43 +116,86 @@ public class UHCDictionaryJob extends AbstractHadoopJob {
                 return 0;
             }
 
-            setJobClasspath(job, cube.getConfig());
-            setupMapper();
-            setupReducer(output, reducerCount);
-
-            job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cubeName);
-            job.getConfiguration().set(BatchConstants.ARG_CUBING_JOB_ID, job_id);
-            job.getConfiguration().set(BatchConstants.CFG_GLOBAL_DICT_BASE_DIR, KylinConfig.getInstanceFromEnv().getHdfsWorkingDirectory());
-            job.getConfiguration().set(BatchConstants.CFG_MAPRED_OUTPUT_COMPRESS, "false");
-
-            //8G memory is enough for all global dict, because the input is sequential and we handle global dict slice by slice
-            job.getConfiguration().set("mapreduce.reduce.memory.mb", "8500");
-            job.getConfiguration().set("mapred.reduce.child.java.opts", "-Xmx8g");
-            //Copying global dict to working dir in GlobalDictHDFSStore maybe elapsed a long time (Maybe we could improve it)
-            //Waiting the global dict lock maybe also take a long time.
-            //So we set 8 hours here
-            job.getConfiguration().set("mapreduce.task.timeout", "28800000");
-
-            //allow user specially set config for uhc step
-            for (Map.Entry<String, String> entry : cube.getConfig().getUHCMRConfigOverride().entrySet()) {
-                job.getConfiguration().set(entry.getKey(), entry.getValue());
+            String hdfsDir = config.getHdfsWorkingDirectory();
+            lock = config.getDistributedLockFactory().lockForCurrentThread();
+            UHCDictionaryPartitionPlan plan = planGlobalDictPartitions(cube, uhcColumns, inputs, hdfsDir, lock, lockPaths);
+            if (!plan.isPartitioned()) {
+                job = createJob(jobName, cube, inputs, uhcColumns.size(), output, job_id, hdfsDir);
+                return waitForCompletion(job);
             }
 
-            return waitForCompletion(job);
+            // count the new values of the partitioned global dicts, only they have input
+            List<Path> countInputs = Lists.newArrayList();
+            for (int i = 0; i < uhcColumns.size(); i++) {
+                countInputs.add(plan.getPartitions(i) == null ? null : inputs.get(i));
+            }
+            job = createJob(jobName + "_Count", cube, countInputs, plan.getReducerCount(), new Path(output, "_count"), job_id, hdfsDir);
+            plan.write(job.getConfiguration());
+            job.getConfiguration().setBoolean(BatchConstants.CFG_GLOBAL_DICT_COUNT_ONLY, true);
+            boolean succeed = job.waitForCompletion(true);
+            cleanupTempConfFile(job.getConfiguration());
+            if (!succeed)
+                return 1;
+            assignPartitionIds(plan, uhcColumns, hdfsDir, job.getCounters());
+
+            job = createJob(jobName, cube, inputs, plan.getReducerCount(), output, job_id, hdfsDir);
+            plan.write(job.getConfiguration());
+            if (!job.waitForCompletion(true))
+                return 1;
+            commitPartitions(plan, uhcColumns, hdfsDir, output);
+            return 0;
         } finally {
+            for (String lockPath : lockPaths) {
+                lock.unlock(lockPath);
+            }
             if (job != null)
                 cleanupTempConfFile(job.getConfiguration());
         }
     }
 
-    private void setupMapper() throws IOException {
+    private Job createJob(String jobName, CubeInstance cube, List<Path> inputs, int reducerCount, Path output, String job_id, String hdfsDir) throws IOException {
+        Job job = Job.getInstance(getConf(), jobName);
+
+        //add metadata to distributed cache
+        attachCubeMetadata(cube, job.getConfiguration());
+
+        for (Path path : inputs) {
+            if (path != null)
+                FileInputFormat.addInputPath(job, path);
+        }
+
+        setJobClasspath(job, cube.getConfig());
+        setupMapper(job);
+        setupReducer(job, output, reducerCount);
+
+        job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cube.getName());
+        job.getConfiguration().set(BatchConstants.ARG_CUBING_JOB_ID, job_id);
+        job.getConfiguration().set(BatchConstants.CFG_GLOBAL_DICT_BASE_DIR, hdfsDir);
+        job.getConfiguration().set(BatchConstants.CFG_MAPRED_OUTPUT_COMPRESS, "false");
+
+        //8G memory is enough for all global dict, because the input is sequential and we handle global dict slice by slice
+        job.getConfiguration().set("mapreduce.reduce.memory.mb", "8500");
+        job.getConfiguration().set("mapred.reduce.child.java.opts", "-Xmx8g");
+        //Copying global dict to working dir in GlobalDictHDFSStore maybe elapsed a long time (Maybe we could improve it)
+        //Waiting the global dict lock maybe also take a long time.
+        //So we set 8 hours here
+        job.getConfiguration().set("mapreduce.task.timeout", "28800000");
+
+        //allow user specially set config for uhc step
+        for (Map.Entry<String, String> entry : cube.getConfig().getUHCMRConfigOverride().entrySet()) {
+            job.getConfiguration().set(entry.getKey(), entry.getValue());
+        }
+        return job;
+    }
+
+    private void setupMapper(Job job) throws IOException {
         job.setInputFormatClass(SequenceFileInputFormat.class);
         job.setMapperClass(UHCDictionaryMapper.class);
         job.setMapOutputKeyClass(SelfDefineSortableKey.class);
         job.setMapOutputValueClass(NullWritable.class);
     }
 
-    private void setupReducer(Path output, int numberOfReducers) throws IOException {
+    private void setupReducer(Job job, Path output, int numberOfReducers) throws IOException {
         job.setReducerClass(UHCDictionaryReducer.class);
         job.setPartitionerClass(UHCDictionaryPartitioner.class);
         job.setNumReduceTasks(numberOfReducers);
@@ -141,6 +210,78 @@ public class UHCDictionaryJob extends AbstractHadoopJob {
         deletePath(job.getConfiguration(), output);
     }
 
+    // the global dicts built in parallel are locked till commit, a new dict or one of a single slice is not
+    private UHCDictionaryPartitionPlan planGlobalDictPartitions(CubeInstance cube, List<TblColRef> uhcColumns, List<Path> inputs, String hdfsDir, DistributedLock lock, List<String> lockPaths) throws IOException {
+        int nPartitions = cube.getConfig().getUHCGlobalDictPartitions();
+        CubeDesc cubeDesc = cube.getDescriptor();
+        List<List<AppendDictPartition>> columnPartitions = Lists.newArrayList();
+        for (int i = 0; i < uhcColumns.size(); i++) {
+            TblColRef col = uhcColumns.get(i);
+            List<AppendDictPartition> partitions = null;
+            if (nPartitions > 1 && inputs.get(i) != null && !cubeDesc.getShardByColumns().contains(col)
+                    && GlobalDictionaryBuilder.class.getName().equals(cubeDesc.getDictionaryBuilderClass(col))) {
+                DictionaryInfo dictInfo = new DictionaryInfo(col.getColumnDesc(), col.getDatatype());
+                String lockPath = GlobalDictionaryBuilder.getLockPath(dictInfo);
+                lock.lock(lockPath, Long.MAX_VALUE);
+                lockPaths.add(lockPath);
+
+                partitions = new GlobalDictHDFSStore(getBaseDir(col, hdfsDir)).planPartitions(nPartitions);
+                if (partitions.size() <= 1) {
+                    lock.unlock(lockPath);
+                    lockPaths.remove(lockPath);
+                    partitions = null;
+                }
+            }
+            columnPartitions.add(partitions);
+        }
+        return new UHCDictionaryPartitionPlan(columnPartitions);
+    }
+
+    private void assignPartitionIds(UHCDictionaryPartitionPlan plan, List<TblColRef> uhcColumns, String hdfsDir, Counters counters) throws IOException {
+        for (int i = 0; i < uhcColumns.size(); i++) {
+            List<AppendDictPartition> partitions = plan.getPartitions(i);
+            if (partitions == null)
+                continue;
+
+            List<Integer> newValueCounts = Lists.newArrayList();
+            for (int j = 0; j < partitions.size(); j++) {
+                String reducer = String.valueOf(plan.getFirstReducer(i) + j);
+                newValueCounts.add(Ints.checkedCast(counters.findCounter(UHCDictionaryReducer.NEW_VALUE_COUNTER_GROUP, reducer).getValue()));
+            }
+            new GlobalDictHDFSStore(getBaseDir(uhcColumns.get(i), hdfsDir)).assignPartitionIds(partitions, newValueCounts);
+        }
+    }
+
+    // commit each global dict built in parallel, and output it the way a single reducer does
+    private void commitPartitions(UHCDictionaryPartitionPlan plan, List<TblColRef> uhcColumns, String hdfsDir, Path output) throws IOException {
+        for (int i = 0; i < uhcColumns.size(); i++) {
+            List<AppendDictPartition> partitions = plan.getPartitions(i);
+            if (partitions == null)
+                continue;
+
+            TblColRef col = uhcColumns.get(i);
+            String baseDir = getBaseDir(col, hdfsDir);
+            new GlobalDictHDFSStore(baseDir).commitPartitions(partitions, 0);
+            AppendTrieDictionary<String> dict = new AppendTrieDictionary<>();
+            dict.init(baseDir);
+
+            Path dictFile = new Path(output, col.getIdentity() + "/" + col.getName() + DICT_FILE_POSTFIX + "-r-00000");
+            try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream outputStream = new DataOutputStream(baos);
+                    SequenceFile.Writer writer = SequenceFile.createWriter(HadoopUtil.getCurrentConfiguration(), SequenceFile.Writer.file(dictFile),
+                            SequenceFile.Writer.keyClass(NullWritable.class), SequenceFile.Writer.valueClass(BytesWritable.class))) {
+                outputStream.writeUTF(dict.getClass().getName());
+                dict.write(outputStream);
+                outputStream.flush();
+                writer.append(NullWritable.get(), new BytesWritable(baos.toByteArray()));
+            }
+            logger.info("Committed global dict of {} built by {} reducers to {}", col.getIdentity(), partitions.size(), dictFile);
+        }
+    }
+
+    private static String getBaseDir(TblColRef col, String hdfsDir) {
+        return GlobalDictionaryBuilder.getBaseDir(new DictionaryInfo(col.getColumnDesc(), col.getDatatype()), hdfsDir);
+    }
+
     @Override
     public boolean isSkipped() {
         return isSkipped;
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.kylin.dict.global.AppendDictPartition;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+
+/**
+ * The reducers of {@link UHCDictionaryJob}, one per UHC column, or one per partition of a global dict built in
+ * parallel, see {@link org.apache.kylin.dict.global.GlobalDictStore#planPartitions(int)}.
+ */
+public class UHCDictionaryPartitionPlan {
+
+    private final List<List<AppendDictPartition>> columnPartitions; // null for a column built in one reducer
+    private final int[] reducerStarts; // the first reducer of each column, and the reducer count at the end
+
+    public UHCDictionaryPartitionPlan(List<List<AppendDictPartition>> columnPartitions) {
+        this.columnPartitions = columnPartitions;
+        this.reducerStarts = new int[columnPartitions.size() + 1];
+        for (int i = 0; i < columnPartitions.size(); i++) {
+            List<AppendDictPartition> partitions = columnPartitions.get(i);
+            reducerStarts[i + 1] = reducerStarts[i] + (partitions == null ? 1 : partitions.size());
+        }
+    }
+
+    public boolean isPartitioned() {
+        return reducerStarts[columnPartitions.size()] > columnPartitions.size();
+    }
+
+    public int getReducerCount() {
+        return reducerStarts[columnPartitions.size()];
+    }
+
+    public List<AppendDictPartition> getPartitions(int column) {
+        return columnPartitions.get(column);
+    }
+
+    public int getFirstReducer(int column) {
+        return reducerStarts[column];
+    }
+
+    public int getColumn(int reducer) {
+        int column = 0;
+        while (reducerStarts[column + 1] <= reducer) {
+            column++;
+        }
+        return column;
+    }
+
+    // null if the column of the reducer is not partitioned
+    public AppendDictPartition getPartition(int reducer) {
+        int column = getColumn(reducer);
+        List<AppendDictPartition> partitions = columnPartitions.get(column);
+        return partitions == null ? null : partitions.get(reducer - reducerStarts[column]);
+    }
+
+    public int getReducer(int column, byte[] value, int offset, int length) {
+        List<AppendDictPartition> partitions = columnPartitions.get(column);
+        if (partitions == null)
+            return reducerStarts[column];
+        return reducerStarts[column] + AppendDictPartition.indexOf(partitions, value, offset, length);
+    }
+
+    public void write(Configuration conf) throws IOException {
+        List<String> columns = new ArrayList<>();
+        for (List<AppendDictPartition> partitions : columnPartitions) {
+            if (partitions == null) {
+                columns.add("");
+                continue;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(partitions.size());
+                for (AppendDictPartition partition : partitions) {
+                    partition.write(out);
+                }
+            }
+            columns.add(Base64.encodeBase64String(bytes.toByteArray()));
+        }
+        conf.set(BatchConstants.CFG_GLOBAL_DICT_PARTITIONS, StringUtils.join(columns, ","));
+    }
+
+    /**
+     * The plan of the job, null if it has none, that is one reducer per column.
+     */
+    public static UHCDictionaryPartitionPlan read(Configuration conf) throws IOException {
+        String value = conf.get(BatchConstants.CFG_GLOBAL_DICT_PARTITIONS);
+        if (value == null)
+            return null;
+
+        List<List<AppendDictPartition>> columnPartitions = new ArrayList<>();
+        for (String column : value.split(",", -1)) {
+            if (column.isEmpty()) {
+                columnPartitions.add(null);
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decodeBase64(column)))) {
+                int n = in.readInt();
+                List<AppendDictPartition> partitions = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    AppendDictPartition partition = new AppendDictPartition();
+                    partition.readFields(in);
+                    partitions.add(partition);
+                }
+                columnPartitions.add(partitions);
+            }
+        }
+        return new UHCDictionaryPartitionPlan(columnPartitions);
+    }
+}
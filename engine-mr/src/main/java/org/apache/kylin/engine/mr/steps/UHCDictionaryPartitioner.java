@@ -18,13 +18,41 @@
 
 package org.apache.kylin.engine.mr.steps;
 
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.kylin.common.util.BytesUtil;
 
-public class UHCDictionaryPartitioner extends Partitioner<SelfDefineSortableKey, NullWritable> {
+public class UHCDictionaryPartitioner extends Partitioner<SelfDefineSortableKey, NullWritable> implements Configurable {
+
+    private Configuration conf;
+    private UHCDictionaryPartitionPlan plan; // null for one reducer per column
+
     @Override
     public int getPartition(SelfDefineSortableKey skey, NullWritable value, int numReduceTasks) {
-        return BytesUtil.readUnsigned(skey.getText().getBytes(), 0, 1);
+        Text key = skey.getText();
+        int column = BytesUtil.readUnsigned(key.getBytes(), 0, 1);
+        if (plan == null)
+            return column;
+        return plan.getReducer(column, key.getBytes(), 1, key.getLength() - 1);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        try {
+            plan = UHCDictionaryPartitionPlan.read(conf);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Bad partitions of global dict", e);
+        }
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
     }
 }
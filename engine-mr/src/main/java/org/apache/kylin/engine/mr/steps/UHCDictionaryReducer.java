@@ -27,13 +27,15 @@ import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.ClassUtil;
-import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.dict.DictionaryGenerator;
 import org.apache.kylin.dict.DictionaryInfo;
+import org.apache.kylin.dict.GlobalDictionaryBuilder;
 import org.apache.kylin.dict.IDictionaryBuilder;
+import org.apache.kylin.dict.global.AppendDictPartition;
+import org.apache.kylin.dict.global.AppendTrieDictionaryBuilder;
 import org.apache.kylin.engine.mr.KylinReducer;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
@@ -50,9 +52,18 @@ import static org.apache.kylin.engine.mr.steps.FactDistinctColumnsReducer.DICT_F
 public class UHCDictionaryReducer extends KylinReducer<SelfDefineSortableKey, NullWritable, NullWritable, BytesWritable> {
     private static final Logger logger = LoggerFactory.getLogger(UHCDictionaryReducer.class);
 
+    // the new values of each partition of a global dict, counted by reducer index
+    public static final String NEW_VALUE_COUNTER_GROUP = "GlobalDictNewValues";
+
     private IDictionaryBuilder builder;
     private TblColRef col;
 
+    // for a partition of a global dict built in parallel, see UHCDictionaryJob
+    private int taskId;
+    private AppendDictPartition partition;
+    private AppendTrieDictionaryBuilder.NewValueCounter newValueCounter;
+    private AppendTrieDictionaryBuilder partitionBuilder;
+
     private MultipleOutputs mos;
 
     @Override
@@ -67,13 +78,26 @@ public class UHCDictionaryReducer extends KylinReducer<SelfDefineSortableKey, Nu
         CubeDesc cubeDesc = cube.getDescriptor();
         List<TblColRef> uhcColumns = CubeManager.getInstance(config).getAllUHCColumns(cubeDesc);
 
-        int taskId = context.getTaskAttemptID().getTaskID().getId();
-        col = uhcColumns.get(taskId);
-        logger.info("column name: " + col.getIdentity());
+        taskId = context.getTaskAttemptID().getTaskID().getId();
+        UHCDictionaryPartitionPlan plan = UHCDictionaryPartitionPlan.read(conf);
+        col = uhcColumns.get(plan == null ? taskId : plan.getColumn(taskId));
+        partition = plan == null ? null : plan.getPartition(taskId);
+        logger.info("column name: " + col.getIdentity() + (partition == null ? "" : ", " + partition));
 
-        if (cube.getDescriptor().getShardByColumns().contains(col)) {
+        boolean countOnly = conf.getBoolean(BatchConstants.CFG_GLOBAL_DICT_COUNT_ONLY, false);
+        if (partition != null) {
+            DictionaryInfo dictionaryInfo = new DictionaryInfo(col.getColumnDesc(), col.getDatatype());
+            String baseDir = GlobalDictionaryBuilder.getBaseDir(dictionaryInfo, conf.get(BatchConstants.CFG_GLOBAL_DICT_BASE_DIR));
+            if (countOnly) {
+                newValueCounter = new AppendTrieDictionaryBuilder.NewValueCounter(baseDir);
+            } else {
+                partitionBuilder = new AppendTrieDictionaryBuilder(baseDir, config.getAppendDictEntrySize(), partition);
+            }
+        } else if (countOnly) {
+            logger.info("only the partitioned global dicts are counted, no input for this reducer");
+        } else if (cube.getDescriptor().getShardByColumns().contains(col)) {
             //for ShardByColumns
-            builder = DictionaryGenerator.newDictionaryBuilder(col.getType());
+            builder = DictionaryGenerator.newSortedDictionaryBuilder(col.getType());
             builder.init(null, 0, null);
         } else {
             //for GlobalDictionaryColumns
@@ -89,25 +113,36 @@ public class UHCDictionaryReducer extends KylinReducer<SelfDefineSortableKey, Nu
     public void doReduce(SelfDefineSortableKey skey, Iterable<NullWritable> values, Context context) throws IOException, InterruptedException {
         Text key = skey.getText();
         String value = Bytes.toString(key.getBytes(), 1, key.getLength() - 1);
-        builder.addValue(value);
+        if (newValueCounter != null) {
+            newValueCounter.add(value);
+        } else if (partitionBuilder != null) {
+            partitionBuilder.addValue(value);
+        } else if (builder != null) {
+            builder.addValue(value);
+        }
     }
 
     @Override
     protected void doCleanup(Context context) throws IOException, InterruptedException {
-        Dictionary<String> dict = builder.build();
-        outputDict(col, dict);
+        if (newValueCounter != null) {
+            context.getCounter(NEW_VALUE_COUNTER_GROUP, String.valueOf(taskId)).increment(newValueCounter.getCount());
+        } else if (partitionBuilder != null) {
+            // committed with the other partitions by the job, which then outputs the dict
+            partitionBuilder.buildPartition();
+        } else if (builder != null) {
+            outputDict(col, builder);
+        }
+        mos.close();
     }
 
-    private void outputDict(TblColRef col, Dictionary<String> dict) throws IOException, InterruptedException {
+    private void outputDict(TblColRef col, IDictionaryBuilder builder) throws IOException, InterruptedException {
         // output written to baseDir/colName/colName.rldict-r-00000 (etc)
         String dictFileName = col.getIdentity() + "/" + col.getName() + DICT_FILE_POSTFIX;
 
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream outputStream = new DataOutputStream(baos);) {
-            outputStream.writeUTF(dict.getClass().getName());
-            dict.write(outputStream);
+            DictionaryGenerator.writeDictionary(builder, outputStream);
 
             mos.write(BatchConstants.CFG_OUTPUT_DICT, NullWritable.get(), new BytesWritable(baos.toByteArray()), dictFileName);
         }
-        mos.close();
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.global.AppendDictPartition;
+import org.apache.kylin.dict.global.AppendDictSliceKey;
+import org.apache.kylin.dict.global.GlobalDictMetadata;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class UHCDictionaryPartitionPlanTest {
+
+    @Test
+    public void testPlan() throws IOException {
+        GlobalDictMetadata base = new GlobalDictMetadata(0, 0, 0, 0, new StringBytesConverter(), new TreeMap<AppendDictSliceKey, String>());
+        List<AppendDictPartition> partitions = base.planPartitions(-1, Lists.newArrayList(Bytes.toBytes("g"), Bytes.toBytes("p")));
+        List<List<AppendDictPartition>> columnPartitions = Lists.newArrayList();
+        columnPartitions.add(null);
+        columnPartitions.add(partitions);
+        columnPartitions.add(null);
+
+        // passed to the partitioner and reducers by the job conf
+        Configuration conf = new Configuration(false);
+        new UHCDictionaryPartitionPlan(columnPartitions).write(conf);
+        UHCDictionaryPartitionPlan plan = UHCDictionaryPartitionPlan.read(conf);
+        assertTrue(plan.isPartitioned());
+        assertEquals(5, plan.getReducerCount());
+
+        // column 0 on reducer 0, the partitions of column 1 on reducers 1 to 3, column 2 on reducer 4
+        assertEquals(0, getReducer(plan, 0, "z"));
+        assertEquals(1, getReducer(plan, 1, "a"));
+        assertEquals(2, getReducer(plan, 1, "g"));
+        assertEquals(2, getReducer(plan, 1, "oz"));
+        assertEquals(3, getReducer(plan, 1, "p"));
+        assertEquals(3, getReducer(plan, 1, "z"));
+        assertEquals(4, getReducer(plan, 2, "a"));
+
+        assertEquals(1, plan.getColumn(3));
+        assertEquals(2, plan.getColumn(4));
+        assertNull(plan.getPartition(0));
+        assertNull(plan.getPartition(4));
+        assertEquals(2, plan.getPartition(3).getIndex());
+        assertTrue(plan.getPartition(3).contains(Bytes.toBytes("z")));
+
+        // one reducer per column
+        assertNull(UHCDictionaryPartitionPlan.read(new Configuration(false)));
+        columnPartitions.set(1, null);
+        assertFalse(new UHCDictionaryPartitionPlan(columnPartitions).isPartitioned());
+    }
+
+    // the value after the column byte, as the mapper writes it
+    private static int getReducer(UHCDictionaryPartitionPlan plan, int column, String value) {
+        byte[] key = Bytes.add(new byte[] { (byte) column }, Bytes.toBytes(value));
+        return plan.getReducer(column, key, 1, key.length - 1);
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.apache.kylin.cube.inmemcubing;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -33,16 +35,20 @@ import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.kv.CubeDimEncMap;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
 import org.apache.kylin.dict.DictionaryGenerator;
 import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
 import org.apache.kylin.engine.EngineFactory;
+import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
@@ -92,6 +98,38 @@ public class ITInMemCubeBuilderTest extends LocalFileMetadataTestCase {
                 LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv", 1000, 1);
     }
 
+    @Test
+    public void testBlockConvertSameAsRowConvert() throws Exception {
+        flatTable = LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv";
+        cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("ssb");
+        dictionaryMap = getDictionaryMap(cube, flatTable);
+
+        CubeDesc cubeDesc = cube.getDescriptor();
+        GTInfo info = CubeGridTable.newGTInfo(Cuboid.getBaseCuboid(cubeDesc), new CubeDimEncMap(cubeDesc, dictionaryMap));
+
+        int nRows = 2500; // the last block is not full
+        List<ByteArray> byRow = convertInput(info, nRows, 1);
+        List<ByteArray> byBlock = convertInput(info, nRows, 1024);
+        assertEquals(nRows, byRow.size());
+        assertEquals(byRow, byBlock);
+    }
+
+    private List<ByteArray> convertInput(GTInfo info, int nRows, int blockSize) throws Exception {
+        ArrayBlockingQueue<String[]> queue = new ArrayBlockingQueue<String[]>(nRows + 1);
+        feedData(cube, flatTable, queue, nRows, 1);
+
+        IJoinedFlatTableDesc flatDesc = EngineFactory.getJoinedFlatTableDesc(cube.getDescriptor());
+        InputConverterUnitForRawData unit = new InputConverterUnitForRawData(cube.getDescriptor(), flatDesc, dictionaryMap);
+        InputConverter<String[]> converter = new InputConverter<String[]>(info, RecordConsumeBlockingQueueController.getQueueController(unit, queue), blockSize);
+
+        List<ByteArray> result = Lists.newArrayList();
+        for (GTRecord record : converter) {
+            result.add(record.exportColumns(info.getAllColumns()));
+        }
+        converter.close();
+        return result;
+    }
+
     public void testBuild(String cubeName, String flatTable, int nInpRows, int nThreads) throws Exception {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         CubeManager cubeManager = CubeManager.getInstance(kylinConfig);
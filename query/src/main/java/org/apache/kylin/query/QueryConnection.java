@@ -25,13 +25,31 @@ import java.sql.SQLException;
 import java.util.Properties;
 
 import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.runtime.Hook;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.query.schema.OLAPSchemaFactory;
 
+import com.google.common.base.Function;
+
 public class QueryConnection {
     
     private static Boolean isRegister = false;
 
+    static {
+        // parsing is done deep inside the calcite statement, the hook is the only place knowing its end
+        Hook.PARSE_TREE.add(new Function<Object[], Void>() {
+            @Override
+            public Void apply(Object[] input) {
+                QueryTimeline timeline = QueryContext.current().getTimeline();
+                timeline.end(QueryTimeline.Stage.SQL_PARSE);
+                timeline.begin(QueryTimeline.Stage.SQL_PLAN);
+                return null;
+            }
+        });
+    }
+
     public static Connection getConnection(String project) throws SQLException {
         if (!isRegister) {
             DriverManager.registerDriver(new Driver());
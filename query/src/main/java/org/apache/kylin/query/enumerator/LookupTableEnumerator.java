@@ -19,15 +19,13 @@
 package org.apache.kylin.query.enumerator;
 
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.model.DimensionDesc;
-import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
 import org.apache.kylin.metadata.model.ColumnDesc;
 import org.apache.kylin.metadata.realization.IRealization;
 import org.apache.kylin.metadata.tuple.Tuple;
@@ -39,10 +37,10 @@ import org.apache.kylin.storage.hybrid.HybridInstance;
  */
 public class LookupTableEnumerator implements Enumerator<Object[]> {
 
-    private final Collection<String[]> allRows;
+    private final ColumnarLookupTable table;
     private final List<ColumnDesc> colDescs;
     private final Object[] current;
-    private Iterator<String[]> iterator;
+    private int row;
 
     public LookupTableEnumerator(OLAPContext olapContext) {
 
@@ -67,8 +65,7 @@ public class LookupTableEnumerator implements Enumerator<Object[]> {
             throw new IllegalStateException("No dimension with derived columns found for lookup table " + lookupTableName + ", cube desc " + cube.getDescriptor());
 
         CubeManager cubeMgr = CubeManager.getInstance(cube.getConfig());
-        LookupStringTable table = cubeMgr.getLookupTable(cube.getLatestReadySegment(), dim.getJoin());
-        this.allRows = table.getAllRows();
+        this.table = cubeMgr.getColumnarLookupTable(cube.getLatestReadySegment(), dim.getJoin());
 
         OLAPTable olapTable = (OLAPTable) olapContext.firstTableScan.getOlapTable();
         this.colDescs = olapTable.getSourceColumns();
@@ -79,14 +76,14 @@ public class LookupTableEnumerator implements Enumerator<Object[]> {
 
     @Override
     public boolean moveNext() {
-        boolean hasNext = iterator.hasNext();
+        boolean hasNext = row + 1 < table.getRowCount();
         if (hasNext) {
-            String[] row = iterator.next();
+            row++;
             for (int i = 0, n = colDescs.size(); i < n; i++) {
                 ColumnDesc colDesc = colDescs.get(i);
                 int colIdx = colDesc.getZeroBasedIndex();
                 if (colIdx >= 0) {
-                    current[i] = Tuple.convertOptiqCellValue(row[colIdx], colDesc.getUpgradedType().getName());
+                    current[i] = Tuple.convertOptiqCellValue(table.getValue(row, colIdx), colDesc.getUpgradedType().getName());
                 } else {
                     current[i] = null; // fake column
                 }
@@ -103,7 +100,7 @@ public class LookupTableEnumerator implements Enumerator<Object[]> {
 
     @Override
     public void reset() {
-        this.iterator = allRows.iterator();
+        this.row = -1;
     }
 
     @Override
@@ -23,6 +23,8 @@ import java.util.Map;
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.Enumerator;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.common.util.DateFormat;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter;
@@ -43,12 +45,14 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
 
     private final OLAPContext olapContext;
     private final DataContext optiqContext;
+    private final QueryTimeline.SpanBatch enumerateSpans;
     private Object[] current;
     private ITupleIterator cursor;
 
     public OLAPEnumerator(OLAPContext olapContext, DataContext optiqContext) {
         this.olapContext = olapContext;
         this.optiqContext = optiqContext;
+        this.enumerateSpans = QueryContext.current().getTimeline().newSpanBatch(QueryTimeline.Stage.STORAGE_ENUMERATE);
         this.cursor = null;
     }
 
@@ -59,6 +63,8 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
 
     @Override
     public boolean moveNext() {
+        long start = System.nanoTime();
+        boolean hasMore = false;
         try {
             if (cursor == null) {
                 cursor = queryStorage();
@@ -73,6 +79,7 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
                 return false;
             }
             convertCurrentRow(tuple);
+            hasMore = true;
             return true;
         } catch (Exception e) {
             try {
@@ -83,6 +90,11 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
                 logger.info("Error when closing cursor, ignore it", ee);
             }
             throw e;
+        } finally {
+            enumerateSpans.record(start);
+            // publish at the end of data, the result may be read before this enumerator is closed
+            if (!hasMore)
+                enumerateSpans.flush();
         }
     }
 
@@ -101,6 +113,7 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
 
     @Override
     public void close() {
+        enumerateSpans.flush();
         if (cursor != null)
             cursor.close();
     }
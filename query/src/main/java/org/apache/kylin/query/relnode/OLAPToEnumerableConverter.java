@@ -33,6 +33,8 @@ import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.query.routing.RealizationChooser;
 import org.apache.kylin.query.security.QueryInterceptor;
@@ -61,6 +63,9 @@ public class OLAPToEnumerableConverter extends ConverterImpl implements Enumerab
 
     @Override
     public Result implement(EnumerableRelImplementor enumImplementor, Prefer pref) {
+        QueryTimeline timeline = QueryContext.current().getTimeline();
+        timeline.end(QueryTimeline.Stage.SQL_PLAN);
+
         if (System.getProperty("calcite.debug") != null) {
             String dumpPlan = RelOptUtil.dumpPlan("", this, false, SqlExplainLevel.DIGEST_ATTRIBUTES);
             System.out.println("EXECUTION PLAN BEFORE REWRITE");
@@ -80,7 +85,9 @@ public class OLAPToEnumerableConverter extends ConverterImpl implements Enumerab
             intercept.intercept(contexts);
         }
 
+        long routingStart = System.nanoTime();
         RealizationChooser.selectRealization(contexts);
+        timeline.record(QueryTimeline.Stage.REALIZATION_ROUTING, routingStart);
 
         doAccessControl(contexts);
 
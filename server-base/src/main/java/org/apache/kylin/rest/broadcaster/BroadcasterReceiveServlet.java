@@ -19,6 +19,8 @@
 package org.apache.kylin.rest.broadcaster;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +29,11 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.JsonUtil;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
 /**
  */
 public class BroadcasterReceiveServlet extends HttpServlet {
@@ -56,6 +63,21 @@ public class BroadcasterReceiveServlet extends HttpServlet {
         handle(req, resp);
     }
 
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // a batch of events, in order
+        List<Map<String, String>> events = JsonUtil.readValue(IOUtils.toString(req.getInputStream(), "UTF-8"),
+                new TypeReference<List<Map<String, String>>>() {
+                });
+        for (Map<String, String> event : events) {
+            if (handler != null) {
+                handler.handle(event.get("entity"), event.get("cacheKey"), event.get("event"));
+            }
+        }
+        resp.getWriter().write("events:" + events.size());
+        resp.getWriter().close();
+    }
+
     private void handle(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         final String startString = "/kylin/api/cache";
         final String requestURI = req.getRequestURI();
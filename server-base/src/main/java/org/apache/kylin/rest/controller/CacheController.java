@@ -19,6 +19,8 @@
 package org.apache.kylin.rest.controller;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.metadata.cachesync.Broadcaster;
@@ -29,10 +31,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.google.common.collect.Lists;
+
 /**
  * CubeController is defined as Restful API entrance for UI.
  *
@@ -67,6 +72,19 @@ public class CacheController extends BasicController {
         cacheService.notifyMetadataChange(entity, Broadcaster.Event.getEvent(event), cacheKey);
     }
 
+    /**
+     * Wipe cache on this node for a batch of events, in order
+     */
+    @RequestMapping(value = "/batch", method = { RequestMethod.POST }, produces = { "application/json" })
+    @ResponseBody
+    public void wipeCaches(@RequestBody List<Map<String, String>> events) throws IOException {
+        List<Broadcaster.BroadcastEvent> broadcastEvents = Lists.newArrayListWithCapacity(events.size());
+        for (Map<String, String> event : events) {
+            broadcastEvents.add(Broadcaster.BroadcastEvent.fromPayload(event));
+        }
+        cacheService.notifyMetadataChanges(broadcastEvents);
+    }
+
     @RequestMapping(value = "/announce/config", method = { RequestMethod.POST }, produces = { "application/json" })
     public void hotLoadKylinConfig() throws IOException {
         KylinConfig.getInstanceFromEnv().reloadFromSiteProperties();
@@ -29,6 +29,7 @@ import org.apache.kylin.metadata.badquery.BadQueryEntry;
 import org.apache.kylin.metadata.badquery.BadQueryHistory;
 import org.apache.kylin.rest.exception.InternalErrorException;
 import org.apache.kylin.rest.service.DiagnosisService;
+import org.apache.kylin.rest.service.QueryProfiler.QueryProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,6 +70,24 @@ public class DiagnosisController extends BasicController {
         return badEntry;
     }
 
+    /**
+     * Get the running and recent slow queries sampled by the query profiler
+     */
+    @RequestMapping(value = "/{project}/profile", method = { RequestMethod.GET }, produces = { "application/json" })
+    @ResponseBody
+    public List<QueryProfile> getQueryProfiles(@PathVariable String project) {
+        return dgService.getQueryProfiles(project);
+    }
+
+    /**
+     * Get the sampled stacks of a query in collapsed stack format, as input of flame graph tools
+     */
+    @RequestMapping(value = "/profile/{queryId}", method = { RequestMethod.GET }, produces = { "text/plain" })
+    @ResponseBody
+    public String getQueryProfileStacks(@PathVariable String queryId) {
+        return dgService.getQueryProfileStacks(queryId);
+    }
+
     /**
      * Get diagnosis information for project
      */
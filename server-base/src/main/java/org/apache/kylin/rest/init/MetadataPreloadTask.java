@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.init;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.metadata.TableMetadataManager;
+import org.apache.kylin.metadata.model.DataModelManager;
+import org.apache.kylin.metadata.project.ProjectManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Loads the metadata managers before the first query, the independent ones in parallel, by adding the class to
+ * "kylin.server.init-tasks".
+ */
+public class MetadataPreloadTask extends InitialTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataPreloadTask.class);
+
+    @Override
+    public void execute() {
+        final KylinConfig config = KylinConfig.getInstanceFromEnv();
+        long start = System.currentTimeMillis();
+
+        // a manager is loaded after the ones it reads, the tables and the projects in parallel
+        ExecutorService executor = Executors.newFixedThreadPool(2, new DaemonThreadFactory());
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            futures.add(executor.submit(new ManagerLoad("TableMetadataManager") {
+                @Override
+                void load() {
+                    TableMetadataManager.getInstance(config);
+                }
+            }));
+            futures.add(executor.submit(new ManagerLoad("ProjectManager") {
+                @Override
+                void load() {
+                    ProjectManager.getInstance(config);
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            new ManagerLoad("DataModelManager") {
+                @Override
+                void load() {
+                    DataModelManager.getInstance(config);
+                }
+            }.run();
+            new ManagerLoad("CubeDescManager") {
+                @Override
+                void load() {
+                    CubeDescManager.getInstance(config);
+                }
+            }.run();
+            new ManagerLoad("CubeManager") {
+                @Override
+                void load() {
+                    CubeManager.getInstance(config);
+                }
+            }.run();
+        } catch (Exception e) {
+            logger.error("Failed to preload the metadata, the rest is loaded on first use", e);
+            return;
+        } finally {
+            executor.shutdown();
+        }
+
+        logger.info("Preloaded the metadata in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private abstract static class ManagerLoad implements Runnable {
+        private final String manager;
+
+        ManagerLoad(String manager) {
+            this.manager = manager;
+        }
+
+        abstract void load();
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            load();
+            logger.info("Loaded {} in {} ms", manager, System.currentTimeMillis() - start);
+        }
+    }
+}
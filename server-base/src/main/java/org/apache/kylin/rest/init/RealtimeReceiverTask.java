@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.init;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.source.kafka.realtime.KafkaRealtimeMessageSource;
+import org.apache.kylin.source.kafka.realtime.RealtimeCubeReceiver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts a realtime receiver for each cube of "kylin.source.kafka.realtime.cubes", enable it by adding this class
+ * to "kylin.server.init-tasks" of the query server that should serve the realtime data.
+ */
+public class RealtimeReceiverTask extends InitialTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeReceiverTask.class);
+
+    @Override
+    public void execute() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        for (String cubeName : config.getKafkaRealtimeCubes()) {
+            CubeInstance cube = CubeManager.getInstance(config).getCube(cubeName);
+            if (cube == null) {
+                logger.warn("Cube {} not found, no realtime receiver for it", cubeName);
+                continue;
+            }
+
+            KafkaRealtimeMessageSource source = new KafkaRealtimeMessageSource(cube);
+            RealtimeCubeReceiver receiver;
+            try {
+                receiver = new RealtimeCubeReceiver(config, cubeName, source);
+            } catch (IllegalArgumentException e) {
+                logger.warn("No realtime receiver for cube " + cubeName, e);
+                IOUtils.closeQuietly(source);
+                continue;
+            }
+            Thread thread = new Thread(receiver, "RealtimeReceiver-" + cubeName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.kylin.rest.metrics;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -28,6 +29,7 @@ import org.apache.hadoop.metrics2.MetricsException;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.metrics.MetricsManager;
 import org.apache.kylin.metrics.lib.impl.RecordEvent;
@@ -52,6 +54,7 @@ public class QueryMetricsFacade {
 
     private static final Logger logger = LoggerFactory.getLogger(QueryMetricsFacade.class);
     private static final HashFunction hashFunc = Hashing.murmur3_128();
+    private static final String TIME_COST_PREFIX = QueryPropertyEnum.TIME_COST + "_";
 
     private static boolean enabled = false;
     private static ConcurrentHashMap<String, QueryMetrics> metricsMap = new ConcurrentHashMap<String, QueryMetrics>();
@@ -146,6 +149,7 @@ public class QueryMetricsFacade {
             }
             setQueryStats(queryMetricsEvent, //
                     sqlResponse.getDuration(), sqlResponse.getResults().size(), totalStorageReturnCount);
+            setQueryTimeline(queryMetricsEvent, QueryContext.current().getTimeline());
             //For update query level metrics
             MetricsManager.getInstance().update(queryMetricsEvent);
         }
@@ -221,6 +225,13 @@ public class QueryMetricsFacade {
         metricsEvent.put(QueryPropertyEnum.AGGR_FILTER_COUNT.toString(), countAggrAndFilter);
     }
 
+    private static void setQueryTimeline(RecordEvent metricsEvent, QueryTimeline timeline) {
+        for (QueryTimeline.Stage stage : QueryTimeline.Stage.values()) {
+            QueryPropertyEnum property = QueryPropertyEnum.getByName(TIME_COST_PREFIX + stage.name());
+            metricsEvent.put(property.toString(), TimeUnit.NANOSECONDS.toMillis(timeline.getTotalNanos(stage)));
+        }
+    }
+
     private static void update(QueryMetrics queryMetrics, SQLResponse sqlResponse) {
         try {
             incrQueryCount(queryMetrics, sqlResponse);
@@ -393,6 +393,10 @@ public class CnMessage extends Message {
         return "找不到诊断包, 路径: %s";
     }
 
+    public String getQUERY_PROFILE_NOT_FOUND() {
+        return "找不到查询 '%s' 的采样, 可能采样未开启或查询不够慢";
+    }
+
     // Encoding
     public String getVALID_ENCODING_NOT_AVAILABLE() {
         return "无法为数据类型: %s 提供合法的编码";
@@ -393,6 +393,10 @@ public class Message {
         return "Diagnosis package not found in directory: %s.";
     }
 
+    public String getQUERY_PROFILE_NOT_FOUND() {
+        return "No profile of query '%s', the profiler may be disabled or the query not slow enough.";
+    }
+
     // Encoding
     public String getVALID_ENCODING_NOT_AVAILABLE() {
         return "Can not provide valid encodings for datatype: %s.";
@@ -23,11 +23,13 @@ import java.util.List;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.common.collect.Lists;
 
 public class SQLResponse implements Serializable {
@@ -74,6 +76,9 @@ public class SQLResponse implements Serializable {
 
     protected byte[] queryStatistics;
 
+    // only if asked for by DEBUG_TOGGLE_QUERY_TIMELINE
+    protected List<QueryTimeline.StageSummary> timeline;
+
     public SQLResponse() {
     }
 
@@ -206,6 +211,15 @@ public class SQLResponse implements Serializable {
         this.storageCacheUsed = storageCacheUsed;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<QueryTimeline.StageSummary> getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(List<QueryTimeline.StageSummary> timeline) {
+        this.timeline = timeline;
+    }
+
     @JsonIgnore
     public List<QueryContext.CubeSegmentStatisticsResult> getCubeSegmentStatisticsList() {
         try {
@@ -45,6 +45,7 @@ public class BadQueryDetector extends Thread {
     private final int alertRunningSec;
     private KylinConfig kylinConfig;
     private ArrayList<Notifier> notifiers = new ArrayList<Notifier>();
+    private QueryProfiler profiler;
 
     public BadQueryDetector() {
         super("BadQueryDetector");
@@ -55,6 +56,7 @@ public class BadQueryDetector extends Thread {
         this.alertRunningSec = kylinConfig.getBadQueryDefaultAlertingSeconds();
 
         initNotifiers();
+        initProfiler();
     }
 
     public BadQueryDetector(long detectionInterval, int alertMB, int alertRunningSec) {
@@ -66,6 +68,7 @@ public class BadQueryDetector extends Thread {
         this.kylinConfig = KylinConfig.getInstanceFromEnv();
 
         initNotifiers();
+        initProfiler();
     }
 
     public static long getSystemAvailBytes() {
@@ -89,6 +92,19 @@ public class BadQueryDetector extends Thread {
         }
     }
 
+    private void initProfiler() {
+        if (kylinConfig.isQueryProfilerEnabled()) {
+            this.profiler = new QueryProfiler(kylinConfig);
+        }
+    }
+
+    /**
+     * @return null if the profiler is disabled
+     */
+    public QueryProfiler getProfiler() {
+        return profiler;
+    }
+
     public void registerNotifier(Notifier notifier) {
         notifiers.add(notifier);
     }
@@ -107,7 +123,16 @@ public class BadQueryDetector extends Thread {
     }
 
     public void queryStart(Thread thread, SQLRequest sqlRequest, String user) {
-        runningQueries.put(thread, new Entry(sqlRequest, user, thread));
+        queryStart(thread, sqlRequest, user, null);
+    }
+
+    /**
+     * @param queryId to find the sampled stacks of the query by, not profiled if null
+     */
+    public void queryStart(Thread thread, SQLRequest sqlRequest, String user, String queryId) {
+        runningQueries.put(thread, new Entry(sqlRequest, user, thread, queryId));
+        if (profiler != null && queryId != null)
+            profiler.queryStart(queryId, thread, sqlRequest.getProject(), sqlRequest.getSql(), user);
     }
 
     public void queryEnd(Thread thread) {
@@ -116,17 +141,24 @@ public class BadQueryDetector extends Thread {
 
     public void queryEnd(Thread thread, String badReason) {
         Entry entry = runningQueries.remove(thread);
-        
+        if (profiler != null && entry != null && entry.queryId != null)
+            profiler.queryEnd(entry.queryId);
+
         if (badReason != null)
             notify(badReason, entry);
     }
 
     public void run() {
+        if (profiler != null)
+            profiler.start();
+
         while (true) {
             try {
                 Thread.sleep(detectionInterval);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                if (profiler != null)
+                    profiler.interrupt();
                 // stop detection and exit
                 return;
             }
@@ -223,12 +255,14 @@ public class BadQueryDetector extends Thread {
         final long startTime;
         final Thread thread;
         final String user;
+        final String queryId;
 
-        Entry(SQLRequest sqlRequest, String user, Thread thread) {
+        Entry(SQLRequest sqlRequest, String user, Thread thread, String queryId) {
             this.sqlRequest = sqlRequest;
             this.startTime = System.currentTimeMillis();
             this.thread = thread;
             this.user = user;
+            this.queryId = queryId;
         }
 
         @Override
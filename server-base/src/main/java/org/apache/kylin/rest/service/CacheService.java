@@ -19,6 +19,7 @@
 package org.apache.kylin.rest.service;
 
 import java.io.IOException;
+import java.util.List;
 
 import javax.sql.DataSource;
 
@@ -119,6 +120,11 @@ public class CacheService extends BasicService implements InitializingBean {
         broadcaster.notifyListener(entity, event, cacheKey);
     }
 
+    public void notifyMetadataChanges(List<Broadcaster.BroadcastEvent> events) throws IOException {
+        Broadcaster broadcaster = Broadcaster.getInstance(getConfig());
+        broadcaster.notifyListeners(events);
+    }
+
     protected void cleanDataCache(String project) {
         if (cacheManager != null) {
             logger.info("cleaning cache for project " + project + " (currently remove all entries)");
@@ -21,6 +21,8 @@ package org.apache.kylin.rest.service;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
@@ -28,12 +30,15 @@ import org.apache.kylin.common.util.CliCommandExecutor;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.metadata.badquery.BadQueryHistory;
 import org.apache.kylin.rest.exception.BadRequestException;
+import org.apache.kylin.rest.exception.NotFoundException;
 import org.apache.kylin.rest.msg.Message;
 import org.apache.kylin.rest.msg.MsgPicker;
+import org.apache.kylin.rest.service.QueryProfiler.QueryProfile;
 import org.apache.kylin.rest.util.AclEvaluate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import com.google.common.io.Files;
@@ -53,6 +58,10 @@ public class DiagnosisService extends BasicService {
     @Autowired
     private JobService jobService;
 
+    @Autowired
+    @Qualifier("queryService")
+    private QueryService queryService;
+
     private String getDiagnosisPackageName(File destDir) {
         Message msg = MsgPicker.getMsg();
 
@@ -77,6 +86,32 @@ public class DiagnosisService extends BasicService {
         return getBadQueryHistoryManager().getBadQueriesForProject(project);
     }
 
+    /**
+     * The sampled queries of a project, empty if the profiler is disabled.
+     */
+    public List<QueryProfile> getQueryProfiles(String project) {
+        aclEvaluate.checkProjectOperationPermission(project);
+        QueryProfiler profiler = queryService.getBadQueryDetector().getProfiler();
+        if (profiler == null)
+            return Collections.emptyList();
+        return profiler.getProfiles(project);
+    }
+
+    /**
+     * The sampled stacks of a query, in collapsed stack format.
+     */
+    public String getQueryProfileStacks(String queryId) {
+        Message msg = MsgPicker.getMsg();
+
+        QueryProfiler profiler = queryService.getBadQueryDetector().getProfiler();
+        QueryProfile profile = profiler == null ? null : profiler.getProfile(queryId);
+        if (profile == null) {
+            throw new NotFoundException(String.format(msg.getQUERY_PROFILE_NOT_FOUND(), queryId));
+        }
+        aclEvaluate.checkProjectOperationPermission(profile.getProject());
+        return profile.toCollapsedStacks();
+    }
+
     public String dumpProjectDiagnosisInfo(String project) throws IOException {
         aclEvaluate.checkProjectOperationPermission(project);
         File exportPath = getDumpDir();
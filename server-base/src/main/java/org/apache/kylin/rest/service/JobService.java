@@ -21,6 +21,7 @@ package org.apache.kylin.rest.service;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
@@ -49,12 +50,14 @@ import org.apache.kylin.job.Scheduler;
 import org.apache.kylin.job.SchedulerFactory;
 import org.apache.kylin.job.constant.JobStatusEnum;
 import org.apache.kylin.job.constant.JobTimeFilterEnum;
+import org.apache.kylin.job.dao.JobSummary;
 import org.apache.kylin.job.engine.JobEngineConfig;
 import org.apache.kylin.job.exception.JobException;
 import org.apache.kylin.job.exception.SchedulerException;
 import org.apache.kylin.job.execution.AbstractExecutable;
 import org.apache.kylin.job.execution.CheckpointExecutable;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
+import org.apache.kylin.job.execution.ExecutableManager;
 import org.apache.kylin.job.execution.ExecutableState;
 import org.apache.kylin.job.execution.Output;
 import org.apache.kylin.job.lock.JobLock;
@@ -96,6 +99,14 @@ public class JobService extends BasicService implements InitializingBean {
 
     private static final Logger logger = LoggerFactory.getLogger(JobService.class);
 
+    private static final Comparator<JobSummary> LAST_MODIFIED_DESC = new Comparator<JobSummary>() {
+        @Override
+        public int compare(JobSummary o1, JobSummary o2) {
+            // as JobInstance.compareTo()
+            return Long.compare(o2.getOutputLastModified(), o1.getOutputLastModified());
+        }
+    };
+
     private JobLock jobLock;
 
     @Autowired
@@ -651,6 +662,9 @@ public class JobService extends BasicService implements InitializingBean {
             final JobTimeFilterEnum timeFilter) {
         Integer limit = (null == limitValue) ? 30 : limitValue;
         Integer offset = (null == offsetValue) ? 0 : offsetValue;
+        if (getConfig().isJobSummaryIndexEnabled()) {
+            return searchJobsOnSummaryIndex(cubeNameSubstring, projectName, statusList, limit, offset, timeFilter);
+        }
         List<JobInstance> jobs = searchJobsByCubeName(cubeNameSubstring, projectName, statusList, timeFilter);
 
         Collections.sort(jobs);
@@ -666,6 +680,113 @@ public class JobService extends BasicService implements InitializingBean {
         return jobs.subList(offset, offset + limit);
     }
 
+    /**
+     * Filters, sorts and paginates on the job summaries, only the jobs of the page are deserialized.
+     */
+    private List<JobInstance> searchJobsOnSummaryIndex(final String cubeNameSubstring, final String projectName,
+            final List<JobStatusEnum> statusList, int limit, int offset, final JobTimeFilterEnum timeFilter) {
+        if (null == projectName) {
+            aclEvaluate.checkIsGlobalAdmin();
+        } else {
+            aclEvaluate.checkProjectOperationPermission(projectName);
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(new Date());
+        long timeStartInMillis = getTimeStartInMillis(calendar, timeFilter);
+        long timeEndInMillis = Long.MAX_VALUE;
+        Set<ExecutableState> states = convertStatusEnumToStates(statusList);
+
+        List<JobSummary> cubingJobs = searchJobSummaries(cubeNameSubstring, null, states, timeStartInMillis,
+                timeEndInMillis, false, projectName, CubingJob.class);
+        List<JobSummary> checkpointJobs = searchJobSummaries(cubeNameSubstring, null, states, timeStartInMillis,
+                timeEndInMillis, false, projectName, CheckpointExecutable.class);
+        Set<String> checkpointJobIds = Sets.newHashSet();
+        for (JobSummary summary : checkpointJobs) {
+            checkpointJobIds.add(summary.getId());
+        }
+
+        List<JobSummary> summaries = Lists.newArrayList(cubingJobs);
+        summaries.addAll(checkpointJobs);
+        if (summaries.size() <= offset) {
+            return Collections.emptyList();
+        }
+        Collections.sort(summaries, LAST_MODIFIED_DESC);
+
+        List<JobInstance> results = Lists.newArrayList();
+        for (JobSummary summary : summaries.subList(offset, Math.min(summaries.size(), offset + limit))) {
+            JobInstance jobInstance = toJobInstance(summary, checkpointJobIds.contains(summary.getId()));
+            if (jobInstance != null) {
+                results.add(jobInstance);
+            }
+        }
+        return results;
+    }
+
+    private List<JobSummary> searchJobSummaries(final String cubeName, final String jobName,
+            final Set<ExecutableState> statusList, long timeStartInMillis, long timeEndInMillis,
+            final boolean nameExactMatch, final String projectName, Class<? extends AbstractExecutable> expectedClass) {
+        boolean filterProject = null != projectName && null != getProjectManager().getProject(projectName);
+        List<JobSummary> results = Lists.newArrayList();
+        for (JobSummary summary : getExecutableManager().getJobSummaries(timeStartInMillis, timeEndInMillis,
+                expectedClass)) {
+            if (summary.getCubeName() != null && !matchName(summary.getCubeName(), cubeName, nameExactMatch))
+                continue;
+            if (filterProject && !projectName.equalsIgnoreCase(summary.getProjectName()))
+                continue;
+            if (!statusList.contains(ExecutableState.valueOf(summary.getStatus())))
+                continue;
+            if (!matchName(summary.getName(), jobName, nameExactMatch))
+                continue;
+            results.add(summary);
+        }
+        return results;
+    }
+
+    private static boolean matchName(String name, String pattern, boolean exactMatch) {
+        if (StringUtils.isEmpty(pattern)) {
+            return true;
+        }
+        if (name == null) {
+            return false;
+        }
+        if (exactMatch) {
+            return name.equalsIgnoreCase(pattern);
+        } else {
+            return name.toLowerCase().contains(pattern.toLowerCase());
+        }
+    }
+
+    private List<JobInstance> toJobInstances(List<JobSummary> summaries, boolean checkpoint) {
+        List<JobInstance> results = Lists.newArrayListWithExpectedSize(summaries.size());
+        for (JobSummary summary : summaries) {
+            JobInstance jobInstance = toJobInstance(summary, checkpoint);
+            if (jobInstance != null) {
+                results.add(jobInstance);
+            }
+        }
+        return results;
+    }
+
+    private JobInstance toJobInstance(JobSummary summary, boolean checkpoint) {
+        ExecutableManager executableManager = getExecutableManager();
+        try {
+            AbstractExecutable job = executableManager.getAbstractExecutable(summary.getId(),
+                    checkpoint ? CheckpointExecutable.class : CubingJob.class);
+            if (job instanceof CheckpointExecutable) {
+                return JobInfoConverter.parseToJobInstanceQuietly((CheckpointExecutable) job,
+                        executableManager.getOutputsOf(job));
+            } else if (job instanceof CubingJob) {
+                return JobInfoConverter.parseToJobInstanceQuietly((CubingJob) job,
+                        executableManager.getOutputsOf(job));
+            }
+            // deleted since listed
+            return null;
+        } catch (RuntimeException e) {
+            logger.error("Failed to parse job instance: uuid={}", summary.getId(), e);
+            return null;
+        }
+    }
+
     public List<JobInstance> searchJobsByCubeName(final String cubeNameSubstring, final String projectName,
             final List<JobStatusEnum> statusList, final JobTimeFilterEnum timeFilter) {
         return searchJobsByCubeName(cubeNameSubstring, projectName, statusList, timeFilter, JobSearchMode.ALL);
@@ -717,6 +838,10 @@ public class JobService extends BasicService implements InitializingBean {
         long timeStartInMillis = getTimeStartInMillis(calendar, timeFilter);
         long timeEndInMillis = Long.MAX_VALUE;
         Set<ExecutableState> states = convertStatusEnumToStates(statusList);
+        if (getConfig().isJobSummaryIndexEnabled()) {
+            return toJobInstances(searchJobSummaries(cubeName, jobName, states, timeStartInMillis, timeEndInMillis,
+                    false, projectName, CubingJob.class), false);
+        }
         final Map<String, Output> allOutputs = getExecutableManager().getAllOutputs(timeStartInMillis, timeEndInMillis);
 
         return Lists
@@ -819,6 +944,10 @@ public class JobService extends BasicService implements InitializingBean {
         long timeStartInMillis = getTimeStartInMillis(calendar, timeFilter);
         long timeEndInMillis = Long.MAX_VALUE;
         Set<ExecutableState> states = convertStatusEnumToStates(statusList);
+        if (getConfig().isJobSummaryIndexEnabled()) {
+            return toJobInstances(searchJobSummaries(cubeName, jobName, states, timeStartInMillis, timeEndInMillis,
+                    false, projectName, CheckpointExecutable.class), true);
+        }
         final Map<String, Output> allOutputs = getExecutableManager().getAllOutputs(timeStartInMillis, timeEndInMillis);
 
         return Lists
@@ -916,6 +1045,17 @@ public class JobService extends BasicService implements InitializingBean {
 
     public List<CubingJob> listJobsByRealizationName(final String realizationName, final String projectName,
             final Set<ExecutableState> statusList) {
+        if (getConfig().isJobSummaryIndexEnabled()) {
+            List<CubingJob> results = Lists.newArrayList();
+            for (JobSummary summary : searchJobSummaries(realizationName, null, statusList, 0L, Long.MAX_VALUE, true,
+                    projectName, CubingJob.class)) {
+                AbstractExecutable job = getExecutableManager().getAbstractExecutable(summary.getId(), CubingJob.class);
+                if (job instanceof CubingJob) {
+                    results.add((CubingJob) job);
+                }
+            }
+            return results;
+        }
         return innerSearchCubingJobs(realizationName, null, statusList, 0L, Long.MAX_VALUE,
                 getExecutableManager().getAllOutputs(), true, projectName);
     }
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Samples the stacks of the running query threads periodically, and aggregates them per query in the collapsed
+ * stack format of flame graph tools, i.e. one line of "root;...;leaf count" per distinct stack.
+ * <p>
+ * All query threads are sampled by one ThreadMXBean call, i.e. one safepoint per sample, and only after running
+ * longer than a threshold. The profiles of the last finished queries are kept for retrieval.
+ */
+public class QueryProfiler extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryProfiler.class);
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ConcurrentMap<String, QueryProfile> runningProfiles = Maps.newConcurrentMap();
+    private final Cache<String, QueryProfile> finishedProfiles;
+    private final long sampleInterval;
+    private final long threshold;
+    private final int maxDepth;
+
+    public QueryProfiler(KylinConfig config) {
+        this(config.getQueryProfilerIntervalMs(), config.getQueryProfilerThresholdMs(),
+                config.getQueryProfilerStackTraceDepth(), config.getQueryProfilerHistoryNum());
+    }
+
+    public QueryProfiler(long sampleInterval, long threshold, int maxDepth, int historyNum) {
+        super("QueryProfiler");
+        this.setDaemon(true);
+        this.sampleInterval = sampleInterval;
+        this.threshold = threshold;
+        this.maxDepth = maxDepth;
+        this.finishedProfiles = CacheBuilder.newBuilder().maximumSize(historyNum).build();
+    }
+
+    public void queryStart(String queryId, Thread thread, String project, String sql, String user) {
+        runningProfiles.put(queryId, new QueryProfile(queryId, thread, project, sql, user));
+    }
+
+    public void queryEnd(String queryId) {
+        QueryProfile profile = runningProfiles.remove(queryId);
+        if (profile == null)
+            return;
+
+        profile.endTime = System.currentTimeMillis();
+        // keep only the queries ever sampled
+        if (profile.getSampleCount() > 0)
+            finishedProfiles.put(queryId, profile);
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(sampleInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // stop sampling and exit
+                return;
+            }
+
+            try {
+                sample();
+            } catch (Exception ex) {
+                logger.error("", ex);
+            }
+        }
+    }
+
+    void sample() {
+        long now = System.currentTimeMillis();
+        List<QueryProfile> profiles = Lists.newArrayList();
+        for (QueryProfile profile : runningProfiles.values()) {
+            if (now - profile.startTime >= threshold)
+                profiles.add(profile);
+        }
+        if (profiles.isEmpty())
+            return;
+
+        long[] threadIds = new long[profiles.size()];
+        for (int i = 0; i < threadIds.length; i++) {
+            threadIds[i] = profiles.get(i).threadId;
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadIds, maxDepth);
+        for (int i = 0; i < infos.length; i++) {
+            // null if the thread died meanwhile
+            if (infos[i] != null)
+                profiles.get(i).addSample(infos[i].getStackTrace(), maxDepth);
+        }
+    }
+
+    public QueryProfile getProfile(String queryId) {
+        QueryProfile profile = runningProfiles.get(queryId);
+        return profile != null ? profile : finishedProfiles.getIfPresent(queryId);
+    }
+
+    /**
+     * The running and the recently finished profiles of a project, the latest first.
+     */
+    public List<QueryProfile> getProfiles(String project) {
+        List<QueryProfile> result = Lists.newArrayList();
+        for (QueryProfile profile : runningProfiles.values()) {
+            if (profile.getSampleCount() > 0 && profile.project.equals(project))
+                result.add(profile);
+        }
+        for (QueryProfile profile : finishedProfiles.asMap().values()) {
+            if (profile.project.equals(project))
+                result.add(profile);
+        }
+        Collections.sort(result, new Comparator<QueryProfile>() {
+            @Override
+            public int compare(QueryProfile o1, QueryProfile o2) {
+                return Long.compare(o2.startTime, o1.startTime);
+            }
+        });
+        return result;
+    }
+
+    public static class QueryProfile {
+        private final String queryId;
+        private final long threadId;
+        private final String threadName;
+        private final String project;
+        private final String sql;
+        private final String user;
+        private final long startTime;
+        private volatile long endTime;
+
+        // written by the sampler, read by the diagnosis requests
+        private final Map<String, Long> stacks = Maps.newHashMap();
+        private long sampleCount;
+
+        QueryProfile(String queryId, Thread thread, String project, String sql, String user) {
+            this.queryId = queryId;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.project = project == null ? "" : project;
+            this.sql = sql;
+            this.user = user;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        synchronized void addSample(StackTraceElement[] stackTrace, int maxDepth) {
+            if (stackTrace.length == 0)
+                return;
+
+            StringBuilder buf = new StringBuilder();
+            // the root frames are cut off
+            if (stackTrace.length >= maxDepth)
+                buf.append("[truncated];");
+            for (int i = stackTrace.length - 1; i >= 0; i--) {
+                buf.append(stackTrace[i].getClassName()).append('.').append(stackTrace[i].getMethodName());
+                if (i > 0)
+                    buf.append(';');
+            }
+            String stack = buf.toString();
+            Long count = stacks.get(stack);
+            stacks.put(stack, count == null ? 1L : count + 1);
+            sampleCount++;
+        }
+
+        /**
+         * The samples in collapsed stack format, ready for flamegraph.pl and the like.
+         */
+        public synchronized String toCollapsedStacks() {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(stacks.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+                @Override
+                public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                    return Long.compare(o2.getValue(), o1.getValue());
+                }
+            });
+
+            StringBuilder buf = new StringBuilder();
+            for (Map.Entry<String, Long> entry : entries) {
+                buf.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+            return buf.toString();
+        }
+
+        public String getQueryId() {
+            return queryId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public boolean isRunning() {
+            return endTime == 0;
+        }
+
+        public long getRunningMillis() {
+            return (isRunning() ? System.currentTimeMillis() : endTime) - startTime;
+        }
+
+        public synchronized long getSampleCount() {
+            return sampleCount;
+        }
+    }
+}
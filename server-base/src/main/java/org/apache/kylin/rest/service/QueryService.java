@@ -56,6 +56,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.persistence.ResourceStore;
@@ -153,6 +154,10 @@ public class QueryService extends BasicService {
         badQueryDetector.start();
     }
 
+    public BadQueryDetector getBadQueryDetector() {
+        return badQueryDetector;
+    }
+
     protected static void close(ResultSet resultSet, Statement stat, Connection conn) {
         OLAPContext.clearParameter();
         DBUtils.closeQuietly(resultSet);
@@ -177,7 +182,8 @@ public class QueryService extends BasicService {
         SQLResponse ret = null;
         try {
             final String user = SecurityContextHolder.getContext().getAuthentication().getName();
-            badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
+            badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user,
+                    QueryContext.current().getQueryId());
 
             ret = queryWithSqlMassage(sqlRequest);
             return ret;
@@ -504,6 +510,9 @@ public class QueryService extends BasicService {
                 QueryRequestLimits.closeQueryRequest(projectInstance.getName(), maxConcurrentQuery);
             }
 
+            sqlResponse.setTimeline(
+                    BackdoorToggles.getQueryTimeline() ? queryContext.getTimeline().getStageSummaries() : null);
+
             logQuery(sqlRequest, sqlResponse);
 
             QueryMetricsFacade.updateMetrics(sqlRequest, sqlResponse);
@@ -852,6 +861,10 @@ public class QueryService extends BasicService {
                 return getPrepareOnlySqlResponse(correctedSql, conn, isPushDown, results, columnMetas);
             }
 
+            QueryTimeline timeline = QueryContext.current().getTimeline();
+            long executeStart = System.nanoTime();
+            timeline.begin(QueryTimeline.Stage.SQL_PARSE);
+
             if (isPrepareStatementWithParams(sqlRequest)) {
 
                 stat = conn.prepareStatement(correctedSql); // to be closed in the finally
@@ -891,6 +904,10 @@ public class QueryService extends BasicService {
                 results.add(oneRow);
             }
 
+            timeline.recordRemainder(QueryTimeline.Stage.CALCITE_ENUMERABLE, executeStart, System.nanoTime(),
+                    QueryTimeline.Stage.SQL_PARSE, QueryTimeline.Stage.SQL_PLAN,
+                    QueryTimeline.Stage.REALIZATION_ROUTING, QueryTimeline.Stage.STORAGE_ENUMERATE);
+
         } catch (SQLException sqlException) {
             Pair<List<List<String>>, List<SelectedColumnMeta>> r = null;
             try {
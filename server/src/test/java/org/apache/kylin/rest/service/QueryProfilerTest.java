@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.kylin.rest.service.QueryProfiler.QueryProfile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryProfilerTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch finish = new CountDownLatch(1);
+    private Thread queryThread;
+
+    @Before
+    public void before() throws InterruptedException {
+        queryThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waitInQuery();
+            }
+        });
+        queryThread.start();
+        started.await();
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        finish.countDown();
+        queryThread.join();
+    }
+
+    private void waitInQuery() {
+        started.countDown();
+        try {
+            finish.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testSample() {
+        QueryProfiler profiler = new QueryProfiler(50, 0, 128, 10);
+        profiler.queryStart("q1", queryThread, "default", "select 1", "ADMIN");
+        for (int i = 0; i < 5; i++) {
+            profiler.sample();
+        }
+
+        QueryProfile profile = profiler.getProfile("q1");
+        assertEquals(5, profile.getSampleCount());
+        assertTrue(profile.isRunning());
+        assertEquals(1, profiler.getProfiles("default").size());
+        assertTrue(profiler.getProfiles("other").isEmpty());
+
+        // one distinct stack, root first, the leaf last
+        String stacks = profile.toCollapsedStacks();
+        assertEquals(1, stacks.split("\n").length);
+        assertTrue(stacks, stacks.startsWith("java.lang.Thread.run;"));
+        assertTrue(stacks, stacks.contains("QueryProfilerTest.waitInQuery;java.util.concurrent.CountDownLatch.await"));
+        assertTrue(stacks, stacks.endsWith(" 5\n"));
+
+        // kept after the query ends
+        profiler.queryEnd("q1");
+        assertFalse(profiler.getProfile("q1").isRunning());
+        assertEquals(1, profiler.getProfiles("default").size());
+    }
+
+    @Test
+    public void testThreshold() {
+        QueryProfiler profiler = new QueryProfiler(50, 60000, 128, 10);
+        profiler.queryStart("q1", queryThread, "default", "select 1", "ADMIN");
+        profiler.sample();
+        assertEquals(0, profiler.getProfile("q1").getSampleCount());
+        assertTrue(profiler.getProfiles("default").isEmpty());
+
+        // not kept, never sampled
+        profiler.queryEnd("q1");
+        assertNull(profiler.getProfile("q1"));
+    }
+
+    @Test
+    public void testTruncated() {
+        QueryProfiler profiler = new QueryProfiler(50, 0, 2, 10);
+        profiler.queryStart("q1", queryThread, "default", "select 1", "ADMIN");
+        profiler.sample();
+        String stacks = profiler.getProfile("q1").toCollapsedStacks();
+        assertTrue(stacks, stacks.startsWith("[truncated];"));
+        assertEquals(3, stacks.split(";").length);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.jdbc;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.job.common.PatternedLogger;
+import org.apache.kylin.job.exception.ExecuteException;
+import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.ExecutableContext;
+import org.apache.kylin.job.execution.ExecuteResult;
+import org.apache.kylin.source.hive.DBConnConf;
+import org.apache.kylin.source.jdbc.JdbcSplitPlanner.JdbcSplit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts the flat table from the JDBC source in parallel splits, the built-in alternative to sqoop.
+ */
+public class JdbcExtractStep extends AbstractExecutable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcExtractStep.class);
+    private final PatternedLogger stepLogger = new PatternedLogger(logger);
+
+    public JdbcExtractStep() {
+    }
+
+    protected long extract(KylinConfig config) throws IOException {
+        DBConnConf dbconf = new DBConnConf(config.getJdbcSourceDriver(), config.getJdbcSourceConnectionUrl(),
+                config.getJdbcSourceUser(), config.getJdbcSourcePass());
+        int fetchSize = config.getJdbcSourceFetchSize();
+
+        List<JdbcSplit> splits = new JdbcSplitPlanner(dbconf, fetchSize).plan(getSampleSql(), getSplitColumn(),
+                config.getJdbcSourceExtractSplits(), config.getJdbcSourceExtractSampleSize());
+        stepLogger.log(String.format("extract %s in %d splits: %s", getSelectSql(), splits.size(), splits));
+
+        Path outputDir = new Path(getOutputDir());
+        JdbcFlatTableExtractor extractor = new JdbcFlatTableExtractor(dbconf, fetchSize,
+                config.getJdbcSourceFieldDelimiter(), config.getJdbcSourceExtractThreads());
+        long rows = extractor.extract(getSelectSql(), splits, HadoopUtil.getFileSystem(outputDir), outputDir);
+        stepLogger.log(String.format("extracted %d rows to %s", rows, outputDir));
+        return rows;
+    }
+
+    @Override
+    protected ExecuteResult doWork(ExecutableContext context) throws ExecuteException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        try {
+            extract(config);
+            return new ExecuteResult(ExecuteResult.State.SUCCEED, stepLogger.getBufferedLog());
+
+        } catch (Exception e) {
+            logger.error("job:" + getId() + " execute finished with exception", e);
+            return new ExecuteResult(ExecuteResult.State.ERROR, stepLogger.getBufferedLog(), e);
+        }
+    }
+
+    public void setSelectSql(String sql) {
+        setParam("selectSql", sql);
+    }
+
+    public String getSelectSql() {
+        return getParam("selectSql");
+    }
+
+    public void setSampleSql(String sql) {
+        setParam("sampleSql", sql);
+    }
+
+    public String getSampleSql() {
+        return getParam("sampleSql");
+    }
+
+    public void setSplitColumn(String column) {
+        setParam("splitColumn", column);
+    }
+
+    public String getSplitColumn() {
+        return getParam("splitColumn");
+    }
+
+    public void setOutputDir(String dir) {
+        setParam("outputDir", dir);
+    }
+
+    public String getOutputDir() {
+        return getParam("outputDir");
+    }
+}
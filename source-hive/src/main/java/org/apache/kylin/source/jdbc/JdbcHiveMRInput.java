@@ -61,7 +61,11 @@ public class JdbcHiveMRInput extends HiveMRInput {
             final String hiveInitStatements = JoinedFlatTable.generateHiveInitStatements(flatTableDatabase);
             final String jobWorkingDir = getJobWorkingDir(jobFlow);
 
-            jobFlow.addTask(createSqoopToFlatHiveStep(jobWorkingDir, cubeName));
+            if (getConfig().isJdbcSourceNativeExtractEnabled()) {
+                jobFlow.addTask(createJdbcExtractStep(jobWorkingDir));
+            } else {
+                jobFlow.addTask(createSqoopToFlatHiveStep(jobWorkingDir, cubeName));
+            }
             jobFlow.addTask(createFlatHiveTableFromFiles(hiveInitStatements, jobWorkingDir));
         }
 
@@ -176,6 +180,36 @@ public class JdbcHiveMRInput extends HiveMRInput {
             return step;
         }
 
+        private AbstractExecutable createJdbcExtractStep(String jobWorkingDir) {
+            PartitionDesc partitionDesc = flatDesc.getDataModel().getPartitionDesc();
+            String partCol = null;
+            String partitionString = null;
+
+            if (partitionDesc.isPartitioned()) {
+                partCol = partitionDesc.getPartitionDateColumn();//tablename.colname
+                partitionString = partitionDesc.getPartitionConditionBuilder().buildDateRangeCondition(partitionDesc,
+                        flatDesc.getSegRange());
+            }
+
+            // sample the split column the same way sqoop's boundary query reads it
+            TblColRef splitColRef = determineSplitColumn();
+            String splitTable = splitColRef.getTableRef().getTableName();
+            String splitColumn = splitColRef.getName();
+            String splitDatabase = splitColRef.getColumnDesc().getTable().getDatabase();
+            String sampleSql = String.format("SELECT %s FROM %s.%s", splitColumn, splitDatabase, splitTable);
+            if (partitionString != null) {
+                sampleSql += " WHERE " + partitionString;
+            }
+
+            JdbcExtractStep step = new JdbcExtractStep();
+            step.setSelectSql(JoinedFlatTable.generateSelectDataStatement(flatDesc, true, new String[] { partCol }));
+            step.setSampleSql(sampleSql);
+            step.setSplitColumn(splitTable + "." + splitColumn);
+            step.setOutputDir(JoinedFlatTable.getTableDir(flatDesc, jobWorkingDir));
+            step.setName(ExecutableConstants.STEP_NAME_EXTRACT_JDBC_TO_FLAT_HIVE_TABLE);
+            return step;
+        }
+
         @Override
         protected void addStepPhase1_DoMaterializeLookupTable(DefaultChainedExecutable jobFlow) {
             // skip
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.kylin.source.hive.DBConnConf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Splits a query into ranges of a split column holding about the same number of rows.
+ * <p>
+ * Unlike the min/max boundary query of sqoop, the boundaries are quantiles of a random sample of the split
+ * column, so skewed or sparse columns still give balanced splits. Rows of a single very frequent value can not
+ * be split by range though, and end up in one split.
+ * <p>
+ * The samples are ordered by the database rather than in Java, the collation of a string column may differ from
+ * {@link String#compareTo}, and the ranges are evaluated by the database.
+ */
+public class JdbcSplitPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSplitPlanner.class);
+
+    private final DBConnConf dbconf;
+    private final int fetchSize;
+    private final Random random;
+
+    public JdbcSplitPlanner(DBConnConf dbconf, int fetchSize) {
+        this(dbconf, fetchSize, new Random());
+    }
+
+    JdbcSplitPlanner(DBConnConf dbconf, int fetchSize, Random random) {
+        this.dbconf = dbconf;
+        this.fetchSize = fetchSize;
+        this.random = random;
+    }
+
+    /**
+     * @param sampleSql a query returning the split column values as its first column, it is ordered by that column
+     * @param splitColumn the split column as referred in the query to split
+     * @param splitNum the number of splits wanted, fewer are returned if the column has fewer distinct values
+     * @param sampleSize the number of values sampled
+     */
+    public List<JdbcSplit> plan(String sampleSql, String splitColumn, int splitNum, int sampleSize)
+            throws IOException {
+        List<Object> boundaries = getBoundaries(sample(sampleSql, sampleSize), splitNum);
+        List<JdbcSplit> splits = toSplits(splitColumn, boundaries);
+        logger.info("Split on {} by boundaries {}", splitColumn, boundaries);
+        return splits;
+    }
+
+    // reservoir sampling, a single pass over the split column in the order of the database
+    List<Object> sample(String sampleSql, int sampleSize) throws IOException {
+        TreeMap<Long, Object> samples = new TreeMap<>(); // rank in the ordered column ==> value
+        long[] ranks = new long[sampleSize];
+        String orderedSql = sampleSql + " ORDER BY 1";
+        Connection con = SqlUtil.getConnection(dbconf);
+        PreparedStatement ps = null;
+        try {
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(orderedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ResultSet rs = ps.executeQuery();
+            long seen = 0;
+            while (rs.next()) {
+                Object value = rs.getObject(1);
+                if (value == null)
+                    continue;
+
+                seen++;
+                if (samples.size() < sampleSize) {
+                    ranks[samples.size()] = seen;
+                    samples.put(seen, value);
+                } else {
+                    long r = (long) (random.nextDouble() * seen);
+                    if (r < sampleSize) {
+                        samples.remove(ranks[(int) r]);
+                        ranks[(int) r] = seen;
+                        samples.put(seen, value);
+                    }
+                }
+            }
+            logger.info("Sampled {} of {} values by {}", samples.size(), seen, orderedSql);
+        } catch (SQLException e) {
+            throw new IOException(String.format("error while exec %s", orderedSql), e);
+        } finally {
+            SqlUtil.closeResources(con, ps);
+        }
+        return Lists.newArrayList(samples.values());
+    }
+
+    /**
+     * The distinct quantiles dividing the samples, already in the order of the database, into splitNum parts.
+     * <p>
+     * Values equal in the collation of the database but not in Java, e.g. "a" and "A" of a case insensitive column,
+     * may both become boundaries, that only leaves an empty split between them.
+     */
+    static List<Object> getBoundaries(List<Object> sorted, int splitNum) {
+        List<Object> boundaries = Lists.newArrayList();
+        for (int i = 1; i < splitNum && !sorted.isEmpty(); i++) {
+            Object value = sorted.get((int) ((long) i * sorted.size() / splitNum));
+            if (value.equals(sorted.get(0)))
+                continue; // nothing but nulls below the minimum
+            if (boundaries.isEmpty() || !value.equals(boundaries.get(boundaries.size() - 1)))
+                boundaries.add(value);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Half open ranges between the boundaries, the first one also takes the nulls.
+     */
+    static List<JdbcSplit> toSplits(String splitColumn, List<Object> boundaries) {
+        List<JdbcSplit> splits = Lists.newArrayList();
+        if (boundaries.isEmpty()) {
+            splits.add(new JdbcSplit("1=1", new Object[0]));
+            return splits;
+        }
+
+        splits.add(new JdbcSplit(String.format("(%s < ? OR %s IS NULL)", splitColumn, splitColumn),
+                new Object[] { boundaries.get(0) }));
+        for (int i = 1; i < boundaries.size(); i++) {
+            splits.add(new JdbcSplit(String.format("%s >= ? AND %s < ?", splitColumn, splitColumn),
+                    new Object[] { boundaries.get(i - 1), boundaries.get(i) }));
+        }
+        splits.add(new JdbcSplit(String.format("%s >= ?", splitColumn),
+                new Object[] { boundaries.get(boundaries.size() - 1) }));
+        return splits;
+    }
+
+    /**
+     * A condition on the split column, to be appended to the WHERE clause of the query, and its parameters.
+     */
+    public static class JdbcSplit {
+        private final String condition;
+        private final Object[] params;
+
+        public JdbcSplit(String condition, Object[] params) {
+            this.condition = condition;
+            this.params = params;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+
+        public Object[] getParams() {
+            return params;
+        }
+
+        @Override
+        public String toString() {
+            return condition + " " + Arrays.toString(params);
+        }
+    }
+}
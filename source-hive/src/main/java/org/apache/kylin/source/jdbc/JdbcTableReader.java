@@ -20,6 +20,7 @@ package org.apache.kylin.source.jdbc;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -38,6 +39,7 @@ public class JdbcTableReader implements TableReader {
 
     private String dbName;
     private String tableName;
+    private String sql;
 
     private DBConnConf dbconf;
     private Connection jdbcCon;
@@ -61,7 +63,7 @@ public class JdbcTableReader implements TableReader {
         String jdbcPass = config.getJdbcSourcePass();
         dbconf = new DBConnConf(driverClass, connectionUrl, jdbcUser, jdbcPass);
         jdbcCon = SqlUtil.getConnection(dbconf);
-        String sql = String.format("select * from %s.%s", dbName, tableName);
+        sql = String.format("select * from %s.%s", dbName, tableName);
         try {
             statement = jdbcCon.createStatement();
             rs = statement.executeQuery(sql);
@@ -71,6 +73,38 @@ public class JdbcTableReader implements TableReader {
         }
     }
 
+    /**
+     * Constructor for streaming the result of a query, the parameters are bound in order
+     * <p>
+     * Some drivers only stream with extra settings, e.g. MySQL needs "useCursorFetch=true" in the url
+     * @param dbconf
+     * @param sql
+     * @param params
+     * @param fetchSize
+     * @throws IOException
+     */
+    public JdbcTableReader(DBConnConf dbconf, String sql, Object[] params, int fetchSize) throws IOException {
+        this.dbconf = dbconf;
+        this.sql = sql;
+        jdbcCon = SqlUtil.getConnection(dbconf);
+        try {
+            // PostgreSQL only uses a cursor outside of auto-commit
+            jdbcCon.setAutoCommit(false);
+            PreparedStatement ps = jdbcCon.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement = ps;
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            rs = ps.executeQuery();
+            colCount = rs.getMetaData().getColumnCount();
+        } catch (SQLException e) {
+            SqlUtil.closeResources(jdbcCon, statement);
+            throw new IOException(String.format("error while exec %s", sql), e);
+        }
+    }
+
     @Override
     public boolean next() throws IOException {
         try {
@@ -106,6 +140,8 @@ public class JdbcTableReader implements TableReader {
     }
 
     public String toString() {
+        if (tableName == null)
+            return "jdbc query reader for: " + sql;
         return "jdbc table reader for: " + dbName + "." + tableName;
     }
 }
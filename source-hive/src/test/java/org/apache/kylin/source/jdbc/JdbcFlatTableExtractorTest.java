@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.jdbc;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.source.hive.DBConnConf;
+import org.apache.kylin.source.jdbc.JdbcSplitPlanner.JdbcSplit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+public class JdbcFlatTableExtractorTest {
+
+    private DBConnConf dbconf = new DBConnConf("org.h2.Driver", "jdbc:h2:mem:extractor_test;DB_CLOSE_DELAY=-1",
+            "sa", "");
+    private Connection con;
+    private File outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        con = SqlUtil.getConnection(dbconf);
+        SqlUtil.execUpdateSQL(con, "CREATE TABLE DEFAULT_TEST (ID INT, NAME VARCHAR(32), PRICE DECIMAL(10,2))");
+        StringBuilder sql = new StringBuilder("INSERT INTO DEFAULT_TEST VALUES (NULL, 'none', NULL)");
+        for (int i = 0; i < 1000; i++) {
+            sql.append(", (").append(i).append(", 'n").append(i).append("', ").append(i).append(".5)");
+        }
+        SqlUtil.execUpdateSQL(con, sql.toString());
+        outputDir = File.createTempFile("jdbc_extract", "");
+        FileUtils.forceDelete(outputDir);
+    }
+
+    @After
+    public void after() throws Exception {
+        SqlUtil.execUpdateSQL(con, "DROP TABLE DEFAULT_TEST");
+        SqlUtil.closeResources(con, null);
+        FileUtils.deleteQuietly(outputDir);
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        List<JdbcSplit> splits = new JdbcSplitPlanner(dbconf, 100, new Random(1))
+                .plan("SELECT ID FROM DEFAULT_TEST", "ID", 4, 200);
+        Assert.assertEquals(4, splits.size());
+
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        JdbcFlatTableExtractor extractor = new JdbcFlatTableExtractor(dbconf, 100, "|", 2);
+        String selectSql = "SELECT ID, NAME, PRICE FROM DEFAULT_TEST WHERE 1=1";
+        Assert.assertEquals(1001, extractor.extract(selectSql, splits, fs, new Path(outputDir.getAbsolutePath())));
+
+        List<String> lines = readParts();
+        Assert.assertEquals(1001, lines.size());
+        Collections.sort(lines);
+        Assert.assertEquals("0|n0|0.50", lines.get(0));
+        Assert.assertEquals("|none|", lines.get(1000));
+
+        // a retry starts over, the files of the last attempt are gone
+        long rows = extractor.extract(selectSql, splits.subList(0, 1), fs, new Path(outputDir.getAbsolutePath()));
+        Assert.assertEquals(rows, readParts().size());
+        Assert.assertEquals(1, outputDir.listFiles().length - countCrcFiles());
+    }
+
+    private List<String> readParts() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        for (File file : outputDir.listFiles()) {
+            if (file.getName().startsWith("part-m-"))
+                lines.addAll(FileUtils.readLines(file, Charsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private int countCrcFiles() {
+        int count = 0;
+        for (File file : outputDir.listFiles()) {
+            if (file.getName().endsWith(".crc"))
+                count++;
+        }
+        return count;
+    }
+}
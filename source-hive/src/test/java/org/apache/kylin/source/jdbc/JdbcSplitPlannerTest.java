@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.source.hive.DBConnConf;
+import org.apache.kylin.source.jdbc.JdbcSplitPlanner.JdbcSplit;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class JdbcSplitPlannerTest {
+
+    private static final int ROWS = 10000;
+    private static final int NULLS = 50;
+
+    private static DBConnConf dbconf = new DBConnConf("org.h2.Driver",
+            "jdbc:h2:mem:split_planner_test;DB_CLOSE_DELAY=-1", "sa", "");
+    private static Connection con;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        con = SqlUtil.getConnection(dbconf);
+        SqlUtil.execUpdateSQL(con, "CREATE TABLE DEFAULT_TEST (ID BIGINT, NAME VARCHAR(32))");
+
+        // skewed, most ids are far above the few small ones, which puts them in one split of sqoop's min/max
+        PreparedStatement ps = con.prepareStatement("INSERT INTO DEFAULT_TEST VALUES (?, ?)");
+        for (int i = 0; i < ROWS + NULLS; i++) {
+            if (i < NULLS) {
+                ps.setObject(1, null);
+            } else if (i < NULLS + 100) {
+                ps.setLong(1, i);
+            } else {
+                ps.setLong(1, 100000000L + i);
+            }
+            ps.setString(2, "name" + i);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+
+        // case insensitive, "B" is after "a" in the database but before it in Java
+        SqlUtil.execUpdateSQL(con, "CREATE TABLE CI_TEST (NAME VARCHAR_IGNORECASE(32))");
+        ps = con.prepareStatement("INSERT INTO CI_TEST VALUES (?)");
+        for (int i = 0; i < ROWS; i++) {
+            String name = (char) ('a' + i % 26) + String.valueOf(i);
+            ps.setString(1, i % 2 == 0 ? name.toUpperCase() : name);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        SqlUtil.execUpdateSQL(con, "DROP TABLE DEFAULT_TEST");
+        SqlUtil.execUpdateSQL(con, "DROP TABLE CI_TEST");
+        SqlUtil.closeResources(con, null);
+    }
+
+    @Test
+    public void testBalancedSplits() throws Exception {
+        JdbcSplitPlanner planner = new JdbcSplitPlanner(dbconf, 1000, new Random(1));
+        List<JdbcSplit> splits = planner.plan("SELECT ID FROM DEFAULT_TEST", "ID", 8, 1000);
+        Assert.assertEquals(8, splits.size());
+
+        long total = 0;
+        for (JdbcSplit split : splits) {
+            long count = count("DEFAULT_TEST", split);
+            // +-50% of the even share, sqoop would put nearly all rows in the last split
+            Assert.assertTrue(split + " has " + count + " rows", count > ROWS / 8 / 2 && count < ROWS / 8 * 3 / 2);
+            total += count;
+        }
+        // every row in exactly one split, nulls included
+        Assert.assertEquals(ROWS + NULLS, total);
+    }
+
+    @Test
+    public void testFewDistinctValues() throws Exception {
+        JdbcSplitPlanner planner = new JdbcSplitPlanner(dbconf, 1000, new Random(1));
+        List<JdbcSplit> splits = planner.plan("SELECT ID FROM DEFAULT_TEST WHERE ID < 3", "ID", 8, 1000);
+        Assert.assertEquals(3, splits.size());
+
+        splits = planner.plan("SELECT ID FROM DEFAULT_TEST WHERE ID < 0", "ID", 8, 1000);
+        Assert.assertEquals(1, splits.size());
+        Assert.assertEquals(ROWS + NULLS, count("DEFAULT_TEST", splits.get(0)));
+    }
+
+    @Test
+    public void testCaseInsensitiveSplits() throws Exception {
+        JdbcSplitPlanner planner = new JdbcSplitPlanner(dbconf, 1000, new Random(1));
+        List<JdbcSplit> splits = planner.plan("SELECT NAME FROM CI_TEST", "NAME", 8, 1000);
+        Assert.assertEquals(8, splits.size());
+
+        long total = 0;
+        for (JdbcSplit split : splits) {
+            long count = count("CI_TEST", split);
+            Assert.assertTrue(split + " has " + count + " rows", count > ROWS / 8 / 2 && count < ROWS / 8 * 3 / 2);
+            total += count;
+        }
+        // the ranges in the order of Java would overlap and duplicate rows
+        Assert.assertEquals(ROWS, total);
+    }
+
+    @Test
+    public void testBoundaries() {
+        List<Object> samples = Lists.<Object> newArrayList(1L, 1L, 1L, 1L, 2L, 3L, 4L, 5L);
+        Assert.assertEquals(Arrays.<Object> asList(2L, 4L), JdbcSplitPlanner.getBoundaries(samples, 4));
+        Assert.assertEquals(Arrays.<Object> asList(), JdbcSplitPlanner.getBoundaries(samples, 1));
+        Assert.assertEquals(Arrays.<Object> asList(), JdbcSplitPlanner.getBoundaries(Lists.newArrayList(), 4));
+
+        // in the order of the database, not sorted again
+        samples = Lists.<Object> newArrayList("a", "B", "c", "D");
+        Assert.assertEquals(Arrays.<Object> asList("c"), JdbcSplitPlanner.getBoundaries(samples, 2));
+    }
+
+    private long count(String table, JdbcSplit split) throws Exception {
+        PreparedStatement ps = con.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE 1=1 AND "
+                + split.getCondition());
+        try {
+            Object[] params = split.getParams();
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } finally {
+            ps.close();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
+import org.apache.kylin.common.util.StreamingMessageRow;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Same as {@link TimedJsonStreamParser}, but parses the message on the Jackson token stream instead of binding it
+ * to maps.
+ * <p>
+ * The column paths, including the embedded ones like "user_id", are compiled into a trie of property names when
+ * the parser is created. Parsing walks the tokens once, follows the trie and skips the subtrees no column needs,
+ * and only converts the needed scalars to string, into a value buffer reused across messages. A property is
+ * bound to a Java object only if a column takes a whole JSON object or array as its value.
+ * <p>
+ * Property names match case-insensitively and a top level property takes precedence over an embedded path of the
+ * same name, as in TimedJsonStreamParser.
+ */
+public final class TimedJsonTokenStreamParser extends StreamingParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimedJsonTokenStreamParser.class);
+
+    private static final int NAME_CACHE_MAX = 1024;
+
+    private final List<TblColRef> allColumns;
+    private final AbstractTimeParser streamTimeParser;
+    private final JsonFactory jsonFactory;
+    private final ObjectMapper mapper; // binds object and array values only
+
+    private final PathNode root = new PathNode(null);
+    private final List<PathNode> targets = new ArrayList<>();
+
+    // per column, by column index
+    private final String[] columnNames;
+    private final boolean[] isDerivedTime;
+    private final PathNode[] directNodes;
+    private final PathNode[][] embeddedPaths;
+    private final PathNode tsNode;
+
+    // the value buffer, reused across messages; a slot holds a value of the current message only if seq matches
+    private final String[] values;
+    private final int[] valueSeq;
+    private int seq;
+
+    public TimedJsonTokenStreamParser(List<TblColRef> allColumns, Map<String, String> properties) {
+        this.allColumns = allColumns;
+        if (properties == null) {
+            properties = StreamingParser.defaultProperties;
+        }
+
+        String tsColName = properties.get(PROPERTY_TS_COLUMN_NAME);
+        String tsParser = properties.get(PROPERTY_TS_PARSER);
+        String separator = properties.get(EMBEDDED_PROPERTY_SEPARATOR);
+
+        if (!StringUtils.isEmpty(tsParser)) {
+            try {
+                Class clazz = Class.forName(tsParser);
+                Constructor constructor = clazz.getConstructor(Map.class);
+                streamTimeParser = (AbstractTimeParser) constructor.newInstance(properties);
+            } catch (Exception e) {
+                throw new IllegalStateException("Invalid StreamingConfig, tsParser " + tsParser + ", parserProperties " + properties + ".", e);
+            }
+        } else {
+            throw new IllegalStateException("Invalid StreamingConfig, tsParser " + tsParser + ", parserProperties " + properties + ".");
+        }
+
+        mapper = new ObjectMapper();
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.disable(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE);
+        mapper.enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY);
+        jsonFactory = mapper.getFactory();
+
+        // compile the paths
+        int n = allColumns.size();
+        columnNames = new String[n];
+        isDerivedTime = new boolean[n];
+        directNodes = new PathNode[n];
+        embeddedPaths = new PathNode[n][];
+        for (int i = 0; i < n; i++) {
+            String name = allColumns.get(i).getName().toLowerCase();
+            columnNames[i] = name;
+            isDerivedTime[i] = derivedTimeColumns.containsKey(name);
+            if (isDerivedTime[i])
+                continue;
+
+            directNodes[i] = target(root.addChild(name));
+            if (separator != null && name.contains(separator)) {
+                String[] names = name.split(separator);
+                if (names.length > 0) {
+                    PathNode[] path = new PathNode[names.length];
+                    PathNode node = root;
+                    for (int j = 0; j < names.length; j++) {
+                        node = node.addChild(names[j]);
+                        path[j] = node;
+                    }
+                    target(node);
+                    embeddedPaths[i] = path;
+                }
+            }
+        }
+        tsNode = tsColName == null ? null : target(root.addChild(tsColName.toLowerCase()));
+
+        values = new String[targets.size()];
+        valueSeq = new int[targets.size()];
+    }
+
+    private PathNode target(PathNode node) {
+        if (node.slot < 0) {
+            node.slot = targets.size();
+            targets.add(node);
+        }
+        return node;
+    }
+
+    @Override
+    public List<StreamingMessageRow> parse(ByteBuffer buffer) {
+        try {
+            parseMessage(buffer);
+
+            String tsStr = tsNode == null ? StringUtils.EMPTY : valueOf(tsNode);
+            long t = streamTimeParser.parseTime(tsStr);
+            ArrayList<String> result = new ArrayList<>(columnNames.length);
+
+            for (int i = 0; i < columnNames.length; i++) {
+                if (isDerivedTime[i]) {
+                    populateDerivedTimeColumns(columnNames[i], result, t);
+                } else {
+                    result.add(getValue(i));
+                }
+            }
+
+            StreamingMessageRow streamingMessageRow = new StreamingMessageRow(result, 0, t, Collections.<String, Object> emptyMap());
+            List<StreamingMessageRow> messageRowList = new ArrayList<StreamingMessageRow>(1);
+            messageRowList.add(streamingMessageRow);
+            return messageRowList;
+        } catch (IOException e) {
+            logger.error("error", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean filter(StreamingMessageRow streamingMessageRow) {
+        return true;
+    }
+
+    private void parseMessage(ByteBuffer buffer) throws IOException {
+        seq++;
+        JsonParser parser;
+        if (buffer.hasArray()) {
+            parser = jsonFactory.createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            parser = jsonFactory.createParser(new ByteBufferBackedInputStream(buffer));
+        }
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new IOException("The message is not a JSON object");
+            root.objectSeq = seq;
+            parseObject(parser, root);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void parseObject(JsonParser parser, PathNode node) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            PathNode child = node.getChild(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else if (token == JsonToken.START_OBJECT) {
+                if (child.slot >= 0) {
+                    // the whole object is a value, bind it, then look for the embedded values in it
+                    Object value = mapper.readValue(parser, Object.class);
+                    setValue(child, TimedJsonStreamParser.objToString(value));
+                    child.objectSeq = seq;
+                    extractFromMap(child, (Map<?, ?>) value);
+                } else {
+                    child.objectSeq = seq;
+                    parseObject(parser, child);
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                if (child.slot >= 0) {
+                    setValue(child, TimedJsonStreamParser.objToString(mapper.readValue(parser, Object.class)));
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (child.slot >= 0) {
+                setValue(child, scalarToString(parser, token));
+            }
+        }
+    }
+
+    private void extractFromMap(PathNode node, Map<?, ?> map) {
+        if (node.children.isEmpty())
+            return;
+
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            PathNode child = node.getChild(String.valueOf(entry.getKey()));
+            if (child == null)
+                continue;
+
+            Object value = entry.getValue();
+            if (child.slot >= 0) {
+                setValue(child, TimedJsonStreamParser.objToString(value));
+            }
+            if (value instanceof Map) {
+                child.objectSeq = seq;
+                extractFromMap(child, (Map<?, ?>) value);
+            }
+        }
+    }
+
+    // the same string as Jackson binding the scalar to a Java object and then calling toString()
+    private static String scalarToString(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            String text = parser.getText();
+            return "-0".equals(text) ? "0" : text;
+        case VALUE_NUMBER_FLOAT:
+            return String.valueOf(parser.getDoubleValue());
+        case VALUE_TRUE:
+            return "true";
+        case VALUE_FALSE:
+            return "false";
+        case VALUE_NULL:
+            return StringUtils.EMPTY;
+        default:
+            return parser.getText();
+        }
+    }
+
+    private void setValue(PathNode node, String value) {
+        values[node.slot] = value;
+        valueSeq[node.slot] = seq;
+    }
+
+    private boolean isPresent(PathNode node) {
+        return valueSeq[node.slot] == seq;
+    }
+
+    private String valueOf(PathNode node) {
+        return isPresent(node) ? values[node.slot] : StringUtils.EMPTY;
+    }
+
+    private String getValue(int col) throws IOException {
+        if (isPresent(directNodes[col]))
+            return values[directNodes[col].slot];
+
+        PathNode[] path = embeddedPaths[col];
+        if (path == null)
+            return StringUtils.EMPTY;
+
+        // as TimedJsonStreamParser, every property on the path must be an object
+        for (int i = 0; i < path.length - 1; i++) {
+            if (path[i].objectSeq != seq)
+                throw new IOException("Property '" + path[i].name + "' is not embedded format");
+        }
+        return valueOf(path[path.length - 1]);
+    }
+
+    private static class PathNode {
+        static final PathNode NONE = new PathNode(null);
+
+        final String name; // lower case
+        final Map<String, PathNode> children = new HashMap<>(); // by lower case name
+        final Map<String, PathNode> nameCache = new HashMap<>(); // by name as it appears in messages
+        int slot = -1; // index in the value buffer, -1 if not a column
+        int objectSeq; // the last message in which this property is an object
+
+        PathNode(String name) {
+            this.name = name;
+        }
+
+        PathNode addChild(String lowerCaseName) {
+            PathNode child = children.get(lowerCaseName);
+            if (child == null) {
+                child = new PathNode(lowerCaseName);
+                children.put(lowerCaseName, child);
+            }
+            return child;
+        }
+
+        PathNode getChild(String name) {
+            PathNode child = nameCache.get(name);
+            if (child == null) {
+                child = children.get(name.toLowerCase());
+                if (child == null)
+                    child = NONE;
+                // property names repeat across messages, but don't let arbitrary keys grow the cache
+                if (nameCache.size() < NAME_CACHE_MAX)
+                    nameCache.put(name, child);
+            }
+            return child == NONE ? null : child;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.realtime;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.source.kafka.KafkaConfigManager;
+import org.apache.kylin.source.kafka.config.KafkaConfig;
+import org.apache.kylin.source.kafka.config.KafkaConsumerProperties;
+import org.apache.kylin.source.kafka.util.KafkaClient;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Consumes the topic of a streaming cube, offsets are managed by the receiver and never committed to Kafka.
+ */
+public class KafkaRealtimeMessageSource implements RealtimeMessageSource {
+
+    private final CubeInstance cube;
+    private final String topic;
+    private final KafkaConsumer<String, String> consumer;
+
+    @SuppressWarnings("unchecked")
+    public KafkaRealtimeMessageSource(CubeInstance cube) {
+        KafkaConfig kafkaConfig = KafkaConfigManager.getInstance(cube.getConfig()).getKafkaConfig(cube.getRootFactTable());
+        this.cube = cube;
+        this.topic = kafkaConfig.getTopic();
+        this.consumer = KafkaClient.getKafkaConsumer(KafkaClient.getKafkaBrokers(kafkaConfig), cube.getName(),
+                KafkaConsumerProperties.getInstanceFromEnv().extractKafkaConfigToProperties());
+    }
+
+    @Override
+    public Map<Integer, Long> getEarliestOffsets() {
+        return KafkaClient.getEarliestOffsets(cube);
+    }
+
+    @Override
+    public void seek(Map<Integer, Long> offsets) {
+        List<TopicPartition> partitions = Lists.newArrayList();
+        for (Integer partition : offsets.keySet()) {
+            partitions.add(new TopicPartition(topic, partition));
+        }
+        consumer.assign(partitions);
+        for (Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            consumer.seek(new TopicPartition(topic, entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Override
+    public Iterable<ConsumerRecord<String, String>> poll(long timeoutMs) {
+        return consumer.poll(timeoutMs);
+    }
+
+    @Override
+    public void close() {
+        consumer.close();
+    }
+}
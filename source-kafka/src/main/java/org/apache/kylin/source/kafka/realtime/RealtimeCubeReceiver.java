@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.realtime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.StreamingMessageRow;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.CubeUpdate;
+import org.apache.kylin.engine.EngineFactory;
+import org.apache.kylin.job.execution.DefaultChainedExecutable;
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.metadata.model.SegmentRange;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.source.SourcePartition;
+import org.apache.kylin.source.kafka.KafkaConfigManager;
+import org.apache.kylin.source.kafka.StreamingParser;
+import org.apache.kylin.source.kafka.config.KafkaConfig;
+import org.apache.kylin.storage.realtime.RealtimeSegment;
+import org.apache.kylin.storage.realtime.RealtimeSegmentBuilder;
+import org.apache.kylin.storage.realtime.RealtimeSegmentRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Consumes the stream of a cube continuously and makes it queryable before it is built.
+ * <p>
+ * The parsed messages are buffered, and every refresh interval (or when too many are buffered) cubed into a
+ * realtime segment which is registered for queries. Every hand-off interval, the messages consumed since the
+ * last hand-off are submitted to a normal build by their offsets, and the realtime segments are dropped once
+ * the built segment is ready. So the realtime segments only ever cover the last hand-off interval or so.
+ * <p>
+ * A failure to cube a batch only loses the batch for realtime queries, the hand-off still builds it.
+ * <p>
+ * Only cubes without lookup tables are supported, the messages have no lookup columns to join and the realtime
+ * segments have no snapshots for the derived dimensions.
+ */
+public class RealtimeCubeReceiver implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeCubeReceiver.class);
+
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private final KylinConfig config;
+    private final String cubeName;
+    private final RealtimeMessageSource source;
+    private final RealtimeSegmentBuilder builder;
+    private final StreamingParser parser;
+
+    private final long refreshIntervalMs;
+    private final int refreshMaxRows;
+    private final long handOffIntervalMs;
+
+    private final List<String[]> rows = Lists.newArrayList();
+    private final List<RealtimeSegment> segments = Lists.newArrayList(); // registered and not built yet
+    private Map<Integer, Long> consumedOffsets; // the next offset to consume of each partition
+    private Map<Integer, Long> refreshedOffsets; // where the last realtime segment ends
+    private Map<Integer, Long> handedOffOffsets; // where the last hand-off ends
+    private long lastRefreshTime;
+    private long lastHandOffTime;
+
+    private volatile boolean stopped = false;
+
+    public RealtimeCubeReceiver(KylinConfig config, String cubeName, RealtimeMessageSource source) {
+        this.config = config;
+        this.cubeName = cubeName;
+        this.source = source;
+
+        CubeInstance cube = getCube();
+        if (!cube.getModel().getLookupTables().isEmpty())
+            throw new IllegalArgumentException("Cube " + cubeName + " has lookup tables "
+                    + cube.getModel().getLookupTables() + ", which realtime segments do not support");
+        this.builder = new RealtimeSegmentBuilder(cube);
+        KafkaConfig kafkaConfig = KafkaConfigManager.getInstance(config).getKafkaConfig(cube.getRootFactTable());
+        try {
+            this.parser = StreamingParser.getStreamingParser(kafkaConfig.getParserName(),
+                    kafkaConfig.getAllParserProperties(), builder.getFlatDesc().getAllColumns());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        KylinConfig cubeConfig = cube.getConfig();
+        this.refreshIntervalMs = cubeConfig.getKafkaRealtimeRefreshIntervalSeconds() * 1000L;
+        this.refreshMaxRows = cubeConfig.getKafkaRealtimeRefreshMaxRows();
+        this.handOffIntervalMs = cubeConfig.getKafkaRealtimeHandOffIntervalSeconds() * 1000L;
+    }
+
+    @Override
+    public void run() {
+        logger.info("Realtime receiver of cube {} starts", cubeName);
+        try {
+            start();
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                try {
+                    consume();
+                } catch (Exception e) {
+                    logger.error("Realtime receiver of cube " + cubeName + " failed to consume", e);
+                    sleepQuietly(POLL_TIMEOUT_MS);
+                }
+            }
+        } finally {
+            close();
+        }
+        logger.info("Realtime receiver of cube {} stops", cubeName);
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Seeks to where the built or building segments end.
+     */
+    void start() {
+        CubeInstance cube = getCube();
+        Map<Integer, Long> offsets = Maps.newHashMap();
+        CubeSegment last = cube.getLastSegment();
+        if (last != null && !last.getSourcePartitionOffsetEnd().isEmpty()) {
+            offsets.putAll(last.getSourcePartitionOffsetEnd());
+        } else if (cube.getDescriptor().getPartitionOffsetStart() != null) {
+            offsets.putAll(cube.getDescriptor().getPartitionOffsetStart());
+        }
+        // new partitions are consumed from the beginning, as KafkaSource does
+        for (Map.Entry<Integer, Long> entry : source.getEarliestOffsets().entrySet()) {
+            if (!offsets.containsKey(entry.getKey()))
+                offsets.put(entry.getKey(), entry.getValue());
+        }
+
+        logger.info("Realtime receiver of cube {} starts from offsets {}", cubeName, offsets);
+        source.seek(offsets);
+        consumedOffsets = Maps.newHashMap(offsets);
+        refreshedOffsets = Maps.newHashMap(offsets);
+        handedOffOffsets = Maps.newHashMap(offsets);
+        lastRefreshTime = lastHandOffTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Polls once, then refreshes, hands off and drops the built realtime segments as due.
+     */
+    void consume() throws IOException {
+        for (ConsumerRecord<String, String> record : source.poll(POLL_TIMEOUT_MS)) {
+            consumedOffsets.put(record.partition(), record.offset() + 1);
+            if (record.value() == null)
+                continue;
+
+            // same as KafkaMRInput, so the realtime segments agree with the built segments
+            List<StreamingMessageRow> parsed = parser.parse(ByteBuffer.wrap(Bytes.toBytes(record.value())));
+            for (StreamingMessageRow row : parsed) {
+                rows.add(row.getData().toArray(new String[row.getData().size()]));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (rows.size() >= refreshMaxRows || now - lastRefreshTime >= refreshIntervalMs) {
+            refresh(now);
+        }
+        if (now - lastHandOffTime >= handOffIntervalMs) {
+            handOff(now);
+        }
+        dropBuiltSegments();
+    }
+
+    void refresh(long now) {
+        lastRefreshTime = now;
+        if (consumedOffsets.equals(refreshedOffsets))
+            return;
+
+        Map<Integer, Long> start = refreshedOffsets;
+        Map<Integer, Long> end = Maps.newHashMap(consumedOffsets);
+        if (!rows.isEmpty()) {
+            try {
+                RealtimeSegment segment = builder.build(rows, toSegRange(start, end), start, end);
+                RealtimeSegmentRegistry.getInstance().register(segment);
+                segments.add(segment);
+            } catch (Exception e) {
+                logger.error("Failed to cube offsets " + start + " to " + end + " of cube " + cubeName
+                        + ", they are not queryable until handed off", e);
+            }
+            rows.clear();
+        }
+        refreshedOffsets = end;
+    }
+
+    void handOff(long now) {
+        lastHandOffTime = now;
+        // let the hand-off end where a realtime segment ends
+        refresh(now);
+        if (refreshedOffsets.equals(handedOffOffsets))
+            return;
+
+        try {
+            submitBuild(handedOffOffsets, refreshedOffsets);
+            handedOffOffsets = refreshedOffsets;
+        } catch (Exception e) {
+            logger.error("Failed to hand off offsets " + handedOffOffsets + " to " + refreshedOffsets + " of cube "
+                    + cubeName + ", will retry", e);
+        }
+    }
+
+    /**
+     * Submits a normal build of the given offsets.
+     */
+    protected void submitBuild(Map<Integer, Long> start, Map<Integer, Long> end) throws IOException {
+        CubeManager cubeMgr = CubeManager.getInstance(config);
+        SourcePartition src = new SourcePartition(null, toSegRange(start, end), Maps.newHashMap(start),
+                Maps.newHashMap(end));
+        CubeSegment newSeg = cubeMgr.appendSegment(getCube(), src);
+        try {
+            DefaultChainedExecutable job = EngineFactory.createBatchCubingJob(newSeg, "SYSTEM");
+            ExecutableManager.getInstance(config).addJob(job);
+            logger.info("Handed off segment {} of cube {}, job {}", newSeg, cubeName, job.getId());
+        } catch (RuntimeException e) {
+            CubeUpdate update = new CubeUpdate(getCube());
+            update.setToRemoveSegs(newSeg);
+            cubeMgr.updateCube(update);
+            throw e;
+        }
+    }
+
+    void dropBuiltSegments() {
+        if (segments.isEmpty())
+            return;
+
+        CubeInstance cube = getCube();
+        for (Iterator<RealtimeSegment> it = segments.iterator(); it.hasNext();) {
+            RealtimeSegment segment = it.next();
+            if (segment.isCoveredBy(cube.getSegments(SegmentStatusEnum.READY))) {
+                RealtimeSegmentRegistry.getInstance().unregister(segment);
+                it.remove();
+            }
+        }
+    }
+
+    void close() {
+        for (RealtimeSegment segment : segments) {
+            RealtimeSegmentRegistry.getInstance().unregister(segment);
+        }
+        segments.clear();
+        IOUtils.closeQuietly(source);
+    }
+
+    List<RealtimeSegment> getSegments() {
+        return segments;
+    }
+
+    private CubeInstance getCube() {
+        CubeInstance cube = CubeManager.getInstance(config).getCube(cubeName);
+        if (cube == null)
+            throw new IllegalStateException("Cube " + cubeName + " not found");
+        return cube;
+    }
+
+    // the offsets summed up, as KafkaSource does for segment ranges
+    static SegmentRange toSegRange(Map<Integer, Long> start, Map<Integer, Long> end) {
+        long startSum = 0;
+        long endSum = 0;
+        for (Long v : start.values()) {
+            startSum += v;
+        }
+        for (Long v : end.values()) {
+            endSum += v;
+        }
+        return new SegmentRange(startSum, endSum);
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
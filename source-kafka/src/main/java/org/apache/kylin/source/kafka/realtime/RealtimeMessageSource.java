@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.realtime;
+
+import java.io.Closeable;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * The partitioned messages a realtime receiver consumes, a Kafka topic normally.
+ */
+public interface RealtimeMessageSource extends Closeable {
+
+    /**
+     * The earliest available offset of each partition.
+     */
+    Map<Integer, Long> getEarliestOffsets();
+
+    /**
+     * Assigns the given partitions, to be consumed from the given offsets.
+     */
+    void seek(Map<Integer, Long> offsets);
+
+    Iterable<ConsumerRecord<String, String>> poll(long timeoutMs);
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare the message throughput of TimedJsonStreamParser and TimedJsonTokenStreamParser on the sample tweet,
+ * with a few top level, embedded and derived time columns like a typical streaming table.
+ */
+@Ignore
+public class TimedJsonStreamParserBenchmark extends LocalFileMetadataTestCase {
+
+    private static final String jsonFilePath = "src/test/resources/message.json";
+
+    final int warmupRounds = 3;
+    final int rounds = 5;
+    final int messagesPerRound = 200000;
+
+    private static byte[] message;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+        message = FileUtils.readFileToByteArray(new File(jsonFilePath));
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void benchmark() {
+        List<TblColRef> cols = TimedJsonTokenStreamParserTest.mockupTblColRefList("createdAt", "id", "text", "lang", //
+                "retweetCount", "user_id", "user_description", "hour_start", "day_start");
+
+        run("TimedJsonStreamParser", new TimedJsonStreamParser(cols, null));
+        run("TimedJsonTokenStreamParser", new TimedJsonTokenStreamParser(cols, null));
+    }
+
+    private void run(String name, StreamingParser parser) {
+        for (int i = 0; i < warmupRounds; i++) {
+            parseAll(parser);
+        }
+
+        long total = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            parseAll(parser);
+            total += System.nanoTime() - start;
+        }
+        double msgPerSec = (double) messagesPerRound * rounds / (total / 1e9);
+        System.out.println(name + ": " + (long) msgPerSec + " msg/s, " + (total / rounds / messagesPerRound) + " ns/msg");
+    }
+
+    private long parseAll(StreamingParser parser) {
+        long check = 0;
+        for (int i = 0; i < messagesPerRound; i++) {
+            check += parser.parse(ByteBuffer.wrap(message)).get(0).getData().size();
+        }
+        return check;
+    }
+}
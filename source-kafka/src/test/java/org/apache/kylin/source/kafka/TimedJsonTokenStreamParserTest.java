@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.StreamingMessageRow;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TimedJsonTokenStreamParserTest extends LocalFileMetadataTestCase {
+
+    private static final String jsonFilePath = "src/test/resources/message.json";
+    private static byte[] message;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+        message = FileUtils.readFileToByteArray(new File(jsonFilePath));
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testSameAsTimedJsonStreamParser() throws Exception {
+        verifySame(message, "createdAt", "id", "isTruncated", "text");
+        verifySame(message, "user_id", "user_description", "user_isProtected");
+        verifySame(message, "userMentionEntities", "mediaEntities", "contributorsIDs");
+        verifySame(message, "user", "user_id", "USER_DESCRIPTION");
+        verifySame(message, "null", "", "lang", "notexist");
+        verifySame(message, "hour_start", "day_start", "text");
+    }
+
+    @Test
+    public void testScalarTypes() throws Exception {
+        byte[] msg = ("{\"timestamp\": 1500000000000, \"f\": 1.50, \"e\": 1e10, \"z\": -0, \"big\": 123456789012345678901234567890,"
+                + " \"b\": true, \"n\": null, \"s\": \"x\\\"y\", \"A_b\": {\"C\": \"v\", \"D\": {\"e\": 2}}, \"X\": {\"Y\": 5},"
+                + " \"skip\": {\"a\": [1, 2, {}]}}").getBytes("UTF-8");
+        verifySame(msg, "timestamp", "f", "e", "z", "big", "b", "n", "s", "a_b", "x_y", "minute_start");
+    }
+
+    @Test
+    public void testReuseAcrossMessages() throws Exception {
+        List<TblColRef> cols = mockupTblColRefList("a", "b_c");
+        TimedJsonTokenStreamParser parser = new TimedJsonTokenStreamParser(cols, null);
+
+        List<String> row1 = parse(parser, "{\"a\": \"1\", \"b\": {\"c\": \"2\"}}".getBytes("UTF-8"));
+        assertEquals("1", row1.get(0));
+        assertEquals("2", row1.get(1));
+
+        // values of the previous message must not leak
+        List<String> row2 = parse(parser, "{\"b\": {\"x\": \"3\"}}".getBytes("UTF-8"));
+        assertEquals("", row2.get(0));
+        assertEquals("", row2.get(1));
+        assertEquals("1", row1.get(0));
+    }
+
+    @Test
+    public void testNotEmbeddedFormat() throws Exception {
+        List<TblColRef> cols = mockupTblColRefList("user_id");
+        byte[] msg = "{\"user\": 1}".getBytes("UTF-8");
+        try {
+            parse(new TimedJsonStreamParser(cols, null), msg);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        try {
+            parse(new TimedJsonTokenStreamParser(cols, null), msg);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    private void verifySame(byte[] msg, String... colNames) {
+        List<TblColRef> cols = mockupTblColRefList(colNames);
+        List<String> expected = parse(new TimedJsonStreamParser(cols, null), msg);
+        TimedJsonTokenStreamParser parser = new TimedJsonTokenStreamParser(cols, null);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, parse(parser, msg));
+        }
+    }
+
+    private List<String> parse(StreamingParser parser, byte[] msg) {
+        List<StreamingMessageRow> rows = parser.parse(ByteBuffer.wrap(msg));
+        assertEquals(1, rows.size());
+        return rows.get(0).getData();
+    }
+
+    static List<TblColRef> mockupTblColRefList(String... colNames) {
+        TableDesc t = TableDesc.mockup("table_a");
+        List<TblColRef> list = new ArrayList<>();
+        for (int i = 0; i < colNames.length; i++) {
+            TblColRef c = TblColRef.mockup(t, i, colNames[i], "string");
+            list.add(c);
+        }
+        return list;
+    }
+}
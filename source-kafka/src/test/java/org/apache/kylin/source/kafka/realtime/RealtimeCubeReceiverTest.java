@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.realtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.CubeUpdate;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.model.MeasureDesc;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.source.SourcePartition;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.gtrecord.CubeScanRangePlanner;
+import org.apache.kylin.storage.realtime.RealtimeGTStorage;
+import org.apache.kylin.storage.realtime.RealtimeSegment;
+import org.apache.kylin.storage.realtime.RealtimeSegmentRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class RealtimeCubeReceiverTest extends LocalFileMetadataTestCase {
+
+    private static final String CUBE_NAME = "test_streaming_table_cube";
+    private static final String TOPIC = "test_streaming_table_topic";
+    private static final long TS_10_01 = 1451642460000L; // 2016-01-01 10:01:00 GMT
+
+    private MockMessageSource source;
+    private TestReceiver receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        source = new MockMessageSource();
+        receiver = new TestReceiver(source);
+        receiver.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        receiver.close();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        source.add(0, message(TS_10_01, "a", "s1", 1.5, 1));
+        source.add(0, message(TS_10_01, "a", "s1", 2.5, 2));
+        source.add(1, message(TS_10_01 + 60000, "b", "s2", 3, 3));
+        receiver.consume();
+        assertTrue(receiver.getSegments().isEmpty());
+
+        receiver.refresh(System.currentTimeMillis());
+        assertEquals(1, receiver.getSegments().size());
+        RealtimeSegment segment = receiver.getSegments().get(0);
+        assertEquals(segment, RealtimeSegmentRegistry.getInstance().getSegment(segment.getSegment().getUuid()));
+        assertEquals(3, segment.getInputRecords());
+        assertEquals(offsets(2L, 1L), segment.getSegment().getSourcePartitionOffsetEnd());
+        assertEquals(TS_10_01, segment.getSegment().getTSRange().start.v.longValue());
+
+        // the first two messages aggregate into one row of the base cuboid
+        long baseCuboid = Cuboid.getBaseCuboidId(getCube().getDescriptor());
+        assertEquals(2, segment.getRowCount(baseCuboid));
+
+        // nothing new consumed, no new segment
+        receiver.refresh(System.currentTimeMillis());
+        assertEquals(1, receiver.getSegments().size());
+    }
+
+    @Test
+    public void testQueryNotMaterializedCuboid() throws Exception {
+        source.add(0, message(TS_10_01, "a", "s1", 1.5, 1));
+        source.add(0, message(TS_10_01 + 60000, "b", "s1", 2.5, 2));
+        source.add(1, message(TS_10_01, "a", "s2", 3, 3));
+        receiver.consume();
+        receiver.refresh(System.currentTimeMillis());
+
+        CubeInstance cube = getCube();
+        CubeSegment segment = receiver.getSegments().get(0).getSegment();
+        TblColRef site = cube.getModel().findColumn("SITE");
+        Set<TblColRef> dims = Sets.newHashSet(site);
+        List<FunctionDesc> metrics = Lists.newArrayList();
+        for (MeasureDesc measure : cube.getDescriptor().getMeasures()) {
+            metrics.add(measure.getFunction());
+        }
+        Cuboid cuboid = Cuboid.identifyCuboid(cube, dims, metrics);
+        assertFalse(receiver.getSegments().get(0).getCuboidIds().contains(cuboid.getId()));
+
+        Map<String, Object[]> result = scan(segment, cuboid, dims, metrics);
+        assertEquals(2, result.size());
+        assertEquals(2L, ((Number) result.get("s1")[1]).longValue());
+        assertEquals(0, new BigDecimal("4.0").compareTo((BigDecimal) result.get("s1")[2]));
+        assertEquals(1L, ((Number) result.get("s2")[1]).longValue());
+        assertEquals(0, new BigDecimal("3").compareTo((BigDecimal) result.get("s2")[2]));
+    }
+
+    @Test
+    public void testHandOff() throws Exception {
+        source.add(0, message(TS_10_01, "a", "s1", 1, 1));
+        receiver.consume();
+        receiver.refresh(System.currentTimeMillis());
+        source.add(1, message(TS_10_01, "b", "s2", 2, 2));
+        receiver.consume();
+
+        // the hand-off refreshes first, so it ends where the last realtime segment ends
+        receiver.handOff(System.currentTimeMillis());
+        assertEquals(2, receiver.getSegments().size());
+        assertEquals(1, receiver.builds.size());
+        assertEquals(offsets(0L, 0L), receiver.builds.get(0)[0]);
+        assertEquals(offsets(1L, 1L), receiver.builds.get(0)[1]);
+
+        receiver.handOff(System.currentTimeMillis());
+        assertEquals(1, receiver.builds.size());
+
+        // the realtime segments stay until the handed off segment is ready
+        CubeManager cubeMgr = CubeManager.getInstance(getTestConfig());
+        CubeSegment built = cubeMgr.appendSegment(getCube(), new SourcePartition(null,
+                RealtimeCubeReceiver.toSegRange(offsets(0L, 0L), offsets(1L, 1L)), offsets(0L, 0L), offsets(1L, 1L)));
+        receiver.dropBuiltSegments();
+        assertEquals(2, receiver.getSegments().size());
+
+        built.setStatus(SegmentStatusEnum.READY);
+        CubeUpdate update = new CubeUpdate(getCube());
+        update.setToUpdateSegs(built);
+        cubeMgr.updateCube(update);
+        receiver.dropBuiltSegments();
+        assertTrue(receiver.getSegments().isEmpty());
+        assertTrue(RealtimeSegmentRegistry.getInstance().getSegments(CUBE_NAME).isEmpty());
+    }
+
+    @Test
+    public void testSkipSegmentOfOldSchema() throws Exception {
+        source.add(0, message(TS_10_01, "a", "s1", 1, 1));
+        receiver.consume();
+        receiver.refresh(System.currentTimeMillis());
+        assertEquals(1, RealtimeSegmentRegistry.getInstance().getQueryableSegments(getCube()).size());
+
+        // the segment was cubed with the old desc
+        getCube().getDescriptor().setSignature("changed");
+        assertTrue(RealtimeSegmentRegistry.getInstance().getQueryableSegments(getCube()).isEmpty());
+    }
+
+    @Test
+    public void testRefuseCubeWithLookupTables() throws Exception {
+        try {
+            new RealtimeCubeReceiver(getTestConfig(), "test_kylin_cube_with_slr_empty", source);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("lookup tables"));
+        }
+    }
+
+    @Test
+    public void testRestartFromLastSegment() throws Exception {
+        CubeManager cubeMgr = CubeManager.getInstance(getTestConfig());
+        cubeMgr.appendSegment(getCube(), new SourcePartition(null,
+                RealtimeCubeReceiver.toSegRange(offsets(0L, 0L), offsets(5L, 7L)), offsets(0L, 0L), offsets(5L, 7L)));
+
+        receiver.close();
+        receiver = new TestReceiver(source);
+        receiver.start();
+        assertEquals(offsets(5L, 7L), source.seeked);
+    }
+
+    private Map<String, Object[]> scan(CubeSegment segment, Cuboid cuboid, Set<TblColRef> dims,
+            Collection<FunctionDesc> metrics) throws IOException {
+        StorageContext context = new StorageContext();
+        context.setNeedStorageAggregation(true);
+        CubeScanRangePlanner planner = new CubeScanRangePlanner(segment, cuboid, null, dims, dims, metrics, null,
+                context);
+        GTScanRequest request = planner.planScanRequest();
+        assertNotNull(request);
+
+        Map<String, Object[]> result = Maps.newHashMap();
+        IGTScanner scanner = new RealtimeGTStorage(segment, cuboid, request.getInfo(), context)
+                .getGTScanner(request);
+        try {
+            for (GTRecord record : scanner) {
+                Object[] values = record.getValues();
+                result.put((String) values[0], values);
+            }
+        } finally {
+            scanner.close();
+        }
+        return result;
+    }
+
+    private CubeInstance getCube() {
+        return CubeManager.getInstance(getTestConfig()).getCube(CUBE_NAME);
+    }
+
+    private static Map<Integer, Long> offsets(Long p0, Long p1) {
+        Map<Integer, Long> result = Maps.newHashMap();
+        result.put(0, p0);
+        result.put(1, p1);
+        return result;
+    }
+
+    private static String message(long ts, String itm, String site, double gmv, int itemCount) {
+        return "{\"timestamp\":" + ts + ",\"itm\":\"" + itm + "\",\"site\":\"" + site + "\",\"gmv\":" + gmv
+                + ",\"item_count\":" + itemCount + "}";
+    }
+
+    private class TestReceiver extends RealtimeCubeReceiver {
+        final List<Map<Integer, Long>[]> builds = Lists.newArrayList();
+
+        TestReceiver(RealtimeMessageSource source) {
+            super(getTestConfig(), CUBE_NAME, source);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void submitBuild(Map<Integer, Long> start, Map<Integer, Long> end) {
+            builds.add(new Map[] { Maps.newHashMap(start), Maps.newHashMap(end) });
+        }
+    }
+
+    private static class MockMessageSource implements RealtimeMessageSource {
+        final Map<Integer, Long> nextOffsets = offsets(0L, 0L);
+        final List<ConsumerRecord<String, String>> pending = Lists.newArrayList();
+        Map<Integer, Long> seeked;
+
+        void add(int partition, String message) {
+            long offset = nextOffsets.get(partition);
+            pending.add(new ConsumerRecord<String, String>(TOPIC, partition, offset, null, message));
+            nextOffsets.put(partition, offset + 1);
+        }
+
+        @Override
+        public Map<Integer, Long> getEarliestOffsets() {
+            return offsets(0L, 0L);
+        }
+
+        @Override
+        public void seek(Map<Integer, Long> offsets) {
+            seeked = Maps.newHashMap(offsets);
+        }
+
+        @Override
+        public Iterable<ConsumerRecord<String, String>> poll(long timeoutMs) {
+            List<ConsumerRecord<String, String>> result = Lists.newArrayList(pending);
+            pending.clear();
+            return result;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -22,12 +22,19 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -56,6 +63,7 @@ import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.StringEntity;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.DaemonThreadFactory;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,6 +86,10 @@ public class HBaseResourceStore extends ResourceStore {
 
     private static final byte[] B_COLUMN_TS = Bytes.toBytes(COLUMN_TS);
 
+    private static final int MULTI_GET_SIZE = 500;
+
+    private static ExecutorService bigCellPool; // reads the big cells of a batch from HDFS, shared by the stores
+
     final String tableName;
     final StorageURL metadataUrl;
 
@@ -207,23 +219,143 @@ public class HBaseResourceStore extends ResourceStore {
     protected List<RawResource> getAllResourcesImpl(String folderPath, long timeStart, long timeEndExclusive)
             throws IOException {
         FilterList filter = generateTimeFilterList(timeStart, timeEndExclusive);
-        final List<RawResource> result = Lists.newArrayList();
+        final List<String> paths = Lists.newArrayList();
+        final List<Result> results = Lists.newArrayList();
+        visitFolder(folderPath, filter, new FolderVisitor() {
+            @Override
+            public void visit(String childPath, String fullPath, Result hbaseResult) throws IOException {
+                // is a direct child (not grand child)?
+                if (childPath.equals(fullPath)) {
+                    paths.add(childPath);
+                    results.add(hbaseResult);
+                }
+            }
+        });
+        return toRawResources(paths, results);
+    }
+
+    @Override
+    protected List<RawResource> getResourcesImpl(List<String> resPaths) throws IOException {
+        List<Result> results = Lists.newArrayListWithCapacity(resPaths.size());
+        Table table = getConnection().getTable(TableName.valueOf(tableName));
         try {
-            visitFolder(folderPath, filter, new FolderVisitor() {
-                @Override
-                public void visit(String childPath, String fullPath, Result hbaseResult) throws IOException {
-                    // is a direct child (not grand child)?
-                    if (childPath.equals(fullPath))
-                        result.add(new RawResource(getInputStream(childPath, hbaseResult), getTimestamp(hbaseResult)));
+            for (int i = 0; i < resPaths.size(); i += MULTI_GET_SIZE) {
+                List<String> batch = resPaths.subList(i, Math.min(i + MULTI_GET_SIZE, resPaths.size()));
+                List<Get> gets = Lists.newArrayListWithCapacity(batch.size());
+                for (String resPath : batch) {
+                    Get get = new Get(Bytes.toBytes(resPath));
+                    get.addColumn(B_FAMILY, B_COLUMN);
+                    get.addColumn(B_FAMILY, B_COLUMN_TS);
+                    gets.add(get);
+                }
+                for (Result r : table.get(gets)) {
+                    results.add(r == null || r.isEmpty() ? null : r);
                 }
-            });
-        } catch (IOException e) {
-            for (RawResource rawResource : result) {
-                IOUtils.closeQuietly(rawResource.inputStream);
             }
-            throw e;
+        } finally {
+            IOUtils.closeQuietly(table);
+        }
+        return toRawResources(resPaths, results);
+    }
+
+    /**
+     * Null for a null result. More than one big cell are read from HDFS in parallel into memory, as long as they fit
+     * the fetch bytes of a batch. The others are returned as HDFS streams.
+     */
+    private List<RawResource> toRawResources(final List<String> resPaths, final List<Result> results)
+            throws IOException {
+        List<RawResource> resources = Lists.newArrayList(Collections.nCopies(results.size(), (RawResource) null));
+        List<Integer> bigCells = Lists.newArrayList();
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            if (r == null)
+                continue;
+            byte[] value = r.getValue(B_FAMILY, B_COLUMN);
+            if (value != null && value.length == 0)
+                bigCells.add(i);
+            else
+                resources.set(i, new RawResource(getInputStream(resPaths.get(i), r), getTimestamp(r)));
+        }
+
+        if (bigCells.size() == 1) {
+            int i = bigCells.get(0);
+            resources.set(i, new RawResource(getInputStream(resPaths.get(i), results.get(i)),
+                    getTimestamp(results.get(i))));
+        } else if (bigCells.size() > 1) {
+            ExecutorService pool = getBigCellPool(kylinConfig.getResourceStoreBigCellFetchThreads());
+            final AtomicLong fetchBytes = new AtomicLong(kylinConfig.getResourceStoreBigCellFetchMaxBytes());
+            List<Future<InputStream>> futures = Lists.newArrayListWithCapacity(bigCells.size());
+            for (final int i : bigCells) {
+                futures.add(pool.submit(new Callable<InputStream>() {
+                    @Override
+                    public InputStream call() throws Exception {
+                        return fetchBigCell(resPaths.get(i), fetchBytes);
+                    }
+                }));
+            }
+            try {
+                for (int k = 0; k < bigCells.size(); k++) {
+                    int i = bigCells.get(k);
+                    resources.set(i, new RawResource(futures.get(k).get(), getTimestamp(results.get(i))));
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                for (Future<InputStream> future : futures) {
+                    if (!future.cancel(true))
+                        closeFetched(future);
+                }
+                for (RawResource resource : resources) {
+                    if (resource != null)
+                        IOUtils.closeQuietly(resource.inputStream);
+                }
+                if (e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                throw cause instanceof IOException ? (IOException) cause
+                        : new IOException("Failed to read big cells from HDFS", cause);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Reads a big cell into memory if it fits the fetch bytes left, otherwise returns its HDFS stream unread.
+     */
+    private InputStream fetchBigCell(String resPath, AtomicLong fetchBytes) throws IOException {
+        Path redirectPath = bigCellHDFSPath(resPath);
+        FileSystem fileSystem = HadoopUtil.getFileSystem(redirectPath, HBaseConnection.getCurrentHBaseConfiguration());
+        InputStream in;
+        long length;
+        try {
+            length = fileSystem.getFileStatus(redirectPath).getLen();
+            in = fileSystem.open(redirectPath);
+        } catch (IOException ex) {
+            throw new IOException("Failed to read resource at " + resPath, ex);
+        }
+
+        if (fetchBytes.addAndGet(-length) < 0) {
+            fetchBytes.addAndGet(length);
+            return in;
+        }
+        try {
+            return new ByteArrayInputStream(IOUtils.toByteArray(in));
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static void closeFetched(Future<InputStream> future) {
+        try {
+            IOUtils.closeQuietly(future.get());
+        } catch (InterruptedException | ExecutionException e) {
+            // nothing fetched
+        }
+    }
+
+    private static synchronized ExecutorService getBigCellPool(int threads) {
+        if (bigCellPool == null) {
+            bigCellPool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
         }
-        return result;
+        return bigCellPool;
     }
 
     private FilterList generateTimeFilterList(long timeStart, long timeEndExclusive) {
@@ -33,6 +33,7 @@ import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryTimeline;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.Bytes;
@@ -165,7 +166,9 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         builder.setMaxScanBytes(cubeSeg.getConfig().getPartitionMaxScanBytes());
         builder.setIsExactAggregate(storageContext.isExactAggregation());
 
+        final QueryTimeline timeline = queryContext.getTimeline();
         for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
+            final long submitTime = System.nanoTime();
             executorService.submit(new Runnable() {
                 @Override
                 public void run() {
@@ -183,10 +186,15 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         table.coprocessorService(CubeVisitService.class, startKey, endKey, //
                                 new Batch.Call<CubeVisitService, CubeVisitResponse>() {
                                     public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
+                                        // queued in both the executor and the coprocessor pool
+                                        long callTime = System.nanoTime();
+                                        timeline.record(QueryTimeline.Stage.RPC_QUEUE_WAIT, submitTime, callTime);
+
                                         ServerRpcController controller = new ServerRpcController();
                                         BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
                                         rowsService.visitCube(controller, request, rpcCallback);
                                         CubeVisitResponse response = rpcCallback.get();
+                                        timeline.record(QueryTimeline.Stage.RPC_SERVICE, callTime);
                                         if (controller.failedOnException()) {
                                             throw controller.getFailedOn();
                                         }
@@ -235,7 +243,10 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
                                         try {
                                             if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
+                                                long decodeStart = System.nanoTime();
+                                                byte[] rows = CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
+                                                timeline.record(QueryTimeline.Stage.RESULT_DECODING, decodeStart);
+                                                epResultItr.append(rows);
                                             } else {
                                                 epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
                                             }
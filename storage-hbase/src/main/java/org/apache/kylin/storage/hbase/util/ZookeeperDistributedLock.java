@@ -20,6 +20,8 @@ package org.apache.kylin.storage.hbase.util;
 
 import java.io.Closeable;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -35,18 +37,23 @@ import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.lock.DistributedLock;
 import org.apache.kylin.common.lock.DistributedLockFactory;
+import org.apache.kylin.job.lock.JobCapacityRegistry;
 import org.apache.kylin.job.lock.JobLock;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Maps;
+
 /**
  * A distributed lock based on zookeeper. Every instance is owned by a client, on whose behalf locks are acquired and/or released.
  * 
  * All <code>lockPath</code> will be prefix-ed with "/kylin/metadata-prefix" automatically.
+ * 
+ * The job capacity of a client is an ephemeral node under "/job_engine/capacity", named by the client.
  */
-public class ZookeeperDistributedLock implements DistributedLock, JobLock {
+public class ZookeeperDistributedLock implements DistributedLock, JobLock, JobCapacityRegistry {
     private static Logger logger = LoggerFactory.getLogger(ZookeeperDistributedLock.class);
 
     public static class Factory extends DistributedLockFactory {
@@ -119,7 +126,8 @@ public class ZookeeperDistributedLock implements DistributedLock, JobLock {
     final String client;
     final byte[] clientBytes;
 
-    private ZookeeperDistributedLock(CuratorFramework curator, String zkPathBase, String client) {
+    // package-private for test
+    ZookeeperDistributedLock(CuratorFramework curator, String zkPathBase, String client) {
         if (client == null)
             throw new NullPointerException("client must not be null");
         if (zkPathBase == null)
@@ -316,4 +324,69 @@ public class ZookeeperDistributedLock implements DistributedLock, JobLock {
         return "/job_engine/global_job_engine_lock";
     }
 
+    // ============================================================================
+
+    @Override
+    public void publishCapacity(String capacity) {
+        String path = capacityPath();
+        byte[] bytes = capacity.getBytes(Charset.forName("UTF-8"));
+
+        try {
+            try {
+                curator.setData().forPath(path, bytes);
+            } catch (KeeperException.NoNodeException ex) {
+                // the first time, or the session expired
+                curator.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, bytes);
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Error while " + client + " publishing capacity at " + path, ex);
+        }
+    }
+
+    @Override
+    public void withdrawCapacity() {
+        String path = capacityPath();
+        try {
+            curator.delete().guaranteed().forPath(path);
+        } catch (KeeperException.NoNodeException ex) {
+            // not published
+        } catch (Exception ex) {
+            throw new RuntimeException("Error while " + client + " withdrawing capacity at " + path, ex);
+        }
+    }
+
+    @Override
+    public Map<String, String> getCapacities() {
+        String root = norm(capacityPathRoot());
+        Map<String, String> result = Maps.newHashMap();
+
+        try {
+            List<String> children;
+            try {
+                children = curator.getChildren().forPath(root);
+            } catch (KeeperException.NoNodeException ex) {
+                return result;
+            }
+            for (String child : children) {
+                try {
+                    byte[] bytes = curator.getData().forPath(root + "/" + child);
+                    result.put(child, new String(bytes, Charset.forName("UTF-8")));
+                } catch (KeeperException.NoNodeException ex) {
+                    // the client is gone meanwhile
+                }
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Error while reading capacities under " + root, ex);
+        }
+        return result;
+    }
+
+    private String capacityPath() {
+        return norm(capacityPathRoot() + "/" + client);
+    }
+
+    private String capacityPathRoot() {
+        return "/job_engine/capacity";
+    }
+
 }
@@ -19,15 +19,17 @@
 package org.apache.kylin.storage.hbase.util;
 
 import java.io.Closeable;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 import org.apache.kylin.common.lock.DistributedLock;
+import org.apache.kylin.job.lock.JobCapacityRegistry;
 import org.apache.kylin.job.lock.JobLock;
 
 /**
  * A simple delegator to ZookeeperDistributedLock with a default constructor.
  */
-public class ZookeeperJobLock implements DistributedLock, JobLock {
+public class ZookeeperJobLock implements DistributedLock, JobLock, JobCapacityRegistry {
 
     private ZookeeperDistributedLock lock = (ZookeeperDistributedLock) new ZookeeperDistributedLock.Factory().lockForCurrentProcess();
 
@@ -86,4 +88,19 @@ public class ZookeeperJobLock implements DistributedLock, JobLock {
         lock.unlockJobEngine();
     }
 
+    @Override
+    public void publishCapacity(String capacity) {
+        lock.publishCapacity(capacity);
+    }
+
+    @Override
+    public void withdrawCapacity() {
+        lock.withdrawCapacity();
+    }
+
+    @Override
+    public Map<String, String> getCapacities() {
+        return lock.getCapacities();
+    }
+
 }
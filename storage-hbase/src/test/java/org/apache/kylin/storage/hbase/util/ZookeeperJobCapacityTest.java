@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.apache.kylin.job.impl.threadpool.JobNodeCapacity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The job capacities on an embedded zookeeper.
+ */
+public class ZookeeperJobCapacityTest {
+
+    private static final String ZK_PATH_BASE = "/kylin/capacity_test";
+
+    private TestingServer zkServer;
+    private CuratorFramework curator1;
+    private CuratorFramework curator2;
+
+    @Before
+    public void setup() throws Exception {
+        zkServer = new TestingServer();
+        curator1 = newClient();
+        curator2 = newClient();
+    }
+
+    private CuratorFramework newClient() {
+        CuratorFramework curator = CuratorFrameworkFactory.newClient(zkServer.getConnectString(),
+                new ExponentialBackoffRetry(1000, 3));
+        curator.start();
+        return curator;
+    }
+
+    @After
+    public void after() throws Exception {
+        curator1.close();
+        curator2.close();
+        zkServer.close();
+    }
+
+    @Test
+    public void testPublishAndWithdraw() throws Exception {
+        ZookeeperDistributedLock node1 = new ZookeeperDistributedLock(curator1, ZK_PATH_BASE, "node1");
+        ZookeeperDistributedLock node2 = new ZookeeperDistributedLock(curator2, ZK_PATH_BASE, "node2");
+        assertTrue(node1.getCapacities().isEmpty());
+
+        node1.publishCapacity(new JobNodeCapacity("node1", 10, 5, 4096).encode());
+        node2.publishCapacity(new JobNodeCapacity("node2", 10, 8, 4096).encode());
+        node2.publishCapacity(new JobNodeCapacity("node2", 10, 2, 4096).encode());
+
+        Map<String, String> capacities = node1.getCapacities();
+        assertEquals(2, capacities.size());
+        assertEquals("10,2,4096", capacities.get("node2"));
+        assertEquals(capacities, node2.getCapacities());
+
+        node2.withdrawCapacity();
+        node2.withdrawCapacity();
+        assertFalse(node1.getCapacities().containsKey("node2"));
+
+        // not the lock paths
+        assertTrue(node1.lock("/job_engine/lock/segment1"));
+        assertEquals(1, node1.getCapacities().size());
+    }
+
+    @Test
+    public void testCapacityGoneWithSession() throws Exception {
+        ZookeeperDistributedLock node1 = new ZookeeperDistributedLock(curator1, ZK_PATH_BASE, "node1");
+        ZookeeperDistributedLock node2 = new ZookeeperDistributedLock(curator2, ZK_PATH_BASE, "node2");
+        node1.publishCapacity(new JobNodeCapacity("node1", 10, 5, 4096).encode());
+        node2.publishCapacity(new JobNodeCapacity("node2", 10, 1, 4096).encode());
+
+        assertEquals("node2", selectLeastLoaded(node1.getCapacities()));
+
+        // node2 is down
+        curator2.close();
+        assertEquals("node1", selectLeastLoaded(node1.getCapacities()));
+    }
+
+    private static String selectLeastLoaded(Map<String, String> capacities) {
+        List<JobNodeCapacity> nodes = Lists.newArrayList();
+        for (Map.Entry<String, String> entry : capacities.entrySet()) {
+            nodes.add(JobNodeCapacity.decode(entry.getKey(), entry.getValue()));
+        }
+        return JobNodeCapacity.selectLeastLoaded(nodes, 512).getServerName();
+    }
+}
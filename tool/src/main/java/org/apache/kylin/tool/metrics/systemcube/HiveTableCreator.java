@@ -136,6 +136,23 @@ public class HiveTableCreator {
         columns.add(new Pair<>(QueryPropertyEnum.CALCITE_RETURN_COUNT.toString(), HiveTypeEnum.HBIGINT.toString()));
         columns.add(new Pair<>(QueryPropertyEnum.STORAGE_RETURN_COUNT.toString(), HiveTypeEnum.HBIGINT.toString()));
         columns.add(new Pair<>(QueryPropertyEnum.AGGR_FILTER_COUNT.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_SQL_PARSE.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_SQL_PLAN.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_REALIZATION_ROUTING.toString(),
+                HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_SCAN_RANGE_PLANNING.toString(),
+                HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_STORAGE_ENUMERATE.toString(),
+                HiveTypeEnum.HBIGINT.toString()));
+        columns.add(
+                new Pair<>(QueryPropertyEnum.TIME_COST_RPC_QUEUE_WAIT.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_RPC_SERVICE.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(
+                new Pair<>(QueryPropertyEnum.TIME_COST_RESULT_DECODING.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(
+                new Pair<>(QueryPropertyEnum.TIME_COST_TUPLE_CONVERSION.toString(), HiveTypeEnum.HBIGINT.toString()));
+        columns.add(new Pair<>(QueryPropertyEnum.TIME_COST_CALCITE_ENUMERABLE.toString(),
+                HiveTypeEnum.HBIGINT.toString()));
 
         columns.addAll(getTimeColumnsForMetrics());
         return columns;